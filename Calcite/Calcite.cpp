@@ -53,7 +53,15 @@ using namespace apache::thrift::transport;
 
 extern bool g_enable_column_level_security;
 
+// time budget of the optional optimization phases of Calcite, 0 for none
+size_t g_calcite_planning_time_budget_ms{0};
+// answer queries from tables registered as materialized queries
+bool g_enable_materialized_query_rewrite{false};
+
 namespace {
+// the code of the error Calcite raises for a prepared query it no longer holds
+constexpr int kPreparedQueryNotFound = -10;
+
 template <typename XDEBUG_OPTION,
           typename REMOTE_DEBUG_OPTION,
           typename... REMAINING_ARGS>
@@ -421,6 +429,26 @@ void Calcite::updateMetadata(std::string catalog, std::string table) {
   }
 }
 
+void Calcite::updatePrivileges() {
+  if (server_available_) {
+    auto clientP = getClient(remote_calcite_port_);
+    clientP.first->updatePrivileges();
+    clientP.second->close();
+  } else {
+    LOG(INFO) << "Not routing to Calcite, server is not up";
+  }
+}
+
+void Calcite::cancel(const std::string& session, const std::string& nonce) {
+  if (server_available_) {
+    auto clientP = getClient(remote_calcite_port_);
+    clientP.first->cancel(session, nonce);
+    clientP.second->close();
+  } else {
+    LOG(INFO) << "Not routing to Calcite, server is not up";
+  }
+}
+
 TPlanResult Calcite::process(query_state::QueryStateProxy query_state_proxy,
                              std::string sql_string,
                              const TQueryParsingOption& query_parsing_option,
@@ -434,6 +462,80 @@ TPlanResult Calcite::process(query_state::QueryStateProxy query_state_proxy,
   return result;
 }
 
+TPreparedPlan Calcite::prepare(query_state::QueryStateProxy query_state_proxy,
+                               const std::string& sql_string,
+                               const TQueryParsingOption& query_parsing_option,
+                               const TOptimizationOption& optimization_option,
+                               const std::string& calcite_session_id) {
+  query_state::Timer timer = query_state_proxy.createTimer(__func__);
+  const auto& cat = query_state_proxy->getConstSessionInfo()->getCatalog();
+  const std::string user = getInternalSessionProxyUserName();
+  const std::string catalog = cat.getCurrentDB().dbName;
+  LOG(INFO) << "User " << user << " catalog " << catalog << " prepare sql '"
+            << hide_sensitive_data_from_query(sql_string) << "'";
+
+  std::vector<TRestriction> trestrictions;
+
+  TPreparedPlan ret;
+  if (server_available_) {
+    try {
+      auto clientP = getClient(remote_calcite_port_);
+      clientP.first->prepare(ret,
+                             user,
+                             calcite_session_id,
+                             catalog,
+                             sql_string,
+                             query_parsing_option,
+                             optimization_option,
+                             trestrictions);
+      clientP.second->close();
+    } catch (InvalidParseRequest& e) {
+      throw std::invalid_argument(e.whyUp);
+    }
+  } else {
+    LOG(FATAL) << "Not routing to Calcite, server is not up";
+  }
+  return ret;
+}
+
+bool Calcite::bind(TPlanResult& plan_result,
+                   query_state::QueryStateProxy query_state_proxy,
+                   const std::string& handle,
+                   const std::vector<TParameterValue>& values) {
+  query_state::Timer timer = query_state_proxy.createTimer(__func__);
+  const auto& cat = query_state_proxy->getConstSessionInfo()->getCatalog();
+  const std::string user = getInternalSessionProxyUserName();
+  const std::string catalog = cat.getCurrentDB().dbName;
+
+  std::vector<TRestriction> trestrictions;
+
+  if (server_available_) {
+    try {
+      auto clientP = getClient(remote_calcite_port_);
+      clientP.first->bind(plan_result, user, catalog, handle, values, trestrictions);
+      clientP.second->close();
+    } catch (InvalidParseRequest& e) {
+      if (e.whatUp == kPreparedQueryNotFound) {
+        return false;
+      }
+      throw std::invalid_argument(e.whyUp);
+    }
+  } else {
+    LOG(FATAL) << "Not routing to Calcite, server is not up";
+  }
+  return true;
+}
+
+void Calcite::unprepare(const std::string& catalog, const std::string& handle) {
+  if (server_available_) {
+    auto clientP = getClient(remote_calcite_port_);
+    clientP.first->unprepare(getInternalSessionProxyUserName(), catalog, handle);
+    clientP.second->close();
+  } else {
+    LOG(INFO) << "Not routing to Calcite, server is not up";
+  }
+}
+
 std::vector<TCompletionHint> Calcite::getCompletionHints(
     const Catalog_Namespace::SessionInfo& session_info,
     const std::vector<std::string>& visible_tables,
@@ -655,5 +757,9 @@ TOptimizationOption Calcite::getCalciteOptimizationOption(
   optimization_option.is_view_optimize = is_view_optimize;
   optimization_option.enable_watchdog = enable_watchdog;
   optimization_option.distributed_mode = distributed_mode;
+  optimization_option.planning_time_budget_ms =
+      static_cast<int64_t>(g_calcite_planning_time_budget_ms);
+  optimization_option.enable_materialized_query_rewrite =
+      g_enable_materialized_query_rewrite;
   return optimization_option;
 }
@@ -78,6 +78,19 @@ class Calcite {
                       const TQueryParsingOption& query_parsing_option,
                       const TOptimizationOption& optimization_option,
                       const std::string& calcite_session_id = "");
+  // plans a query containing ? parameters once, for bind() to give their values
+  TPreparedPlan prepare(query_state::QueryStateProxy,
+                        const std::string& sql_string,
+                        const TQueryParsingOption& query_parsing_option,
+                        const TOptimizationOption& optimization_option,
+                        const std::string& calcite_session_id);
+  // the plan of a prepared query with the given values of its parameters, false if
+  // Calcite no longer holds the plan and the query must be prepared again
+  bool bind(TPlanResult& plan_result,
+            query_state::QueryStateProxy,
+            const std::string& handle,
+            const std::vector<TParameterValue>& values);
+  void unprepare(const std::string& catalog, const std::string& handle);
   std::vector<TCompletionHint> getCompletionHints(
       const Catalog_Namespace::SessionInfo& session_info,
       const std::vector<std::string>& visible_tables,
@@ -86,6 +99,11 @@ class Calcite {
   std::string getExtensionFunctionWhitelist();
   std::string getUserDefinedFunctionWhitelist();
   virtual void updateMetadata(std::string catalog, std::string table);
+  // to call once privileges were granted or revoked
+  void updatePrivileges();
+  // stops the planning of the queries with the given nonce, an empty session matches
+  // the queries of every session
+  void cancel(const std::string& session, const std::string& nonce);
   void close_calcite_server(bool log = true);
   virtual ~Calcite();
   std::string getRuntimeExtensionFunctionWhitelist();
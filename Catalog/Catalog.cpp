@@ -332,6 +332,12 @@ void Catalog::updateTableDescriptorSchema() {
       string query_string("ALTER TABLE mapd_tables ADD comment TEXT DEFAULT NULL");
       sqliteConnector_.query(query_string);
     }
+    if (std::find(cols.begin(), cols.end(), std::string("materialized_query")) ==
+        cols.end()) {
+      string query_string(
+          "ALTER TABLE mapd_tables ADD materialized_query TEXT DEFAULT NULL");
+      sqliteConnector_.query(query_string);
+    }
   } catch (std::exception& e) {
     sqliteConnector_.query("ROLLBACK TRANSACTION");
     throw;
@@ -1368,6 +1374,9 @@ void populate_table_descriptor(TableDescriptor* td,
   if (!sqlite_connector.isNull(r, 20)) {
     td->comment = sqlite_connector.getData<std::string>(r, 20);
   }
+  if (!sqlite_connector.isNull(r, 21)) {
+    td->materializedQuery = sqlite_connector.getData<std::string>(r, 21);
+  }
 
   td->hasDeletedCol = false;
 }
@@ -1378,7 +1387,8 @@ std::unique_ptr<TableDescriptor> Catalog::getTableFromStorage(const int table_id
       "SELECT tableid, name, ncolumns, isview, fragments, frag_type, max_frag_rows, "
       "max_chunk_size, frag_page_size, "
       "max_rows, partitions, shard_column_id, shard, num_shards, key_metainfo, userid, "
-      "sort_column_id, storage_type, max_rollback_epochs, is_system_table, comment "
+      "sort_column_id, storage_type, max_rollback_epochs, is_system_table, comment, "
+      "materialized_query "
       "FROM mapd_tables WHERE tableid = ?");
 
   sqliteConnector_.query_with_text_param(table_query, std::to_string(table_id));
@@ -1400,7 +1410,8 @@ void Catalog::buildTablesMapUnlocked() {
       "SELECT tableid, name, ncolumns, isview, fragments, frag_type, max_frag_rows, "
       "max_chunk_size, frag_page_size, "
       "max_rows, partitions, shard_column_id, shard, num_shards, key_metainfo, userid, "
-      "sort_column_id, storage_type, max_rollback_epochs, is_system_table, comment "
+      "sort_column_id, storage_type, max_rollback_epochs, is_system_table, comment, "
+      "materialized_query "
       "from mapd_tables");
   sqliteConnector_.query(tableQuery);
   auto numRows = sqliteConnector_.getNumRows();
@@ -7364,6 +7375,23 @@ void set_table_comment(TableDescriptorMapById& table_map,
   modifiable_table_desc->comment = comment;
 }
 
+void update_table_materialized_query(SqliteConnector& connector,
+                                     const std::optional<std::string>& materialized_query,
+                                     int table_id) {
+  std::string query_string =
+      materialized_query.has_value() ? materialized_query.value() : "NULL";
+  std::vector<SqliteConnector::BindType> bind_types(2, SqliteConnector::BindType::TEXT);
+  if (!materialized_query.has_value()) {
+    bind_types[0] = SqliteConnector::BindType::NULL_TYPE;
+  }
+  connector.query_with_text_params(
+      "UPDATE mapd_tables SET "
+      "materialized_query = ? "
+      "WHERE tableid = ?",
+      std::vector<std::string>{query_string, std::to_string(table_id)},
+      bind_types);
+}
+
 void set_column_comment(ColumnDescriptorMap& column_map,
                         SqliteConnector& connector,
                         const std::optional<std::string>& comment,
@@ -7423,6 +7451,20 @@ void Catalog::setTableComment(const TableDescriptor* table_desc,
   });
 }
 
+void Catalog::setTableMaterializedQuery(
+    const TableDescriptor* table_desc,
+    const std::optional<std::string>& materialized_query) {
+  CHECK(table_desc);
+  execInTransaction([&, this] {
+    update_table_materialized_query(
+        sqliteConnector_, materialized_query, table_desc->tableId);
+    TableDescriptor* modifiable_table_desc =
+        shared::get_from_map(tableDescriptorMapById_, table_desc->tableId);
+    modifiable_table_desc->materializedQuery = materialized_query;
+  });
+  calciteMgr_->updateMetadata(currentDB_.dbName, table_desc->tableName);
+}
+
 void Catalog::addToColumnMap(ColumnDescriptor* cd) {
   columnDescriptorMap_[ColumnKey{cd->tableId, to_upper(cd->columnName)}] = cd;
   columnDescriptorMapById_[ColumnIdKey{cd->tableId, cd->columnId}] = cd;
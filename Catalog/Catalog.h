@@ -638,6 +638,17 @@ class Catalog final {
   void setTableComment(const TableDescriptor* table_desc,
                        const std::optional<std::string>& comment = std::nullopt);
 
+  /**
+   * Register a table as a materialization of a query.
+   *
+   * @param table_desc - the table storing the result of the query
+   * @param materialized_query - JSON with the query and the epochs of its source
+   * tables, if `std::nullopt` the registration is removed
+   */
+  void setTableMaterializedQuery(
+      const TableDescriptor* table_desc,
+      const std::optional<std::string>& materialized_query = std::nullopt);
+
   /**
    * Reassigns database object ownership from a set of users (old owners) to another user
    * (new owner).
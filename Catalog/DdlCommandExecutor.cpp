@@ -23,6 +23,8 @@
 #include <boost/uuid/uuid_io.hpp>
 
 #include "rapidjson/document.h"
+#include "rapidjson/stringbuffer.h"
+#include "rapidjson/writer.h"
 
 // Note: avoid adding #include(s) that require thrift
 
@@ -729,8 +731,10 @@ bool DdlCommandExecutor::isAlterSessionSet() const {
 std::pair<std::string, std::string> DdlCommandExecutor::getSessionParameter() const {
   enum SetParameterType { String_t, Numeric_t };
   static const std::unordered_map<std::string, SetParameterType>
-      session_set_parameters_map = {{"EXECUTOR_DEVICE", SetParameterType::String_t},
-                                    {"CURRENT_DATABASE", SetParameterType::String_t}};
+      session_set_parameters_map = {
+          {"EXECUTOR_DEVICE", SetParameterType::String_t},
+          {"CURRENT_DATABASE", SetParameterType::String_t},
+          {"APPROXIMATE_QUERY_MODE", SetParameterType::String_t}};
 
   auto& ddl_payload = extractPayload(*ddl_data_);
   CHECK(ddl_payload.HasMember("sessionParameter"));
@@ -3225,6 +3229,74 @@ ExecutionResult AlterTableAlterColumnCommand::execute(bool read_only_mode) {
   return {};
 }
 
+namespace {
+void check_materialized_query_table(const TableDescriptor* td) {
+  if (td->isView || td->isForeignTable() || table_is_temporary(td)) {
+    throw std::runtime_error("Table " + td->tableName +
+                             " cannot be used by a materialized query: only regular "
+                             "tables have epochs that track changes to their data.");
+  }
+}
+
+// Serializes the defining query along with the current epochs of the table storing its
+// result and of the tables the query reads. The planner only substitutes the table for
+// the query while none of these epochs have changed.
+std::string serialize_materialized_query(const Catalog_Namespace::SessionInfo& session,
+                                         const TableDescriptor* td,
+                                         const rapidjson::Value& ddl_payload) {
+  const auto& catalog = session.getCatalog();
+  const auto db_id = catalog.getDatabaseId();
+  rapidjson::Document info(rapidjson::kObjectType);
+  auto& allocator = info.GetAllocator();
+  const auto query = json_str(ddl_payload["query"]);
+  info.AddMember("query", rapidjson::Value(query.c_str(), allocator), allocator);
+
+  rapidjson::Value epochs(rapidjson::kObjectType);
+  auto add_epoch = [&](const TableDescriptor* table) {
+    if (!epochs.HasMember(table->tableName.c_str())) {
+      epochs.AddMember(rapidjson::Value(table->tableName.c_str(), allocator),
+                       rapidjson::Value(catalog.getTableEpoch(db_id, table->tableId)),
+                       allocator);
+    }
+  };
+  add_epoch(td);
+  for (const auto& source : ddl_payload["sourceTables"].GetArray()) {
+    auto source_name = json_str(source);
+    std::vector<std::string> name_parts;
+    boost::split(name_parts, source_name, boost::is_any_of("."));
+    if (name_parts.size() == 2) {
+      if (!boost::iequals(name_parts[0], catalog.name())) {
+        throw std::runtime_error(
+            "A materialized query can only read tables of the current database.");
+      }
+      source_name = name_parts[1];
+    }
+    const auto source_td = catalog.getMetadataForTable(source_name, false);
+    if (!source_td) {
+      throw std::runtime_error("Table " + source_name + " does not exist.");
+    }
+    if (source_td->tableId == td->tableId) {
+      throw std::runtime_error(
+          "A materialized query cannot read the table storing its result.");
+    }
+    check_materialized_query_table(source_td);
+    if (!session.checkDBAccessPrivileges(DBObjectType::TableDBObjectType,
+                                         AccessPrivileges::SELECT_FROM_TABLE,
+                                         source_td->tableName)) {
+      throw std::runtime_error("User has no select privileges on " +
+                               source_td->tableName + ".");
+    }
+    add_epoch(source_td);
+  }
+  info.AddMember("epochs", epochs, allocator);
+
+  rapidjson::StringBuffer buffer;
+  rapidjson::Writer<rapidjson::StringBuffer> writer(buffer);
+  info.Accept(writer);
+  return buffer.GetString();
+}
+}  // namespace
+
 ExecutionResult AlterTableCommand::execute(bool read_only_mode) {
   if (read_only_mode) {
     throw std::runtime_error("ALTER TABLE invalid in read only mode.");
@@ -3342,6 +3414,49 @@ ExecutionResult AlterTableCommand::execute(bool read_only_mode) {
     } else {
       CHECK(options.IsNull());
     }
+  } else if (type == "ADD_MATERIALIZED_QUERY") {
+    CHECK(ddl_payload.HasMember("query"));
+    CHECK(ddl_payload["query"].IsString());
+    CHECK(ddl_payload.HasMember("sourceTables"));
+    CHECK(ddl_payload["sourceTables"].IsArray());
+    const auto query = json_str(ddl_payload["query"]);
+    auto query_state = query_state::QueryState::create(session_ptr_, query);
+    const auto execute_read_lock = legacylockmgr::getExecuteReadLock();
+    auto& catalog = session_ptr_->getCatalog();
+    // the table is filled and registered while the tables of the query are locked, so
+    // no write can make the recorded epochs disagree with its contents
+    auto locks = Parser::acquire_query_table_locks(
+        catalog.name(), query, query_state->createQueryStateProxy(), tableName);
+    const auto td = catalog.getMetadataForTable(tableName);
+    CHECK(td);
+    Parser::check_alter_table_privilege(*session_ptr_, td);
+    check_materialized_query_table(td);
+    for (const auto physical_td : catalog.getPhysicalTablesDescriptors(td)) {
+      CHECK(physical_td->fragmenter);
+      if (physical_td->fragmenter->getNumRows() > 0) {
+        throw std::runtime_error("Table " + tableName +
+                                 " must be empty, as it is filled with the result of "
+                                 "its materialized query.");
+      }
+    }
+    // checks the source tables before the table is filled, the epochs to record are
+    // those it has once filled
+    serialize_materialized_query(*session_ptr_, td, ddl_payload);
+    Executor::clearExternalCaches(true, td, catalog.getDatabaseId());
+    Parser::InsertIntoTableAsSelectStmt(
+        new std::string(tableName), new std::string(query), nullptr)
+        .populateData(query_state->createQueryStateProxy(), td, true);
+    catalog.setTableMaterializedQuery(
+        td, serialize_materialized_query(*session_ptr_, td, ddl_payload));
+    return {};
+  } else if (type == "DROP_MATERIALIZED_QUERY") {
+    const auto execute_read_lock = legacylockmgr::getExecuteReadLock();
+    auto& catalog = session_ptr_->getCatalog();
+    auto [td, td_with_lock] =
+        get_table_descriptor_with_lock<lockmgr::WriteLock>(catalog, tableName, false);
+    Parser::check_alter_table_privilege(*session_ptr_, td);
+    catalog.setTableMaterializedQuery(td);
+    return {};
   }
 
   return ExecutionResult();
@@ -61,6 +61,7 @@ class SessionInfo {
       : catalog_(s.catalog_)
       , currentUser_(s.currentUser_)
       , executor_device_type_(static_cast<ExecutorDeviceType>(s.executor_device_type_))
+      , approximate_query_mode_(static_cast<bool>(s.approximate_query_mode_))
       , session_id_(s.session_id_)
       , public_session_id_(s.public_session_id_) {}
 
@@ -90,6 +91,10 @@ class SessionInfo {
     return executor_device_type_;
   }
   void set_executor_device_type(ExecutorDeviceType t) { executor_device_type_ = t; }
+  bool get_approximate_query_mode() const { return approximate_query_mode_; }
+  void set_approximate_query_mode(bool approximate) {
+    approximate_query_mode_ = approximate;
+  }
   std::string get_session_id() const { return session_id_; }
   time_t get_last_used_time() const { return last_used_time_; }
   void update_last_used_time() { last_used_time_ = time(0); }
@@ -111,6 +116,8 @@ class SessionInfo {
   std::shared_ptr<Catalog> catalog_;
   UserMetadata currentUser_;
   std::atomic<ExecutorDeviceType> executor_device_type_;
+  // exact aggregates are rewritten into approximate ones by Calcite
+  std::atomic<bool> approximate_query_mode_{false};
   const std::string session_id_;
   std::atomic<time_t> last_used_time_;  // for tracking active session duration
   std::atomic<time_t> start_time_;      // for invalidating session after tolerance period
@@ -3193,23 +3193,27 @@ void SysCatalog::dropRole(const std::string& roleName, const bool is_temporary)
 void SysCatalog::grantRoleBatch(const std::vector<std::string>& roles,
                                 const std::vector<std::string>& grantees) {
   execInTransaction(&SysCatalog::grantRoleBatch_unsafe, roles, grantees);
+  updateCalcitePrivileges();
 }
 
 void SysCatalog::grantRole(const std::string& role,
                            const std::string& grantee,
                            const bool is_temporary) {
   execInTransaction(&SysCatalog::grantRole_unsafe, role, grantee, is_temporary);
+  updateCalcitePrivileges();
 }
 
 void SysCatalog::revokeRoleBatch(const std::vector<std::string>& roles,
                                  const std::vector<std::string>& grantees) {
   execInTransaction(&SysCatalog::revokeRoleBatch_unsafe, roles, grantees);
+  updateCalcitePrivileges();
 }
 
 void SysCatalog::revokeRole(const std::string& role,
                             const std::string& grantee,
                             const bool is_temporary) {
   execInTransaction(&SysCatalog::revokeRole_unsafe, role, grantee, is_temporary);
+  updateCalcitePrivileges();
 }
 
 void SysCatalog::grantDBObjectPrivileges(const string& grantee,
@@ -3217,6 +3221,7 @@ void SysCatalog::grantDBObjectPrivileges(const string& grantee,
                                          const Catalog_Namespace::Catalog& catalog) {
   execInTransaction(
       &SysCatalog::grantDBObjectPrivileges_unsafe, grantee, object, catalog);
+  updateCalcitePrivileges();
 }
 
 void SysCatalog::grantDBObjectPrivilegesBatch(const vector<string>& grantees,
@@ -3224,6 +3229,7 @@ void SysCatalog::grantDBObjectPrivilegesBatch(const vector<string>& grantees,
                                               const Catalog_Namespace::Catalog& catalog) {
   execInTransaction(
       &SysCatalog::grantDBObjectPrivilegesBatch_unsafe, grantees, objects, catalog);
+  updateCalcitePrivileges();
 }
 
 void SysCatalog::revokeDBObjectPrivileges(const string& grantee,
@@ -3231,6 +3237,7 @@ void SysCatalog::revokeDBObjectPrivileges(const string& grantee,
                                           const Catalog_Namespace::Catalog& catalog) {
   execInTransaction(
       &SysCatalog::revokeDBObjectPrivileges_unsafe, grantee, object, catalog);
+  updateCalcitePrivileges();
 }
 
 void SysCatalog::revokeDBObjectPrivilegesBatch(
@@ -3239,16 +3246,25 @@ void SysCatalog::revokeDBObjectPrivilegesBatch(
     const Catalog_Namespace::Catalog& catalog) {
   execInTransaction(
       &SysCatalog::revokeDBObjectPrivilegesBatch_unsafe, grantees, objects, catalog);
+  updateCalcitePrivileges();
 }
 
 void SysCatalog::revokeDBObjectPrivilegesFromAll(DBObject object, Catalog* catalog) {
   execInTransaction(&SysCatalog::revokeDBObjectPrivilegesFromAll_unsafe, object, catalog);
+  updateCalcitePrivileges();
 }
 
 void SysCatalog::revokeDBObjectPrivilegesFromAllBatch(vector<DBObject>& objects,
                                                       Catalog* catalog) {
   execInTransaction(
       &SysCatalog::revokeDBObjectPrivilegesFromAllBatch_unsafe, objects, catalog);
+  updateCalcitePrivileges();
+}
+
+void SysCatalog::updateCalcitePrivileges() const {
+  if (calciteMgr_) {
+    calciteMgr_->updatePrivileges();
+  }
 }
 
 void SysCatalog::syncUserWithRemoteProvider(const std::string& user_name,
@@ -547,6 +547,9 @@ class SysCatalog : private CommonFileOperations {
   template <typename F, typename... Args>
   void execInTransaction(F&& f, Args&&... args);
 
+  // lets Calcite know that the tables some users can access changed
+  void updateCalcitePrivileges() const;
+
   void initializeInformationSchemaDb();
   void recordExecutedMigration(const std::string& migration_name) const;
   bool hasVersionHistoryTable() const;
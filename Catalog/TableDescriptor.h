@@ -79,6 +79,10 @@ struct TableDescriptor {
 
   std::optional<std::string> comment;
 
+  // JSON holding the query whose result this table stores, and the epochs of the tables
+  // the result was computed from
+  std::optional<std::string> materializedQuery;
+
   // write mutex, only to be used inside catalog package
   std::shared_ptr<std::mutex> mutex_;
 
@@ -4646,12 +4646,13 @@ shared::TableKey get_table_key(const std::vector<std::string>& table) {
   }
   return {catalog->getDatabaseId(), table_id.value()};
 }
+}  // namespace
 
 lockmgr::LockedTableDescriptors acquire_query_table_locks(
     const std::string& insert_table_db_name,
     const std::string& query_str,
     const QueryStateProxy& query_state_proxy,
-    const std::optional<std::string>& insert_table_name = {}) {
+    const std::optional<std::string>& insert_table_name) {
   auto& sys_catalog = SysCatalog::instance();
   auto& calcite_mgr = sys_catalog.getCalciteMgr();
   const auto calciteQueryParsingOption =
@@ -4701,7 +4702,6 @@ lockmgr::LockedTableDescriptors acquire_query_table_locks(
   }
   return locks;
 }
-}  // namespace
 
 void InsertIntoTableAsSelectStmt::execute(const Catalog_Namespace::SessionInfo& session,
                                           bool read_only_mode) {
@@ -39,6 +39,7 @@
 #include "Catalog/Catalog.h"
 #include "Distributed/AggregatedResult.h"
 #include "Fragmenter/InsertDataLoader.h"
+#include "LockMgr/LockMgr.h"
 #include "QueryEngine/TableFunctions/SystemFunctions/os/ML/AbstractMLModel.h"
 #include "Shared/sqldefs.h"
 #include "Shared/sqltypes.h"
@@ -2291,6 +2292,16 @@ std::unique_ptr<ColumnDef> column_from_json(const rapidjson::Value& element);
 void check_alter_table_privilege(const Catalog_Namespace::SessionInfo& session,
                                  const TableDescriptor* td);
 
+/**
+ * Locks the tables a query reads, and the table it inserts into if any, in table id
+ * order. Throws if the user of the query lacks privileges on the tables it reads.
+ */
+lockmgr::LockedTableDescriptors acquire_query_table_locks(
+    const std::string& insert_table_db_name,
+    const std::string& query_str,
+    const QueryStateProxy& query_state_proxy,
+    const std::optional<std::string>& insert_table_name = {});
+
 int32_t validate_and_get_fragment_size(const std::string& fragment_size_str);
 }  // namespace Parser
 
@@ -32,6 +32,7 @@
 #include <rapidjson/stringbuffer.h>
 #include <rapidjson/writer.h>
 
+#include <set>
 #include <string>
 #include <unordered_set>
 
@@ -996,9 +997,11 @@ std::unique_ptr<RexAbstractInput> parse_abstract_input(
   return std::unique_ptr<RexAbstractInput>(new RexAbstractInput(json_i64(input)));
 }
 
-std::unique_ptr<RexLiteral> parse_literal(const rapidjson::Value& expr) {
+// Builds a literal from its JSON value and a separate type description, the latter
+// being either the literal object itself or the shared header of an IN value set.
+std::unique_ptr<RexLiteral> parse_literal(const rapidjson::Value& literal,
+                                          const rapidjson::Value& expr) {
   CHECK(expr.IsObject());
-  const auto& literal = field(expr, "literal");
   const auto type = to_sql_type(json_str(field(expr, "type")));
   const auto target_type = to_sql_type(json_str(field(expr, "target_type")));
   const auto scale = json_i64(field(expr, "scale"));
@@ -1078,6 +1081,11 @@ std::unique_ptr<RexLiteral> parse_literal(const rapidjson::Value& expr) {
   return nullptr;
 }
 
+std::unique_ptr<RexLiteral> parse_literal(const rapidjson::Value& expr) {
+  CHECK(expr.IsObject());
+  return parse_literal(field(expr, "literal"), expr);
+}
+
 std::unique_ptr<const RexScalar> parse_scalar_expr(const rapidjson::Value& expr,
                                                    RelAlgDag& root_dag);
 
@@ -1410,6 +1418,16 @@ std::unique_ptr<RexOperator> parse_operator(const rapidjson::Value& expr,
     auto subquery = parse_subquery(expr, root_dag);
     operands.emplace_back(std::move(subquery));
   }
+  if (op == kIN && expr.HasMember("value_set")) {
+    // Large literal IN lists arrive as a single sorted, deduplicated value set
+    // sharing one type description instead of a literal object per value.
+    const auto& value_set = field(expr, "value_set");
+    const auto& values = field(value_set, "values");
+    CHECK(values.IsArray());
+    for (auto values_it = values.Begin(); values_it != values.End(); ++values_it) {
+      operands.emplace_back(parse_literal(*values_it, value_set));
+    }
+  }
   if (expr.FindMember("partition_keys") != expr.MemberEnd()) {
     const auto& partition_keys_arr = field(expr, "partition_keys");
     auto partition_keys = parse_expr_array(op_name, partition_keys_arr, root_dag);
@@ -3192,6 +3210,126 @@ std::vector<std::string> getFieldNamesFromScanNode(const rapidjson::Value& scan_
   return strings_from_json_array(fields_json);
 }
 
+// the ids of the inputs of a node, where the input is omitted if it is the node before
+std::vector<unsigned> get_input_ids(const rapidjson::Value& node) {
+  if (node.HasMember("inputs")) {
+    std::vector<unsigned> input_ids;
+    for (const auto& str_id : strings_from_json_array(field(node, "inputs"))) {
+      input_ids.push_back(std::stoi(str_id));
+    }
+    return input_ids;
+  }
+  const auto id = node_id(node);
+  CHECK(id);
+  return {id - 1};
+}
+
+bool is_simple_project(const rapidjson::Value& node) {
+  if (json_str(field(node, "relOp")) != std::string("LogicalProject")) {
+    return false;
+  }
+  const auto& exprs_json = field(node, "exprs");
+  CHECK(exprs_json.IsArray());
+  for (auto it = exprs_json.Begin(); it != exprs_json.End(); ++it) {
+    if (!it->IsObject() || !it->HasMember("input")) {
+      return false;
+    }
+  }
+  return true;
+}
+
+/**
+ * Calcite writes a subtree shared by several nodes, like a CTE used more than once,
+ * only once. The executor runs such a subtree once and reads its result for each of
+ * its users, but it can not share every node:
+ *  - the inputs of a join, a union or a table function must be distinct, including
+ *    the inputs of the joins flattened into a left-deep join with it, and those seen
+ *    through a projection of columns, which may be removed,
+ *  - a join, or a filter of a join, can only be used once, as it is run as part of
+ *    its user,
+ *  - the input of a sort is merged with it,
+ *  - scans and values are not computed, so sharing them saves nothing.
+ * Returns the uses, as the id of the user and the position of the input, which get
+ * their own copy of the subtree instead. The first use of a node keeps the original.
+ */
+std::set<std::pair<unsigned, size_t>> get_unshared_inputs(const rapidjson::Value& rels) {
+  std::vector<std::string> rel_ops;
+  std::vector<std::vector<unsigned>> input_ids;
+  std::vector<bool> simple_projects;
+  for (auto rels_it = rels.Begin(); rels_it != rels.End(); ++rels_it) {
+    rel_ops.push_back(json_str(field(*rels_it, "relOp")));
+    input_ids.push_back(get_input_ids(*rels_it));
+    simple_projects.push_back(is_simple_project(*rels_it));
+  }
+  const auto node_count = rel_ops.size();
+  std::vector<std::vector<std::pair<unsigned, size_t>>> uses(node_count);
+  for (unsigned id = 0; id < node_count; ++id) {
+    for (size_t i = 0; i < input_ids[id].size(); ++i) {
+      CHECK_LT(input_ids[id][i], id);
+      uses[input_ids[id][i]].emplace_back(id, i);
+    }
+  }
+
+  std::vector<bool> shareable(node_count, true);
+  for (unsigned id = 0; id < node_count; ++id) {
+    const auto& rel_op = rel_ops[id];
+    if (rel_op == "EnumerableTableScan" || rel_op == "LogicalTableScan" ||
+        rel_op == "LogicalValues" || rel_op == "LogicalJoin" ||
+        (rel_op == "LogicalFilter" && rel_ops[input_ids[id][0]] == "LogicalJoin")) {
+      shareable[id] = false;
+    } else if (rel_op == "LogicalSort") {
+      shareable[input_ids[id][0]] = false;
+    }
+    if (rel_op != "LogicalJoin" && rel_op != "LogicalUnion" &&
+        rel_op != "LogicalTableFunctionScan") {
+      continue;
+    }
+    std::vector<unsigned> leaves;
+    std::vector<unsigned> pending(1, id);
+    while (!pending.empty()) {
+      const auto crt_id = pending.back();
+      pending.pop_back();
+      for (const auto input_id : input_ids[crt_id]) {
+        const bool is_filtered_join =
+            rel_ops[input_id] == "LogicalFilter" &&
+            rel_ops[input_ids[input_id][0]] == "LogicalJoin";
+        if (rel_op != "LogicalTableFunctionScan" &&
+            (rel_ops[input_id] == rel_op ||
+             (rel_op == "LogicalJoin" && is_filtered_join))) {
+          pending.push_back(input_id);
+        } else {
+          leaves.push_back(input_id);
+        }
+      }
+    }
+    std::unordered_map<unsigned, std::vector<unsigned>> paths_by_source;
+    for (auto node_id : leaves) {
+      std::vector<unsigned> path(1, node_id);
+      while (simple_projects[node_id]) {
+        node_id = input_ids[node_id][0];
+        path.push_back(node_id);
+      }
+      auto& paths = paths_by_source[node_id];
+      paths.insert(paths.end(), path.begin(), path.end());
+    }
+    for (const auto& [source_id, paths] : paths_by_source) {
+      if (std::count(paths.begin(), paths.end(), source_id) > 1) {
+        for (const auto path_id : paths) {
+          shareable[path_id] = false;
+        }
+      }
+    }
+  }
+
+  std::set<std::pair<unsigned, size_t>> unshared_inputs;
+  for (unsigned id = 0; id < node_count; ++id) {
+    if (!shareable[id] && uses[id].size() > 1) {
+      unshared_inputs.insert(std::next(uses[id].begin()), uses[id].end());
+    }
+  }
+  return unshared_inputs;
+}
+
 }  // namespace
 
 bool RelProject::hasWindowFunctionExpr() const {
@@ -3210,44 +3348,77 @@ class RelAlgDispatcher {
 
   std::vector<std::shared_ptr<RelAlgNode>> run(const rapidjson::Value& rels,
                                                RelAlgDag& root_dag) {
+    rels_ = &rels;
+    root_dag_ = &root_dag;
+    unshared_inputs_ = get_unshared_inputs(rels);
     for (auto rels_it = rels.Begin(); rels_it != rels.End(); ++rels_it) {
       const auto& crt_node = *rels_it;
       const auto id = node_id(crt_node);
       CHECK_EQ(static_cast<size_t>(id), nodes_.size());
       CHECK(crt_node.IsObject());
-      std::shared_ptr<RelAlgNode> ra_node = nullptr;
-      const auto rel_op = json_str(field(crt_node, "relOp"));
-      if (rel_op == std::string("EnumerableTableScan") ||
-          rel_op == std::string("LogicalTableScan")) {
-        ra_node = dispatchTableScan(crt_node);
-      } else if (rel_op == std::string("LogicalProject")) {
-        ra_node = dispatchProject(crt_node, root_dag);
-      } else if (rel_op == std::string("LogicalFilter")) {
-        ra_node = dispatchFilter(crt_node, root_dag);
-      } else if (rel_op == std::string("LogicalAggregate")) {
-        ra_node = dispatchAggregate(crt_node);
-      } else if (rel_op == std::string("LogicalJoin")) {
-        ra_node = dispatchJoin(crt_node, root_dag);
-      } else if (rel_op == std::string("LogicalSort")) {
-        ra_node = dispatchSort(crt_node);
-      } else if (rel_op == std::string("LogicalValues")) {
-        ra_node = dispatchLogicalValues(crt_node);
-      } else if (rel_op == std::string("LogicalTableModify")) {
-        ra_node = dispatchModify(crt_node);
-      } else if (rel_op == std::string("LogicalTableFunctionScan")) {
-        ra_node = dispatchTableFunction(crt_node, root_dag);
-      } else if (rel_op == std::string("LogicalUnion")) {
-        ra_node = dispatchUnion(crt_node);
-      } else {
-        throw QueryNotSupported(std::string("Node ") + rel_op + " not supported yet");
-      }
+      auto ra_node = dispatch(crt_node);
       nodes_.push_back(ra_node);
+      dag_nodes_.push_back(ra_node);
     }
 
-    return std::move(nodes_);
+    return std::move(dag_nodes_);
   }
 
  private:
+  std::shared_ptr<RelAlgNode> dispatch(const rapidjson::Value& crt_node) {
+    auto& root_dag = *root_dag_;
+    std::shared_ptr<RelAlgNode> ra_node = nullptr;
+    const auto rel_op = json_str(field(crt_node, "relOp"));
+    if (rel_op == std::string("EnumerableTableScan") ||
+        rel_op == std::string("LogicalTableScan")) {
+      ra_node = dispatchTableScan(crt_node);
+    } else if (rel_op == std::string("LogicalProject")) {
+      ra_node = dispatchProject(crt_node, root_dag);
+    } else if (rel_op == std::string("LogicalFilter")) {
+      ra_node = dispatchFilter(crt_node, root_dag);
+    } else if (rel_op == std::string("LogicalAggregate")) {
+      ra_node = dispatchAggregate(crt_node);
+    } else if (rel_op == std::string("LogicalJoin")) {
+      ra_node = dispatchJoin(crt_node, root_dag);
+    } else if (rel_op == std::string("LogicalSort")) {
+      ra_node = dispatchSort(crt_node);
+    } else if (rel_op == std::string("LogicalValues")) {
+      ra_node = dispatchLogicalValues(crt_node);
+    } else if (rel_op == std::string("LogicalTableModify")) {
+      ra_node = dispatchModify(crt_node);
+    } else if (rel_op == std::string("LogicalTableFunctionScan")) {
+      ra_node = dispatchTableFunction(crt_node, root_dag);
+    } else if (rel_op == std::string("LogicalUnion")) {
+      ra_node = dispatchUnion(crt_node);
+    } else {
+      throw QueryNotSupported(std::string("Node ") + rel_op + " not supported yet");
+    }
+    return ra_node;
+  }
+
+  // builds a new copy of the subtree of a node, which shares no node with the others
+  std::shared_ptr<RelAlgNode> copySubtree(const unsigned id) {
+    VLOG(1) << "Copying the subtree of RA node " << id << " for one of its users";
+    std::unordered_map<unsigned, std::shared_ptr<RelAlgNode>> copies;
+    auto outer_copies = copies_;
+    copies_ = &copies;
+    ScopeGuard restore_copies = [this, outer_copies] { copies_ = outer_copies; };
+    return copyNode(id);
+  }
+
+  std::shared_ptr<RelAlgNode> copyNode(const unsigned id) {
+    CHECK(copies_);
+    auto copy_it = copies_->find(id);
+    if (copy_it != copies_->end()) {
+      return copy_it->second;
+    }
+    // the inputs are copied first, so the copies come before their users in the DAG
+    auto copy = dispatch((*rels_)[id]);
+    copies_->emplace(id, copy);
+    dag_nodes_.push_back(copy);
+    return copy;
+  }
+
   std::shared_ptr<RelScan> dispatchTableScan(const rapidjson::Value& scan_ra) {
     check_empty_inputs_field(scan_ra);
     CHECK(scan_ra.IsObject());
@@ -3494,6 +3665,9 @@ class RelAlgDispatcher {
     }
     const auto& inputs_arr = field(logical_values_ra, "inputs");
     CHECK(inputs_arr.IsArray());
+    if (logical_values_ra.HasMember("epochGuard")) {
+      checkEpochGuard(field(logical_values_ra, "epochGuard"));
+    }
     const auto& tuples_arr = field(logical_values_ra, "tuples");
     CHECK(tuples_arr.IsArray());
 
@@ -3521,6 +3695,26 @@ class RelAlgDispatcher {
     return std::make_shared<RelLogicalValues>(tuple_type, values);
   }
 
+  // Values computed by the planner from table metadata carry the epochs of the tables
+  // they were computed from. The tables are locked while the DAG is built, so the
+  // values are current if the epochs still match.
+  static void checkEpochGuard(const rapidjson::Value& epoch_guard_arr) {
+    CHECK(epoch_guard_arr.IsArray());
+    for (const auto& table_epoch : epoch_guard_arr.GetArray()) {
+      CHECK(table_epoch.IsArray());
+      CHECK_EQ(unsigned(3), table_epoch.Size());
+      const auto cat = Catalog_Namespace::SysCatalog::instance().getCatalog(
+          table_epoch[0].GetString());
+      CHECK(cat);
+      const auto td = cat->getMetadataForTable(table_epoch[1].GetString(), false);
+      if (!td || cat->getTableEpoch(cat->getCurrentDB().dbId, td->tableId) !=
+                     table_epoch[2].GetInt()) {
+        throw std::runtime_error("Table " + std::string(table_epoch[1].GetString()) +
+                                 " changed while the query was planned, please retry.");
+      }
+    }
+  }
+
   std::shared_ptr<RelLogicalUnion> dispatchUnion(
       const rapidjson::Value& logical_union_ra) {
     auto inputs = getRelAlgInputs(logical_union_ra);
@@ -3530,15 +3724,19 @@ class RelAlgDispatcher {
   }
 
   RelAlgInputs getRelAlgInputs(const rapidjson::Value& node) {
-    if (node.HasMember("inputs")) {
-      const auto str_input_ids = strings_from_json_array(field(node, "inputs"));
-      RelAlgInputs ra_inputs;
-      for (const auto& str_id : str_input_ids) {
-        ra_inputs.push_back(nodes_[std::stoi(str_id)]);
+    const auto id = node_id(node);
+    const auto input_ids = get_input_ids(node);
+    RelAlgInputs ra_inputs;
+    for (size_t i = 0; i < input_ids.size(); ++i) {
+      if (unshared_inputs_.count({id, i})) {
+        ra_inputs.push_back(copySubtree(input_ids[i]));
+      } else if (copies_) {
+        ra_inputs.push_back(copyNode(input_ids[i]));
+      } else {
+        ra_inputs.push_back(nodes_[input_ids[i]]);
       }
-      return ra_inputs;
     }
-    return {prev(node)};
+    return ra_inputs;
   }
 
   std::pair<std::string, std::string> getKVOptionPair(std::string& str, size_t& pos) {
@@ -3660,14 +3858,15 @@ class RelAlgDispatcher {
     }
   }
 
-  std::shared_ptr<const RelAlgNode> prev(const rapidjson::Value& crt_node) {
-    const auto id = node_id(crt_node);
-    CHECK(id);
-    CHECK_EQ(static_cast<size_t>(id), nodes_.size());
-    return nodes_.back();
-  }
-
+  const rapidjson::Value* rels_{nullptr};
+  RelAlgDag* root_dag_{nullptr};
+  // the node built for each node of the RA JSON, by id
   std::vector<std::shared_ptr<RelAlgNode>> nodes_;
+  // the nodes of the DAG, which include the copies of subtrees, in topological order
+  std::vector<std::shared_ptr<RelAlgNode>> dag_nodes_;
+  std::set<std::pair<unsigned, size_t>> unshared_inputs_;
+  // the nodes of the subtree being copied, by id
+  std::unordered_map<unsigned, std::shared_ptr<RelAlgNode>>* copies_{nullptr};
 };
 
 }  // namespace details
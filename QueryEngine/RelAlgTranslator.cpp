@@ -734,6 +734,10 @@ std::shared_ptr<Analyzer::Expr> get_in_values_expr(std::shared_ptr<Analyzer::Exp
 // getInIntegerSetExpr().
 std::shared_ptr<Analyzer::Expr> RelAlgTranslator::translateInOper(
     const RexOperator* rex_operator) const {
+  CHECK_GE(rex_operator->size(), size_t(2));
+  if (!dynamic_cast<const RexSubQuery*>(rex_operator->getOperand(1))) {
+    return translateInValueSet(rex_operator);
+  }
   if (just_explain_) {
     throw std::runtime_error("EXPLAIN is not supported with sub-queries");
   }
@@ -815,6 +819,28 @@ std::shared_ptr<Analyzer::Expr> RelAlgTranslator::translateInOper(
   return makeExpr<Analyzer::InValues>(lhs, value_exprs);
 }
 
+std::shared_ptr<Analyzer::Expr> RelAlgTranslator::translateInValueSet(
+    const RexOperator* rex_operator) const {
+  auto const num_values = rex_operator->size() - 1;
+  if (g_enable_watchdog && num_values > g_watchdog_in_clause_max_num_elem_non_bitmap) {
+    std::ostringstream oss;
+    oss << "Unable to handle 'expr IN (values)' via non-bitmap, # values ("
+        << num_values
+        << ") is larger than the threshold "
+           "'g_watchdog_in_clause_max_num_elem_non_bitmap': "
+        << g_watchdog_in_clause_max_num_elem_non_bitmap;
+    throw std::runtime_error(oss.str());
+  }
+  const auto lhs = translateScalarRex(rex_operator->getOperand(0));
+  const auto& ti = lhs->get_type_info();
+  std::list<std::shared_ptr<Analyzer::Expr>> value_exprs;
+  for (size_t i = 1; i < rex_operator->size(); ++i) {
+    const auto value = translateScalarRex(rex_operator->getOperand(i));
+    value_exprs.push_back(value->add_cast(ti));
+  }
+  return makeExpr<Analyzer::InValues>(lhs, value_exprs);
+}
+
 namespace {
 
 void fill_dictionary_encoded_in_vals(
@@ -89,6 +89,8 @@ class RelAlgTranslator {
 
   std::shared_ptr<Analyzer::Expr> translateInOper(const RexOperator*) const;
 
+  std::shared_ptr<Analyzer::Expr> translateInValueSet(const RexOperator*) const;
+
   std::shared_ptr<Analyzer::Expr> getInIntegerSetExpr(std::shared_ptr<Analyzer::Expr> arg,
                                                       const ResultSet& val_set) const;
 
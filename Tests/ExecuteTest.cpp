@@ -63,6 +63,7 @@ extern bool g_enable_smem_group_by;
 extern bool g_allow_cpu_retry;
 extern bool g_allow_query_step_cpu_retry;
 extern bool g_enable_watchdog;
+extern bool g_enable_materialized_query_rewrite;
 extern bool g_skip_intermediate_count;
 extern bool g_enable_left_join_filter_hoisting;
 extern size_t g_default_max_groups_buffer_entry_guess;
@@ -80,6 +81,7 @@ extern bool g_enable_bump_allocator;
 extern bool g_enable_interop;
 extern bool g_enable_union;
 extern size_t g_watchdog_none_encoded_string_translation_limit;
+extern size_t g_watchdog_in_clause_max_num_elem_non_bitmap;
 extern bool g_enable_table_functions;
 extern bool g_enable_executor_resource_mgr;
 
@@ -1485,6 +1487,47 @@ TEST(KeyForString, KeyForString) {
   }
 }
 
+class MaterializedQueryTest : public TestHelpers::TbbPrivateServerKiller {
+ protected:
+  void SetUp() override {
+    run_ddl_statement("DROP TABLE IF EXISTS mq_rollup;");
+    run_ddl_statement("CREATE TABLE mq_rollup (x INT, n BIGINT);");
+  }
+
+  void TearDown() override { run_ddl_statement("DROP TABLE IF EXISTS mq_rollup;"); }
+
+  static constexpr char const* kQuery{"SELECT x, COUNT(*) AS n FROM test GROUP BY x"};
+};
+
+TEST_F(MaterializedQueryTest, TableHoldsTheRowsOfTheQuery) {
+  run_ddl_statement("ALTER TABLE mq_rollup ADD MATERIALIZED QUERY (" +
+                    std::string(kQuery) + ");");
+  ScopeGuard reset_rewrite = [enable_rewrite = g_enable_materialized_query_rewrite] {
+    g_enable_materialized_query_rewrite = enable_rewrite;
+  };
+  g_enable_materialized_query_rewrite = true;
+  for (auto dt : {ExecutorDeviceType::CPU, ExecutorDeviceType::GPU}) {
+    SKIP_NO_GPU();
+    // a rewritten query reads the table instead, which must return the same rows
+    const auto expected = run_multiple_agg(std::string(kQuery) + " ORDER BY x;", dt);
+    const auto actual = run_multiple_agg("SELECT x, n FROM mq_rollup ORDER BY x;", dt);
+    ASSERT_EQ(expected->rowCount(), actual->rowCount());
+    for (size_t i = 0; i < expected->rowCount(); ++i) {
+      const auto expected_row = expected->getNextRow(true, true);
+      const auto actual_row = actual->getNextRow(true, true);
+      ASSERT_EQ(v<int64_t>(expected_row[0]), v<int64_t>(actual_row[0]));
+      ASSERT_EQ(v<int64_t>(expected_row[1]), v<int64_t>(actual_row[1]));
+    }
+    c(std::string(kQuery) + " ORDER BY x;", dt);
+  }
+}
+
+TEST_F(MaterializedQueryTest, TableMustBeEmpty) {
+  run_multiple_agg("INSERT INTO mq_rollup VALUES (1, 1);", ExecutorDeviceType::CPU);
+  EXPECT_ANY_THROW(run_ddl_statement("ALTER TABLE mq_rollup ADD MATERIALIZED QUERY (" +
+                                     std::string(kQuery) + ");"));
+}
+
 class RelAlgDagOptimizationTest : public TestHelpers::TbbPrivateServerKiller {
  protected:
   void SetUp() override {
@@ -1773,6 +1816,51 @@ TEST_F(RelAlgDagOptimizationTest, FoldFilters) {
   EXPECT_EQ(query_dag_with_opt->getNodes().size(), 8UL);
 }
 
+TEST_F(RelAlgDagOptimizationTest, EpochGuardedValues) {
+  // values answered from the metadata of table_1, as the planner writes them
+  const auto values_ra = [](const std::string& db_name, const int32_t epoch) {
+    return R"(
+    {
+      "rels": [
+        {
+          "id": "0",
+          "relOp": "LogicalValues",
+          "type": [{"type": "BIGINT", "nullable": false, "name": "EXPR$0"}],
+          "tuples": [
+            [
+              {
+                "literal": 0,
+                "type": "DECIMAL",
+                "target_type": "BIGINT",
+                "scale": 0,
+                "precision": 1,
+                "type_scale": 0,
+                "type_precision": 19
+              }
+            ]
+          ],
+          "epochGuard": [[")" +
+           db_name + R"(", "table_1", )" + std::to_string(epoch) + R"(]],
+          "inputs": []
+        }
+      ]
+    }
+    )";
+  };
+  auto& cat = QR::get()->getSession()->getCatalog();
+  const auto td = cat.getMetadataForTable("table_1", false);
+  CHECK(td);
+  const auto db_name = cat.getCurrentDB().dbName;
+  const auto epoch = cat.getTableEpoch(cat.getCurrentDB().dbId, td->tableId);
+
+  auto query_dag = RelAlgDagBuilder::buildDag(values_ra(db_name, epoch), false);
+  EXPECT_EQ(query_dag->getNodes().size(), 1UL);
+
+  // a write to the table after the planner read its metadata makes the values stale
+  EXPECT_THROW(RelAlgDagBuilder::buildDag(values_ra(db_name, epoch - 1), false),
+               std::runtime_error);
+}
+
 class Select : public TestHelpers::TbbPrivateServerKiller {
  protected:
   void runAndAssertException(const std::string& query_str,
@@ -2525,6 +2613,62 @@ TEST_F(Select, InValues) {
   }
 }
 
+TEST_F(Select, InValueSet) {
+  // literal lists this long are planned as a single value set
+  std::string integers{"-1"};
+  std::string strings{"'foo'"};
+  for (int i = 0; i < 100; ++i) {
+    integers += ", " + std::to_string(2 * i + 1);
+    strings += ", 'str" + std::to_string(i) + "'";
+  }
+  for (auto dt : {ExecutorDeviceType::CPU, ExecutorDeviceType::GPU}) {
+    SKIP_NO_GPU();
+    c("SELECT COUNT(*) FROM test WHERE x IN (" + integers + ");", dt);
+    c("SELECT COUNT(*) FROM test WHERE x NOT IN (" + integers + ");", dt);
+    c("SELECT COUNT(*) FROM test WHERE y IN (" + integers + ");", dt);
+    c("SELECT COUNT(*) FROM test WHERE str IN (" + strings + ");", dt);
+    c("SELECT COUNT(*) FROM test WHERE str NOT IN (" + strings + ");", dt);
+  }
+
+  ScopeGuard reset_watchdog_state = [watchdog_state = g_enable_watchdog,
+                                     max_num_elem =
+                                         g_watchdog_in_clause_max_num_elem_non_bitmap] {
+    g_enable_watchdog = watchdog_state;
+    g_watchdog_in_clause_max_num_elem_non_bitmap = max_num_elem;
+  };
+  g_enable_watchdog = true;
+  g_watchdog_in_clause_max_num_elem_non_bitmap = 10;
+  for (auto dt : {ExecutorDeviceType::CPU, ExecutorDeviceType::GPU}) {
+    SKIP_NO_GPU();
+    EXPECT_THROW(
+        run_multiple_agg("SELECT COUNT(*) FROM test WHERE x IN (" + integers + ");", dt),
+        std::runtime_error);
+  }
+}
+
+TEST_F(Select, SharedSubtrees) {
+  // the CTE is planned once and read by both of its users, except where the executor
+  // needs distinct inputs, like the two sides of a join or of a union
+  const std::string cte{"WITH c AS (SELECT x, COUNT(*) AS n FROM test GROUP BY x) "};
+  ScopeGuard reset_union = [enable_union = g_enable_union] {
+    g_enable_union = enable_union;
+  };
+  g_enable_union = true;
+  for (auto dt : {ExecutorDeviceType::CPU, ExecutorDeviceType::GPU}) {
+    SKIP_NO_GPU();
+    c(cte + "SELECT x, n FROM c WHERE n > 2 UNION ALL SELECT x, n FROM c WHERE n < 5 "
+            "ORDER BY x, n;",
+      dt);
+    c(cte + "SELECT c1.x, c2.n FROM c c1 JOIN c c2 ON c1.x = c2.x ORDER BY c1.x;", dt);
+    c(cte + "SELECT c1.x, c2.n FROM c c1 JOIN c c2 ON c1.x = c2.x JOIN c c3 ON c2.x "
+            "= c3.x ORDER BY c1.x;",
+      dt);
+    c("SELECT a.x, b.y FROM test a JOIN test b ON a.x = b.x ORDER BY a.x, b.y;", dt);
+    c("SELECT x FROM test UNION ALL SELECT x FROM test ORDER BY x;", dt);
+    c(cte + "SELECT x, n FROM c WHERE n IN (SELECT MAX(n) FROM c) ORDER BY x;", dt);
+  }
+}
+
 TEST_F(Select, InValuesForGenericExpression) {
   for (auto dt : {ExecutorDeviceType::CPU, ExecutorDeviceType::GPU}) {
     SKIP_NO_GPU();
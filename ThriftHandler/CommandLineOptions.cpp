@@ -752,6 +752,20 @@ void CommandLineOptions::fillOptions() {
           ->default_value(system_parameters.calcite_timeout),
       "Calcite server timeout (milliseconds). Increase this on systems with frequent "
       "schema changes or when running large numbers of parallel queries.");
+  desc.add_options()(
+      "calcite-planning-time-budget",
+      po::value<size_t>(&g_calcite_planning_time_budget_ms)
+          ->default_value(g_calcite_planning_time_budget_ms),
+      "Time budget (milliseconds) of the optional optimization phases of Calcite, "
+      "which are skipped once it is exhausted. 0 disables the budget. A "
+      "planning_time_budget query hint overrides it.");
+  desc.add_options()(
+      "enable-materialized-query-rewrite",
+      po::value<bool>(&g_enable_materialized_query_rewrite)
+          ->default_value(g_enable_materialized_query_rewrite)
+          ->implicit_value(true),
+      "Answer queries from tables registered with ALTER TABLE ... ADD MATERIALIZED "
+      "QUERY whose recorded epochs are still current.");
   desc.add_options()("calcite-service-keepalive",
                      po::value<size_t>(&system_parameters.calcite_keepalive)
                          ->default_value(system_parameters.calcite_keepalive)
@@ -284,6 +284,8 @@ extern size_t g_enable_parallel_linearization;
 extern size_t g_max_log_length;
 extern bool g_enable_data_recycler;
 extern bool g_enable_column_level_security;
+extern size_t g_calcite_planning_time_budget_ms;
+extern bool g_enable_materialized_query_rewrite;
 extern bool g_use_hashtable_cache;
 extern size_t g_hashtable_cache_total_bytes;
 extern size_t g_max_cacheable_hashtable_size_bytes;
@@ -133,6 +133,7 @@ bool g_allow_system_dashboard_update{false};
 bool g_uniform_request_ids_per_thrift_call{true};
 extern bool g_allow_memory_status_log;
 extern int g_max_num_gpu_per_query;
+extern bool g_enable_auto_metadata_update;
 
 using Catalog_Namespace::Catalog;
 using Catalog_Namespace::SysCatalog;
@@ -739,6 +740,13 @@ void DBHandler::disconnect_impl(Catalog_Namespace::SessionInfoPtr& session_ptr)
     render_handler_->disconnect(session_id);
   }
 
+  try {
+    unprepareSessionQueries(session_id);
+  } catch (const std::exception& e) {
+    // Calcite drops the plans it is not asked for after a while
+    LOG(WARNING) << "Could not unprepare the queries of the session: " << e.what();
+  }
+
   if (leaf_exception) {
     std::rethrow_exception(leaf_exception);
   }
@@ -838,6 +846,19 @@ void DBHandler::interrupt(const TSessionId& query_session_id_or_json,
       }
     }
     dispatch_queue_->interrupt(query_session);
+    try {
+      // the planning of a query is named by its request id, which the caller passes
+      // along with the session. Without one, all planning of the session stops.
+      auto const query_session_ptr = sessions_store_->get(query_session);
+      if (query_session_ptr) {
+        auto const request_id = query_request_info.requestId();
+        calcite_->cancel(query_session_ptr->get_public_session_id(),
+                         request_id ? std::to_string(request_id) : std::string{});
+      }
+    } catch (const std::exception& e) {
+      // the executor has been interrupted anyway, the query only plans longer
+      LOG(WARNING) << "Could not interrupt the planning of the query: " << e.what();
+    }
     LOG(INFO) << "User " << session_ptr->get_currentUser().userName
               << " interrupted session with database " << dbname << std::endl;
   }
@@ -1620,6 +1641,114 @@ void DBHandler::sql_validate(TRowDescriptor& _return,
   }
 }
 
+void DBHandler::sql_prepare(TPreparedQuery& _return,
+                            const TSessionId& session_id_or_json,
+                            const std::string& query_str) {
+  heavyai::RequestInfo const request_info(session_id_or_json);
+  SET_REQUEST_ID(request_info.requestId());
+  try {
+    auto stdlog = STDLOG(get_session_ptr(request_info.sessionId()));
+    stdlog.appendNameValuePairs("client", getConnectionInfo().toString());
+    auto query_state = create_query_state(stdlog.getSessionInfo(), query_str);
+    stdlog.setQueryState(query_state);
+
+    if (leaf_aggregator_.leafCount() > 0) {
+      throw std::runtime_error("Prepared queries are not supported in distributed mode.");
+    }
+    ParserWrapper pw{query_str};
+    if (ExplainInfo(query_str).isExplain() || pw.is_ddl || pw.is_update_dml) {
+      throw std::runtime_error("Can only prepare SELECT statements.");
+    }
+
+    const auto plan = prepare_query(query_state->createQueryStateProxy(), query_str);
+    PreparedQuery prepared_query;
+    prepared_query.session_id = request_info.sessionId();
+    prepared_query.query_str = query_str;
+    prepared_query.catalog = stdlog.getConstSessionInfo()->getCatalog().name();
+    prepared_query.calcite_handle = plan.handle;
+    {
+      std::lock_guard<std::mutex> lock(prepared_queries_mutex_);
+      prepared_queries_.emplace(plan.handle, prepared_query);
+    }
+
+    _return.handle = plan.handle;
+    for (const auto& parameter_type : plan.parameter_types) {
+      TQueryParameter parameter;
+      parameter.type_name = parameter_type.type;
+      parameter.precision = parameter_type.precision;
+      parameter.scale = parameter_type.scale;
+      parameter.nullable = parameter_type.nullable;
+      _return.parameters.push_back(parameter);
+    }
+  } catch (const std::exception& e) {
+    THROW_DB_EXCEPTION(std::string(e.what()));
+  }
+}
+
+void DBHandler::sql_execute_prepared(TQueryResult& _return,
+                                     const TSessionId& session_id_or_json,
+                                     const std::string& handle,
+                                     const std::vector<TQueryParameterValue>& values,
+                                     const bool column_format,
+                                     const std::string& nonce,
+                                     const int32_t first_n,
+                                     const int32_t at_most_n) {
+  heavyai::RequestInfo const request_info(session_id_or_json);
+  SET_REQUEST_ID(request_info.requestId());
+  try {
+    auto session_ptr = get_session_ptr(request_info.sessionId());
+    const auto prepared_query = getPreparedQuery(request_info.sessionId(), handle);
+    auto query_state = create_query_state(session_ptr, prepared_query.query_str);
+    auto stdlog = STDLOG(session_ptr, query_state);
+    stdlog.appendNameValuePairs("client", getConnectionInfo().toString());
+    stdlog.appendNameValuePairs("nonce", nonce);
+    auto timer = DEBUG_TIMER(__func__);
+
+    if (first_n >= 0 && at_most_n >= 0) {
+      throw std::runtime_error("At most one of first_n and at_most_n can be set");
+    }
+    std::vector<TParameterValue> parameter_values;
+    for (const auto& value : values) {
+      TParameterValue parameter_value;
+      parameter_value.is_null = value.is_null;
+      parameter_value.value = value.value;
+      parameter_values.push_back(parameter_value);
+    }
+
+    _return.nonce = nonce;
+    _return.query_type = TQueryType::READ;
+    _return.total_time_ms = measure<>::execution([&]() {
+      execute_prepared_query(_return,
+                             query_state->createQueryStateProxy(),
+                             handle,
+                             parameter_values,
+                             column_format,
+                             first_n,
+                             at_most_n);
+    });
+    stdlog.appendNameValuePairs("execution_time_ms", _return.execution_time_ms);
+  } catch (const std::exception& e) {
+    THROW_DB_EXCEPTION(std::string(e.what()));
+  }
+}
+
+void DBHandler::sql_unprepare(const TSessionId& session_id_or_json,
+                              const std::string& handle) {
+  heavyai::RequestInfo const request_info(session_id_or_json);
+  SET_REQUEST_ID(request_info.requestId());
+  try {
+    auto stdlog = STDLOG(get_session_ptr(request_info.sessionId()));
+    const auto prepared_query = getPreparedQuery(request_info.sessionId(), handle);
+    {
+      std::lock_guard<std::mutex> lock(prepared_queries_mutex_);
+      prepared_queries_.erase(handle);
+    }
+    calcite_->unprepare(prepared_query.catalog, prepared_query.calcite_handle);
+  } catch (const std::exception& e) {
+    THROW_DB_EXCEPTION(std::string(e.what()));
+  }
+}
+
 namespace {
 
 struct ProjectionTokensForCompletion {
@@ -2460,6 +2589,37 @@ void DBHandler::get_internal_table_details_for_database(
   get_table_details_impl(_return, stdlog, table_name, true, false, database_name);
 }
 
+void DBHandler::get_internal_materialized_table_details(
+    std::map<std::string, TTableDetails>& _return,
+    const TSessionId& session_id_or_json,
+    const std::string& database_name) {
+  heavyai::RequestInfo const request_info(session_id_or_json);
+  SET_REQUEST_ID(request_info.requestId());
+  auto stdlog = STDLOG(get_session_ptr(request_info.sessionId()));
+  stdlog.appendNameValuePairs("client", getConnectionInfo().toString());
+  auto session_ptr = stdlog.getConstSessionInfo();
+  const auto cat = SysCatalog::instance().getCatalog(database_name);
+  if (!cat) {
+    THROW_DB_EXCEPTION("Database " + database_name + " does not exist.");
+  }
+  // Get copies of table descriptors here in order to avoid possible use of dangling
+  // pointers, if tables are concurrently dropped.
+  for (const auto& td : cat->getAllTableMetadataCopy()) {
+    if (td.shard >= 0 || td.isView || !td.materializedQuery.has_value() ||
+        !hasTableAccessPrivileges(&td, *session_ptr)) {
+      continue;
+    }
+    try {
+      TTableDetails details;
+      get_table_details_impl(details, stdlog, td.tableName, true, false, database_name);
+      _return.emplace(td.tableName, std::move(details));
+    } catch (const TDBException& e) {
+      LOG(INFO) << "Skipping materialized table " << td.tableName << ": "
+                << e.error_msg;
+    }
+  }
+}
+
 void DBHandler::get_table_details(TTableDetails& _return,
                                   const TSessionId& session_id_or_json,
                                   const std::string& table_name) {
@@ -2651,6 +2811,18 @@ void DBHandler::get_table_details_impl(TTableDetails& _return,
     if (td->comment.has_value()) {
       _return.__set_comment(td->comment.value());
     }
+    if (td->materializedQuery.has_value()) {
+      rapidjson::Document info;
+      info.Parse(td->materializedQuery.value());
+      CHECK(info.IsObject());
+      _return.__set_materialized_query(json_str(field(info, "query")));
+      std::map<std::string, int32_t> epochs;
+      const auto& epochs_json = field(info, "epochs");
+      for (auto it = epochs_json.MemberBegin(); it != epochs_json.MemberEnd(); ++it) {
+        epochs.emplace(json_str(it->name), static_cast<int32_t>(json_i64(it->value)));
+      }
+      _return.__set_materialized_query_epochs(epochs);
+    }
     if (td->isView) {
       _return.table_type = TTableType::VIEW;
     } else if (td->isTemporaryTable()) {
@@ -6281,6 +6453,34 @@ Catalog_Namespace::SessionInfoPtr DBHandler::findCalciteSession(
   return itr == calcite_sessions_.end() ? nullptr : itr->second;
 }
 
+DBHandler::PreparedQuery DBHandler::getPreparedQuery(const std::string& session_id,
+                                                     const std::string& handle) const {
+  std::lock_guard<std::mutex> lock(prepared_queries_mutex_);
+  auto const itr = prepared_queries_.find(handle);
+  if (itr == prepared_queries_.end() || itr->second.session_id != session_id) {
+    throw std::runtime_error("Prepared query " + handle + " not found.");
+  }
+  return itr->second;
+}
+
+void DBHandler::unprepareSessionQueries(const std::string& session_id) {
+  std::vector<PreparedQuery> session_queries;
+  {
+    std::lock_guard<std::mutex> lock(prepared_queries_mutex_);
+    for (auto itr = prepared_queries_.begin(); itr != prepared_queries_.end();) {
+      if (itr->second.session_id == session_id) {
+        session_queries.push_back(itr->second);
+        itr = prepared_queries_.erase(itr);
+      } else {
+        ++itr;
+      }
+    }
+  }
+  for (const auto& prepared_query : session_queries) {
+    calcite_->unprepare(prepared_query.catalog, prepared_query.calcite_handle);
+  }
+}
+
 void DBHandler::get_heap_profile(std::string& profile,
                                  const TSessionId& session_id_or_json) {
   heavyai::RequestInfo const request_info(session_id_or_json);
@@ -7094,6 +7294,12 @@ TPlanResult DBHandler::processCalciteRequest(
                                                            : query_str};
   auto query_parsing_option = calcite_->getCalciteQueryParsingOption(
       legacy_syntax_, explain.isCalciteExplain(), explain.isCalciteExplainDetail());
+  query_parsing_option.approximate_query_mode =
+      query_state_proxy->getConstSessionInfo()->get_approximate_query_mode();
+  query_parsing_option.public_session_id =
+      query_state_proxy->getConstSessionInfo()->get_public_session_id();
+  // lets interrupt() stop the planning of the query
+  query_parsing_option.nonce = std::to_string(logger::request_id());
   auto optimization_option = calcite_->getCalciteOptimizationOption(
       system_parameters.enable_calcite_view_optimize,
       g_enable_watchdog,
@@ -7142,81 +7348,223 @@ std::pair<TPlanResult, lockmgr::LockedTableDescriptors> DBHandler::parse_to_ra(
         result.resolved_accessed_objects.tables_selected_from);
 
     if (acquire_locks) {
-      std::set<std::vector<std::string>> write_only_tables;
-      std::vector<std::vector<std::string>> tables;
-
-      tables.insert(tables.end(),
-                    result.resolved_accessed_objects.tables_updated_in.begin(),
-                    result.resolved_accessed_objects.tables_updated_in.end());
-      tables.insert(tables.end(),
-                    result.resolved_accessed_objects.tables_deleted_from.begin(),
-                    result.resolved_accessed_objects.tables_deleted_from.end());
-
-      // Collect the tables that need a write lock
-      for (const auto& table : tables) {
-        write_only_tables.insert(table);
-      }
+      locks = lock_accessed_tables(result.resolved_accessed_objects);
+    }
+  }
+  return std::make_pair(result, std::move(locks));
+}
 
-      tables.insert(tables.end(),
-                    result.resolved_accessed_objects.tables_selected_from.begin(),
-                    result.resolved_accessed_objects.tables_selected_from.end());
-      tables.insert(tables.end(),
-                    result.resolved_accessed_objects.tables_inserted_into.begin(),
-                    result.resolved_accessed_objects.tables_inserted_into.end());
-
-      // avoid deadlocks by enforcing a deterministic locking sequence
-      // first, obtain table schema locks
-      // then, obtain table data locks
-      // force sort by database id and table id order in case of name change to
-      // guarantee fixed order of mutex access
-      std::sort(tables.begin(),
-                tables.end(),
-                [](const std::vector<std::string>& a, const std::vector<std::string>& b) {
-                  if (a[1] != b[1]) {
-                    const auto cat_a = SysCatalog::instance().getCatalog(a[1]);
-                    const auto cat_b = SysCatalog::instance().getCatalog(b[1]);
-                    return cat_a->getDatabaseId() < cat_b->getDatabaseId();
-                  }
-                  const auto cat = SysCatalog::instance().getCatalog(a[1]);
-                  return cat->getMetadataForTable(a[0], false)->tableId <
-                         cat->getMetadataForTable(b[0], false)->tableId;
-                });
-
-      // In the case of self-join and possibly other cases, we will
-      // have duplicate tables. Ensure we only take one for locking below.
-      tables.erase(unique(tables.begin(), tables.end()), tables.end());
-      for (const auto& table : tables) {
-        const auto cat = SysCatalog::instance().getCatalog(table[1]);
-        CHECK(cat);
+lockmgr::LockedTableDescriptors DBHandler::lock_accessed_tables(
+    const TAccessedQueryObjects& accessed_objects) {
+  lockmgr::LockedTableDescriptors locks;
+  std::set<std::vector<std::string>> write_only_tables;
+  std::vector<std::vector<std::string>> tables;
+
+  tables.insert(tables.end(),
+                accessed_objects.tables_updated_in.begin(),
+                accessed_objects.tables_updated_in.end());
+  tables.insert(tables.end(),
+                accessed_objects.tables_deleted_from.begin(),
+                accessed_objects.tables_deleted_from.end());
+
+  // Collect the tables that need a write lock
+  for (const auto& table : tables) {
+    write_only_tables.insert(table);
+  }
+
+  tables.insert(tables.end(),
+                accessed_objects.tables_selected_from.begin(),
+                accessed_objects.tables_selected_from.end());
+  tables.insert(tables.end(),
+                accessed_objects.tables_inserted_into.begin(),
+                accessed_objects.tables_inserted_into.end());
+
+  // avoid deadlocks by enforcing a deterministic locking sequence
+  // first, obtain table schema locks
+  // then, obtain table data locks
+  // force sort by database id and table id order in case of name change to
+  // guarantee fixed order of mutex access
+  std::sort(tables.begin(),
+            tables.end(),
+            [](const std::vector<std::string>& a, const std::vector<std::string>& b) {
+              if (a[1] != b[1]) {
+                const auto cat_a = SysCatalog::instance().getCatalog(a[1]);
+                const auto cat_b = SysCatalog::instance().getCatalog(b[1]);
+                return cat_a->getDatabaseId() < cat_b->getDatabaseId();
+              }
+              const auto cat = SysCatalog::instance().getCatalog(a[1]);
+              return cat->getMetadataForTable(a[0], false)->tableId <
+                     cat->getMetadataForTable(b[0], false)->tableId;
+            });
+
+  // In the case of self-join and possibly other cases, we will
+  // have duplicate tables. Ensure we only take one for locking below.
+  tables.erase(unique(tables.begin(), tables.end()), tables.end());
+  for (const auto& table : tables) {
+    const auto cat = SysCatalog::instance().getCatalog(table[1]);
+    CHECK(cat);
+    locks.emplace_back(
+        std::make_unique<lockmgr::TableSchemaLockContainer<lockmgr::ReadLock>>(
+            lockmgr::TableSchemaLockContainer<lockmgr::ReadLock>::acquireTableDescriptor(
+                *cat, table[0])));
+    if (write_only_tables.count(table)) {
+      // Aquire an insert data lock for updates/deletes, consistent w/ insert. The
+      // table data lock will be aquired in the fragmenter during checkpoint.
+      locks.emplace_back(
+          std::make_unique<lockmgr::TableInsertLockContainer<lockmgr::WriteLock>>(
+              lockmgr::TableInsertLockContainer<lockmgr::WriteLock>::acquire(
+                  cat->getDatabaseId(), (*locks.back())())));
+    } else {
+      auto lock_td = (*locks.back())();
+      if (lock_td->is_in_memory_system_table) {
         locks.emplace_back(
-            std::make_unique<lockmgr::TableSchemaLockContainer<lockmgr::ReadLock>>(
-                lockmgr::TableSchemaLockContainer<
-                    lockmgr::ReadLock>::acquireTableDescriptor(*cat, table[0])));
-        if (write_only_tables.count(table)) {
-          // Aquire an insert data lock for updates/deletes, consistent w/ insert. The
-          // table data lock will be aquired in the fragmenter during checkpoint.
-          locks.emplace_back(
-              std::make_unique<lockmgr::TableInsertLockContainer<lockmgr::WriteLock>>(
-                  lockmgr::TableInsertLockContainer<lockmgr::WriteLock>::acquire(
-                      cat->getDatabaseId(), (*locks.back())())));
-        } else {
-          auto lock_td = (*locks.back())();
-          if (lock_td->is_in_memory_system_table) {
-            locks.emplace_back(
-                std::make_unique<lockmgr::TableDataLockContainer<lockmgr::WriteLock>>(
-                    lockmgr::TableDataLockContainer<lockmgr::WriteLock>::acquire(
-                        cat->getDatabaseId(), lock_td)));
-          } else {
-            locks.emplace_back(
-                std::make_unique<lockmgr::TableDataLockContainer<lockmgr::ReadLock>>(
-                    lockmgr::TableDataLockContainer<lockmgr::ReadLock>::acquire(
-                        cat->getDatabaseId(), lock_td)));
-          }
-        }
+            std::make_unique<lockmgr::TableDataLockContainer<lockmgr::WriteLock>>(
+                lockmgr::TableDataLockContainer<lockmgr::WriteLock>::acquire(
+                    cat->getDatabaseId(), lock_td)));
+      } else {
+        locks.emplace_back(
+            std::make_unique<lockmgr::TableDataLockContainer<lockmgr::ReadLock>>(
+                lockmgr::TableDataLockContainer<lockmgr::ReadLock>::acquire(
+                    cat->getDatabaseId(), lock_td)));
       }
     }
   }
-  return std::make_pair(result, std::move(locks));
+  return locks;
+}
+
+TPreparedPlan DBHandler::prepare_query(QueryStateProxy query_state_proxy,
+                                       const std::string& query_str) {
+  query_state::Timer timer = query_state_proxy.createTimer(__func__);
+  auto session_ptr = query_state_proxy->getConstSessionInfo();
+  auto cat = session_ptr->get_catalog_ptr();
+  heavyai::RequestInfo const request_info(createInMemoryCalciteSession(cat),
+                                          logger::request_id());
+  ScopeGuard cleanup = [&]() { removeInMemoryCalciteSession(request_info.sessionId()); };
+  auto query_parsing_option =
+      calcite_->getCalciteQueryParsingOption(legacy_syntax_, false, false);
+  query_parsing_option.public_session_id = session_ptr->get_public_session_id();
+  // lets interrupt() stop the planning of the query
+  query_parsing_option.nonce = std::to_string(logger::request_id());
+  auto optimization_option = calcite_->getCalciteOptimizationOption(
+      system_parameters_.enable_calcite_view_optimize, g_enable_watchdog, {}, false);
+  return calcite_->prepare(timer.createQueryStateProxy(),
+                           legacy_syntax_ ? pg_shim(query_str) : query_str,
+                           query_parsing_option,
+                           optimization_option,
+                           request_info.json());
+}
+
+std::pair<TPlanResult, lockmgr::LockedTableDescriptors> DBHandler::bind_to_ra(
+    QueryStateProxy query_state_proxy,
+    const std::string& handle,
+    const std::vector<TParameterValue>& values) {
+  query_state::Timer timer = query_state_proxy.createTimer(__func__);
+  auto session_ptr = query_state_proxy->getConstSessionInfo();
+  auto cat = session_ptr->get_catalog_ptr();
+  // as in parse_to_ra(), the catalog is locked until the tables are
+  std::shared_lock<heavyai::DistributedSharedMutex> cat_lock;
+  if (g_multi_instance) {
+    cat_lock = std::shared_lock<heavyai::DistributedSharedMutex>(*cat->dcatalogMutex_);
+  }
+  auto prepared_query = getPreparedQuery(session_ptr->get_session_id(), handle);
+  TPlanResult result;
+  if (prepared_query.catalog != cat->name() ||
+      !calcite_->bind(result,
+                      timer.createQueryStateProxy(),
+                      prepared_query.calcite_handle,
+                      values)) {
+    // Calcite dropped the plan, or the session switched to another database, so the
+    // query is prepared again with the tables it reads now
+    prepared_query.catalog = cat->name();
+    prepared_query.calcite_handle =
+        prepare_query(timer.createQueryStateProxy(), prepared_query.query_str).handle;
+    {
+      std::lock_guard<std::mutex> lock(prepared_queries_mutex_);
+      auto itr = prepared_queries_.find(handle);
+      if (itr != prepared_queries_.end()) {
+        itr->second = prepared_query;
+      }
+    }
+    if (!calcite_->bind(result,
+                        timer.createQueryStateProxy(),
+                        prepared_query.calcite_handle,
+                        values)) {
+      throw std::runtime_error("Prepared query " + handle + " could not be planned.");
+    }
+  }
+  query_auth::check_access_privileges(timer.createQueryStateProxy(), result);
+  check_in_memory_system_table_query(
+      result.resolved_accessed_objects.tables_selected_from);
+  return std::make_pair(result, lock_accessed_tables(result.resolved_accessed_objects));
+}
+
+void DBHandler::execute_prepared_query(TQueryResult& _return,
+                                       QueryStateProxy query_state_proxy,
+                                       const std::string& handle,
+                                       const std::vector<TParameterValue>& values,
+                                       const bool column_format,
+                                       const int32_t first_n,
+                                       const int32_t at_most_n) {
+  // the executor is locked before the tables, as in sql_execute_impl()
+  const auto execute_read_lock = legacylockmgr::getExecuteReadLock();
+
+  auto session_ptr = query_state_proxy->getConstSessionInfo();
+  ExecutionResult execution_result;
+  TPlanResult plan_result;
+  lockmgr::LockedTableDescriptors locks;
+  execution_result.addExecutionTime(measure<>::execution([&]() {
+    std::tie(plan_result, locks) = bind_to_ra(query_state_proxy, handle, values);
+  }));
+  const auto& query_ra = plan_result.plan_result;
+  const auto executor_device_type = session_ptr->get_executor_device_type();
+  auto rel_alg_task =
+      std::make_unique<std::packaged_task<void(size_t, std::string, std::string)>>(
+          [this,
+           &execution_result,
+           query_state_proxy,
+           &query_ra,
+           column_format,
+           executor_device_type,
+           first_n,
+           at_most_n,
+           parent_thread_local_ids = logger::thread_local_ids()](
+              const size_t executor_index,
+              std::string const& query_session,
+              std::string const& submitted_time_str) {
+            logger::LocalIdsScopeGuard lisg = parent_thread_local_ids.setNewThreadId();
+            execute_rel_alg(execution_result,
+                            query_state_proxy,
+                            query_ra,
+                            column_format,
+                            executor_device_type,
+                            first_n,
+                            at_most_n,
+                            /*just_validate=*/false,
+                            /*find_push_down_candidates=*/false,
+                            ExplainInfo(),
+                            executor_index,
+                            query_session,
+                            submitted_time_str);
+          });
+  const auto query_session = session_ptr->get_session_id();
+  const auto submitted_time_str = query_state_proxy->getQuerySubmittedTime();
+  auto task = std::make_shared<QueryDispatchQueue::Task>(
+      std::move(rel_alg_task), query_session, submitted_time_str);
+  if (g_enable_runtime_query_interrupt) {
+    auto executor = Executor::getExecutor(Executor::UNITARY_EXECUTOR_ID);
+    executor->enrollQuerySession(
+        query_session,
+        strip(hide_sensitive_data_from_query(query_state_proxy->getQueryStr())),
+        submitted_time_str,
+        Executor::UNITARY_EXECUTOR_ID,
+        QuerySessionStatus::QueryStatus::PENDING_QUEUE);
+  }
+  dispatch_query_task(task, /*is_update_delete=*/false);
+  auto result_future = task->execute_rel_alg_task->get_future().share();
+  result_future.get();
+
+  DBHandler::convertData(
+      _return, execution_result, query_state_proxy, column_format, first_n, at_most_n);
 }
 
 int64_t DBHandler::query_get_outer_fragment_count(const TSessionId& session_id_or_json,
@@ -7730,6 +8078,125 @@ void DBHandler::set_table_epochs(const TSessionId& session_id_or_json,
   cat.setTableEpochs(db_id, table_epochs_vector);
 }
 
+namespace {
+
+TColumnRange get_empty_column_range(const ColumnDescriptor* cd) {
+  TColumnRange range;
+  range.col_id = cd->columnId;
+  range.table_id = cd->tableId;
+  range.has_nulls = false;
+  const auto& ti = cd->columnType;
+  // the metadata of dates holds epoch seconds whatever their encoding, and that of
+  // timestamps their value in units of their precision
+  if (ti.is_integer() || ti.is_decimal() || ti.is_boolean() || ti.is_time()) {
+    range.type = TExpressionRangeType::INTEGER;
+    range.int_min = std::numeric_limits<int64_t>::max();
+    range.int_max = std::numeric_limits<int64_t>::min();
+  } else if (ti.get_type() == kFLOAT || ti.get_type() == kDOUBLE) {
+    range.type = ti.get_type() == kFLOAT ? TExpressionRangeType::FLOAT
+                                         : TExpressionRangeType::DOUBLE;
+    range.fp_min = std::numeric_limits<double>::max();
+    range.fp_max = std::numeric_limits<double>::lowest();
+  } else {
+    range.type = TExpressionRangeType::INVALID;
+  }
+  return range;
+}
+
+// widens the range by the metadata of one chunk, an empty range (min > max) means
+// that no chunk holds a non-null value
+void add_chunk_to_column_range(TColumnRange& range,
+                               const ChunkMetadata& chunk_metadata,
+                               const SQLTypeInfo& ti) {
+  const auto& stats = chunk_metadata.chunkStats;
+  range.has_nulls = range.has_nulls || stats.has_nulls;
+  if (range.type == TExpressionRangeType::INTEGER) {
+    const auto min = extract_min_stat_int_type(stats, ti);
+    const auto max = extract_max_stat_int_type(stats, ti);
+    if (min <= max) {
+      range.int_min = std::min(range.int_min, min);
+      range.int_max = std::max(range.int_max, max);
+    }
+  } else if (range.type != TExpressionRangeType::INVALID) {
+    const auto min = extract_min_stat_fp_type(stats, ti);
+    const auto max = extract_max_stat_fp_type(stats, ti);
+    if (min <= max) {
+      range.fp_min = std::min(range.fp_min, min);
+      range.fp_max = std::max(range.fp_max, max);
+    }
+  }
+}
+
+}  // namespace
+
+void DBHandler::get_table_stats(TTableStats& _return,
+                                const TSessionId& session_id_or_json,
+                                const std::string& table_name,
+                                const std::vector<std::string>& column_names) {
+  heavyai::RequestInfo const request_info(session_id_or_json);
+  SET_REQUEST_ID(request_info.requestId());
+  auto stdlog =
+      STDLOG(get_session_ptr(request_info.sessionId()), "table_name", table_name);
+  stdlog.appendNameValuePairs("client", getConnectionInfo().toString());
+  auto session_ptr = stdlog.getConstSessionInfo();
+
+  const auto execute_read_lock = legacylockmgr::getExecuteReadLock();
+  auto& cat = session_ptr->getCatalog();
+  auto table_read_lock =
+      lockmgr::TableSchemaLockMgr::getReadLockForTable(cat, table_name);
+  auto table_data_read_lock =
+      lockmgr::TableDataLockMgr::getReadLockForTable(cat, table_name);
+  const auto td = cat.getMetadataForTable(table_name, false);
+  if (!td || td->isView) {
+    THROW_DB_EXCEPTION("Table " + table_name + " does not exist.");
+  }
+  if (!hasTableAccessPrivileges(td, *session_ptr)) {
+    THROW_DB_EXCEPTION("User has no access privileges to table " + table_name);
+  }
+  std::vector<const ColumnDescriptor*> cds;
+  for (const auto& column_name : column_names) {
+    const auto cd = cat.getMetadataForColumn(td->tableId, column_name);
+    if (!cd) {
+      THROW_DB_EXCEPTION("Column " + column_name + " does not exist.");
+    }
+    cds.push_back(cd);
+  }
+
+  _return.epoch = cat.getTableEpoch(cat.getCurrentDB().dbId, td->tableId);
+  // the metadata of foreign tables is refreshed on their own schedule, temporary
+  // tables are not checkpointed so their epoch does not change with their contents,
+  // and the metadata of local tables only reflects updates and deletes once recomputed
+  _return.is_exact = !td->isForeignTable() &&
+                     td->persistenceLevel == Data_Namespace::DISK_LEVEL &&
+                     g_enable_auto_metadata_update &&
+                     !cat.getDeletedColumnIfRowsDeleted(td);
+  _return.num_rows = 0;
+  std::vector<TColumnRange> ranges;
+  for (const auto cd : cds) {
+    ranges.push_back(get_empty_column_range(cd));
+    ranges.back().db_id = cat.getDatabaseId();
+  }
+  for (const auto physical_td : cat.getPhysicalTablesDescriptors(td)) {
+    CHECK(physical_td->fragmenter);
+    const auto table_info = physical_td->fragmenter->getFragmentsForQuery();
+    for (const auto& fragment : table_info.fragments) {
+      _return.num_rows += fragment.getPhysicalNumTuples();
+      const auto& chunk_metadata_map = fragment.getChunkMetadataMap();
+      for (size_t i = 0; i < cds.size(); ++i) {
+        const auto it = chunk_metadata_map.find(cds[i]->columnId);
+        if (it == chunk_metadata_map.end()) {
+          ranges[i].type = TExpressionRangeType::INVALID;
+          continue;
+        }
+        add_chunk_to_column_range(ranges[i], *it->second, cds[i]->columnType);
+      }
+    }
+  }
+  for (size_t i = 0; i < cds.size(); ++i) {
+    _return.column_ranges[column_names[i]] = ranges[i];
+  }
+}
+
 void DBHandler::set_license_key(TLicenseInfo& _return,
                                 const TSessionId& session_id_or_json,
                                 const std::string& key,
@@ -8267,6 +8734,16 @@ void DBHandler::alterSession(const std::string& session_id,
   } else if (session_parameter.first == "CURRENT_DATABASE") {
     execution_time_ms = measure<>::execution(
         [&]() { switch_database(session_id, session_parameter.second); });
+  } else if (session_parameter.first == "APPROXIMATE_QUERY_MODE") {
+    std::string parameter_value = to_upper(session_parameter.second);
+    if (parameter_value != "TRUE" && parameter_value != "FALSE") {
+      throw std::runtime_error("Cannot set the " + session_parameter.first + " to " +
+                               session_parameter.second +
+                               ". Valid options are TRUE and FALSE");
+    }
+    execution_time_ms = measure<>::execution([&]() {
+      get_session_ptr(session_id)->set_approximate_query_mode(parameter_value == "TRUE");
+    });
   }
 }
 
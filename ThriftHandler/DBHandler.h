@@ -255,6 +255,10 @@ class DBHandler : public HeavyIf {
                                                const TSessionId& session,
                                                const std::string& table_name,
                                                const std::string& database_name) override;
+  void get_internal_materialized_table_details(
+      std::map<std::string, TTableDetails>& _return,
+      const TSessionId& session,
+      const std::string& database_name) override;
   void get_users(std::vector<std::string>& _return, const TSessionId& session) override;
   void put_immerse_users_metadata(
       const TSessionId& session,
@@ -312,6 +316,10 @@ class DBHandler : public HeavyIf {
   void set_table_epochs(const TSessionId& session,
                         const int32_t db_id,
                         const std::vector<TTableEpochInfo>& table_epochs) override;
+  void get_table_stats(TTableStats& _return,
+                       const TSessionId& session,
+                       const std::string& table_name,
+                       const std::vector<std::string>& column_names) override;
 
   void get_session_info(TSessionInfo& _return, const TSessionId& session) override;
 
@@ -358,6 +366,18 @@ class DBHandler : public HeavyIf {
   void sql_validate(TRowDescriptor& _return,
                     const TSessionId& session,
                     const std::string& query) override;
+  void sql_prepare(TPreparedQuery& _return,
+                   const TSessionId& session,
+                   const std::string& query) override;
+  void sql_execute_prepared(TQueryResult& _return,
+                            const TSessionId& session,
+                            const std::string& handle,
+                            const std::vector<TQueryParameterValue>& values,
+                            const bool column_format,
+                            const std::string& nonce,
+                            const int32_t first_n,
+                            const int32_t at_most_n) override;
+  void sql_unprepare(const TSessionId& session, const std::string& handle) override;
   TExecuteMode::type getExecutionMode(const TSessionId& session);
   void set_execution_mode(const TSessionId& session,
                           const TExecuteMode::type mode) override;
@@ -746,6 +766,27 @@ class DBHandler : public HeavyIf {
       const SystemParameters& system_parameters,
       bool check_privileges = true);
 
+  // plans a query containing ? parameters in Calcite
+  TPreparedPlan prepare_query(QueryStateProxy, const std::string& query_str);
+
+  // the plan of a prepared query with the given values of its parameters, and the
+  // locks of the tables it reads
+  std::pair<TPlanResult, lockmgr::LockedTableDescriptors> bind_to_ra(
+      QueryStateProxy,
+      const std::string& handle,
+      const std::vector<TParameterValue>& values);
+
+  void execute_prepared_query(TQueryResult& _return,
+                              QueryStateProxy,
+                              const std::string& handle,
+                              const std::vector<TParameterValue>& values,
+                              const bool column_format,
+                              const int32_t first_n,
+                              const int32_t at_most_n);
+
+  lockmgr::LockedTableDescriptors lock_accessed_tables(
+      const TAccessedQueryObjects& accessed_objects);
+
   void sql_execute_local(
       TQueryResult& _return,
       const QueryStateProxy& query_state_proxy,
@@ -967,6 +1008,22 @@ class DBHandler : public HeavyIf {
 
   Catalog_Namespace::SessionInfoPtr findCalciteSession(TSessionId const&) const;
 
+  // a query prepared by sql_prepare(), which only the session preparing it may execute
+  struct PreparedQuery {
+    std::string session_id;
+    std::string query_str;
+    // the catalog and handle of its plan in Calcite, which change when Calcite
+    // prepares it again
+    std::string catalog;
+    std::string calcite_handle;
+  };
+  std::unordered_map<std::string, PreparedQuery> prepared_queries_;
+  mutable std::mutex prepared_queries_mutex_;
+
+  PreparedQuery getPreparedQuery(const std::string& session_id,
+                                 const std::string& handle) const;
+  void unprepareSessionQueries(const std::string& session_id);
+
   bool super_user_rights_;           // default is "false"; setting to "true"
                                      // ignores passwd checks in "connect(..)"
                                      // method
@@ -190,6 +190,23 @@ struct TQueryResult {
   7: TQueryType query_type=TQueryType.UNKNOWN;
 }
 
+struct TQueryParameter {
+  1: string type_name;
+  2: i32 precision;
+  3: i32 scale;
+  4: bool nullable;
+}
+
+struct TPreparedQuery {
+  1: string handle;
+  2: list<TQueryParameter> parameters;
+}
+
+struct TQueryParameterValue {
+  1: bool is_null = false;
+  2: string value;
+}
+
 struct TDataFrame {
   1: binary sm_handle;
   2: i64 sm_size;
@@ -394,6 +411,8 @@ struct TTableDetails {
   11: TTableRefreshInfo refresh_info;
   12: string sharded_column_name;
   13: optional string comment;
+  14: optional string materialized_query;
+  15: optional map<string, i32> materialized_query_epochs;
 }
 
 enum TExpressionRangeType {
@@ -416,6 +435,14 @@ struct TColumnRange {
   10: i32 db_id;
 }
 
+struct TTableStats {
+  1: i32 epoch;
+  2: i64 num_rows;
+  // false if the row count or the column ranges may be wider than the table's content
+  3: bool is_exact;
+  4: map<string, TColumnRange> column_ranges;
+}
+
 struct TDictionaryGeneration {
   1: i32 dict_id;
   2: i64 entry_count;
@@ -697,6 +724,7 @@ service Heavy {
   TTableDetails get_table_details_for_database(1: TSessionId session, 2: string table_name, 3: string database_name) throws (1: TDBException e)
   TTableDetails get_internal_table_details(1: TSessionId session, 2: string table_name, 3: bool include_system_columns = true) throws (1: TDBException e)
   TTableDetails get_internal_table_details_for_database(1: TSessionId session, 2: string table_name, 3: string database_name) throws (1: TDBException e)
+  map<string, TTableDetails> get_internal_materialized_table_details(1: TSessionId session, 2: string database_name) throws (1: TDBException e)
   list<string> get_users(1: TSessionId session) throws (1: TDBException e)
   string get_version() throws (1: TDBException e)
   void start_heap_profile(1: TSessionId session) throws (1: TDBException e)
@@ -713,6 +741,7 @@ service Heavy {
   i32 get_table_epoch_by_name (1: TSessionId session, 2: string table_name)
   list<TTableEpochInfo> get_table_epochs(1: TSessionId session, 2: i32 db_id, 3: i32 table_id)
   void set_table_epochs(1: TSessionId session, 2: i32 db_id, 3: list<TTableEpochInfo> table_epochs)
+  TTableStats get_table_stats(1: TSessionId session, 2: string table_name, 3: list<string> column_names) throws (1: TDBException e)
   TSessionInfo get_session_info(1: TSessionId session) throws (1: TDBException e)
   list<TQueryInfo> get_queries_info(1: TSessionId session) throws (1: TDBException e)
   void set_leaf_info(1: TSessionId session, 2: TLeafInfo leaf_info) throws (1: TDBException e)
@@ -724,6 +753,9 @@ service Heavy {
   void deallocate_df(1: TSessionId session, 2: TDataFrame df, 3: common.TDeviceType device_type, 4: i32 device_id = 0) throws (1: TDBException e)
   void interrupt(1: TSessionId query_session, 2: TSessionId interrupt_session) throws (1: TDBException e)
   TRowDescriptor sql_validate(1: TSessionId session, 2: string query) throws (1: TDBException e)
+  TPreparedQuery sql_prepare(1: TSessionId session, 2: string query) throws (1: TDBException e)
+  TQueryResult sql_execute_prepared(1: TSessionId session, 2: string handle, 3: list<TQueryParameterValue> values, 4: bool column_format, 5: string nonce, 6: i32 first_n = -1, 7: i32 at_most_n = -1) throws (1: TDBException e)
+  void sql_unprepare(1: TSessionId session, 2: string handle) throws (1: TDBException e)
   list<completion_hints.TCompletionHint> get_completion_hints(1: TSessionId session, 2: string sql, 3: i32 cursor) throws (1: TDBException e)
   void set_execution_mode(1: TSessionId session, 2: TExecuteMode mode) throws (1: TDBException e)
   TRenderResult render_vega(1: TSessionId session, 2: i64 widget_id, 3: string vega_json, 4: i32 compression_level, 5: string nonce) throws (1: TDBException e)
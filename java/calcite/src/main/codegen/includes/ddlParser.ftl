@@ -729,11 +729,18 @@ SqlRenameTable SqlRenameTable(Span s) :
  *
  * ALTER TABLE <table_name>
  *
+ * A table can be registered as a materialization of a query, which lets the
+ * planner answer matching queries from the table:
+ *
+ * ALTER TABLE <table_name> ADD MATERIALIZED QUERY ( <query> )
+ * ALTER TABLE <table_name> DROP MATERIALIZED QUERY
+ *
  */
 SqlDdl SqlAlterTable(Span s) :
 {
     SqlAlterTable.Builder sqlAlterTableBuilder = new SqlAlterTable.Builder();
     SqlIdentifier tableName;
+    SqlNode query;
     SqlIdentifier newTableName;
     SqlIdentifier columnName;
     SqlIdentifier newColumnName;
@@ -768,21 +775,40 @@ SqlDdl SqlAlterTable(Span s) :
         )
     |
         <DROP>
-        columnList = DropColumnNodeList()
-        {
-            sqlAlterTableBuilder.dropColumn(columnList);
-        }
+        (
+            LOOKAHEAD(2)
+            <MATERIALIZED> <QUERY>
+            {
+                sqlAlterTableBuilder.dropMaterializedQuery();
+            }
+        |
+            columnList = DropColumnNodeList()
+            {
+                sqlAlterTableBuilder.dropColumn(columnList);
+            }
+        )
     |
         <ADD>
-        [<COLUMN>]
         (
-            columnList = TableElementList()
-            |
-            columnList = NoParenTableElementList()
+            LOOKAHEAD(2)
+            <MATERIALIZED> <QUERY>
+            <LPAREN>
+            query = OrderedQueryOrExpr(ExprContext.ACCEPT_QUERY)
+            <RPAREN>
+            {
+                sqlAlterTableBuilder.addMaterializedQuery(query);
+            }
+        |
+            [<COLUMN>]
+            (
+                columnList = TableElementList()
+                |
+                columnList = NoParenTableElementList()
+            )
+            {
+                sqlAlterTableBuilder.addColumnList(columnList);
+            }
         )
-        {
-            sqlAlterTableBuilder.addColumnList(columnList);
-        }
     |
         columnList = RepeatedAlterColumnList()
         {
@@ -0,0 +1,218 @@
+/*
+ * Copyright 2022 HEAVY.AI, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mapd.calcite.parser;
+
+import org.apache.calcite.sql.SqlBasicCall;
+import org.apache.calcite.sql.SqlCall;
+import org.apache.calcite.sql.SqlCase;
+import org.apache.calcite.sql.SqlFunctionCategory;
+import org.apache.calcite.sql.SqlIdentifier;
+import org.apache.calcite.sql.SqlKind;
+import org.apache.calcite.sql.SqlLiteral;
+import org.apache.calcite.sql.SqlNode;
+import org.apache.calcite.sql.SqlNodeList;
+import org.apache.calcite.sql.SqlNumericLiteral;
+import org.apache.calcite.sql.SqlSelect;
+import org.apache.calcite.sql.SqlSelectKeyword;
+import org.apache.calcite.sql.SqlUnresolvedFunction;
+import org.apache.calcite.sql.hint.SqlHint;
+import org.apache.calcite.sql.parser.SqlParserPos;
+import org.apache.calcite.sql.util.SqlBasicVisitor;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Replaces exact aggregates by their approximate counterparts before validation:
+ * COUNT(DISTINCT x) by APPROX_COUNT_DISTINCT(x), MEDIAN(x) by APPROX_MEDIAN(x) and
+ * PERCENTILE_CONT(p) WITHIN GROUP (ORDER BY x) by APPROX_PERCENTILE(x, p).
+ *
+ * <p>In approximate query mode the whole statement is rewritten, otherwise only the
+ * query blocks carrying an "approximate" hint, including their subqueries. Like the
+ * legacy syntax desugaring, the nodes are replaced in place.
+ */
+class ApproximateAggregateRewriter extends SqlBasicVisitor<Void> {
+  static final String APPROXIMATE_HINT = "approximate";
+
+  private final boolean approximatePercentiles;
+  private final Set<String> appliedRewrites = new LinkedHashSet<>();
+  private int approximateScopes;
+
+  /**
+   * @param approximateQueryMode whether every query block is rewritten
+   * @param approximatePercentiles whether MEDIAN and PERCENTILE_CONT are rewritten,
+   *         APPROX_PERCENTILE is not available in distributed mode
+   */
+  ApproximateAggregateRewriter(
+          boolean approximateQueryMode, boolean approximatePercentiles) {
+    this.approximatePercentiles = approximatePercentiles;
+    this.approximateScopes = approximateQueryMode ? 1 : 0;
+  }
+
+  /**
+   * @return the rewrites which were applied, as "exact -> approximate"
+   */
+  List<String> getAppliedRewrites() {
+    return new ArrayList<>(appliedRewrites);
+  }
+
+  @Override
+  public Void visit(SqlCall call) {
+    final boolean hinted =
+            call instanceof SqlSelect && hasApproximateHint((SqlSelect) call);
+    if (hinted) {
+      approximateScopes++;
+    }
+    try {
+      // an aggregate used as a window function stays exact
+      final boolean replaceable =
+              (call instanceof SqlBasicCall || call instanceof SqlCase)
+              && call.getKind() != SqlKind.OVER;
+      final List<SqlNode> operands = call.getOperandList();
+      for (int i = 0; i < operands.size(); i++) {
+        SqlNode operand = operands.get(i);
+        if (operand == null) {
+          continue;
+        }
+        if (replaceable && operand instanceof SqlCall) {
+          final SqlNode rewritten = rewrite((SqlCall) operand);
+          if (rewritten != operand) {
+            call.setOperand(i, rewritten);
+            operand = rewritten;
+          }
+        }
+        operand.accept(this);
+      }
+    } finally {
+      if (hinted) {
+        approximateScopes--;
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public Void visit(SqlNodeList nodeList) {
+    for (int i = 0; i < nodeList.size(); i++) {
+      SqlNode node = nodeList.get(i);
+      if (node == null) {
+        continue;
+      }
+      if (node instanceof SqlCall) {
+        final SqlNode rewritten = rewrite((SqlCall) node);
+        if (rewritten != node) {
+          nodeList.set(i, rewritten);
+          node = rewritten;
+        }
+      }
+      node.accept(this);
+    }
+    return null;
+  }
+
+  private static boolean hasApproximateHint(SqlSelect select) {
+    if (!select.hasHints()) {
+      return false;
+    }
+    for (SqlNode node : select.getHints()) {
+      final String name = ((SqlHint) node).getName();
+      if (name.equalsIgnoreCase(APPROXIMATE_HINT)
+              || name.equalsIgnoreCase("g_" + APPROXIMATE_HINT)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private SqlNode rewrite(SqlCall call) {
+    if (approximateScopes == 0) {
+      return call;
+    }
+    final SqlParserPos pos = call.getParserPosition();
+    final String name = call.getOperator().getName();
+    if (name.equalsIgnoreCase("COUNT") && call.operandCount() == 1
+            && call.getFunctionQuantifier() != null
+            && call.getFunctionQuantifier().getValue() == SqlSelectKeyword.DISTINCT) {
+      return approximate(
+              "COUNT(DISTINCT)", "APPROX_COUNT_DISTINCT", pos, call.operand(0));
+    }
+    if (!approximatePercentiles) {
+      return call;
+    }
+    if (name.equalsIgnoreCase("MEDIAN") && call.operandCount() == 1
+            && call.getFunctionQuantifier() == null) {
+      return approximate("MEDIAN", "APPROX_MEDIAN", pos, call.operand(0));
+    }
+    if (call.getKind() == SqlKind.WITHIN_GROUP) {
+      return rewritePercentile(call);
+    }
+    return call;
+  }
+
+  private SqlNode rewritePercentile(SqlCall withinGroup) {
+    final SqlNode aggregate = withinGroup.operand(0);
+    final SqlNode orderList = withinGroup.operand(1);
+    if (!(aggregate instanceof SqlCall) || !(orderList instanceof SqlNodeList)
+            || ((SqlNodeList) orderList).size() != 1) {
+      return withinGroup;
+    }
+    final SqlCall percentile = (SqlCall) aggregate;
+    if (!percentile.getOperator().getName().equalsIgnoreCase("PERCENTILE_CONT")
+            || percentile.operandCount() != 1) {
+      return withinGroup;
+    }
+    SqlNode fraction = percentile.operand(0);
+    SqlNode key = ((SqlNodeList) orderList).get(0);
+    // the order of the nulls does not matter, they are ignored by the aggregate
+    if (key.getKind() == SqlKind.NULLS_FIRST || key.getKind() == SqlKind.NULLS_LAST) {
+      key = ((SqlCall) key).operand(0);
+    }
+    if (key.getKind() == SqlKind.DESCENDING) {
+      // APPROX_PERCENTILE only takes a constant fraction of an ascending order
+      if (!(fraction instanceof SqlNumericLiteral)) {
+        return withinGroup;
+      }
+      final BigDecimal value = ((SqlNumericLiteral) fraction).bigDecimalValue();
+      final String complement = BigDecimal.ONE.subtract(value).toPlainString();
+      fraction = SqlLiteral.createExactNumeric(complement, fraction.getParserPosition());
+      key = ((SqlCall) key).operand(0);
+    }
+    return approximate("PERCENTILE_CONT",
+            "APPROX_PERCENTILE",
+            withinGroup.getParserPosition(),
+            key,
+            fraction);
+  }
+
+  private SqlNode approximate(String exactName,
+          String approximateName,
+          SqlParserPos pos,
+          SqlNode... operands) {
+    appliedRewrites.add(exactName + " -> " + approximateName);
+    final SqlUnresolvedFunction function =
+            new SqlUnresolvedFunction(new SqlIdentifier(approximateName, pos),
+                    null,
+                    null,
+                    null,
+                    null,
+                    SqlFunctionCategory.USER_DEFINED_FUNCTION);
+    return function.createCall(null, pos, operands);
+  }
+}
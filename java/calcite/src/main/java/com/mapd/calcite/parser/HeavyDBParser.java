@@ -19,6 +19,7 @@ package com.mapd.calcite.parser;
 import static org.apache.calcite.sql.parser.SqlParserPos.ZERO;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.mapd.calcite.rel.rules.FilterTableFunctionMultiInputTransposeRule;
 import com.mapd.common.SockTransportProperties;
 import com.mapd.metadata.MetaConnect;
@@ -31,10 +32,12 @@ import org.apache.calcite.config.CalciteConnectionConfig;
 import org.apache.calcite.config.CalciteConnectionConfigImpl;
 import org.apache.calcite.config.CalciteConnectionProperty;
 import org.apache.calcite.plan.Context;
+import org.apache.calcite.plan.RelOptMaterialization;
 import org.apache.calcite.plan.RelOptTable;
 import org.apache.calcite.plan.RelOptUtil;
 import org.apache.calcite.plan.hep.HepPlanner;
 import org.apache.calcite.plan.hep.HepProgramBuilder;
+import org.apache.calcite.prepare.HeavyDBCompletionIndex;
 import org.apache.calcite.prepare.HeavyDBPlanner;
 import org.apache.calcite.prepare.SqlIdentifierCapturer;
 import org.apache.calcite.rel.RelNode;
@@ -43,8 +46,10 @@ import org.apache.calcite.rel.RelShuttleImpl;
 import org.apache.calcite.rel.RelWriter;
 import org.apache.calcite.rel.core.TableModify;
 import org.apache.calcite.rel.core.TableModify.Operation;
+import org.apache.calcite.rel.externalize.HeavyDBRelJsonWriter;
 import org.apache.calcite.rel.externalize.HeavyDBRelWriterImpl;
 import org.apache.calcite.rel.externalize.RelWriterImpl;
+import org.apache.calcite.rel.hint.RelHint;
 import org.apache.calcite.rel.logical.LogicalProject;
 import org.apache.calcite.rel.logical.LogicalTableModify;
 import org.apache.calcite.rel.rules.CoreRules;
@@ -77,6 +82,7 @@ import org.apache.calcite.sql.validate.SqlValidator;
 import org.apache.calcite.sql.validate.SqlValidatorImpl;
 import org.apache.calcite.sql2rel.SqlToRelConverter;
 import org.apache.calcite.tools.*;
+import org.apache.calcite.util.CancelFlag;
 import org.apache.calcite.util.Pair;
 import org.apache.calcite.util.Util;
 import org.slf4j.Logger;
@@ -98,6 +104,7 @@ import ai.heavy.thrift.server.TColumnType;
 import ai.heavy.thrift.server.TDatumType;
 import ai.heavy.thrift.server.TEncodingType;
 import ai.heavy.thrift.server.TTableDetails;
+import ai.heavy.thrift.server.TTableStats;
 
 public final class HeavyDBParser {
   public static final ThreadLocal<HeavyDBParser> CURRENT_PARSER = new ThreadLocal<>();
@@ -107,6 +114,22 @@ public final class HeavyDBParser {
   private static final EnumSet<SqlKind> DELETE = EnumSet.of(SqlKind.DELETE);
   private static final EnumSet<SqlKind> UPDATE = EnumSet.of(SqlKind.UPDATE);
   private static final EnumSet<SqlKind> IN = EnumSet.of(SqlKind.IN);
+
+  private static final SqlParser.Config PARSER_CONFIG =
+          SqlParser.configBuilder()
+                  .setConformance(SqlConformanceEnum.LENIENT)
+                  .setUnquotedCasing(Casing.UNCHANGED)
+                  .setCaseSensitive(false)
+                  // allow identifiers of up to 512 chars
+                  .setIdentifierMaxLength(512)
+                  .setParserFactory(ExtendedSqlParser.FACTORY)
+                  .build();
+
+  // statements starting with one of these keywords are queries or DML, all other
+  // statements are tried as DDL first
+  private static final Set<String> QUERY_KEYWORDS = ImmutableSet.of(
+          "SELECT", "WITH", "VALUES", "EXPLAIN", "INSERT", "UPDATE", "DELETE", "MERGE");
+  private static final Pattern FIRST_KEYWORD = Pattern.compile("^\\s*([A-Za-z]+)");
   private static final EnumSet<SqlKind> ARRAY_VALUE =
           EnumSet.of(SqlKind.ARRAY_VALUE_CONSTRUCTOR);
   private static final EnumSet<SqlKind> OTHER_FUNCTION =
@@ -121,6 +144,15 @@ public final class HeavyDBParser {
   private final int dbPort;
   private HeavyDBUser dbUser;
   private SockTransportProperties sock_transport_properties = null;
+  private long planningStartNanos = System.nanoTime();
+  // approximations applied to the aggregates of the last converted statement
+  private List<String> approximateRewrites = Collections.emptyList();
+  private String planFingerprint = null;
+  private List<HeavyDBRelJsonWriter.NodeDigest> nodeDigests = Collections.emptyList();
+  private CancelFlag cancelFlag = null;
+  // schemas of the statement being processed, by upper-case database name, shared by
+  // its parsing, validation and view resolution
+  private final Map<String, HeavyDBSchema> schemaSnapshot = new HashMap<>();
 
   private static Map<String, Boolean> SubqueryCorrMemo = new ConcurrentHashMap<>();
 
@@ -476,15 +508,12 @@ public final class HeavyDBParser {
       }
     };
 
-    final HeavyDBSchema defaultSchema = new HeavyDBSchema(
-            dataDir, this, dbPort, dbUser, sock_transport_properties, dbUser.getDB());
+    final HeavyDBSchema defaultSchema = getSchema(dbUser.getDB());
     final SchemaPlus rootSchema = Frameworks.createRootSchema(true);
     final SchemaPlus defaultSchemaPlus = rootSchema.add(dbUser.getDB(), defaultSchema);
     for (String db : mc.getDatabases()) {
       if (!db.equalsIgnoreCase(dbUser.getDB())) {
-        rootSchema.add(db,
-                new HeavyDBSchema(
-                        dataDir, this, dbPort, dbUser, sock_transport_properties, db));
+        rootSchema.add(db, getSchema(db));
       }
     }
 
@@ -492,14 +521,7 @@ public final class HeavyDBParser {
             Frameworks.newConfigBuilder()
                     .defaultSchema(defaultSchemaPlus)
                     .operatorTable(dbSqlOperatorTable.get())
-                    .parserConfig(SqlParser.configBuilder()
-                                          .setConformance(SqlConformanceEnum.LENIENT)
-                                          .setUnquotedCasing(Casing.UNCHANGED)
-                                          .setCaseSensitive(false)
-                                          // allow identifiers of up to 512 chars
-                                          .setIdentifierMaxLength(512)
-                                          .setParserFactory(ExtendedSqlParser.FACTORY)
-                                          .build())
+                    .parserConfig(PARSER_CONFIG)
                     .sqlToRelConverterConfig(
                             SqlToRelConverter
                                     .configBuilder()
@@ -507,6 +529,9 @@ public final class HeavyDBParser {
                                     .withExpandPredicate(expandPredicate)
                                     // allow as many as possible IN operator values
                                     .withInSubQueryThreshold(Integer.MAX_VALUE)
+                                    // keep large literal IN lists as one value set
+                                    .withInValueSetThreshold(
+                                            HeavyDBSqlOperatorTable.InValueSet.MIN_VALUES)
                                     .withHintStrategyTable(
                                             HeavyDBHintStrategyTable.HINT_STRATEGY_TABLE)
                                     .build())
@@ -516,17 +541,45 @@ public final class HeavyDBParser {
                     .build();
     HeavyDBPlanner planner = new HeavyDBPlanner(config);
     planner.setRestrictions(dbUser.getRestrictions());
+    planner.setCancelFlag(cancelFlag);
     return planner;
   }
 
   public void setUser(HeavyDBUser dbUser) {
     this.dbUser = dbUser;
+    schemaSnapshot.clear();
+  }
+
+  /**
+   * Returns the schema of a database for the statement being processed. The schema is
+   * created once per statement, as it is bound to the user of the statement.
+   */
+  private HeavyDBSchema getSchema(String db) {
+    final String key = db.toUpperCase();
+    HeavyDBSchema schema = schemaSnapshot.get(key);
+    if (schema == null) {
+      schema = new HeavyDBSchema(
+              dataDir, this, dbPort, dbUser, sock_transport_properties, db);
+      schemaSnapshot.put(key, schema);
+    }
+    return schema;
+  }
+
+  /**
+   * Sets the flag that cancels the planning of the statements processed from now on,
+   * null if they can't be cancelled.
+   */
+  public void setCancelFlag(CancelFlag cancelFlag) {
+    this.cancelFlag = cancelFlag;
   }
 
   public static class ProcessResult {
     public String json_str;
     public SqlIdentifierCapturer capturer;
     public boolean is_rel_alg;
+    public Set<ImmutableList<String>> resolved_selects = Collections.emptySet();
+    public String plan_fingerprint;
+    public List<HeavyDBRelJsonWriter.NodeDigest> node_digests = Collections.emptyList();
 
     public ProcessResult(
             String json_str, SqlIdentifierCapturer capturer, boolean is_rel_alg) {
@@ -538,22 +591,115 @@ public final class HeavyDBParser {
 
   public ProcessResult process(String sql, final HeavyDBParserOptions parserOptions)
           throws SqlParseException, ValidationException, RelConversionException {
+    planningStartNanos = System.nanoTime();
+    schemaSnapshot.clear();
+    final ProcessResult ddlResult = processDdl(sql);
+    if (ddlResult != null) {
+      ddlResult.resolved_selects = resolveSelectIdentifiers(ddlResult.capturer);
+      return ddlResult;
+    }
+    // the planner that parses the statement also validates and converts it, and the
+    // identifiers are captured once for the view check and the access list
+    final HeavyDBPlanner planner = getPlanner(
+            true, parserOptions.isWatchdogEnabled(), parserOptions.isDistributedMode());
+    final SqlNode sqlNode = parseSql(sql, parserOptions.isLegacySyntax(), planner);
+    planner.checkCancel();
+    final SqlIdentifierCapturer capture = captureIdentifiers(sqlNode);
+    final Pair<String, Boolean> res;
+    if (sqlNode instanceof JsonSerializableDdl || sqlNode instanceof SqlDdl) {
+      res = processSql(sqlNode, parserOptions);
+    } else {
+      callCount++;
+      res = processSql(sqlNode, planner, capture, parserOptions);
+    }
+    ProcessResult result = new ProcessResult(res.left, capture, res.right);
+    result.resolved_selects = resolveSelectIdentifiers(capture);
+    result.plan_fingerprint = planFingerprint;
+    result.node_digests = nodeDigests;
+    return result;
+  }
+
+  /**
+   * Plans a query containing {@code ?} parameters, whose values are bound to the
+   * returned plan later. The plan reads neither the metadata of the tables nor the
+   * materializations, which may change while it is in use.
+   */
+  public HeavyDBPreparedPlan prepare(String sql, final HeavyDBParserOptions parserOptions)
+          throws SqlParseException, ValidationException, RelConversionException {
+    planningStartNanos = System.nanoTime();
+    schemaSnapshot.clear();
     final HeavyDBPlanner planner = getPlanner(
             true, parserOptions.isWatchdogEnabled(), parserOptions.isDistributedMode());
     final SqlNode sqlNode = parseSql(sql, parserOptions.isLegacySyntax(), planner);
-    Pair<String, Boolean> res = processSql(sqlNode, parserOptions);
-    SqlIdentifierCapturer capture = captureIdentifiers(sqlNode);
-    return new ProcessResult(res.left, capture, res.right);
+    planner.checkCancel();
+    if (!sqlNode.isA(SqlKind.QUERY)) {
+      throw new ValidationException("Only queries can be prepared");
+    }
+    callCount++;
+    final int[] parameterCount = {0};
+    sqlNode.accept(new SqlBasicVisitor<Void>() {
+      @Override
+      public Void visit(SqlDynamicParam param) {
+        parameterCount[0] = Math.max(parameterCount[0], param.getIndex() + 1);
+        return null;
+      }
+    });
+    final SqlIdentifierCapturer capture = captureIdentifiers(sqlNode);
+    parserOptions.setMetadataAnswersEnabled(false);
+    parserOptions.setMaterializedQueryRewriteEnabled(false);
+    approximateRewrites = Collections.emptyList();
+    final RelRoot sqlRel = convertSqlToRelNode(sqlNode, planner, capture, parserOptions);
+    planner.checkCancel();
+    final RelNode project = sqlRel.project();
+    if (project == null) {
+      throw new RuntimeException("Cannot convert the sql to AST");
+    }
+    return new HeavyDBPreparedPlan(
+            project, parameterCount[0], capture, resolveSelectIdentifiers(capture));
+  }
+
+  /**
+   * Serializes a DDL statement without building a planner, which would read the
+   * catalog for every database. DDL statements only need to be parsed.
+   *
+   * @return the result for the statement, or null if it is not a DDL statement or
+   *         could not be parsed on its own, and must go through the planner
+   */
+  private ProcessResult processDdl(String sql) throws SqlParseException {
+    final Matcher keyword = FIRST_KEYWORD.matcher(sql);
+    if (!keyword.find() || QUERY_KEYWORDS.contains(keyword.group(1).toUpperCase())) {
+      return null;
+    }
+    final SqlNode node;
+    try {
+      node = SqlParser.create(sql, PARSER_CONFIG).parseStmt();
+    } catch (SqlParseException e) {
+      // reported by the regular path
+      return null;
+    }
+    final String result;
+    if (node instanceof JsonSerializableDdl) {
+      result = ((JsonSerializableDdl) node).toJsonString();
+    } else if (node instanceof SqlDdl) {
+      result = node.toString();
+    } else {
+      return null;
+    }
+    callCount++;
+    return new ProcessResult(result, captureIdentifiers(node), false);
   }
 
   public String buildRATreeAndPerformQueryOptimization(
           String query, final HeavyDBParserOptions parserOptions) throws IOException {
-    HeavyDBSchema schema = new HeavyDBSchema(
-            dataDir, this, dbPort, dbUser, sock_transport_properties, dbUser.getDB());
+    planningStartNanos = System.nanoTime();
+    schemaSnapshot.clear();
+    HeavyDBSchema schema = getSchema(dbUser.getDB());
     HeavyDBPlanner planner = getPlanner(
             true, parserOptions.isWatchdogEnabled(), parserOptions.isDistributedMode());
 
     planner.setFilterPushDownInfo(parserOptions.getFilterPushDownInfo());
+    planner.setPlanningTimeBudget(
+            planningStartNanos, parserOptions.getPlanningTimeBudgetMs());
     RelRoot optRel = planner.buildRATreeAndPerformQueryOptimization(query, schema);
     optRel = replaceIsTrue(planner.getTypeFactory(), optRel);
     return HeavyDBSerializer.toString(optRel.project());
@@ -588,8 +734,23 @@ public final class HeavyDBParser {
     final HeavyDBPlanner planner = getPlanner(
             true, parserOptions.isWatchdogEnabled(), parserOptions.isDistributedMode());
     planner.advanceToValidate();
+    return processSql(sqlNode, planner, captureIdentifiers(sqlNode), parserOptions);
+  }
 
-    final RelRoot sqlRel = convertSqlToRelNode(sqlNode, planner, parserOptions);
+  /**
+   * Serializes a statement parsed by the given planner, which then validates and
+   * converts it.
+   */
+  private Pair<String, Boolean> processSql(final SqlNode sqlNode,
+          final HeavyDBPlanner planner,
+          final SqlIdentifierCapturer capturer,
+          final HeavyDBParserOptions parserOptions)
+          throws SqlParseException, ValidationException, RelConversionException {
+    approximateRewrites = Collections.emptyList();
+    planFingerprint = null;
+    nodeDigests = Collections.emptyList();
+    final RelRoot sqlRel = convertSqlToRelNode(sqlNode, planner, capturer, parserOptions);
+    planner.checkCancel();
     RelNode project = sqlRel.project();
     if (project == null) {
       throw new RuntimeException("Cannot convert the sql to AST");
@@ -599,25 +760,58 @@ public final class HeavyDBParser {
       RelWriter planWriter = new HeavyDBRelWriterImpl(
               new PrintWriter(sw), SqlExplainLevel.EXPPLAN_ATTRIBUTES, false);
       project.explain(planWriter);
-      return new Pair<String, Boolean>(sw.toString(), true);
+      return new Pair<String, Boolean>(explainApproximations() + sw.toString(), true);
     } else if (parserOptions.isExplain()) {
-      return new Pair<String, Boolean>(RelOptUtil.toString(sqlRel.project()), true);
+      return new Pair<String, Boolean>(
+              explainApproximations() + RelOptUtil.toString(sqlRel.project()), true);
+    }
+    final HeavyDBRelJsonWriter planWriter = new HeavyDBRelJsonWriter();
+    project.explain(planWriter);
+    planFingerprint = planWriter.getPlanFingerprint();
+    nodeDigests = planWriter.getNodeDigests();
+    return new Pair<String, Boolean>(planWriter.asString(), true);
+  }
+
+  // one line per approximation applied to the explained statement
+  private String explainApproximations() {
+    StringBuilder sb = new StringBuilder();
+    for (String rewrite : approximateRewrites) {
+      sb.append("Approximation: ").append(rewrite).append("\n");
     }
-    return new Pair<String, Boolean>(HeavyDBSerializer.toString(project), true);
+    return sb.toString();
   }
 
   public HeavyDBPlanner.CompletionResult getCompletionHints(
           String sql, int cursor, List<String> visible_tables) {
+    // the snapshot of a previous statement is stale by now
+    schemaSnapshot.clear();
+    final HeavyDBCompletionIndex index =
+            HeavyDBCompletionIndex.get(dbUser.getDB(), visible_tables);
+    final HeavyDBPlanner.CompletionResult result = index.getCompletionHints(sql,
+            cursor,
+            dbSqlOperatorTable.get(),
+            PARSER_CONFIG,
+            this::getColumnNames);
+    if (result != null) {
+      return result;
+    }
     return getPlanner().getCompletionHints(sql, cursor, visible_tables);
   }
 
+  private List<String> getColumnNames(String tableName) {
+    final MetaConnect mc =
+            new MetaConnect(dbPort, dataDir, dbUser, this, sock_transport_properties);
+    final Table table = mc.getTable(tableName);
+    return table instanceof HeavyDBTable ? ((HeavyDBTable) table).getColumnNames()
+                                         : Collections.emptyList();
+  }
+
   public HashSet<ImmutableList<String>> resolveSelectIdentifiers(
           SqlIdentifierCapturer capturer) {
     HashSet<ImmutableList<String>> resolved = new HashSet<ImmutableList<String>>();
 
     for (ImmutableList<String> names : capturer.selects) {
-      HeavyDBSchema schema = new HeavyDBSchema(
-              dataDir, this, dbPort, dbUser, sock_transport_properties, names.get(1));
+      HeavyDBSchema schema = getSchema(names.get(1));
       HeavyDBTable table = (HeavyDBTable) schema.getTable(names.get(0));
       if (null == table) {
         throw new RuntimeException("table/view not found: " + names.get(0));
@@ -995,11 +1189,13 @@ public final class HeavyDBParser {
     final HeavyDBPlanner planner = getPlanner(
             true, parserOptions.isWatchdogEnabled(), parserOptions.isDistributedMode());
     final SqlNode sqlNode = parseSql(sql, parserOptions.isLegacySyntax(), planner);
-    return convertSqlToRelNode(sqlNode, planner, parserOptions);
+    return convertSqlToRelNode(
+            sqlNode, planner, captureIdentifiers(sqlNode), parserOptions);
   }
 
   RelRoot convertSqlToRelNode(final SqlNode sqlNode,
           final HeavyDBPlanner HeavyDBPlanner,
+          final SqlIdentifierCapturer capturer,
           final HeavyDBParserOptions parserOptions)
           throws SqlParseException, ValidationException, RelConversionException {
     SqlNode node = sqlNode;
@@ -1050,14 +1246,18 @@ public final class HeavyDBParser {
               node.toSqlString(CalciteSqlDialect.DEFAULT).toString(), false, planner);
     }
 
+    ApproximateAggregateRewriter approximator = new ApproximateAggregateRewriter(
+            parserOptions.isApproximateQueryMode(), !parserOptions.isDistributedMode());
+    node.accept(approximator);
+    approximateRewrites = approximator.getAppliedRewrites();
+
     SqlNode validateR = planner.validate(node);
+    planner.checkCancel();
     planner.setFilterPushDownInfo(parserOptions.getFilterPushDownInfo());
     // check to see if a view is involved in the query
     boolean foundView = false;
-    SqlIdentifierCapturer capturer = captureIdentifiers(sqlNode);
     for (ImmutableList<String> names : capturer.selects) {
-      HeavyDBSchema schema = new HeavyDBSchema(
-              dataDir, this, dbPort, dbUser, sock_transport_properties, names.get(1));
+      HeavyDBSchema schema = getSchema(names.get(1));
       HeavyDBTable table = (HeavyDBTable) schema.getTable(names.get(0));
       if (null == table) {
         throw new RuntimeException("table/view not found: " + names.get(0));
@@ -1067,7 +1267,17 @@ public final class HeavyDBParser {
       }
     }
     RelRoot relRootNode = planner.getRelRoot(validateR);
+    planner.checkCancel();
     relRootNode = replaceIsTrue(planner.getTypeFactory(), relRootNode);
+    planner.setPlanningTimeBudget(
+            planningStartNanos, getPlanningTimeBudgetMs(relRootNode.rel, parserOptions));
+    if (parserOptions.isMaterializedQueryRewriteEnabled()) {
+      planner.setMaterializations(getMaterializations(capturer));
+    }
+    if (!parserOptions.isDistributedMode() && parserOptions.isMetadataAnswersEnabled()) {
+      // in distributed mode the metadata of the leaves is not known here
+      planner.setTableStatsProvider(this::getTableStats);
+    }
     RelNode rootNode = planner.optimizeRATree(
             relRootNode.project(), parserOptions.isViewOptimizeEnabled(), foundView);
     planner.close();
@@ -1079,6 +1289,101 @@ public final class HeavyDBParser {
             Collections.emptyList());
   }
 
+  /**
+   * Collects the materializations which may answer a part of the query: those reading
+   * at least one of the query's tables, and whose tables have not been written to since
+   * the materialization was registered.
+   */
+  private List<RelOptMaterialization> getMaterializations(
+          SqlIdentifierCapturer capturer) {
+    final Set<String> queryTables = new HashSet<>();
+    for (ImmutableList<String> names : capturer.selects) {
+      if (names.size() > 1 && names.get(1).equalsIgnoreCase(dbUser.getDB())) {
+        queryTables.add(names.get(0).toUpperCase());
+      }
+    }
+    if (queryTables.isEmpty()) {
+      return Collections.emptyList();
+    }
+    final MetaConnect mc =
+            new MetaConnect(dbPort, dataDir, dbUser, this, sock_transport_properties);
+    final Map<String, HeavyDBTable> candidates = new LinkedHashMap<>();
+    final Set<String> epochTables = new HashSet<>();
+    for (Map.Entry<String, HeavyDBTable> entry : mc.getMaterializedTables().entrySet()) {
+      final Set<String> tables = entry.getValue().getMaterializedQueryEpochs().keySet();
+      if (tables.stream().anyMatch(name -> queryTables.contains(name.toUpperCase()))) {
+        candidates.put(entry.getKey(), entry.getValue());
+        epochTables.addAll(tables);
+      }
+    }
+    if (candidates.isEmpty()) {
+      return Collections.emptyList();
+    }
+    final Map<String, Integer> epochs = mc.getTableEpochs(epochTables);
+    final List<RelOptMaterialization> materializations = new ArrayList<>();
+    for (Map.Entry<String, HeavyDBTable> entry : candidates.entrySet()) {
+      final String tableName = entry.getKey();
+      final HeavyDBTable table = entry.getValue();
+      if (!table.getMaterializedQueryEpochs().entrySet().stream().allMatch(
+                  epoch -> epoch.getValue().equals(epochs.get(epoch.getKey())))) {
+        HEAVYDBLOGGER.debug("Materialized query of table " + tableName + " is stale");
+        continue;
+      }
+      try {
+        final RelNode tableRel =
+                materializationQueryToRelNode("SELECT * FROM " + tableName);
+        final RelNode queryRel =
+                materializationQueryToRelNode(table.getMaterializedQuery());
+        materializations.add(new RelOptMaterialization(
+                tableRel, queryRel, null, ImmutableList.of(dbUser.getDB(), tableName)));
+      } catch (Exception e) {
+        HEAVYDBLOGGER.warn(
+                "Ignoring the materialized query of table " + tableName + ": " + e);
+      }
+    }
+    return materializations;
+  }
+
+  private TTableStats getTableStats(
+          List<String> qualifiedName, Collection<String> columnNames) {
+    if (qualifiedName.size() != 2
+            || !qualifiedName.get(0).equalsIgnoreCase(dbUser.getDB())) {
+      return null;
+    }
+    final MetaConnect mc =
+            new MetaConnect(dbPort, dataDir, dbUser, this, sock_transport_properties);
+    return mc.getTableStats(qualifiedName.get(1), columnNames);
+  }
+
+  // materialized queries are matched against the query before it is optimized, so they
+  // are converted the same way but not optimized either
+  private RelNode materializationQueryToRelNode(final String sql)
+          throws SqlParseException, ValidationException, RelConversionException {
+    final HeavyDBPlanner planner = getPlanner(true, false, false);
+    try {
+      final SqlNode sqlNode = planner.validate(parseSql(sql, false, planner));
+      return replaceIsTrue(planner.getTypeFactory(), planner.getRelRoot(sqlNode))
+              .project();
+    } finally {
+      planner.close();
+    }
+  }
+
+  // a planning_time_budget(ms) hint takes precedence over the budget of the session
+  private long getPlanningTimeBudgetMs(
+          RelNode root, final HeavyDBParserOptions parserOptions) {
+    for (RelHint hint : HeavyDBPlanner.collectHints(root, "planning_time_budget")) {
+      if (hint.listOptions.size() == 1) {
+        try {
+          return Long.parseLong(hint.listOptions.get(0));
+        } catch (NumberFormatException e) {
+          HEAVYDBLOGGER.warn("Ignoring invalid planning_time_budget hint: " + hint);
+        }
+      }
+    }
+    return parserOptions.getPlanningTimeBudgetMs();
+  }
+
   private RelRoot replaceIsTrue(final RelDataTypeFactory typeFactory, RelRoot root) {
     final RexShuttle callShuttle = new RexShuttle() {
       RexBuilder builder = new RexBuilder(typeFactory);
@@ -32,6 +32,10 @@ public final class HeavyDBParserOptions {
   private boolean isViewOptimizeEnabled;
   private boolean isWatchdogEnabled;
   private boolean distributedMode;
+  private long planningTimeBudgetMs;
+  private boolean materializedQueryRewriteEnabled;
+  private boolean approximateQueryMode;
+  private boolean metadataAnswersEnabled;
 
   public HeavyDBParserOptions(List<FilterPushDownInfo> inFilterPushDownInfo,
           boolean inLegacySyntax,
@@ -47,6 +51,10 @@ public final class HeavyDBParserOptions {
     isViewOptimizeEnabled = inIsViewOptimzeEnabled;
     isWatchdogEnabled = inWatchdogEnabled;
     distributedMode = inDistributedMode;
+    planningTimeBudgetMs = 0;
+    materializedQueryRewriteEnabled = false;
+    approximateQueryMode = false;
+    metadataAnswersEnabled = true;
   }
 
   public HeavyDBParserOptions() {
@@ -57,6 +65,10 @@ public final class HeavyDBParserOptions {
     isViewOptimizeEnabled = false;
     isWatchdogEnabled = false;
     distributedMode = false;
+    planningTimeBudgetMs = 0;
+    materializedQueryRewriteEnabled = false;
+    approximateQueryMode = false;
+    metadataAnswersEnabled = true;
   }
 
   /**
@@ -147,4 +159,52 @@ public final class HeavyDBParserOptions {
   public void setDistributedMode(boolean distributedMode) {
     this.distributedMode = distributedMode;
   }
+
+  /**
+   * @return the time budget (in ms) for the optional optimization phases, zero if
+   *         planning time is unbounded
+   */
+  public long getPlanningTimeBudgetMs() {
+    return planningTimeBudgetMs;
+  }
+
+  public void setPlanningTimeBudgetMs(long planningTimeBudgetMs) {
+    this.planningTimeBudgetMs = planningTimeBudgetMs;
+  }
+
+  /**
+   * @return whether parts of the query may be answered from tables registered as
+   *         materializations of a query
+   */
+  public boolean isMaterializedQueryRewriteEnabled() {
+    return materializedQueryRewriteEnabled;
+  }
+
+  public void setMaterializedQueryRewriteEnabled(
+          boolean materializedQueryRewriteEnabled) {
+    this.materializedQueryRewriteEnabled = materializedQueryRewriteEnabled;
+  }
+
+  /**
+   * @return whether exact aggregates are answered by their approximate counterparts
+   */
+  public boolean isApproximateQueryMode() {
+    return approximateQueryMode;
+  }
+
+  public void setApproximateQueryMode(boolean approximateQueryMode) {
+    this.approximateQueryMode = approximateQueryMode;
+  }
+
+  /**
+   * @return whether aggregates may be answered from the metadata of the tables, which
+   *         only holds until the tables are written to
+   */
+  public boolean isMetadataAnswersEnabled() {
+    return metadataAnswersEnabled;
+  }
+
+  public void setMetadataAnswersEnabled(boolean metadataAnswersEnabled) {
+    this.metadataAnswersEnabled = metadataAnswersEnabled;
+  }
 }
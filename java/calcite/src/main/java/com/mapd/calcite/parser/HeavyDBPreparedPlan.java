@@ -0,0 +1,227 @@
+/*
+ * Copyright 2022 HEAVY.AI, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mapd.calcite.parser;
+
+import com.google.common.collect.ImmutableList;
+
+import org.apache.calcite.prepare.SqlIdentifierCapturer;
+import org.apache.calcite.rel.RelHomogeneousShuttle;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.externalize.HeavyDBRelJsonWriter;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rel.type.RelDataTypeFactory;
+import org.apache.calcite.rex.RexBuilder;
+import org.apache.calcite.rex.RexDynamicParam;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.rex.RexShuttle;
+import org.apache.calcite.rex.RexSubQuery;
+import org.apache.calcite.sql.type.SqlTypeName;
+import org.apache.calcite.util.DateString;
+import org.apache.calcite.util.TimeString;
+import org.apache.calcite.util.TimestampString;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * A query planned once with {@code ?} parameters. Binding values to the parameters
+ * replaces them by literals in the plan, which is then serialized without being
+ * planned again.
+ *
+ * <p>The plan is never modified, so that it may be bound by several threads at once.
+ */
+public class HeavyDBPreparedPlan {
+  private final RelNode plan;
+  private final List<RelDataType> parameterTypes;
+  private final SqlIdentifierCapturer capturer;
+  private final Set<ImmutableList<String>> resolvedSelects;
+
+  HeavyDBPreparedPlan(RelNode plan,
+          int parameterCount,
+          SqlIdentifierCapturer capturer,
+          Set<ImmutableList<String>> resolvedSelects) {
+    this.plan = plan;
+    this.capturer = capturer;
+    this.resolvedSelects = resolvedSelects;
+    final RelDataType[] types = new RelDataType[parameterCount];
+    new ParameterReplacer(param -> {
+      types[param.getIndex()] = param.getType();
+      return param;
+    }).apply(plan);
+    // a parameter the optimizer removed from the plan may be bound to anything
+    final RelDataTypeFactory typeFactory = plan.getCluster().getTypeFactory();
+    final RelDataType anyType = typeFactory.createTypeWithNullability(
+            typeFactory.createSqlType(SqlTypeName.ANY), true);
+    for (int i = 0; i < types.length; i++) {
+      if (types[i] == null) {
+        types[i] = anyType;
+      }
+    }
+    this.parameterTypes = Collections.unmodifiableList(Arrays.asList(types));
+  }
+
+  /**
+   * @return the type of each parameter, in order of appearance in the query
+   */
+  public List<RelDataType> getParameterTypes() {
+    return parameterTypes;
+  }
+
+  public SqlIdentifierCapturer getCapturer() {
+    return capturer;
+  }
+
+  /**
+   * @return the tables selected from, once the views are resolved
+   */
+  public Set<ImmutableList<String>> getResolvedSelects() {
+    return resolvedSelects;
+  }
+
+  /**
+   * @return the serialized plan, in which each parameter is a slot holding its index
+   *         and type
+   */
+  public String toJson() {
+    final HeavyDBRelJsonWriter planWriter = new HeavyDBRelJsonWriter();
+    plan.explain(planWriter);
+    return planWriter.asString();
+  }
+
+  /**
+   * Serializes the plan with the given values of its parameters. Each value is
+   * written as in a SQL literal, without quotes, or is null for NULL.
+   *
+   * @return the writer the plan was serialized with
+   * @throws IllegalArgumentException if the values do not match the parameters
+   */
+  public HeavyDBRelJsonWriter bind(List<String> values) {
+    if (values.size() != parameterTypes.size()) {
+      throw new IllegalArgumentException("The query has " + parameterTypes.size()
+              + " parameters, but " + values.size() + " values were bound");
+    }
+    final RexBuilder rexBuilder = plan.getCluster().getRexBuilder();
+    final List<RexNode> literals = new ArrayList<>(values.size());
+    for (int i = 0; i < values.size(); i++) {
+      try {
+        literals.add(toLiteral(rexBuilder, values.get(i), parameterTypes.get(i)));
+      } catch (IllegalArgumentException ex) {
+        String msg = "Invalid value for parameter " + (i + 1) + " of type "
+                + parameterTypes.get(i) + ": " + ex.getMessage();
+        throw new IllegalArgumentException(msg, ex);
+      }
+    }
+    final RelNode bound =
+            new ParameterReplacer(param -> literals.get(param.getIndex())).apply(plan);
+    final HeavyDBRelJsonWriter planWriter = new HeavyDBRelJsonWriter();
+    bound.explain(planWriter);
+    return planWriter;
+  }
+
+  private static RexNode toLiteral(
+          RexBuilder rexBuilder, String value, RelDataType type) {
+    if (value == null) {
+      if (!type.isNullable()) {
+        throw new IllegalArgumentException("NULL is not allowed");
+      }
+      return rexBuilder.makeNullLiteral(type);
+    }
+    switch (type.getSqlTypeName()) {
+      case ANY:
+        // the parameter is not used by the plan
+        return rexBuilder.makeNullLiteral(type);
+      case BOOLEAN:
+        if (!value.equalsIgnoreCase("true") && !value.equalsIgnoreCase("false")) {
+          throw new IllegalArgumentException("not a boolean: " + value);
+        }
+        return rexBuilder.makeLiteral(Boolean.parseBoolean(value));
+      case TINYINT:
+      case SMALLINT:
+      case INTEGER:
+      case BIGINT:
+        return rexBuilder.makeExactLiteral(
+                new BigDecimal(new BigInteger(value.trim())), type);
+      case DECIMAL:
+        return rexBuilder.makeExactLiteral(new BigDecimal(value.trim()), type);
+      case FLOAT:
+      case REAL:
+      case DOUBLE:
+        return rexBuilder.makeApproxLiteral(new BigDecimal(value.trim()), type);
+      case CHAR:
+      case VARCHAR:
+        // unpadded, as a string literal of the query would be
+        return rexBuilder.makeLiteral(value);
+      case DATE:
+        return rexBuilder.makeDateLiteral(new DateString(value.trim()));
+      case TIME:
+        return rexBuilder.makeTimeLiteral(
+                new TimeString(withoutTrailingZeros(value.trim())), type.getPrecision());
+      case TIMESTAMP:
+        return rexBuilder.makeTimestampLiteral(
+                new TimestampString(withoutTrailingZeros(value.trim())),
+                type.getPrecision());
+      default:
+        throw new IllegalArgumentException("parameters of this type are not supported");
+    }
+  }
+
+  // the time without the trailing zeros of its fraction of a second, such as the ".0"
+  // of a JDBC Timestamp, which Calcite does not accept
+  private static String withoutTrailingZeros(String value) {
+    if (value.indexOf('.') < 0) {
+      return value;
+    }
+    return value.replaceAll("\\.?0+$", "");
+  }
+
+  // replaces the parameters of a plan, including those of its sub-queries
+  private static class ParameterReplacer extends RexShuttle {
+    private final Function<RexDynamicParam, RexNode> replacement;
+    private final RelHomogeneousShuttle relShuttle = new RelHomogeneousShuttle() {
+      @Override
+      public RelNode visit(RelNode other) {
+        return super.visit(other).accept(ParameterReplacer.this);
+      }
+    };
+
+    ParameterReplacer(Function<RexDynamicParam, RexNode> replacement) {
+      this.replacement = replacement;
+    }
+
+    RelNode apply(RelNode rel) {
+      return rel.accept(relShuttle);
+    }
+
+    @Override
+    public RexNode visitDynamicParam(RexDynamicParam dynamicParam) {
+      return replacement.apply(dynamicParam);
+    }
+
+    @Override
+    public RexNode visitSubQuery(RexSubQuery subQuery) {
+      final RexSubQuery visited = (RexSubQuery) super.visitSubQuery(subQuery);
+      final RelNode rel = visited.rel.accept(relShuttle);
+      return rel == visited.rel ? visited : visited.clone(rel);
+    }
+  }
+}
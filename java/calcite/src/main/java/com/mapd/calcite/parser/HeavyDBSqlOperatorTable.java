@@ -55,6 +55,7 @@ import org.apache.calcite.sql.SqlOperandCountRange;
 import org.apache.calcite.sql.SqlOperator;
 import org.apache.calcite.sql.SqlOperatorBinding;
 import org.apache.calcite.sql.SqlOperatorTable;
+import org.apache.calcite.sql.SqlSpecialOperator;
 import org.apache.calcite.sql.SqlSyntax;
 import org.apache.calcite.sql.SqlTableFunction;
 import org.apache.calcite.sql.SqlUtil;
@@ -131,6 +132,8 @@ public class HeavyDBSqlOperatorTable extends ChainedSqlOperatorTable {
   public static final SqlArrayValueConstructorAllowingEmpty ARRAY_VALUE_CONSTRUCTOR =
           new SqlArrayValueConstructorAllowingEmpty();
   public static final SqlFunction TRY_CAST = new TryCast();
+  public static final SqlOperator IN_VALUE_SET = new InValueSet();
+  public static final SqlFunction SAMPLE_RATIO = new SampleRatio();
 
   static {
     try {
@@ -218,7 +221,7 @@ public class HeavyDBSqlOperatorTable extends ChainedSqlOperatorTable {
     addOperator(new Length());
     addOperator(new CharLength());
     addOperator(new KeyForString());
-    addOperator(new SampleRatio());
+    addOperator(SAMPLE_RATIO);
     addOperator(new WidthBucket());
     addOperator(new ArrayLength());
     addOperator(new PgILike());
@@ -406,6 +409,29 @@ public class HeavyDBSqlOperatorTable extends ChainedSqlOperatorTable {
     }
   }
 
+  /**
+   * Planner-internal form of a large literal list {@code x IN (v1, v2, ...)}: the
+   * first operand is the tested expression and the rest are sorted, distinct
+   * literals of one type. It is produced by SqlToRelConverter instead of an OR of
+   * equalities and serialized as a single "value_set"; it is never looked up
+   * while parsing, so it is not registered in the operator table.
+   */
+  public static class InValueSet extends SqlSpecialOperator {
+    // literal lists at least this long are planned as a value set rather than as an
+    // OR of equalities
+    public static final int MIN_VALUES = 64;
+
+    public InValueSet() {
+      super("IN",
+              SqlKind.OTHER,
+              30,
+              true,
+              ReturnTypes.BOOLEAN_NULLABLE,
+              InferTypes.FIRST_KNOWN,
+              null);
+    }
+  }
+
   /**
    * "RAMP" user-defined function.
    */
@@ -3649,6 +3675,21 @@ public class HeavyDBSqlOperatorTable extends ChainedSqlOperatorTable {
     }
   }
 
+  /**
+   * @return whether the operator is an extension function registered at runtime, whose
+   *         implementation may change whenever the runtime functions are registered
+   *         again
+   */
+  public static boolean isRuntimeFunction(SqlOperator operator) {
+    if (operator instanceof ExtFunction) {
+      return ((ExtFunction) operator).sig.isRuntime();
+    }
+    if (operator instanceof ExtTableFunction) {
+      return ((ExtTableFunction) operator).is_runtime;
+    }
+    return false;
+  }
+
   static class ExtFunction extends SqlFunction {
     ExtFunction(final String name, final ExtensionFunction sig) {
       super(name,
@@ -3706,6 +3747,7 @@ public class HeavyDBSqlOperatorTable extends ChainedSqlOperatorTable {
       options = sig.getOptions();
       cursor_field_types = sig.getCursorFieldTypes();
       default_values = sig.getDefaultValues();
+      is_runtime = sig.isRuntime();
     }
 
     // The following method allows for parameter annotation
@@ -4043,6 +4085,7 @@ public class HeavyDBSqlOperatorTable extends ChainedSqlOperatorTable {
     private final Map<String, String> options;
     private final Map<String, List<ExtArgumentType>> cursor_field_types;
     private final Map<String, Comparable<?>> default_values;
+    private final boolean is_runtime;
   }
 
   //
@@ -16,6 +16,7 @@
 
 package com.mapd.calcite.parser;
 
+import com.google.common.collect.ImmutableList;
 import com.mapd.metadata.LinestringSqlType;
 import com.mapd.metadata.PointSqlType;
 import com.mapd.metadata.PolygonSqlType;
@@ -30,25 +31,34 @@ import org.apache.calcite.schema.Table;
 import org.apache.calcite.sql.SqlCall;
 import org.apache.calcite.sql.SqlNode;
 import org.apache.calcite.sql.type.SqlTypeName;
+import org.apache.calcite.util.ImmutableBitSet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 import ai.heavy.thrift.server.TColumnType;
 import ai.heavy.thrift.server.TDatumType;
+import ai.heavy.thrift.server.TPartitionDetail;
 import ai.heavy.thrift.server.TTableDetails;
 import ai.heavy.thrift.server.TTypeInfo;
 
 public class HeavyDBTable implements Table {
   private static final AtomicLong VERSION_PROVIDER = new AtomicLong();
+  private static final ThreadLocal<Boolean> DISTRIBUTED_MODE =
+          ThreadLocal.withInitial(() -> false);
 
   final static Logger HEAVYDBLOGGER = LoggerFactory.getLogger(HeavyDBTable.class);
   private final TTableDetails rowInfo;
   private final long version = VERSION_PROVIDER.incrementAndGet();
   private final HashSet<String> systemColumnNames;
+  private final Statistic statistic;
+  private final Statistic distributedStatistic;
 
   public long getVersion() {
     return version;
@@ -60,6 +70,36 @@ public class HeavyDBTable implements Table {
                                 .filter(row_desc -> row_desc.is_system)
                                 .map(row_desc -> row_desc.col_name)
                                 .collect(Collectors.toCollection(HashSet::new));
+    statistic = Statistics.of(
+            null, getUniqueKeys(), ImmutableList.of(), ImmutableList.of());
+    distributedStatistic = Statistics.of(
+            null, ImmutableList.of(), ImmutableList.of(), ImmutableList.of());
+  }
+
+  /**
+   * Sets whether the queries planned by the current thread run over several leaves. Each
+   * leaf numbers its rows separately, so the rowid is then not a key of any table.
+   */
+  public static void setDistributedMode(boolean distributedMode) {
+    DISTRIBUTED_MODE.set(distributedMode);
+  }
+
+  /**
+   * HeavyDB does not store UNIQUE and PRIMARY KEY constraints, so the only key of a
+   * table is its rowid. The rows of each shard are numbered separately, so the rowid
+   * of a sharded table is not a key.
+   */
+  private List<ImmutableBitSet> getUniqueKeys() {
+    if (rowInfo.getShard_count() > 0) {
+      return ImmutableList.of();
+    }
+    final List<TColumnType> columns = rowInfo.getRow_desc();
+    for (int i = 0; i < columns.size(); i++) {
+      if (columns.get(i).is_system && columns.get(i).col_name.equals("rowid")) {
+        return ImmutableList.of(ImmutableBitSet.of(i));
+      }
+    }
+    return ImmutableList.of();
   }
 
   @Override
@@ -76,9 +116,49 @@ public class HeavyDBTable implements Table {
     return builder.build();
   }
 
+  /**
+   * @return the query whose result this table stores, or null if the table is not
+   *         registered as a materialization
+   */
+  public String getMaterializedQuery() {
+    return rowInfo.isSetMaterialized_query() ? rowInfo.getMaterialized_query() : null;
+  }
+
+  /**
+   * @return the epochs of this table and of the tables read by the materialized query,
+   *         as of the time the materialization was registered
+   */
+  public Map<String, Integer> getMaterializedQueryEpochs() {
+    return rowInfo.isSetMaterialized_query_epochs()
+            ? rowInfo.getMaterialized_query_epochs()
+            : Collections.emptyMap();
+  }
+
+  /**
+   * @return the number of shards of the table over all leaves, 0 if it is not sharded
+   */
+  public long getShardCount() {
+    return rowInfo.getShard_count();
+  }
+
+  /**
+   * @return the column the table is sharded on, null if it is not sharded
+   */
+  public String getShardedColumnName() {
+    final String name = rowInfo.getSharded_column_name();
+    return name == null || name.isEmpty() ? null : name;
+  }
+
+  /**
+   * @return whether every leaf holds all the rows of the table
+   */
+  public boolean isReplicated() {
+    return rowInfo.getPartition_detail() == TPartitionDetail.REPLICATED;
+  }
+
   @Override
   public Statistic getStatistic() {
-    return Statistics.UNKNOWN;
+    return DISTRIBUTED_MODE.get() ? distributedStatistic : statistic;
   }
 
   @Override
@@ -177,4 +257,14 @@ public class HeavyDBTable implements Table {
   public boolean isSystemColumn(final String columnName) {
     return systemColumnNames.contains(columnName);
   }
+
+  /**
+   * @return the names of the columns of the table, without its system columns
+   */
+  public List<String> getColumnNames() {
+    return rowInfo.row_desc.stream()
+            .filter(row_desc -> !row_desc.is_system)
+            .map(row_desc -> row_desc.col_name)
+            .collect(Collectors.toList());
+  }
 }
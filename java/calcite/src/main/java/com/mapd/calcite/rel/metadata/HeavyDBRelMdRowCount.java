@@ -0,0 +1,105 @@
+/*
+ * Copyright 2022 HEAVY.AI, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mapd.calcite.rel.metadata;
+
+import com.google.common.collect.ImmutableList;
+import com.mapd.calcite.rel.rules.MetadataAggregateRule.TableStatsProvider;
+
+import org.apache.calcite.rel.core.TableScan;
+import org.apache.calcite.rel.metadata.BuiltInMetadata;
+import org.apache.calcite.rel.metadata.ChainedRelMetadataProvider;
+import org.apache.calcite.rel.metadata.DefaultRelMetadataProvider;
+import org.apache.calcite.rel.metadata.MetadataDef;
+import org.apache.calcite.rel.metadata.MetadataHandler;
+import org.apache.calcite.rel.metadata.ReflectiveRelMetadataProvider;
+import org.apache.calcite.rel.metadata.RelMetadataProvider;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
+import org.apache.calcite.util.BuiltInMethod;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import ai.heavy.thrift.server.TTableStats;
+
+/**
+ * Estimates the number of rows of table scans from the row count the server keeps in
+ * the metadata of the tables, instead of Calcite's default of 100 rows. The other
+ * operators derive their estimates from the scans as usual.
+ *
+ * <p>{@link #SOURCE} is built once, so that Calcite compiles its metadata handlers
+ * once. The statistics it reads are those set on the planning thread by
+ * {@link #setStatsProvider}, the row count of each table being requested once per
+ * setting. Without statistics, the scans keep their default estimate.
+ */
+public class HeavyDBRelMdRowCount implements MetadataHandler<BuiltInMetadata.RowCount> {
+  private static class RowCounts {
+    final TableStatsProvider statsProvider;
+    final Map<List<String>, Double> rowCounts = new HashMap<>();
+
+    RowCounts(TableStatsProvider statsProvider) {
+      this.statsProvider = statsProvider;
+    }
+  }
+
+  private static final ThreadLocal<RowCounts> CURRENT_ROW_COUNTS = new ThreadLocal<>();
+
+  /**
+   * The default metadata provider, with the row counts of the scans read from the
+   * statistics of the planning thread.
+   */
+  public static final RelMetadataProvider SOURCE =
+          ChainedRelMetadataProvider.of(ImmutableList.of(
+                  ReflectiveRelMetadataProvider.reflectiveSource(
+                          BuiltInMethod.ROW_COUNT.method, new HeavyDBRelMdRowCount()),
+                  DefaultRelMetadataProvider.INSTANCE));
+
+  private HeavyDBRelMdRowCount() {}
+
+  /**
+   * Sets the statistics {@link #SOURCE} reads on this thread, or clears them if null.
+   */
+  public static void setStatsProvider(TableStatsProvider statsProvider) {
+    if (statsProvider == null) {
+      CURRENT_ROW_COUNTS.remove();
+    } else {
+      CURRENT_ROW_COUNTS.set(new RowCounts(statsProvider));
+    }
+  }
+
+  @Override
+  public MetadataDef<BuiltInMetadata.RowCount> getDef() {
+    return BuiltInMetadata.RowCount.DEF;
+  }
+
+  public Double getRowCount(TableScan scan, RelMetadataQuery mq) {
+    final RowCounts current = CURRENT_ROW_COUNTS.get();
+    if (current == null) {
+      return scan.estimateRowCount(mq);
+    }
+    final List<String> qualifiedName = scan.getTable().getQualifiedName();
+    if (!current.rowCounts.containsKey(qualifiedName)) {
+      final TTableStats stats = current.statsProvider.getTableStats(
+              qualifiedName, Collections.emptyList());
+      current.rowCounts.put(
+              qualifiedName, stats == null ? null : (double) stats.getNum_rows());
+    }
+    final Double rowCount = current.rowCounts.get(qualifiedName);
+    return rowCount != null ? rowCount : scan.estimateRowCount(mq);
+  }
+}
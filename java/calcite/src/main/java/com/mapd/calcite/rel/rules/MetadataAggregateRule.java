@@ -0,0 +1,303 @@
+/*
+ * Copyright 2022 HEAVY.AI, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mapd.calcite.rel.rules;
+
+import com.google.common.collect.ImmutableList;
+
+import org.apache.calcite.plan.RelOptCluster;
+import org.apache.calcite.plan.RelOptRuleCall;
+import org.apache.calcite.plan.RelRule;
+import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.RelWriter;
+import org.apache.calcite.rel.core.Aggregate;
+import org.apache.calcite.rel.core.AggregateCall;
+import org.apache.calcite.rel.core.Project;
+import org.apache.calcite.rel.core.TableScan;
+import org.apache.calcite.rel.logical.LogicalValues;
+import org.apache.calcite.rel.rules.TransformationRule;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rex.RexBuilder;
+import org.apache.calcite.rex.RexInputRef;
+import org.apache.calcite.rex.RexLiteral;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.sql.SqlKind;
+import org.apache.calcite.sql.type.SqlTypeName;
+import org.apache.calcite.util.DateString;
+import org.apache.calcite.util.ImmutableBeans;
+import org.apache.calcite.util.TimestampString;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+import ai.heavy.thrift.server.TColumnRange;
+import ai.heavy.thrift.server.TExpressionRangeType;
+import ai.heavy.thrift.server.TTableStats;
+
+/**
+ * Planner rule that answers an aggregate without grouping keys and without filter,
+ * such as {@code SELECT COUNT(*), MIN(x), MAX(x) FROM t}, from the metadata of the
+ * table instead of scanning it. The aggregate is replaced by a single row of values
+ * carrying the epoch of the table the metadata was read at, which the server checks
+ * against the current epoch when it builds the query.
+ *
+ * <p>Only COUNT(*) and the MIN and MAX of numeric, date and timestamp columns are
+ * answered, and only when the metadata of the table is exact: foreign tables,
+ * temporary tables, tables with deleted rows and tables whose metadata is not
+ * recomputed after updates are scanned as usual.
+ */
+public class MetadataAggregateRule
+        extends RelRule<MetadataAggregateRule.Config> implements TransformationRule {
+  final static Logger HEAVYDBLOGGER =
+          LoggerFactory.getLogger(MetadataAggregateRule.class);
+  private static final long SECONDS_PER_DAY = 24 * 60 * 60;
+  private static final long NANOS_PER_SECOND = 1000000000L;
+
+  /** Source of the metadata of the tables. */
+  public interface TableStatsProvider {
+    /**
+     * @return the row count and column ranges of the table, null if not available
+     */
+    TTableStats getTableStats(List<String> qualifiedName, Collection<String> columnNames);
+  }
+
+  /** Creates a MetadataAggregateRule. */
+  protected MetadataAggregateRule(Config config) {
+    super(config);
+    Objects.requireNonNull(config.statsProvider(),
+            "MetadataAggregateRule needs a table statistics provider");
+  }
+
+  @Override
+  public void onMatch(RelOptRuleCall call) {
+    final Aggregate aggregate = call.rel(0);
+    final Project project = call.rels.length == 3 ? call.rel(1) : null;
+    final TableScan scan = call.rel(call.rels.length - 1);
+    if (aggregate.getGroupCount() != 0
+            || aggregate.getGroupType() != Aggregate.Group.SIMPLE
+            || aggregate.getAggCallList().isEmpty() || !aggregate.getHints().isEmpty()) {
+      return;
+    }
+    final List<String> scanFields = scan.getRowType().getFieldNames();
+    final List<String> columnNames = new ArrayList<>();
+    for (AggregateCall aggCall : aggregate.getAggCallList()) {
+      final String columnName = getRangeColumn(aggCall, project, scanFields);
+      if (columnName == null && !isCountStar(aggCall)) {
+        return;
+      }
+      columnNames.add(columnName);
+    }
+    final Set<String> rangeColumns = new LinkedHashSet<>(columnNames);
+    rangeColumns.remove(null);
+    final List<String> qualifiedName = scan.getTable().getQualifiedName();
+    final TTableStats stats =
+            config.statsProvider().getTableStats(qualifiedName, rangeColumns);
+    if (stats == null || !stats.isIs_exact()) {
+      return;
+    }
+    final RexBuilder rexBuilder = aggregate.getCluster().getRexBuilder();
+    final ImmutableList.Builder<RexLiteral> row = ImmutableList.builder();
+    for (int i = 0; i < columnNames.size(); i++) {
+      final AggregateCall aggCall = aggregate.getAggCallList().get(i);
+      final RexLiteral value;
+      if (columnNames.get(i) == null) {
+        value = rexBuilder.makeExactLiteral(
+                BigDecimal.valueOf(stats.getNum_rows()), aggCall.getType());
+      } else {
+        value = rangeLiteral(rexBuilder,
+                stats.getColumn_ranges().get(columnNames.get(i)),
+                aggCall.getAggregation().getKind() == SqlKind.MIN,
+                aggCall.getType());
+      }
+      if (value == null) {
+        return;
+      }
+      row.add(value);
+    }
+    HEAVYDBLOGGER.debug("Answering aggregate from the metadata of " + qualifiedName
+            + " at epoch " + stats.getEpoch());
+    final List<List<Object>> epochGuard = ImmutableList.of(ImmutableList.of(
+            qualifiedName.get(0), qualifiedName.get(1), stats.getEpoch()));
+    call.transformTo(new EpochGuardedValues(aggregate.getCluster(),
+            aggregate.getTraitSet(),
+            aggregate.getRowType(),
+            ImmutableList.of(row.build()),
+            epochGuard));
+  }
+
+  private static boolean isCountStar(AggregateCall aggCall) {
+    return aggCall.getAggregation().getKind() == SqlKind.COUNT
+            && aggCall.getArgList().isEmpty() && !aggCall.isDistinct()
+            && !aggCall.hasFilter();
+  }
+
+  /**
+   * @return the name of the numeric, date or timestamp scan column whose MIN or MAX
+   *         the call computes, null if the call is not such an aggregate
+   */
+  private static String getRangeColumn(
+          AggregateCall aggCall, Project project, List<String> scanFields) {
+    final SqlKind kind = aggCall.getAggregation().getKind();
+    if ((kind != SqlKind.MIN && kind != SqlKind.MAX) || aggCall.getArgList().size() != 1
+            || aggCall.hasFilter()) {
+      return null;
+    }
+    int field = aggCall.getArgList().get(0);
+    if (project != null) {
+      final RexNode arg = project.getProjects().get(field);
+      if (!(arg instanceof RexInputRef)) {
+        return null;
+      }
+      field = ((RexInputRef) arg).getIndex();
+    }
+    switch (aggCall.getType().getSqlTypeName()) {
+      case TINYINT:
+      case SMALLINT:
+      case INTEGER:
+      case BIGINT:
+      case DECIMAL:
+      case FLOAT:
+      case REAL:
+      case DOUBLE:
+      case DATE:
+      case TIMESTAMP:
+        return scanFields.get(field);
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * @return the bound of the column range as a literal of the given type, a null
+   *         literal if the column holds no value, or null if the range is unknown
+   */
+  private static RexLiteral rangeLiteral(
+          RexBuilder rexBuilder, TColumnRange range, boolean min, RelDataType type) {
+    if (range == null) {
+      return null;
+    }
+    if (range.getType() == TExpressionRangeType.INTEGER) {
+      if (range.getInt_min() > range.getInt_max()) {
+        return rexBuilder.makeNullLiteral(type);
+      }
+      final long bound = min ? range.getInt_min() : range.getInt_max();
+      switch (type.getSqlTypeName()) {
+        case DATE:
+          return rexBuilder.makeLiteral(dateOf(bound), type, false);
+        case TIMESTAMP:
+          return rexBuilder.makeLiteral(
+                  timestampOf(bound, type.getPrecision()), type, false);
+        default:
+          final int scale =
+                  type.getSqlTypeName() == SqlTypeName.DECIMAL ? type.getScale() : 0;
+          return rexBuilder.makeExactLiteral(BigDecimal.valueOf(bound, scale), type);
+      }
+    }
+    if (range.getType() == TExpressionRangeType.FLOAT
+            || range.getType() == TExpressionRangeType.DOUBLE) {
+      if (range.getFp_min() > range.getFp_max()) {
+        return rexBuilder.makeNullLiteral(type);
+      }
+      return rexBuilder.makeApproxLiteral(
+              BigDecimal.valueOf(min ? range.getFp_min() : range.getFp_max()), type);
+    }
+    return null;
+  }
+
+  // the metadata of a date holds its seconds since the epoch, whatever its encoding
+  private static DateString dateOf(long epochSeconds) {
+    return DateString.fromDaysSinceEpoch(
+            Math.toIntExact(Math.floorDiv(epochSeconds, SECONDS_PER_DAY)));
+  }
+
+  // the metadata of a timestamp holds its value in units of its precision
+  private static TimestampString timestampOf(long value, int precision) {
+    final long unitsPerSecond = BigDecimal.ONE.scaleByPowerOfTen(precision).longValue();
+    final long epochSeconds = Math.floorDiv(value, unitsPerSecond);
+    final long fraction = Math.floorMod(value, unitsPerSecond);
+    return TimestampString.fromMillisSinceEpoch(epochSeconds * 1000)
+            .withNanos(Math.toIntExact(fraction * (NANOS_PER_SECOND / unitsPerSecond)));
+  }
+
+  /**
+   * Values computed from the metadata of tables, along with the database, name and
+   * epoch of each of these tables. It is written as a LogicalValues with an
+   * additional "epochGuard" attribute.
+   */
+  public static class EpochGuardedValues extends LogicalValues {
+    private final List<List<Object>> epochGuard;
+
+    public EpochGuardedValues(RelOptCluster cluster,
+            RelTraitSet traitSet,
+            RelDataType rowType,
+            ImmutableList<ImmutableList<RexLiteral>> tuples,
+            List<List<Object>> epochGuard) {
+      super(cluster, traitSet, rowType, tuples);
+      this.epochGuard = epochGuard;
+    }
+
+    @Override
+    public LogicalValues copy(RelTraitSet traitSet, List<RelNode> inputs) {
+      assert inputs.isEmpty();
+      return new EpochGuardedValues(
+              getCluster(), traitSet, getRowType(), tuples, epochGuard);
+    }
+
+    @Override
+    public RelWriter explainTerms(RelWriter pw) {
+      return super.explainTerms(pw).item("epochGuard", epochGuard);
+    }
+  }
+
+  /** Rule configuration. */
+  public interface Config extends RelRule.Config {
+    Config AGGREGATE_SCAN =
+            EMPTY.withOperandSupplier(b0
+                         -> b0.operand(Aggregate.class)
+                                    .oneInput(b1
+                                            -> b1.operand(TableScan.class).noInputs()))
+                    .as(Config.class);
+
+    Config AGGREGATE_PROJECT_SCAN =
+            EMPTY.withOperandSupplier(b0
+                         -> b0.operand(Aggregate.class)
+                                    .oneInput(b1
+                                            -> b1.operand(Project.class).oneInput(b2
+                                                    -> b2.operand(TableScan.class)
+                                                               .noInputs())))
+                    .as(Config.class);
+
+    @Override
+    default MetadataAggregateRule toRule() {
+      return new MetadataAggregateRule(this);
+    }
+
+    /** The source of the metadata the aggregates are answered from. */
+    @ImmutableBeans.Property
+    TableStatsProvider statsProvider();
+
+    /** Sets {@link #statsProvider()}. */
+    Config withStatsProvider(TableStatsProvider statsProvider);
+  }
+}
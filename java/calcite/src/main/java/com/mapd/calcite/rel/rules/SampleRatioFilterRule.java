@@ -0,0 +1,147 @@
+/*
+ * Copyright 2022 HEAVY.AI, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mapd.calcite.rel.rules;
+
+import com.mapd.calcite.parser.HeavyDBSqlOperatorTable;
+
+import org.apache.calcite.plan.RelOptRuleCall;
+import org.apache.calcite.plan.RelRule;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.core.Sample;
+import org.apache.calcite.rel.core.TableScan;
+import org.apache.calcite.rel.hint.RelHint;
+import org.apache.calcite.rel.logical.LogicalTableScan;
+import org.apache.calcite.rel.rules.TransformationRule;
+import org.apache.calcite.tools.RelBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Planner rule that turns table sampling into a SAMPLE_RATIO filter placed directly
+ * on the sampled scan, below any join. Two forms of sampling are translated:
+ *
+ * <ul>
+ *   <li>a {@link org.apache.calcite.rel.core.Sample} on top of a scan, which is how
+ *       {@code TABLESAMPLE SYSTEM (p)} and {@code TABLESAMPLE BERNOULLI (p)} are
+ *       converted, p being a percentage;
+ *   <li>a {@code sample(r)} hint attached to a scan, either as a table hint or
+ *       inherited from a query hint, r being a ratio between 0 and 1.
+ * </ul>
+ *
+ * <p>SAMPLE_RATIO selects the same rows on every run, so a REPEATABLE seed has no
+ * effect.
+ */
+public class SampleRatioFilterRule
+        extends RelRule<SampleRatioFilterRule.Config> implements TransformationRule {
+  public static final String SAMPLE_HINT = "sample";
+
+  final static Logger HEAVYDBLOGGER =
+          LoggerFactory.getLogger(SampleRatioFilterRule.class);
+
+  /** Creates a SampleRatioFilterRule. */
+  protected SampleRatioFilterRule(Config config) {
+    super(config);
+  }
+
+  @Override
+  public void onMatch(RelOptRuleCall call) {
+    final RelNode rel = call.rel(0);
+    if (rel instanceof Sample) {
+      onMatchSample(call, (Sample) rel, call.rel(1));
+    } else {
+      onMatchHintedScan(call, (LogicalTableScan) rel);
+    }
+  }
+
+  private static void onMatchSample(RelOptRuleCall call, Sample sample, RelNode input) {
+    if (!(input instanceof TableScan)) {
+      throw new RuntimeException("TABLESAMPLE is only supported on tables.");
+    }
+    final double ratio = sample.getSamplingParameters().getSamplingPercentage();
+    call.transformTo(sampleRatioFilter(call.builder(), input, ratio));
+  }
+
+  private static void onMatchHintedScan(RelOptRuleCall call, LogicalTableScan scan) {
+    Double ratio = null;
+    boolean hinted = false;
+    final List<RelHint> otherHints = new ArrayList<>();
+    for (RelHint hint : scan.getHints()) {
+      if (!hint.hintName.equalsIgnoreCase(SAMPLE_HINT)
+              && !hint.hintName.equalsIgnoreCase("g_" + SAMPLE_HINT)) {
+        otherHints.add(hint);
+        continue;
+      }
+      hinted = true;
+      // a table hint comes before the inherited query hints, so it takes precedence
+      if (ratio == null) {
+        ratio = parseRatio(hint);
+      }
+    }
+    if (!hinted) {
+      return;
+    }
+    // the hint is consumed, so that the rule does not fire again on the new scan
+    final RelNode unhintedScan = scan.withHints(otherHints);
+    call.transformTo(ratio == null
+                    ? unhintedScan
+                    : sampleRatioFilter(call.builder(), unhintedScan, ratio));
+  }
+
+  private static Double parseRatio(RelHint hint) {
+    if (hint.listOptions.size() == 1) {
+      try {
+        final double ratio = Double.parseDouble(hint.listOptions.get(0));
+        if (ratio >= 0 && ratio <= 1) {
+          return ratio;
+        }
+      } catch (NumberFormatException e) {
+        // reported below
+      }
+    }
+    HEAVYDBLOGGER.warn("Ignoring invalid sample hint, expected a ratio between 0 and 1: "
+            + hint);
+    return null;
+  }
+
+  private static RelNode sampleRatioFilter(
+          RelBuilder builder, RelNode scan, double ratio) {
+    return builder.push(scan)
+            .filter(builder.call(
+                    HeavyDBSqlOperatorTable.SAMPLE_RATIO, builder.literal(ratio)))
+            .build();
+  }
+
+  /** Rule configuration. */
+  public interface Config extends RelRule.Config {
+    Config SAMPLE = EMPTY.withOperandSupplier(b0
+                                 -> b0.operand(Sample.class).oneInput(
+                                         b1 -> b1.operand(RelNode.class).anyInputs()))
+                            .as(Config.class);
+
+    Config HINT =
+            EMPTY.withOperandSupplier(b0 -> b0.operand(LogicalTableScan.class).noInputs())
+                    .as(Config.class);
+
+    @Override
+    default SampleRatioFilterRule toRule() {
+      return new SampleRatioFilterRule(this);
+    }
+  }
+}
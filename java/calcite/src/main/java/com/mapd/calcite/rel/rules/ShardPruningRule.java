@@ -0,0 +1,413 @@
+/*
+ * Copyright 2022 HEAVY.AI, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mapd.calcite.rel.rules;
+
+import com.google.common.collect.ImmutableList;
+import com.mapd.calcite.parser.HeavyDBSqlOperatorTable;
+import com.mapd.calcite.parser.HeavyDBTable;
+
+import org.apache.calcite.plan.RelOptCluster;
+import org.apache.calcite.plan.RelOptRuleCall;
+import org.apache.calcite.plan.RelOptTable;
+import org.apache.calcite.plan.RelOptUtil;
+import org.apache.calcite.plan.RelRule;
+import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.RelWriter;
+import org.apache.calcite.rel.core.Filter;
+import org.apache.calcite.rel.core.Project;
+import org.apache.calcite.rel.hint.RelHint;
+import org.apache.calcite.rel.logical.LogicalTableScan;
+import org.apache.calcite.rel.rules.TransformationRule;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rex.RexBuilder;
+import org.apache.calcite.rex.RexCall;
+import org.apache.calcite.rex.RexInputRef;
+import org.apache.calcite.rex.RexLiteral;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.sql.SqlKind;
+import org.apache.calcite.sql.type.SqlTypeName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Planner rule that finds which shards of a sharded table a filter can match, from
+ * the equality and range predicates on the shard key. The scan of the table is
+ * replaced by a scan annotated with the qualifying shards and the range of the shard
+ * key values, so that the executor can skip the other shards without reading them.
+ *
+ * <p>Only integer shard keys are handled, as the shard of a dictionary encoded value
+ * depends on its id in the dictionary, which is not known here. Replicated tables are
+ * not annotated, since every leaf holds all of their rows.
+ */
+public class ShardPruningRule
+        extends RelRule<ShardPruningRule.Config> implements TransformationRule {
+  final static Logger HEAVYDBLOGGER = LoggerFactory.getLogger(ShardPruningRule.class);
+
+  /** Creates a ShardPruningRule. */
+  protected ShardPruningRule(Config config) {
+    super(config);
+  }
+
+  @Override
+  public void onMatch(RelOptRuleCall call) {
+    final Filter filter = call.rel(0);
+    final Project project = call.rels.length == 3 ? call.rel(1) : null;
+    final LogicalTableScan scan = call.rel(call.rels.length - 1);
+    if (scan instanceof ShardPrunedTableScan) {
+      return;
+    }
+    final HeavyDBTable table = scan.getTable().unwrap(HeavyDBTable.class);
+    if (table == null || table.getShardCount() <= 0 || table.isReplicated()
+            || table.getShardedColumnName() == null) {
+      return;
+    }
+    final int key = scan.getRowType().getFieldNames().indexOf(
+            table.getShardedColumnName());
+    if (key < 0) {
+      return;
+    }
+    final RelDataType keyType = scan.getRowType().getFieldList().get(key).getType();
+    if (!SqlTypeName.INT_TYPES.contains(keyType.getSqlTypeName())) {
+      return;
+    }
+    // the fields of the filter input which are the shard key
+    final Set<Integer> keyFields = new HashSet<>();
+    if (project == null) {
+      keyFields.add(key);
+    } else {
+      for (int i = 0; i < project.getProjects().size(); i++) {
+        final RexNode expr = project.getProjects().get(i);
+        if (expr instanceof RexInputRef && ((RexInputRef) expr).getIndex() == key) {
+          keyFields.add(i);
+        }
+      }
+    }
+    final KeyConstraint constraint = new KeyConstraint();
+    for (RexNode conjunct : RelOptUtil.conjunctions(filter.getCondition())) {
+      constraint.add(conjunct, keyFields);
+    }
+    if (!constraint.isConstrained()) {
+      return;
+    }
+    final List<Integer> shards = constraint.getShards(table.getShardCount());
+    final List<RexLiteral> keyRange =
+            constraint.getRange(scan.getCluster().getRexBuilder(), keyType);
+    HEAVYDBLOGGER.debug("Shards of " + scan.getTable().getQualifiedName()
+            + " matching the filter: " + (shards == null ? "all" : shards)
+            + ", shard key range: " + keyRange);
+    final RelNode prunedScan = new ShardPrunedTableScan(scan.getCluster(),
+            scan.getTraitSet(),
+            scan.getHints(),
+            scan.getTable(),
+            table.getShardedColumnName(),
+            shards,
+            keyRange);
+    final RelNode input = project == null
+            ? prunedScan
+            : project.copy(project.getTraitSet(), ImmutableList.of(prunedScan));
+    call.transformTo(filter.copy(filter.getTraitSet(), ImmutableList.of(input)));
+  }
+
+  /** The values of the shard key which may satisfy a conjunction of predicates. */
+  private static class KeyConstraint {
+    // the possible values, null if not restricted to a set
+    private Set<Long> values = null;
+    // the inclusive bounds of the possible values, null if unbounded
+    private Long lower = null;
+    private Long upper = null;
+
+    boolean isConstrained() {
+      return values != null || lower != null || upper != null;
+    }
+
+    void add(RexNode conjunct, Set<Integer> keyFields) {
+      final Set<Long> equalValues = getEqualValues(conjunct, keyFields);
+      if (equalValues != null) {
+        if (values == null) {
+          values = equalValues;
+        } else {
+          values.retainAll(equalValues);
+        }
+        return;
+      }
+      if (!(conjunct instanceof RexCall)) {
+        return;
+      }
+      final RexCall call = (RexCall) conjunct;
+      if (call.getOperands().size() != 2) {
+        return;
+      }
+      // the comparison as key <op> bound
+      final List<RexNode> operands = call.getOperands();
+      SqlKind kind = call.getKind();
+      BigDecimal bound = null;
+      if (isKey(operands.get(0), keyFields)) {
+        bound = getExactValue(operands.get(1));
+      } else if (isKey(operands.get(1), keyFields)) {
+        bound = getExactValue(operands.get(0));
+        kind = kind.reverse();
+      }
+      if (bound == null) {
+        return;
+      }
+      try {
+        switch (kind) {
+          case LESS_THAN:
+            setUpper(bound.setScale(0, RoundingMode.CEILING).longValueExact() - 1);
+            break;
+          case LESS_THAN_OR_EQUAL:
+            setUpper(bound.setScale(0, RoundingMode.FLOOR).longValueExact());
+            break;
+          case GREATER_THAN:
+            setLower(bound.setScale(0, RoundingMode.FLOOR).longValueExact() + 1);
+            break;
+          case GREATER_THAN_OR_EQUAL:
+            setLower(bound.setScale(0, RoundingMode.CEILING).longValueExact());
+            break;
+          default:
+            break;
+        }
+      } catch (ArithmeticException e) {
+        // beyond the range of the key, which does not restrict it
+      }
+    }
+
+    private void setLower(long bound) {
+      lower = lower == null ? bound : Math.max(lower, bound);
+    }
+
+    private void setUpper(long bound) {
+      upper = upper == null ? bound : Math.min(upper, bound);
+    }
+
+    /**
+     * @return the values of the key for which an equality, a disjunction of
+     *         equalities or an IN value set holds, null if the predicate is not one of
+     *         these
+     */
+    private static Set<Long> getEqualValues(RexNode predicate, Set<Integer> keyFields) {
+      final Set<Long> result = new HashSet<>();
+      for (RexNode disjunct : RelOptUtil.disjunctions(predicate)) {
+        if (!(disjunct instanceof RexCall)) {
+          return null;
+        }
+        final RexCall call = (RexCall) disjunct;
+        final List<RexNode> operands = call.getOperands();
+        if (call.getOperator() instanceof HeavyDBSqlOperatorTable.InValueSet) {
+          if (!isKey(operands.get(0), keyFields)) {
+            return null;
+          }
+          for (RexNode operand : operands.subList(1, operands.size())) {
+            if (!addIntegralValue(result, getExactValue(operand))) {
+              return null;
+            }
+          }
+        } else if (call.getKind() == SqlKind.EQUALS && operands.size() == 2) {
+          BigDecimal value = null;
+          if (isKey(operands.get(0), keyFields)) {
+            value = getExactValue(operands.get(1));
+          } else if (isKey(operands.get(1), keyFields)) {
+            value = getExactValue(operands.get(0));
+          }
+          if (!addIntegralValue(result, value)) {
+            return null;
+          }
+        } else {
+          return null;
+        }
+      }
+      return result;
+    }
+
+    // adds an integral value, a fractional one matching no key; false if there is none
+    private static boolean addIntegralValue(Set<Long> values, BigDecimal value) {
+      if (value == null) {
+        return false;
+      }
+      try {
+        values.add(value.longValueExact());
+      } catch (ArithmeticException e) {
+        // a fractional value or one beyond the range of the key matches no key
+      }
+      return true;
+    }
+
+    private static boolean isKey(RexNode node, Set<Integer> keyFields) {
+      return node instanceof RexInputRef
+              && keyFields.contains(((RexInputRef) node).getIndex());
+    }
+
+    private static BigDecimal getExactValue(RexNode node) {
+      if (!(node instanceof RexLiteral)) {
+        return null;
+      }
+      final Comparable value = ((RexLiteral) node).getValue();
+      return value instanceof BigDecimal ? (BigDecimal) value : null;
+    }
+
+    /**
+     * @return the sorted shards holding the possible values, null if they may be in
+     *         any shard
+     */
+    List<Integer> getShards(long shardCount) {
+      Set<Long> keys = values;
+      if (keys == null && lower != null && upper != null) {
+        if (lower > upper) {
+          return new ArrayList<>();
+        }
+        // the difference overflows to a negative value for the widest ranges
+        final long width = upper - lower;
+        if (width < 0 || width >= shardCount) {
+          return null;
+        }
+        keys = new HashSet<>();
+        for (long value = lower; value <= upper; value++) {
+          keys.add(value);
+        }
+      }
+      if (keys == null) {
+        return null;
+      }
+      final TreeSet<Integer> shards = new TreeSet<>();
+      for (long value : keys) {
+        if ((lower == null || value >= lower) && (upper == null || value <= upper)) {
+          // as SHARD_FOR_KEY on the server
+          shards.add((int) ((value % shardCount + shardCount) % shardCount));
+        }
+      }
+      return new ArrayList<>(shards);
+    }
+
+    /**
+     * @return the inclusive bounds of the possible values, null for an unbounded side,
+     *         or null if no value is possible
+     */
+    List<RexLiteral> getRange(RexBuilder rexBuilder, RelDataType keyType) {
+      Long low = lower;
+      Long high = upper;
+      if (values != null) {
+        Long min = null;
+        Long max = null;
+        for (long value : values) {
+          if ((low == null || value >= low) && (high == null || value <= high)) {
+            min = min == null ? value : Math.min(min, value);
+            max = max == null ? value : Math.max(max, value);
+          }
+        }
+        if (min == null) {
+          return null;
+        }
+        low = min;
+        high = max;
+      }
+      if (low != null && high != null && low > high) {
+        return null;
+      }
+      final List<RexLiteral> range = new ArrayList<>(2);
+      range.add(toLiteral(rexBuilder, low, keyType));
+      range.add(toLiteral(rexBuilder, high, keyType));
+      return range;
+    }
+
+    private static RexLiteral toLiteral(
+            RexBuilder rexBuilder, Long value, RelDataType keyType) {
+      return value == null
+              ? null
+              : rexBuilder.makeExactLiteral(BigDecimal.valueOf(value), keyType);
+    }
+  }
+
+  /**
+   * Scan of a sharded table which only needs to read some of its shards. It is
+   * written as a LogicalTableScan with the additional attributes "shardKey", "shards",
+   * the shards which may hold matching rows, and "shardKeyRange", the inclusive
+   * bounds of the matching shard key values, null for an unbounded side. The shards
+   * are derived from the literals of the filter, so they are part of the plan shape.
+   * The server does not read these attributes yet.
+   */
+  public static class ShardPrunedTableScan extends LogicalTableScan {
+    private final String shardKey;
+    private final List<Integer> shards;
+    private final List<RexLiteral> keyRange;
+
+    public ShardPrunedTableScan(RelOptCluster cluster,
+            RelTraitSet traitSet,
+            List<RelHint> hints,
+            RelOptTable table,
+            String shardKey,
+            List<Integer> shards,
+            List<RexLiteral> keyRange) {
+      super(cluster, traitSet, hints, table);
+      this.shardKey = shardKey;
+      this.shards = shards;
+      this.keyRange = keyRange;
+    }
+
+    @Override
+    public RelNode withHints(List<RelHint> hintList) {
+      return new ShardPrunedTableScan(getCluster(),
+              traitSet,
+              hintList,
+              table,
+              shardKey,
+              shards,
+              keyRange);
+    }
+
+    @Override
+    public RelWriter explainTerms(RelWriter pw) {
+      return super.explainTerms(pw)
+              .item("shardKey", shardKey)
+              .itemIf("shards", shards, shards != null)
+              .itemIf("shardKeyRange", keyRange, keyRange != null);
+    }
+  }
+
+  /** Rule configuration. */
+  public interface Config extends RelRule.Config {
+    Config FILTER_SCAN =
+            EMPTY.withOperandSupplier(b0
+                         -> b0.operand(Filter.class)
+                                    .oneInput(b1
+                                            -> b1.operand(LogicalTableScan.class)
+                                                       .noInputs()))
+                    .as(Config.class);
+
+    Config FILTER_PROJECT_SCAN =
+            EMPTY.withOperandSupplier(b0
+                         -> b0.operand(Filter.class)
+                                    .oneInput(b1
+                                            -> b1.operand(Project.class).oneInput(b2
+                                                    -> b2.operand(LogicalTableScan.class)
+                                                               .noInputs())))
+                    .as(Config.class);
+
+    @Override
+    default ShardPruningRule toRule() {
+      return new ShardPruningRule(this);
+    }
+  }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2022 HEAVY.AI, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mapd.calcite.rel.rules;
+
+import com.google.common.collect.ImmutableList;
+
+import org.apache.calcite.plan.RelOptRuleCall;
+import org.apache.calcite.plan.RelRule;
+import org.apache.calcite.plan.hep.HepRelVertex;
+import org.apache.calcite.rel.RelCollation;
+import org.apache.calcite.rel.RelCollations;
+import org.apache.calcite.rel.RelFieldCollation;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.core.JoinRelType;
+import org.apache.calcite.rel.logical.LogicalJoin;
+import org.apache.calcite.rel.logical.LogicalProject;
+import org.apache.calcite.rel.logical.LogicalSort;
+import org.apache.calcite.rel.logical.LogicalUnion;
+import org.apache.calcite.rel.metadata.RelMdUtil;
+import org.apache.calcite.rel.rules.TransformationRule;
+import org.apache.calcite.rex.RexInputRef;
+import org.apache.calcite.rex.RexLiteral;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.rex.RexOver;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Planner rule that copies a {@link org.apache.calcite.rel.logical.LogicalSort}
+ * with a fetch limit below a {@link org.apache.calcite.rel.logical.LogicalProject},
+ * whose input is a UNION ALL or an outer join, so that the sort push-down rules can
+ * reach it. Sorts over other projects are left alone, the copy would only repeat
+ * the sort.
+ *
+ * <p>The original sort stays on top. The copy sorts on the project inputs the sort
+ * keys refer to and fetches offset + fetch rows without an offset. Projects computing
+ * window functions are left alone, since limiting their input would change the
+ * window results.
+ *
+ * @see org.apache.calcite.rel.rules.CoreRules#SORT_UNION_TRANSPOSE
+ * @see org.apache.calcite.rel.rules.CoreRules#SORT_JOIN_TRANSPOSE
+ */
+public class SortProjectCopyRule
+        extends RelRule<SortProjectCopyRule.Config> implements TransformationRule {
+  /** Creates a SortProjectCopyRule. */
+  protected SortProjectCopyRule(Config config) {
+    super(config);
+  }
+
+  @Override
+  public void onMatch(RelOptRuleCall call) {
+    final LogicalSort sort = call.rel(0);
+    final LogicalProject project = call.rel(1);
+    if (sort.fetch == null || RexOver.containsOver(project.getProjects(), null)) {
+      return;
+    }
+    final RexNode fetch;
+    if (sort.offset == null) {
+      fetch = sort.fetch;
+    } else if (sort.offset instanceof RexLiteral && sort.fetch instanceof RexLiteral) {
+      fetch = sort.getCluster().getRexBuilder().makeExactLiteral(
+              BigDecimal.valueOf(RexLiteral.intValue(sort.offset)
+                      + RexLiteral.intValue(sort.fetch)));
+    } else {
+      return;
+    }
+    final List<RelFieldCollation> fieldCollations = new ArrayList<>();
+    for (RelFieldCollation fieldCollation : sort.getCollation().getFieldCollations()) {
+      final RexNode sortKey = project.getProjects().get(fieldCollation.getFieldIndex());
+      if (!(sortKey instanceof RexInputRef)) {
+        return;
+      }
+      fieldCollations.add(
+              fieldCollation.withFieldIndex(((RexInputRef) sortKey).getIndex()));
+    }
+    final RelCollation collation = RelCollations.of(fieldCollations);
+    final RelNode input = project.getInput();
+    if (RelMdUtil.checkInputForCollationAndLimit(
+                call.getMetadataQuery(), input, collation, null, fetch)) {
+      // the input is already sorted and limited, e.g. by an earlier copy
+      return;
+    }
+    final RelNode limitedInput = LogicalSort.create(input, collation, null, fetch);
+    final RelNode newProject =
+            project.copy(project.getTraitSet(), ImmutableList.of(limitedInput));
+    call.transformTo(sort.copy(sort.getTraitSet(), ImmutableList.of(newProject)));
+  }
+
+  // whether the sort push-down rules can copy a limited sort into the inputs of rel
+  private static boolean isLimitPushDownTarget(RelNode rel) {
+    if (rel instanceof HepRelVertex) {
+      rel = ((HepRelVertex) rel).getCurrentRel();
+    }
+    if (rel instanceof LogicalUnion) {
+      return ((LogicalUnion) rel).all;
+    }
+    if (rel instanceof LogicalJoin) {
+      final JoinRelType joinType = ((LogicalJoin) rel).getJoinType();
+      return joinType == JoinRelType.LEFT || joinType == JoinRelType.RIGHT;
+    }
+    return false;
+  }
+
+  /** Rule configuration. */
+  public interface Config extends RelRule.Config {
+    Config DEFAULT =
+            EMPTY.withOperandSupplier(b0
+                         -> b0.operand(LogicalSort.class)
+                                    .oneInput(b1
+                                            -> b1.operand(LogicalProject.class)
+                                                       .predicate(p
+                                                               -> isLimitPushDownTarget(
+                                                                       p.getInput()))
+                                                       .anyInputs()))
+                    .as(Config.class);
+
+    @Override
+    default SortProjectCopyRule toRule() {
+      return new SortProjectCopyRule(this);
+    }
+  }
+}
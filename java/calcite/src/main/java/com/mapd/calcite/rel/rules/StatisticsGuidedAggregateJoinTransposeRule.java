@@ -0,0 +1,78 @@
+/*
+ * Copyright 2022 HEAVY.AI, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mapd.calcite.rel.rules;
+
+import org.apache.calcite.plan.RelOptRuleCall;
+import org.apache.calcite.rel.core.Aggregate;
+import org.apache.calcite.rel.core.Join;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
+import org.apache.calcite.rel.rules.AggregateJoinTransposeRule;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Variant of {@link AggregateJoinTransposeRule} which only pushes an aggregate
+ * below a join when the estimated number of groups is a small fraction of the
+ * number of rows produced by the join. Pre-aggregating the join inputs pays off
+ * when it collapses a large fact table on its join key, but only adds work when
+ * the aggregate barely reduces its input.
+ */
+public class StatisticsGuidedAggregateJoinTransposeRule
+        extends AggregateJoinTransposeRule {
+  final static Logger HEAVYDBLOGGER =
+          LoggerFactory.getLogger(StatisticsGuidedAggregateJoinTransposeRule.class);
+
+  public static final double DEFAULT_MAX_GROUP_RATIO = 0.1;
+
+  private final double maxGroupRatio;
+
+  protected StatisticsGuidedAggregateJoinTransposeRule(
+          Config config, double maxGroupRatio) {
+    super(config);
+    this.maxGroupRatio = maxGroupRatio;
+  }
+
+  @Override
+  public void onMatch(RelOptRuleCall call) {
+    final Aggregate aggregate = call.rel(0);
+    final Join join = call.rel(1);
+    final RelMetadataQuery mq = call.getMetadataQuery();
+    final Double inputRowCount = mq.getRowCount(join);
+    final Double groupCount =
+            mq.getDistinctRowCount(join, aggregate.getGroupSet(), null);
+    if (inputRowCount == null || groupCount == null
+            || groupCount > maxGroupRatio * inputRowCount) {
+      HEAVYDBLOGGER.debug("Not pushing aggregate below join, estimated " + groupCount
+              + " groups for " + inputRowCount + " rows");
+      return;
+    }
+    super.onMatch(call);
+  }
+
+  /** Rule configuration. */
+  public interface Config extends AggregateJoinTransposeRule.Config {
+    Config DEFAULT = AggregateJoinTransposeRule.Config.EXTENDED.as(Config.class);
+
+    @Override
+    default StatisticsGuidedAggregateJoinTransposeRule toRule() {
+      return toRule(DEFAULT_MAX_GROUP_RATIO);
+    }
+
+    default StatisticsGuidedAggregateJoinTransposeRule toRule(double maxGroupRatio) {
+      return new StatisticsGuidedAggregateJoinTransposeRule(this, maxGroupRatio);
+    }
+  }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2022 HEAVY.AI, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mapd.calcite.rel.rules;
+
+import org.apache.calcite.plan.RelOptRuleCall;
+import org.apache.calcite.plan.RelOptUtil;
+import org.apache.calcite.plan.RelRule;
+import org.apache.calcite.rel.core.Project;
+import org.apache.calcite.rel.hint.RelHint;
+import org.apache.calcite.rel.logical.LogicalProject;
+import org.apache.calcite.rel.rules.TransformationRule;
+import org.apache.calcite.rex.RexInputRef;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.rex.RexOver;
+import org.apache.calcite.rex.RexVisitorImpl;
+import org.apache.calcite.rex.RexWindow;
+import org.apache.calcite.util.ImmutableBitSet;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Planner rule that merges a {@link org.apache.calcite.rel.logical.LogicalProject}
+ * computing window functions into the project below it when that project computes
+ * window functions over the same partitioning and ordering. The executor partitions
+ * and sorts the input of a project once per distinct window spec, so the window
+ * functions of both projects then share that work.
+ *
+ * <p>The merge only happens if the window functions of the top project do not read
+ * the window function results of the bottom one, which would nest them, and if the
+ * top project only passes those results through.
+ */
+public class WindowProjectMergeRule
+        extends RelRule<WindowProjectMergeRule.Config> implements TransformationRule {
+  /** Creates a WindowProjectMergeRule. */
+  protected WindowProjectMergeRule(Config config) {
+    super(config);
+  }
+
+  @Override
+  public void onMatch(RelOptRuleCall call) {
+    final LogicalProject topProject = call.rel(0);
+    final LogicalProject bottomProject = call.rel(1);
+    final Set<String> topSpecs = groupWindows(topProject).keySet();
+    final Set<String> bottomSpecs = groupWindows(bottomProject).keySet();
+    if (Collections.disjoint(topSpecs, bottomSpecs)) {
+      return;
+    }
+    final ImmutableBitSet.Builder windowFields = ImmutableBitSet.builder();
+    for (int i = 0; i < bottomProject.getProjects().size(); i++) {
+      if (RexOver.containsOver(bottomProject.getProjects().get(i))) {
+        windowFields.set(i);
+      }
+    }
+    final ImmutableBitSet bottomWindowFields = windowFields.build();
+    for (RexNode project : topProject.getProjects()) {
+      if (!(project instanceof RexInputRef)
+              && RelOptUtil.InputFinder.bits(project).intersects(bottomWindowFields)) {
+        return;
+      }
+    }
+    final List<RexNode> mergedProjects =
+            RelOptUtil.pushPastProject(topProject.getProjects(), bottomProject);
+    // the merged project stands for both, so it keeps the hints of both
+    final Set<RelHint> hints = new LinkedHashSet<>(topProject.getHints());
+    hints.addAll(bottomProject.getHints());
+    call.transformTo(LogicalProject.create(bottomProject.getInput(),
+            new ArrayList<>(hints),
+            mergedProjects,
+            topProject.getRowType()));
+  }
+
+  /**
+   * Groups the window functions computed by a project by their spec, the partition
+   * and order keys the executor partitions and sorts the input on. The frame is not
+   * part of the spec since it does not change the partitions.
+   *
+   * @return the ordinals of the project expressions computing a window function
+   *         with each spec, in the order the specs first occur
+   */
+  public static Map<String, List<Integer>> groupWindows(Project project) {
+    final Map<String, List<Integer>> groups = new LinkedHashMap<>();
+    for (int i = 0; i < project.getProjects().size(); i++) {
+      final Set<String> specs = new LinkedHashSet<>();
+      project.getProjects().get(i).accept(new RexVisitorImpl<Void>(true) {
+        @Override
+        public Void visitOver(RexOver over) {
+          specs.add(windowSpec(over.getWindow()));
+          return super.visitOver(over);
+        }
+      });
+      for (String spec : specs) {
+        groups.computeIfAbsent(spec, k -> new ArrayList<>()).add(i);
+      }
+    }
+    return groups;
+  }
+
+  private static String windowSpec(RexWindow window) {
+    return "PARTITION BY " + window.partitionKeys + " ORDER BY " + window.orderKeys;
+  }
+
+  /** Rule configuration. */
+  public interface Config extends RelRule.Config {
+    Config DEFAULT =
+            EMPTY.withOperandSupplier(b0
+                         -> b0.operand(LogicalProject.class)
+                                    .oneInput(b1
+                                            -> b1.operand(LogicalProject.class)
+                                                       .anyInputs()))
+                    .as(Config.class);
+
+    @Override
+    default WindowProjectMergeRule toRule() {
+      return new WindowProjectMergeRule(this);
+    }
+  }
+}
@@ -27,6 +27,7 @@ import com.mapd.calcite.parser.HeavyDBUser;
 import com.mapd.calcite.parser.HeavyDBView;
 import com.mapd.common.SockTransportProperties;
 
+import org.apache.calcite.prepare.HeavyDBCompletionIndex;
 import org.apache.calcite.schema.Table;
 import org.apache.thrift.TException;
 import org.apache.thrift.protocol.TBinaryProtocol;
@@ -47,7 +48,10 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -61,6 +65,7 @@ import ai.heavy.thrift.server.TDBInfo;
 import ai.heavy.thrift.server.TDatumType;
 import ai.heavy.thrift.server.TEncodingType;
 import ai.heavy.thrift.server.TTableDetails;
+import ai.heavy.thrift.server.TTableStats;
 import ai.heavy.thrift.server.TTypeInfo;
 
 public class MetaConnect {
@@ -102,6 +107,9 @@ public class MetaConnect {
           new ConcurrentHashMap<>();
   private static volatile Map<List<String>, Table> DB_TABLE_DETAILS =
           new ConcurrentHashMap<>();
+  // the materialized tables each user can access, by database and user name
+  private static volatile Map<List<String>, List<String>> USER_TO_MATERIALIZED_TABLES =
+          new ConcurrentHashMap<>();
   private final SockTransportProperties sock_transport_properties;
 
   public MetaConnect(int dbPort,
@@ -236,6 +244,140 @@ public class MetaConnect {
     }
   }
 
+  /**
+   * Forgets the materialized tables each user can access, as a GRANT or a REVOKE may
+   * change them, also through a role.
+   */
+  public static void invalidatePrivileges() {
+    USER_TO_MATERIALIZED_TABLES.clear();
+  }
+
+  /**
+   * Returns the tables of the database which are registered as materializations of a
+   * query, by name. Only tables the current user can access are returned, and they are
+   * only known when connected to the server.
+   */
+  public Map<String, HeavyDBTable> getMaterializedTables() {
+    Map<String, HeavyDBTable> tables = new LinkedHashMap<>();
+    if (dbPort == -1 || currentUser == null) {
+      return tables;
+    }
+    String db = default_db.toUpperCase();
+    List<String> key = ImmutableList.of(db, currentUser.getUser());
+    List<String> tableNames = USER_TO_MATERIALIZED_TABLES.get(key);
+    if (tableNames == null) {
+      Map<String, TTableDetails> details = get_materialized_table_details();
+      if (details == null) {
+        return tables;
+      }
+      tableNames = new ArrayList<>();
+      for (Map.Entry<String, TTableDetails> entry : details.entrySet()) {
+        String tableName = entry.getKey();
+        DB_TABLE_DETAILS.putIfAbsent(ImmutableList.of(db, tableName.toUpperCase()),
+                new HeavyDBTable(entry.getValue()));
+        tableNames.add(tableName);
+      }
+      USER_TO_MATERIALIZED_TABLES.put(key, tableNames);
+    }
+    for (String tableName : tableNames) {
+      HeavyDBTable table = getTableIfAccessible(tableName);
+      if (table != null && table.getMaterializedQuery() != null) {
+        tables.put(tableName, table);
+      }
+    }
+    return tables;
+  }
+
+  // the details of all materialized tables the current user can access, in one call,
+  // or null if they cannot be read
+  private Map<String, TTableDetails> get_materialized_table_details() {
+    try {
+      TTransport transport =
+              sock_transport_properties.openClientTransport("localhost", dbPort);
+      if (!transport.isOpen()) transport.open();
+      TProtocol protocol = new TBinaryProtocol(transport);
+      Heavy.Client client = new Heavy.Client(protocol);
+      Map<String, TTableDetails> details = client.get_internal_materialized_table_details(
+              currentUser.getSession(), default_db);
+      transport.close();
+      return details;
+    } catch (TDBException ex) {
+      HEAVYDBLOGGER.error(ex.getError_msg());
+    } catch (TException ex) {
+      HEAVYDBLOGGER.error(ex.toString());
+    }
+    return null;
+  }
+
+  private HeavyDBTable getTableIfAccessible(String tableName) {
+    try {
+      Table table = getTable(tableName);
+      return table instanceof HeavyDBTable ? (HeavyDBTable) table : null;
+    } catch (RuntimeException e) {
+      HEAVYDBLOGGER.debug("Skipping table " + tableName + ": " + e.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * Returns the current epochs of the given tables. Epochs are only known when
+   * connected to the server, and tables whose epoch cannot be read are left out.
+   */
+  public Map<String, Integer> getTableEpochs(Collection<String> tableNames) {
+    Map<String, Integer> epochs = new HashMap<>();
+    if (dbPort == -1 || currentUser == null) {
+      return epochs;
+    }
+    try {
+      TTransport transport =
+              sock_transport_properties.openClientTransport("localhost", dbPort);
+      if (!transport.isOpen()) transport.open();
+      TProtocol protocol = new TBinaryProtocol(transport);
+      Heavy.Client client = new Heavy.Client(protocol);
+      for (String tableName : tableNames) {
+        try {
+          epochs.put(tableName,
+                  client.get_table_epoch_by_name(currentUser.getSession(), tableName));
+        } catch (TDBException ex) {
+          HEAVYDBLOGGER.debug("No epoch for table " + tableName + ": "
+                  + ex.getError_msg());
+        }
+      }
+      transport.close();
+    } catch (TException ex) {
+      HEAVYDBLOGGER.error(ex.toString());
+    }
+    return epochs;
+  }
+
+  /**
+   * Returns the row count and the ranges of the given columns of a table, as kept in
+   * its metadata. Statistics are only known when connected to the server, null is
+   * returned otherwise or when they cannot be read.
+   */
+  public TTableStats getTableStats(String tableName, Collection<String> columnNames) {
+    if (dbPort == -1 || currentUser == null) {
+      return null;
+    }
+    try {
+      TTransport transport =
+              sock_transport_properties.openClientTransport("localhost", dbPort);
+      if (!transport.isOpen()) transport.open();
+      TProtocol protocol = new TBinaryProtocol(transport);
+      Heavy.Client client = new Heavy.Client(protocol);
+      TTableStats stats = client.get_table_stats(
+              currentUser.getSession(), tableName, new ArrayList<>(columnNames));
+      transport.close();
+      return stats;
+    } catch (TDBException ex) {
+      HEAVYDBLOGGER.debug("No statistics for table " + tableName + ": "
+              + ex.getError_msg());
+    } catch (TException ex) {
+      HEAVYDBLOGGER.error(ex.toString());
+    }
+    return null;
+  }
+
   public Set<String> getTables() {
     Set<String> mSet = DATABASE_TO_TABLES.get(default_db.toUpperCase());
     if (mSet != null && mSet.size() > 0) {
@@ -946,6 +1088,13 @@ public class MetaConnect {
       DB_TABLE_DETAILS.remove(
               ImmutableList.of(schema.toUpperCase(), table.toUpperCase()));
     }
+    // Any change may register or drop a materialization, or drop one of its tables
+    for (List<String> key : new HashSet<>(USER_TO_MATERIALIZED_TABLES.keySet())) {
+      if (key.get(0).equals(schema.toUpperCase())) {
+        USER_TO_MATERIALIZED_TABLES.remove(key);
+      }
+    }
+    HeavyDBCompletionIndex.invalidate(schema);
     // Invalidate views
     Set<List<String>> all = new HashSet<>(DB_TABLE_DETAILS.keySet());
     for (List<String> keys : all) {
@@ -17,8 +17,10 @@
 
 package com.mapd.parser.extension.ddl;
 
+import com.google.common.collect.ImmutableList;
 import com.google.gson.annotations.Expose;
 
+import org.apache.calcite.prepare.SqlIdentifierCapturer;
 import org.apache.calcite.runtime.CalciteException;
 import org.apache.calcite.sql.SqlBasicTypeNameSpec;
 import org.apache.calcite.sql.SqlCall;
@@ -31,7 +33,10 @@ import org.apache.calcite.sql.SqlNodeList;
 import org.apache.calcite.sql.SqlOperator;
 import org.apache.calcite.sql.SqlSpecialOperator;
 import org.apache.calcite.sql.SqlWriter;
+import org.apache.calcite.sql.SqlWriterConfig;
+import org.apache.calcite.sql.dialect.CalciteSqlDialect;
 import org.apache.calcite.sql.parser.SqlParserPos;
+import org.apache.calcite.sql.pretty.SqlPrettyWriter;
 import org.apache.calcite.sql.util.SqlBasicVisitor;
 import org.apache.calcite.sql.util.SqlVisitor;
 import org.apache.calcite.util.EscapedStringJsonBuilder;
@@ -69,6 +74,10 @@ public class SqlAlterTable extends SqlDdl {
    *    ALTER TABLE <table>
    *          ALTER [COLUMN] <column> [SET DATA] TYPE <type> [NOT NULL] [ENCODING
    * <encodingSpec>]
+   * ADD MATERIALIZED QUERY:
+   *    ALTER TABLE <table> ADD MATERIALIZED QUERY ( <query> )
+   * DROP MATERIALIZED QUERY:
+   *    ALTER TABLE <table> DROP MATERIALIZED QUERY
    */
 
   public enum AlterType {
@@ -77,7 +86,9 @@ public class SqlAlterTable extends SqlDdl {
     ADD_COLUMN,
     ALTER_COLUMN,
     DROP_COLUMN,
-    ALTER_OPTIONS
+    ALTER_OPTIONS,
+    ADD_MATERIALIZED_QUERY,
+    DROP_MATERIALIZED_QUERY
   }
 
   public static class Builder extends SqlOptionsBuilder {
@@ -88,6 +99,7 @@ public class SqlAlterTable extends SqlDdl {
     private String columnName;
     private String newColumnName;
     private SqlNodeList columnList;
+    private SqlNode materializedQuery;
 
     public void setPos(final SqlParserPos pos) {
       this.pos = pos;
@@ -128,8 +140,17 @@ public class SqlAlterTable extends SqlDdl {
       this.columnList = columnList;
     }
 
+    public void addMaterializedQuery(final SqlNode query) {
+      this.alterType = AlterType.ADD_MATERIALIZED_QUERY;
+      this.materializedQuery = query;
+    }
+
+    public void dropMaterializedQuery() {
+      this.alterType = AlterType.DROP_MATERIALIZED_QUERY;
+    }
+
     public SqlAlterTable build() {
-      return new SqlAlterTable(pos,
+      SqlAlterTable alterTable = new SqlAlterTable(pos,
               alterType,
               tableName,
               newTableName,
@@ -137,6 +158,8 @@ public class SqlAlterTable extends SqlDdl {
               newColumnName,
               columnList,
               super.options);
+      alterTable.materializedQuery = materializedQuery;
+      return alterTable;
     }
   }
 
@@ -156,6 +179,8 @@ public class SqlAlterTable extends SqlDdl {
   private SqlNodeList columnList;
   @Expose
   private Map<String, String> options;
+  @Expose
+  private SqlNode materializedQuery;
 
   public SqlAlterTable(final SqlParserPos pos, final SqlIdentifier name) {
     super(OPERATOR, pos);
@@ -273,10 +298,38 @@ public class SqlAlterTable extends SqlDdl {
         map.put("alterType", "ALTER_OPTIONS");
         map.put("options", this.options);
         break;
+      case ADD_MATERIALIZED_QUERY:
+        map.put("alterType", "ADD_MATERIALIZED_QUERY");
+        map.put("query", unparseQuery(this.materializedQuery));
+        // the epochs of the source tables are recorded when the command is executed,
+        // so that a later change to any of them marks the materialization as stale
+        List<Object> source_tables = jsonBuilder.list();
+        SqlIdentifierCapturer capturer = new SqlIdentifierCapturer();
+        capturer.scan(this.materializedQuery);
+        for (ImmutableList<String> names : capturer.selects) {
+          source_tables.add(String.join(".", names.reverse()));
+        }
+        map.put("sourceTables", source_tables);
+        break;
+      case DROP_MATERIALIZED_QUERY:
+        map.put("alterType", "DROP_MATERIALIZED_QUERY");
+        break;
     }
 
     Map<String, Object> payload = jsonBuilder.map();
     payload.put("payload", map);
     return jsonBuilder.toJsonString(payload);
   }
+
+  private static String unparseQuery(SqlNode query) {
+    SqlWriterConfig c = SqlPrettyWriter.config()
+                                .withDialect(CalciteSqlDialect.DEFAULT)
+                                .withQuoteAllIdentifiers(false)
+                                .withSelectListItemsOnSeparateLines(false)
+                                .withWhereListItemsOnSeparateLines(false)
+                                .withValuesListNewline(false);
+    SqlPrettyWriter writer = new SqlPrettyWriter(c);
+    query.unparse(writer, 0, 0);
+    return writer.toString();
+  }
 }
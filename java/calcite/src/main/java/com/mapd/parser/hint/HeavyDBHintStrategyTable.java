@@ -43,6 +43,10 @@ public class HeavyDBHintStrategyTable {
     supportedHints.add("preflight_count_query_threshold");
     supportedHints.add("table_reordering_off");
     supportedHints.add("ndv_groups_estimator_multiplier");
+    supportedHints.add("planning_time_budget");
+    supportedHints.add("aggregate_join_transpose");
+    supportedHints.add("approximate");
+    supportedHints.add("sample");
 
     for (String hint_name : supportedHints) {
       // add local / global hints, e.., cpu_mode / g_cpu_mode
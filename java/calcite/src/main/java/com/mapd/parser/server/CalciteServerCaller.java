@@ -110,6 +110,25 @@ public class CalciteServerCaller {
                                  .desc("Configuration file")
                                  .longOpt("config")
                                  .build();
+    Option max_planning = Option.builder()
+                                  .hasArg()
+                                  .desc("Maximum number of queries planned at once")
+                                  .longOpt("max_planning")
+                                  .build();
+
+    Option max_session_planning =
+            Option.builder()
+                    .hasArg()
+                    .desc("Maximum number of queries of a session planned at once")
+                    .longOpt("max_session_planning")
+                    .build();
+
+    Option max_planning_queue_ms =
+            Option.builder()
+                    .hasArg()
+                    .desc("Maximum time in ms a query waits to be planned")
+                    .longOpt("max_planning_queue_ms")
+                    .build();
     options.addOption(port);
     options.addOption(data);
     options.addOption(extensions);
@@ -120,6 +139,9 @@ public class CalciteServerCaller {
     options.addOption(ssl_keystore_password);
     options.addOption(udf_file);
     options.addOption(config_file);
+    options.addOption(max_planning);
+    options.addOption(max_session_planning);
+    options.addOption(max_planning_queue_ms);
 
     CommandLineParser parser = new DefaultParser();
 
@@ -141,6 +163,12 @@ public class CalciteServerCaller {
     String key_store_pw = cmd.getOptionValue("keystore_password", "");
     String udfName = cmd.getOptionValue("udf", "");
     String configuration_file = cmd.getOptionValue("config", "");
+    int maxPlanning = Integer.valueOf(cmd.getOptionValue("max_planning",
+            String.valueOf(PlanningAdmissionController.DEFAULT_MAX_PLANNING)));
+    int maxSessionPlanning = Integer.valueOf(cmd.getOptionValue("max_session_planning",
+            String.valueOf(PlanningAdmissionController.DEFAULT_MAX_SESSION_PLANNING)));
+    long maxPlanningQueueMs = Long.valueOf(cmd.getOptionValue("max_planning_queue_ms",
+            String.valueOf(PlanningAdmissionController.DEFAULT_MAX_QUEUE_MS)));
 
     final Path extensionFunctionsAstFile =
             Paths.get(extensionsDir, "ExtensionFunctions.ast");
@@ -229,6 +257,8 @@ public class CalciteServerCaller {
             client_skT,
             server_skT,
             udfName);
+    calciteServerWrapper.setPlanningAdmissionLimits(
+            maxPlanning, maxSessionPlanning, maxPlanningQueueMs);
 
     while (true) {
       try {
@@ -18,14 +18,22 @@ package com.mapd.parser.server;
 
 import static com.mapd.calcite.parser.HeavyDBParser.CURRENT_PARSER;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
 import com.mapd.calcite.parser.HeavyDBParser;
 import com.mapd.calcite.parser.HeavyDBParserOptions;
+import com.mapd.calcite.parser.HeavyDBPreparedPlan;
+import com.mapd.calcite.parser.HeavyDBTable;
 import com.mapd.calcite.parser.HeavyDBUser;
 import com.mapd.common.SockTransportProperties;
+import com.mapd.metadata.MetaConnect;
 
 import org.apache.calcite.prepare.HeavyDBPlanner;
 import org.apache.calcite.prepare.SqlIdentifierCapturer;
+import org.apache.calcite.rel.externalize.HeavyDBRelJsonWriter;
 import org.apache.calcite.rel.rules.Restriction;
+import org.apache.calcite.rel.type.RelDataType;
 import org.apache.calcite.runtime.CalciteContextException;
 import org.apache.calcite.sql.SqlNode;
 import org.apache.calcite.sql.parser.SqlParseException;
@@ -34,6 +42,7 @@ import org.apache.calcite.sql.validate.SqlMoniker;
 import org.apache.calcite.sql.validate.SqlMonikerType;
 import org.apache.calcite.tools.RelConversionException;
 import org.apache.calcite.tools.ValidationException;
+import org.apache.calcite.util.CancelFlag;
 import org.apache.calcite.util.Pair;
 import org.apache.commons.pool.PoolableObjectFactory;
 import org.apache.commons.pool.impl.GenericObjectPool;
@@ -45,9 +54,17 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
 import ai.heavy.thrift.calciteserver.CalciteServer;
@@ -58,7 +75,11 @@ import ai.heavy.thrift.calciteserver.TCompletionHintType;
 import ai.heavy.thrift.calciteserver.TExtArgumentType;
 import ai.heavy.thrift.calciteserver.TFilterPushDownInfo;
 import ai.heavy.thrift.calciteserver.TOptimizationOption;
+import ai.heavy.thrift.calciteserver.TParameterType;
+import ai.heavy.thrift.calciteserver.TParameterValue;
+import ai.heavy.thrift.calciteserver.TPlanNodeDigest;
 import ai.heavy.thrift.calciteserver.TPlanResult;
+import ai.heavy.thrift.calciteserver.TPreparedPlan;
 import ai.heavy.thrift.calciteserver.TQueryParsingOption;
 import ai.heavy.thrift.calciteserver.TRestriction;
 import ai.heavy.thrift.calciteserver.TUserDefinedFunction;
@@ -72,6 +93,94 @@ public class CalciteServerHandler implements CalciteServer.Iface {
 
   private volatile long callCount;
 
+  private final Cache<List<TRestriction>, List<Restriction>> restrictionSets =
+          CacheBuilder.newBuilder()
+                  .maximumSize(1024)
+                  .expireAfterAccess(1, TimeUnit.HOURS)
+                  .build();
+
+  // requests being planned, keyed by everything the plan depends on, so that
+  // identical requests arriving together are planned once
+  private final ConcurrentHashMap<List<Object>, CompletableFuture<TPlanResult>>
+          inFlightPlans = new ConcurrentHashMap<>();
+
+  private volatile PlanningAdmissionController admissionController =
+          new PlanningAdmissionController(
+                  PlanningAdmissionController.DEFAULT_MAX_PLANNING,
+                  PlanningAdmissionController.DEFAULT_MAX_SESSION_PLANNING,
+                  PlanningAdmissionController.DEFAULT_MAX_QUEUE_MS);
+
+  // error code of a request whose planning was cancelled
+  static final int PLANNING_CANCELLED = -9;
+
+  // a planning request, as named by cancel()
+  private static class PlanningCall {
+    final String nonce;
+    // the session the query was issued from, which the admission limits and cancel()
+    // apply to
+    final String owner;
+    final CancelFlag cancelFlag = new CancelFlag(new AtomicBoolean());
+    final CompletableFuture<Void> cancelled = new CompletableFuture<>();
+
+    PlanningCall(String session, TQueryParsingOption queryParsingOption) {
+      this.nonce = queryParsingOption.nonce;
+      this.owner = getPlanningOwner(session, queryParsingOption);
+    }
+  }
+
+  private final Set<PlanningCall> planningCalls = ConcurrentHashMap.newKeySet();
+
+  // error code of a bind to a prepared query which is unknown, or was invalidated
+  private static final int PREPARED_QUERY_NOT_FOUND = -10;
+
+  // a query planned by prepare(), which only its user may bind
+  private static class PreparedQuery {
+    final String user;
+    final String catalog;
+    // the row-level security restrictions the plan filters on
+    final List<TRestriction> restrictions;
+    final HeavyDBPreparedPlan plan;
+    final TAccessedQueryObjects primaryAccessedObjects;
+    final TAccessedQueryObjects resolvedAccessedObjects;
+
+    PreparedQuery(String user,
+            String catalog,
+            List<TRestriction> restrictions,
+            HeavyDBPreparedPlan plan) {
+      this.user = user;
+      this.catalog = catalog;
+      this.restrictions = copyRestrictions(restrictions);
+      this.plan = plan;
+      this.primaryAccessedObjects =
+              getAccessedObjects(plan.getCapturer(), plan.getCapturer().selects);
+      this.resolvedAccessedObjects =
+              getAccessedObjects(plan.getCapturer(), plan.getResolvedSelects());
+    }
+
+    // whether the plan reads the table, or any table of the database if none is given
+    boolean reads(String db, String table) {
+      if (table.isEmpty() && catalog.equalsIgnoreCase(db)) {
+        return true;
+      }
+      for (TAccessedQueryObjects objects :
+              Arrays.asList(primaryAccessedObjects, resolvedAccessedObjects)) {
+        for (List<String> names : objects.tables_selected_from) {
+          if (names.get(1).equalsIgnoreCase(db)
+                  && (table.isEmpty() || names.get(0).equalsIgnoreCase(table))) {
+            return true;
+          }
+        }
+      }
+      return false;
+    }
+  }
+
+  private final Cache<String, PreparedQuery> preparedQueries =
+          CacheBuilder.newBuilder()
+                  .maximumSize(1024)
+                  .expireAfterAccess(1, TimeUnit.HOURS)
+                  .build();
+
   private final GenericObjectPool parserPool;
 
   private final CalciteParserFactory calciteParserFactory;
@@ -131,6 +240,21 @@ public class CalciteServerHandler implements CalciteServer.Iface {
     this.parserPool = new GenericObjectPool(calciteParserFactory);
   }
 
+  /**
+   * Sets how many queries are planned at once, overall and for each session, and
+   * how long a query waits to be planned before it is rejected. 0 means no limit.
+   */
+  public void setPlanningAdmissionLimits(
+          int maxPlanning, int maxSessionPlanning, long maxQueueMs) {
+    admissionController = new PlanningAdmissionController(
+            maxPlanning, maxSessionPlanning, maxQueueMs);
+    // the pool must not be the tighter limit, or the queries admitted first would not
+    // be the ones that get a parser first
+    parserPool.setMaxActive(maxPlanning <= 0
+                    ? -1
+                    : Math.max(maxPlanning, GenericObjectPool.DEFAULT_MAX_ACTIVE));
+  }
+
   @Override
   public void ping() throws TException {
     HEAVYDBLOGGER.debug("Ping hit");
@@ -144,9 +268,199 @@ public class CalciteServerHandler implements CalciteServer.Iface {
           TQueryParsingOption queryParsingOption,
           TOptimizationOption optimizationOption,
           List<TRestriction> trestrictions) throws InvalidParseRequest, TException {
-    long timer = System.currentTimeMillis();
     callCount++;
 
+    final PlanningCall call = new PlanningCall(session, queryParsingOption);
+    planningCalls.add(call);
+    try {
+      return coalesce(call,
+              user,
+              session,
+              catalog,
+              queryText,
+              queryParsingOption,
+              optimizationOption,
+              trestrictions);
+    } finally {
+      planningCalls.remove(call);
+    }
+  }
+
+  private TPlanResult coalesce(PlanningCall call,
+          String user,
+          String session,
+          String catalog,
+          String queryText,
+          TQueryParsingOption queryParsingOption,
+          TOptimizationOption optimizationOption,
+          List<TRestriction> trestrictions) throws InvalidParseRequest, TException {
+    // the session is not part of the key: the plan only depends on the user, through
+    // its privileges and restrictions. Neither is the nonce, which only names the call.
+    final List<Object> key = Arrays.asList(user,
+            catalog,
+            queryText,
+            new TQueryParsingOption(queryParsingOption)
+                    .setNonce("")
+                    .setPublic_session_id(""),
+            optimizationOption,
+            trestrictions);
+    for (;;) {
+      if (call.cancelFlag.isCancelRequested()) {
+        throw planningCancelled();
+      }
+      final CompletableFuture<TPlanResult> future = new CompletableFuture<>();
+      final CompletableFuture<TPlanResult> inFlight =
+              inFlightPlans.putIfAbsent(key, future);
+      if (inFlight != null) {
+        HEAVYDBLOGGER.debug(
+                "Waiting for identical request in flight, sql: " + queryText);
+        final TPlanResult result = awaitInFlightPlan(inFlight, call);
+        if (result != null) {
+          return result;
+        }
+        // the request in flight was cancelled, but this one was not
+        continue;
+      }
+      final PlanningAdmissionController admission = admissionController;
+      try {
+        final TPlanResult result;
+        admission.acquire(call.owner, queryText, call.cancelFlag);
+        try {
+          result = plan(user,
+                  session,
+                  catalog,
+                  queryText,
+                  queryParsingOption,
+                  optimizationOption,
+                  trestrictions,
+                  call.cancelFlag);
+        } finally {
+          admission.release(call.owner);
+        }
+        inFlightPlans.remove(key, future);
+        future.complete(result);
+        return result;
+      } catch (Throwable ex) {
+        inFlightPlans.remove(key, future);
+        future.completeExceptionally(ex);
+        throw ex;
+      }
+    }
+  }
+
+  // the public id of the client session issuing the query, which the per-session
+  // admission limits and cancel() apply to. The session passed to process is a new
+  // in-memory session for every request.
+  private static String getPlanningOwner(
+          String session, TQueryParsingOption queryParsingOption) {
+    final String owner = queryParsingOption.public_session_id;
+    return owner == null || owner.isEmpty() ? session : owner;
+  }
+
+  /**
+   * @return a copy of the result of the request in flight, or null if that request
+   *         was cancelled
+   */
+  private static TPlanResult awaitInFlightPlan(
+          CompletableFuture<TPlanResult> inFlight, PlanningCall call)
+          throws InvalidParseRequest {
+    try {
+      try {
+        CompletableFuture.anyOf(inFlight, call.cancelled).get();
+      } catch (ExecutionException ex) {
+        // the request in flight failed, reported below
+      }
+      if (call.cancelFlag.isCancelRequested()) {
+        throw planningCancelled();
+      }
+      // each caller gets its own copy, as thrift may write the result concurrently
+      return new TPlanResult(inFlight.get());
+    } catch (ExecutionException ex) {
+      if (ex.getCause() instanceof InvalidParseRequest) {
+        final InvalidParseRequest cause = (InvalidParseRequest) ex.getCause();
+        if (cause.code == PLANNING_CANCELLED) {
+          return null;
+        }
+        throw new InvalidParseRequest(cause);
+      }
+      String msg = ex.getCause().getMessage();
+      HEAVYDBLOGGER.error(msg, ex.getCause());
+      throw new InvalidParseRequest(-4, msg);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      String msg = "Interrupted while waiting for identical request: " + ex.getMessage();
+      HEAVYDBLOGGER.error(msg);
+      throw new InvalidParseRequest(-1, msg);
+    }
+  }
+
+  private static InvalidParseRequest planningCancelled() {
+    return new InvalidParseRequest(PLANNING_CANCELLED, "Query planning was interrupted");
+  }
+
+  @Override
+  public void cancel(String session, String nonce) throws TException {
+    final boolean anySession = session == null || session.isEmpty();
+    final boolean anyNonce = nonce == null || nonce.isEmpty();
+    if (anySession && anyNonce) {
+      HEAVYDBLOGGER.warn("Ignoring cancel request without session nor nonce");
+      return;
+    }
+    boolean cancelled = false;
+    for (PlanningCall call : planningCalls) {
+      if ((anySession || session.equals(call.owner))
+              && (anyNonce || nonce.equals(call.nonce))) {
+        call.cancelFlag.requestCancel();
+        call.cancelled.complete(null);
+        cancelled = true;
+      }
+    }
+    if (cancelled) {
+      HEAVYDBLOGGER.debug("Cancelled query planning, nonce: " + nonce);
+      admissionController.wakeWaiters();
+    }
+  }
+
+  @Override
+  public TPreparedPlan prepare(String user,
+          String session,
+          String catalog,
+          String queryText,
+          TQueryParsingOption queryParsingOption,
+          TOptimizationOption optimizationOption,
+          List<TRestriction> trestrictions) throws InvalidParseRequest, TException {
+    callCount++;
+
+    final PlanningCall call = new PlanningCall(session, queryParsingOption);
+    planningCalls.add(call);
+    final PlanningAdmissionController admission = admissionController;
+    try {
+      admission.acquire(call.owner, queryText, call.cancelFlag);
+      try {
+        return prepare(user,
+                session,
+                catalog,
+                queryText,
+                queryParsingOption,
+                optimizationOption,
+                trestrictions,
+                call.cancelFlag);
+      } finally {
+        admission.release(call.owner);
+      }
+    } finally {
+      planningCalls.remove(call);
+    }
+  }
+
+  private TPreparedPlan prepare(String user,
+          String session,
+          String catalog,
+          String queryText,
+          TQueryParsingOption queryParsingOption,
+          TOptimizationOption optimizationOption,
+          List<TRestriction> trestrictions,
+          CancelFlag cancelFlag) throws InvalidParseRequest, TException {
     HeavyDBParser parser;
     try {
       parser = (HeavyDBParser) parserPool.borrowObject();
@@ -156,23 +470,155 @@ public class CalciteServerHandler implements CalciteServer.Iface {
       HEAVYDBLOGGER.error(msg, ex);
       throw new InvalidParseRequest(-1, msg);
     }
-    List<Restriction> rests = null;
-    if (trestrictions != null && !trestrictions.isEmpty()) {
-      rests = new ArrayList<>();
-      for (TRestriction trestriction : trestrictions) {
-        Restriction rest = null;
-        rest = new Restriction(trestriction.database,
-                trestriction.table,
-                trestriction.column,
-                trestriction.values);
-        rests.add(rest);
-      }
+    List<Restriction> rests = getRestrictions(trestrictions);
+    HeavyDBUser dbUser = new HeavyDBUser(user, session, catalog, dbPort, rests);
+    HEAVYDBLOGGER.debug("prepare was called User: " + user + " Catalog: " + catalog
+            + " sql: " + queryText);
+    parser.setUser(dbUser);
+    parser.setCancelFlag(cancelFlag);
+    CURRENT_PARSER.set(parser);
+    HeavyDBTable.setDistributedMode(optimizationOption.distributed_mode);
+
+    queryText = queryText.trim();
+    if (queryText.length() > 0 && queryText.charAt(queryText.length() - 1) == ';') {
+      queryText = queryText.substring(0, queryText.length() - 1);
+    }
+    final HeavyDBPreparedPlan plan;
+    final String jsonResult;
+    try {
+      plan = parser.prepare(
+              queryText, getParserOptions(queryParsingOption, optimizationOption));
+      jsonResult = plan.toJson();
+    } catch (Throwable ex) {
+      throw toInvalidParseRequest(ex, queryText);
+    } finally {
+      releaseParser(parser);
     }
+
+    final String handle = UUID.randomUUID().toString();
+    preparedQueries.put(handle, new PreparedQuery(user, catalog, trestrictions, plan));
+    TPreparedPlan result = new TPreparedPlan();
+    result.handle = handle;
+    result.plan_result = jsonResult;
+    result.parameter_types = new ArrayList<>();
+    for (RelDataType type : plan.getParameterTypes()) {
+      result.parameter_types.add(new TParameterType(type.getSqlTypeName().getName(),
+              type.getPrecision(),
+              type.getScale(),
+              type.isNullable()));
+    }
+    return result;
+  }
+
+  @Override
+  public TPlanResult bind(String user,
+          String catalog,
+          String handle,
+          List<TParameterValue> values,
+          List<TRestriction> trestrictions) throws InvalidParseRequest, TException {
+    callCount++;
+    long timer = System.currentTimeMillis();
+
+    final PreparedQuery prepared = getPreparedQuery(user, catalog, handle);
+    if (!prepared.restrictions.equals(copyRestrictions(trestrictions))) {
+      // the policies of the user changed since the plan was prepared
+      preparedQueries.invalidate(handle);
+      String msg = "The row-level security restrictions of prepared query " + handle
+              + " changed, it must be prepared again";
+      HEAVYDBLOGGER.debug(msg);
+      throw new InvalidParseRequest(PREPARED_QUERY_NOT_FOUND, msg);
+    }
+    final List<String> literals = new ArrayList<>(values.size());
+    for (TParameterValue value : values) {
+      literals.add(value.is_null ? null : value.value);
+    }
+    final HeavyDBRelJsonWriter planWriter;
+    try {
+      planWriter = prepared.plan.bind(literals);
+    } catch (IllegalArgumentException ex) {
+      String msg = "SQL Error: " + ex.getMessage();
+      HEAVYDBLOGGER.error(msg);
+      throw new InvalidParseRequest(-3, msg);
+    } catch (Throwable ex) {
+      String msg = ex.getMessage();
+      HEAVYDBLOGGER.error(msg, ex);
+      throw new InvalidParseRequest(-4, msg);
+    }
+
+    TPlanResult result = new TPlanResult();
+    // each caller gets its own copy, as thrift may write the result concurrently
+    result.primary_accessed_objects =
+            new TAccessedQueryObjects(prepared.primaryAccessedObjects);
+    result.resolved_accessed_objects =
+            new TAccessedQueryObjects(prepared.resolvedAccessedObjects);
+    result.plan_result = planWriter.asString();
+    result.execution_time_ms = System.currentTimeMillis() - timer;
+    result.is_rel_alg = true;
+    result.plan_fingerprint = planWriter.getPlanFingerprint();
+    result.node_digests = new ArrayList<>();
+    for (HeavyDBRelJsonWriter.NodeDigest digest : planWriter.getNodeDigests()) {
+      result.node_digests.add(
+              new TPlanNodeDigest(digest.digest, digest.isDeterministic));
+    }
+    return result;
+  }
+
+  @Override
+  public void unprepare(String user, String catalog, String handle) throws TException {
+    callCount++;
+    // a query which is not prepared any more is left as it is, as the server
+    // unprepares the queries of its sessions without knowing which ones expired
+    final PreparedQuery prepared = preparedQueries.getIfPresent(handle);
+    if (prepared != null && prepared.user.equals(user)
+            && prepared.catalog.equals(catalog)) {
+      preparedQueries.invalidate(handle);
+    }
+  }
+
+  private static List<TRestriction> copyRestrictions(List<TRestriction> restrictions) {
+    return restrictions == null ? Collections.emptyList() : new ArrayList<>(restrictions);
+  }
+
+  private PreparedQuery getPreparedQuery(String user, String catalog, String handle)
+          throws InvalidParseRequest {
+    final PreparedQuery prepared = preparedQueries.getIfPresent(handle);
+    if (prepared == null || !prepared.user.equals(user)
+            || !prepared.catalog.equals(catalog)) {
+      String msg = "Prepared query " + handle + " not found, it must be prepared again";
+      HEAVYDBLOGGER.debug(msg);
+      throw new InvalidParseRequest(PREPARED_QUERY_NOT_FOUND, msg);
+    }
+    return prepared;
+  }
+
+  // package-private so that tests can stand in for the planning
+  TPlanResult plan(String user,
+          String session,
+          String catalog,
+          String queryText,
+          TQueryParsingOption queryParsingOption,
+          TOptimizationOption optimizationOption,
+          List<TRestriction> trestrictions,
+          CancelFlag cancelFlag) throws InvalidParseRequest, TException {
+    long timer = System.currentTimeMillis();
+
+    HeavyDBParser parser;
+    try {
+      parser = (HeavyDBParser) parserPool.borrowObject();
+      parser.clearMemo();
+    } catch (Exception ex) {
+      String msg = "Could not get Parse Item from pool: " + ex.getMessage();
+      HEAVYDBLOGGER.error(msg, ex);
+      throw new InvalidParseRequest(-1, msg);
+    }
+    List<Restriction> rests = getRestrictions(trestrictions);
     HeavyDBUser dbUser = new HeavyDBUser(user, session, catalog, dbPort, rests);
     HEAVYDBLOGGER.debug("process was called User: " + user + " Catalog: " + catalog
             + " sql: " + queryText);
     parser.setUser(dbUser);
+    parser.setCancelFlag(cancelFlag);
     CURRENT_PARSER.set(parser);
+    HeavyDBTable.setDistributedMode(optimizationOption.distributed_mode);
 
     // this code path is introduced to execute a query for intel-modin project
     // they appended a special prefix "execute calcite" to distinguish their usage
@@ -193,20 +639,11 @@ public class CalciteServerHandler implements CalciteServer.Iface {
     TAccessedQueryObjects primaryAccessedObjects = new TAccessedQueryObjects();
     TAccessedQueryObjects resolvedAccessedObjects = new TAccessedQueryObjects();
     boolean is_rel_alg = false;
+    String planFingerprint = null;
+    List<TPlanNodeDigest> nodeDigests = new ArrayList<>();
     try {
-      final List<HeavyDBParserOptions.FilterPushDownInfo> filterPushDownInfo =
-              new ArrayList<>();
-      for (final TFilterPushDownInfo req : optimizationOption.filter_push_down_info) {
-        filterPushDownInfo.add(new HeavyDBParserOptions.FilterPushDownInfo(
-                req.input_prev, req.input_start, req.input_next));
-      }
-      HeavyDBParserOptions parserOptions = new HeavyDBParserOptions(filterPushDownInfo,
-              queryParsingOption.legacy_syntax,
-              queryParsingOption.is_explain,
-              queryParsingOption.is_explain_detail,
-              optimizationOption.is_view_optimize,
-              optimizationOption.enable_watchdog,
-              optimizationOption.distributed_mode);
+      HeavyDBParserOptions parserOptions =
+              getParserOptions(queryParsingOption, optimizationOption);
 
       if (!buildRATreeFromRAString) {
         HeavyDBParser.ProcessResult res;
@@ -216,20 +653,15 @@ public class CalciteServerHandler implements CalciteServer.Iface {
         jsonResult = res.json_str;
         capturer = res.capturer;
         is_rel_alg = res.is_rel_alg;
+        planFingerprint = res.plan_fingerprint;
+        for (HeavyDBRelJsonWriter.NodeDigest digest : res.node_digests) {
+          nodeDigests.add(new TPlanNodeDigest(digest.digest, digest.isDeterministic));
+        }
 
-        primaryAccessedObjects.tables_selected_from = new ArrayList<>(capturer.selects);
-        primaryAccessedObjects.tables_inserted_into = new ArrayList<>(capturer.inserts);
-        primaryAccessedObjects.tables_updated_in = new ArrayList<>(capturer.updates);
-        primaryAccessedObjects.tables_deleted_from = new ArrayList<>(capturer.deletes);
-
-        // also resolve all the views in the select part
-        // resolution of the other parts is not
-        // necessary as these cannot be views
-        resolvedAccessedObjects.tables_selected_from =
-                new ArrayList<>(parser.resolveSelectIdentifiers(capturer));
-        resolvedAccessedObjects.tables_inserted_into = new ArrayList<>(capturer.inserts);
-        resolvedAccessedObjects.tables_updated_in = new ArrayList<>(capturer.updates);
-        resolvedAccessedObjects.tables_deleted_from = new ArrayList<>(capturer.deletes);
+        primaryAccessedObjects = getAccessedObjects(capturer, capturer.selects);
+        // the views in the select part are resolved by the parser, resolution of
+        // the other parts is not necessary as these cannot be views
+        resolvedAccessedObjects = getAccessedObjects(capturer, res.resolved_selects);
 
       } else {
         // exploit Calcite's query optimization rules for RA string
@@ -237,51 +669,128 @@ public class CalciteServerHandler implements CalciteServer.Iface {
                 parser.buildRATreeAndPerformQueryOptimization(queryText, parserOptions);
         is_rel_alg = true;
       }
-    } catch (SqlParseException ex) {
+    } catch (Throwable ex) {
+      throw toInvalidParseRequest(ex, queryText);
+    } finally {
+      releaseParser(parser);
+    }
+
+    TPlanResult result = new TPlanResult();
+    result.primary_accessed_objects = primaryAccessedObjects;
+    result.resolved_accessed_objects = resolvedAccessedObjects;
+    result.plan_result = jsonResult;
+    result.execution_time_ms = System.currentTimeMillis() - timer;
+    result.is_rel_alg = is_rel_alg;
+    result.plan_fingerprint = planFingerprint;
+    result.node_digests = nodeDigests;
+
+    return result;
+  }
+
+  private static HeavyDBParserOptions getParserOptions(
+          TQueryParsingOption queryParsingOption,
+          TOptimizationOption optimizationOption) {
+    final List<HeavyDBParserOptions.FilterPushDownInfo> filterPushDownInfo =
+            new ArrayList<>();
+    for (final TFilterPushDownInfo req : optimizationOption.filter_push_down_info) {
+      filterPushDownInfo.add(new HeavyDBParserOptions.FilterPushDownInfo(
+              req.input_prev, req.input_start, req.input_next));
+    }
+    HeavyDBParserOptions parserOptions = new HeavyDBParserOptions(filterPushDownInfo,
+            queryParsingOption.legacy_syntax,
+            queryParsingOption.is_explain,
+            queryParsingOption.is_explain_detail,
+            optimizationOption.is_view_optimize,
+            optimizationOption.enable_watchdog,
+            optimizationOption.distributed_mode);
+    parserOptions.setPlanningTimeBudgetMs(optimizationOption.planning_time_budget_ms);
+    parserOptions.setMaterializedQueryRewriteEnabled(
+            optimizationOption.enable_materialized_query_rewrite);
+    parserOptions.setApproximateQueryMode(queryParsingOption.approximate_query_mode);
+    return parserOptions;
+  }
+
+  private static TAccessedQueryObjects getAccessedObjects(
+          SqlIdentifierCapturer capturer, Set<ImmutableList<String>> selects) {
+    TAccessedQueryObjects accessedObjects = new TAccessedQueryObjects();
+    accessedObjects.tables_selected_from = new ArrayList<>(selects);
+    accessedObjects.tables_inserted_into = new ArrayList<>(capturer.inserts);
+    accessedObjects.tables_updated_in = new ArrayList<>(capturer.updates);
+    accessedObjects.tables_deleted_from = new ArrayList<>(capturer.deletes);
+    return accessedObjects;
+  }
+
+  // the error reported for an exception thrown while planning a query
+  static InvalidParseRequest toInvalidParseRequest(
+          Throwable ex, String queryText) {
+    if (ex instanceof InvalidParseRequest) {
+      return (InvalidParseRequest) ex;
+    } else if (ex instanceof SqlParseException) {
       String msg = "SQL Error: " + ex.getMessage();
       HEAVYDBLOGGER.error(msg);
-      throw new InvalidParseRequest(-2, msg);
-    } catch (org.apache.calcite.tools.ValidationException ex) {
+      return new InvalidParseRequest(-2, msg);
+    } else if (ex instanceof ValidationException) {
       String msg = "SQL Error: " + ex.getMessage();
       if (ex.getCause() != null
               && (ex.getCause().getClass() == CalciteContextException.class)) {
         msg = "SQL Error: " + ex.getCause().getMessage();
       }
       HEAVYDBLOGGER.error(msg);
-      throw new InvalidParseRequest(-3, msg);
-    } catch (CalciteContextException ex) {
+      return new InvalidParseRequest(-3, msg);
+    } else if (ex instanceof CalciteContextException) {
       String msg = ex.getMessage();
       HEAVYDBLOGGER.error(msg);
-      throw new InvalidParseRequest(-6, msg);
-    } catch (RelConversionException ex) {
+      return new InvalidParseRequest(-6, msg);
+    } else if (ex instanceof RelConversionException) {
       String msg = "Failed to generate relational algebra for query " + ex.getMessage();
       HEAVYDBLOGGER.error(msg, ex);
-      throw new InvalidParseRequest(-5, msg);
-    } catch (Throwable ex) {
-      HEAVYDBLOGGER.error(ex.getClass().toString());
-      String msg = ex.getMessage();
-      HEAVYDBLOGGER.error(msg, ex);
-      throw new InvalidParseRequest(-4, msg);
-    } finally {
-      CURRENT_PARSER.set(null);
-      try {
-        // put parser object back in pool for others to use
-        parserPool.returnObject(parser);
-      } catch (Exception ex) {
-        String msg = "Could not return parse object: " + ex.getMessage();
-        HEAVYDBLOGGER.error(msg, ex);
-        throw new InvalidParseRequest(-7, msg);
-      }
+      return new InvalidParseRequest(-5, msg);
+    } else if (ex instanceof HeavyDBPlanner.PlanningCancelledException) {
+      HEAVYDBLOGGER.info("Query planning was interrupted, sql: " + queryText);
+      return planningCancelled();
     }
+    HEAVYDBLOGGER.error(ex.getClass().toString());
+    String msg = ex.getMessage();
+    HEAVYDBLOGGER.error(msg, ex);
+    return new InvalidParseRequest(-4, msg);
+  }
 
-    TPlanResult result = new TPlanResult();
-    result.primary_accessed_objects = primaryAccessedObjects;
-    result.resolved_accessed_objects = resolvedAccessedObjects;
-    result.plan_result = jsonResult;
-    result.execution_time_ms = System.currentTimeMillis() - timer;
-    result.is_rel_alg = is_rel_alg;
+  private void releaseParser(HeavyDBParser parser) throws InvalidParseRequest {
+    CURRENT_PARSER.set(null);
+    HeavyDBTable.setDistributedMode(false);
+    parser.setCancelFlag(null);
+    try {
+      // put parser object back in pool for others to use
+      parserPool.returnObject(parser);
+    } catch (Exception ex) {
+      String msg = "Could not return parse object: " + ex.getMessage();
+      HEAVYDBLOGGER.error(msg, ex);
+      throw new InvalidParseRequest(-7, msg);
+    }
+  }
 
-    return result;
+  // The restriction set of a user rarely changes between queries, so reuse its
+  // Restriction objects and the filter values they have already parsed. The set is
+  // its own key, so a privilege change only ever misses the cache.
+  List<Restriction> getRestrictions(List<TRestriction> trestrictions) {
+    if (trestrictions == null || trestrictions.isEmpty()) {
+      return null;
+    }
+    final List<TRestriction> key = ImmutableList.copyOf(trestrictions);
+    List<Restriction> rests = restrictionSets.getIfPresent(key);
+    if (rests != null) {
+      return rests;
+    }
+    rests = new ArrayList<>();
+    for (TRestriction trestriction : trestrictions) {
+      Restriction rest = new Restriction(trestriction.database,
+              trestriction.table,
+              trestriction.column,
+              trestriction.values);
+      rests.add(rest);
+    }
+    restrictionSets.put(key, rests);
+    return rests;
   }
 
   @Override
@@ -317,6 +826,8 @@ public class CalciteServerHandler implements CalciteServer.Iface {
             "Received invalidation from server for " + catalog + " : " + table);
     long timer = System.currentTimeMillis();
     callCount++;
+    // the prepared queries reading the table were planned with its former definition
+    preparedQueries.asMap().values().removeIf(prepared -> prepared.reads(catalog, table));
     HeavyDBParser parser;
     try {
       parser = (HeavyDBParser) parserPool.borrowObject();
@@ -341,6 +852,13 @@ public class CalciteServerHandler implements CalciteServer.Iface {
     }
   }
 
+  @Override
+  public void updatePrivileges() throws TException {
+    HEAVYDBLOGGER.debug("Received privilege invalidation from server");
+    callCount++;
+    MetaConnect.invalidatePrivileges();
+  }
+
   @Override
   public List<TCompletionHint> getCompletionHints(String user,
           String session,
@@ -450,7 +968,10 @@ public class CalciteServerHandler implements CalciteServer.Iface {
         args.add(arg_type);
       }
     }
-    return new ExtensionFunction(args, toExtArgumentType(udf.retType), udf.annotations);
+    ExtensionFunction function =
+            new ExtensionFunction(args, toExtArgumentType(udf.retType), udf.annotations);
+    function.setRuntime(isruntime);
+    return function;
   }
 
   private static ExtensionFunction toExtensionFunction(
@@ -508,12 +1029,14 @@ public class CalciteServerHandler implements CalciteServer.Iface {
       sqlInputArgIdx++;
       outputArgIdx++;
     }
-    return new ExtensionFunction(args,
+    ExtensionFunction function = new ExtensionFunction(args,
             outs,
             names,
             udtf.annotations.get(udtf.annotations.size() - 1),
             cursor_field_types,
             default_values);
+    function.setRuntime(isruntime);
+    return function;
   }
 
   private static Comparable<?> getDefaultValueForAnnot(
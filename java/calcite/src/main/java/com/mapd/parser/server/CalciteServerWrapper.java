@@ -82,6 +82,11 @@ public class CalciteServerWrapper implements Runnable {
     }
   }
 
+  public void setPlanningAdmissionLimits(
+          int maxPlanning, int maxSessionPlanning, long maxQueueMs) {
+    handler.setPlanningAdmissionLimits(maxPlanning, maxSessionPlanning, maxQueueMs);
+  }
+
   private void startServer(
           ai.heavy.thrift.calciteserver.CalciteServer.Processor processor) {
     try {
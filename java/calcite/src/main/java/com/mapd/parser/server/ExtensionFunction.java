@@ -226,6 +226,18 @@ public class ExtensionFunction {
     return !this.isRowUdf();
   }
 
+  /**
+   * @return whether the function was registered at runtime, its implementation may
+   *         then change whenever the runtime functions are registered again
+   */
+  public boolean isRuntime() {
+    return this.isRuntime;
+  }
+
+  void setRuntime(boolean isRuntime) {
+    this.isRuntime = isRuntime;
+  }
+
   public String toJson(final String name) {
     HEAVYDBLOGGER.debug("Extensionfunction::toJson: " + name);
     StringBuilder json_cons = new StringBuilder();
@@ -452,6 +464,7 @@ public class ExtensionFunction {
   private final List<String> names;
   private final ExtArgumentType ret; // only used by UDFs
   private final boolean isRowUdf;
+  private boolean isRuntime = false;
   private final List<Map<String, String>> annotations; // only used by UDFs atm
   private final Map<String, String> options;
   private final Map<String, List<ExtArgumentType>>
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2022 HEAVY.AI, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mapd.parser.server;
+
+import org.apache.calcite.util.CancelFlag;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import ai.heavy.thrift.calciteserver.InvalidParseRequest;
+
+/**
+ * Limits how many statements are planned at once, overall and for each session, so
+ * that one session sending large statements cannot hold every parser while short
+ * statements of other sessions wait behind it.
+ *
+ * <p>Statements waiting for a slot are admitted cheapest first, the cost of a
+ * statement being estimated from its length. A long statement is only passed by
+ * shorter ones that arrive less than its cost later, so it is never starved. A
+ * statement that waits longer than the queueing limit is rejected.
+ */
+class PlanningAdmissionController {
+  final static Logger HEAVYDBLOGGER =
+          LoggerFactory.getLogger(PlanningAdmissionController.class);
+
+  // the default global limit matches the default size of the parser pool
+  static final int DEFAULT_MAX_PLANNING = 8;
+  static final int DEFAULT_MAX_SESSION_PLANNING = 4;
+  static final long DEFAULT_MAX_QUEUE_MS = 60000;
+
+  // each character of a statement delays it as much as arriving 10 us later, that is
+  // 1 ms every 100 characters
+  private static final long NANOS_PER_CHAR = 10000;
+
+  private final int maxPlanning;
+  private final int maxSessionPlanning;
+  private final long maxQueueMs;
+
+  private int planning = 0;
+  private final Map<String, Integer> sessionPlanning = new HashMap<>();
+  private final TreeSet<Waiter> waiters = new TreeSet<>();
+  private long sequence = 0;
+
+  private static class Waiter implements Comparable<Waiter> {
+    final String session;
+    final long priority;
+    final long sequence;
+    boolean admitted = false;
+
+    Waiter(String session, long priority, long sequence) {
+      this.session = session;
+      this.priority = priority;
+      this.sequence = sequence;
+    }
+
+    @Override
+    public int compareTo(Waiter other) {
+      final int c = Long.compare(priority, other.priority);
+      return c != 0 ? c : Long.compare(sequence, other.sequence);
+    }
+  }
+
+  /**
+   * @param maxPlanning maximum number of statements planned at once, 0 for no limit
+   * @param maxSessionPlanning maximum number of statements of one session planned at
+   *         once, 0 for no limit
+   * @param maxQueueMs maximum time a statement waits to be planned, 0 for no limit
+   */
+  PlanningAdmissionController(int maxPlanning, int maxSessionPlanning, long maxQueueMs) {
+    this.maxPlanning = maxPlanning;
+    this.maxSessionPlanning = maxSessionPlanning;
+    this.maxQueueMs = maxQueueMs;
+  }
+
+  int getMaxPlanning() {
+    return maxPlanning;
+  }
+
+  /**
+   * Waits until the statement may be planned, or its planning is cancelled. Every
+   * successful call must be followed by a call to {@link #release(String)} with the
+   * same session.
+   */
+  synchronized void acquire(String session, String sql, CancelFlag cancelFlag)
+          throws InvalidParseRequest {
+    final String key = session == null ? "" : session;
+    final long start = System.nanoTime();
+    final Waiter waiter =
+            new Waiter(key, start + sql.length() * NANOS_PER_CHAR, sequence++);
+    waiters.add(waiter);
+    admitWaiters();
+    final long deadline = start + TimeUnit.MILLISECONDS.toNanos(maxQueueMs);
+    while (!waiter.admitted) {
+      if (cancelFlag.isCancelRequested()) {
+        waiters.remove(waiter);
+        throw new InvalidParseRequest(CalciteServerHandler.PLANNING_CANCELLED,
+                "Query planning was interrupted");
+      }
+      final long remaining = deadline - System.nanoTime();
+      if (maxQueueMs > 0 && remaining <= 0) {
+        waiters.remove(waiter);
+        String msg = "Query could not be planned within " + maxQueueMs
+                + " ms: the planner is busy with " + planning
+                + " other queries, retry later.";
+        HEAVYDBLOGGER.error(msg);
+        throw new InvalidParseRequest(-8, msg);
+      }
+      try {
+        if (maxQueueMs > 0) {
+          TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        } else {
+          wait();
+        }
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        if (waiter.admitted) {
+          break;
+        }
+        waiters.remove(waiter);
+        String msg = "Interrupted while waiting to plan query: " + ex.getMessage();
+        HEAVYDBLOGGER.error(msg);
+        throw new InvalidParseRequest(-1, msg);
+      }
+    }
+    final long queuedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    if (queuedMs > 0) {
+      HEAVYDBLOGGER.debug("Query waited " + queuedMs + " ms to be planned");
+    }
+  }
+
+  /** Lets the waiting statements check whether their planning was cancelled. */
+  synchronized void wakeWaiters() {
+    notifyAll();
+  }
+
+  /** Gives back the slot of a statement that has been planned. */
+  synchronized void release(String session) {
+    final String key = session == null ? "" : session;
+    planning--;
+    final int sessionCount = sessionPlanning.getOrDefault(key, 1) - 1;
+    if (sessionCount > 0) {
+      sessionPlanning.put(key, sessionCount);
+    } else {
+      sessionPlanning.remove(key);
+    }
+    admitWaiters();
+  }
+
+  // admits the cheapest waiters whose session is below its limit, while slots remain
+  private void admitWaiters() {
+    boolean admitted = false;
+    final Iterator<Waiter> it = waiters.iterator();
+    while ((maxPlanning <= 0 || planning < maxPlanning) && it.hasNext()) {
+      final Waiter waiter = it.next();
+      final int sessionCount = sessionPlanning.getOrDefault(waiter.session, 0);
+      if (maxSessionPlanning > 0 && sessionCount >= maxSessionPlanning) {
+        continue;
+      }
+      it.remove();
+      waiter.admitted = true;
+      planning++;
+      sessionPlanning.put(waiter.session, sessionCount + 1);
+      admitted = true;
+    }
+    if (admitted) {
+      notifyAll();
+    }
+  }
+}
@@ -0,0 +1,408 @@
+/*
+ * Copyright 2022 HEAVY.AI, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.calcite.prepare;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableSet;
+
+import org.apache.calcite.sql.SqlFunction;
+import org.apache.calcite.sql.SqlOperator;
+import org.apache.calcite.sql.SqlOperatorTable;
+import org.apache.calcite.sql.SqlSyntax;
+import org.apache.calcite.sql.parser.SqlAbstractParserImpl;
+import org.apache.calcite.sql.parser.SqlParser;
+import org.apache.calcite.sql.parser.SqlParserImplFactory;
+import org.apache.calcite.sql.validate.SqlMoniker;
+import org.apache.calcite.sql.validate.SqlMonikerImpl;
+import org.apache.calcite.sql.validate.SqlMonikerType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+
+/**
+ * Completion hints computed from prefix tries over the names visible to a session:
+ * its tables, the columns of the tables a statement reads, the functions of the
+ * operator table and the keywords of the parser. The context of the cursor is found
+ * by scanning the tokens of the statement instead of parsing and validating it, so
+ * the cost of a completion does not grow with the catalog.
+ *
+ * <p>An index exists per database and set of visible tables. The column names of a
+ * table are only indexed once a statement reads it, and the indexes of a database
+ * are dropped whenever its metadata changes. Columns of subqueries and common table
+ * expressions are not indexed, completions which need them are left to the advisor.
+ */
+public class HeavyDBCompletionIndex {
+  final static Logger HEAVYDBLOGGER =
+          LoggerFactory.getLogger(HeavyDBCompletionIndex.class);
+
+  private static final Cache<List<String>, HeavyDBCompletionIndex> INDEXES =
+          CacheBuilder.newBuilder().maximumSize(256).build();
+  private static final Map<SqlOperatorTable, Trie> FUNCTIONS =
+          Collections.synchronizedMap(new WeakHashMap<>());
+  private static final Map<SqlParserImplFactory, Trie> KEYWORDS =
+          Collections.synchronizedMap(new WeakHashMap<>());
+
+  // keywords after which a table name is expected
+  private static final Set<String> TABLE_KEYWORDS =
+          ImmutableSet.of("FROM", "JOIN", "INTO", "UPDATE", "TABLE");
+
+  private final Trie tables = new Trie();
+  private final Map<String, String> visibleTables = new HashMap<>();
+  private final Map<String, Trie> columns = new ConcurrentHashMap<>();
+
+  private HeavyDBCompletionIndex(List<String> visibleTableNames) {
+    for (String tableName : visibleTableNames) {
+      tables.add(tableName, new SqlMonikerImpl(tableName, SqlMonikerType.TABLE));
+      visibleTables.put(tableName.toUpperCase(), tableName);
+    }
+  }
+
+  /**
+   * Returns the index of the given database for a session which can see the given
+   * tables, building it if needed.
+   */
+  public static HeavyDBCompletionIndex get(String db, List<String> visibleTableNames) {
+    final List<String> key = new ArrayList<>();
+    key.add(db.toUpperCase());
+    for (String tableName : new TreeSet<>(visibleTableNames)) {
+      key.add(tableName);
+    }
+    try {
+      return INDEXES.get(key, () -> new HeavyDBCompletionIndex(visibleTableNames));
+    } catch (ExecutionException e) {
+      throw new RuntimeException(e.getCause());
+    }
+  }
+
+  /** Drops the indexes of a database, after its tables or their columns changed. */
+  public static void invalidate(String db) {
+    INDEXES.asMap().keySet().removeIf(key -> key.get(0).equalsIgnoreCase(db));
+  }
+
+  /**
+   * Returns the completion hints at the cursor position of a statement.
+   *
+   * @param columnLoader returns the column names of a table
+   * @return the hints, or null if the context can't be found without parsing the
+   *         statement, e.g. when the cursor is in a quoted identifier or when the
+   *         columns come from a subquery or a common table expression
+   */
+  public HeavyDBPlanner.CompletionResult getCompletionHints(String sql,
+          int cursor,
+          SqlOperatorTable operatorTable,
+          SqlParser.Config parserConfig,
+          Function<String, List<String>> columnLoader) {
+    cursor = cursor < 0 ? sql.length() : Math.min(cursor, sql.length());
+    final List<Token> tokens = Token.scan(sql, cursor);
+    if (tokens == null) {
+      return null;
+    }
+    int wordStart = cursor;
+    while (wordStart > 0 && Character.isJavaIdentifierPart(sql.charAt(wordStart - 1))) {
+      --wordStart;
+    }
+    final String word = sql.substring(wordStart, cursor);
+    // the tokens preceding the word being completed
+    int last = tokens.size() - 1;
+    if (last >= 0 && tokens.get(last).end == cursor && !word.isEmpty()) {
+      --last;
+    }
+    final List<Token> statement = Token.scan(sql, sql.length());
+    final Map<String, String> scope = getTablesInScope(statement);
+    final List<SqlMoniker> hints = new ArrayList<>();
+    if (last >= 1 && tokens.get(last).is(".") && tokens.get(last - 1).isWord()) {
+      // a qualified column
+      final String qualifier = tokens.get(last - 1).text.toUpperCase();
+      final String table = scope.getOrDefault(qualifier, qualifier);
+      if (!visibleTables.containsKey(table)) {
+        // a subquery or a common table expression, or a table the session can't see
+        return null;
+      }
+      getColumns(table, columnLoader).collect(word, hints);
+      return new HeavyDBPlanner.CompletionResult(hints, word);
+    }
+    if (last >= 0 && !tokens.get(last).quoted
+            && TABLE_KEYWORDS.contains(tokens.get(last).text.toUpperCase())) {
+      tables.collect(word, hints);
+      return new HeavyDBPlanner.CompletionResult(hints, word);
+    }
+    // the advisor resolves the columns of derived tables, and it doesn't reveal the
+    // columns of tables which are not visible either
+    if (readsDerivedTables(statement)
+            || !visibleTables.keySet().containsAll(scope.values())) {
+      return null;
+    }
+    final Set<String> columnNames = new LinkedHashSet<>();
+    for (String table : new TreeSet<>(scope.values())) {
+      final List<SqlMoniker> tableColumns = new ArrayList<>();
+      getColumns(table, columnLoader).collect(word, tableColumns);
+      for (SqlMoniker column : tableColumns) {
+        if (columnNames.add(column.toString())) {
+          hints.add(column);
+        }
+      }
+    }
+    getFunctions(operatorTable).collect(word, hints);
+    getKeywords(parserConfig).collect(word, hints);
+    return new HeavyDBPlanner.CompletionResult(hints, word);
+  }
+
+  // the tables read by a statement, by upper case table name and alias
+  private static Map<String, String> getTablesInScope(List<Token> tokens) {
+    final Map<String, String> scope = new HashMap<>();
+    if (tokens == null) {
+      return scope;
+    }
+    for (int i = 0; i < tokens.size(); i++) {
+      if (!tokens.get(i).is("FROM") && !tokens.get(i).is("JOIN")) {
+        continue;
+      }
+      // FROM t1 [AS] a1, t2 [AS] a2 ...
+      int j = i + 1;
+      while (j < tokens.size() && tokens.get(j).isWord()) {
+        String table = tokens.get(j).text.toUpperCase();
+        // db.table
+        while (j + 2 < tokens.size() && tokens.get(j + 1).is(".")
+                && tokens.get(j + 2).isWord()) {
+          j += 2;
+          table = tokens.get(j).text.toUpperCase();
+        }
+        scope.put(table, table);
+        j++;
+        if (j < tokens.size() && tokens.get(j).is("AS")) {
+          j++;
+        }
+        if (j < tokens.size() && tokens.get(j).isWord()
+                && !tokens.get(j).isClauseKeyword()) {
+          scope.put(tokens.get(j).text.toUpperCase(), table);
+          j++;
+        }
+        if (j >= tokens.size() || !tokens.get(j).is(",")) {
+          break;
+        }
+        j++;
+      }
+    }
+    return scope;
+  }
+
+  // whether a FROM or JOIN of the statement reads a subquery or a table function
+  private static boolean readsDerivedTables(List<Token> tokens) {
+    if (tokens == null) {
+      return false;
+    }
+    for (int i = 0; i + 1 < tokens.size(); i++) {
+      final Token token = tokens.get(i);
+      if ((token.is("FROM") || token.is("JOIN") || token.is(","))
+              && tokens.get(i + 1).is("(")) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private Trie getColumns(String table, Function<String, List<String>> columnLoader) {
+    return columns.computeIfAbsent(table, t -> {
+      final Trie trie = new Trie();
+      final List<String> columnNames;
+      try {
+        columnNames = columnLoader.apply(visibleTables.get(t));
+      } catch (RuntimeException e) {
+        HEAVYDBLOGGER.debug("No columns for table " + t + ": " + e.getMessage());
+        return trie;
+      }
+      for (String columnName : columnNames) {
+        trie.add(columnName, new SqlMonikerImpl(columnName, SqlMonikerType.COLUMN));
+      }
+      return trie;
+    });
+  }
+
+  private static Trie getFunctions(SqlOperatorTable operatorTable) {
+    return FUNCTIONS.computeIfAbsent(operatorTable, table -> {
+      final Trie trie = new Trie();
+      final Set<String> names = new TreeSet<>();
+      for (SqlOperator operator : table.getOperatorList()) {
+        if (operator instanceof SqlFunction && operator.getSyntax() == SqlSyntax.FUNCTION
+                && names.add(operator.getName().toUpperCase())) {
+          trie.add(operator.getName(),
+                  new SqlMonikerImpl(operator.getName(), SqlMonikerType.FUNCTION));
+        }
+      }
+      return trie;
+    });
+  }
+
+  // the keywords only depend on the parser implementation
+  private static Trie getKeywords(SqlParser.Config parserConfig) {
+    return KEYWORDS.computeIfAbsent(parserConfig.parserFactory(), factory -> {
+      final Trie trie = new Trie();
+      final SqlAbstractParserImpl.Metadata metadata =
+              SqlParser.create("", parserConfig).getMetadata();
+      for (String token : metadata.getTokens()) {
+        if (metadata.isKeyword(token)) {
+          trie.add(token, new SqlMonikerImpl(token, SqlMonikerType.KEYWORD));
+        }
+      }
+      return trie;
+    });
+  }
+
+  /** Prefix trie of monikers, matched case-insensitively. */
+  private static class Trie {
+    private final TreeMap<Character, Trie> children = new TreeMap<>();
+    private final List<SqlMoniker> monikers = new ArrayList<>();
+
+    void add(String name, SqlMoniker moniker) {
+      Trie node = this;
+      for (char c : name.toUpperCase().toCharArray()) {
+        node = node.children.computeIfAbsent(c, k -> new Trie());
+      }
+      node.monikers.add(moniker);
+    }
+
+    /** Adds the monikers whose name starts with the given prefix, in name order. */
+    void collect(String prefix, List<SqlMoniker> result) {
+      Trie node = this;
+      for (char c : prefix.toUpperCase().toCharArray()) {
+        node = node.children.get(c);
+        if (node == null) {
+          return;
+        }
+      }
+      node.collectAll(result);
+    }
+
+    private void collectAll(List<SqlMoniker> result) {
+      result.addAll(monikers);
+      for (Trie child : children.values()) {
+        child.collectAll(result);
+      }
+    }
+  }
+
+  /** Word or punctuation of a statement, outside of literals and comments. */
+  private static class Token {
+    // keywords which can follow a table in a FROM clause
+    private static final Set<String> CLAUSE_KEYWORDS = ImmutableSet.of("WHERE",
+            "GROUP",
+            "HAVING",
+            "ORDER",
+            "LIMIT",
+            "OFFSET",
+            "FETCH",
+            "UNION",
+            "INTERSECT",
+            "EXCEPT",
+            "JOIN",
+            "INNER",
+            "LEFT",
+            "RIGHT",
+            "FULL",
+            "CROSS",
+            "NATURAL",
+            "ON",
+            "USING",
+            "WINDOW",
+            "TABLESAMPLE",
+            "SET");
+
+    // the name of a quoted identifier, without its quotes
+    final String text;
+    final int end;
+    final boolean quoted;
+
+    Token(String text, int end, boolean quoted) {
+      this.text = text;
+      this.end = end;
+      this.quoted = quoted;
+    }
+
+    boolean isWord() {
+      return quoted || Character.isJavaIdentifierStart(text.charAt(0));
+    }
+
+    /** Whether the token is the given keyword or punctuation. */
+    boolean is(String keyword) {
+      return !quoted && text.equalsIgnoreCase(keyword);
+    }
+
+    boolean isClauseKeyword() {
+      return !quoted && CLAUSE_KEYWORDS.contains(text.toUpperCase());
+    }
+
+    /**
+     * @return the tokens of the statement up to the given position, or null if the
+     *         position is within a literal, a comment or a quoted identifier. The
+     *         literals and comments are skipped.
+     */
+    static List<Token> scan(String sql, int end) {
+      final List<Token> tokens = new ArrayList<>();
+      int i = 0;
+      while (i < end) {
+        final char c = sql.charAt(i);
+        if (Character.isWhitespace(c)) {
+          i++;
+        } else if (c == '\'' || c == '"') {
+          final int close = sql.indexOf(c, i + 1);
+          if (close < 0 || close >= end) {
+            return null;
+          }
+          if (c == '"' && close > i + 1) {
+            tokens.add(new Token(sql.substring(i + 1, close), close + 1, true));
+          }
+          i = close + 1;
+        } else if (sql.startsWith("--", i)) {
+          final int close = sql.indexOf('\n', i);
+          if (close < 0 || close >= end) {
+            return null;
+          }
+          i = close + 1;
+        } else if (sql.startsWith("/*", i)) {
+          final int close = sql.indexOf("*/", i + 2);
+          if (close < 0 || close + 2 > end) {
+            return null;
+          }
+          i = close + 2;
+        } else if (Character.isJavaIdentifierStart(c)) {
+          final int start = i;
+          while (i < end && Character.isJavaIdentifierPart(sql.charAt(i))) {
+            i++;
+          }
+          tokens.add(new Token(sql.substring(start, i), i, false));
+        } else {
+          tokens.add(new Token(String.valueOf(c), ++i, false));
+        }
+      }
+      return tokens;
+    }
+  }
+}
@@ -16,11 +16,19 @@
  */
 package org.apache.calcite.prepare;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.mapd.calcite.parser.HeavyDBParserOptions;
 import com.mapd.calcite.parser.HeavyDBSchema;
 import com.mapd.calcite.parser.ProjectProjectRemoveRule;
+import com.mapd.calcite.rel.metadata.HeavyDBRelMdRowCount;
 import com.mapd.calcite.rel.rules.FilterTableFunctionMultiInputTransposeRule;
+import com.mapd.calcite.rel.rules.MetadataAggregateRule;
+import com.mapd.calcite.rel.rules.SampleRatioFilterRule;
+import com.mapd.calcite.rel.rules.ShardPruningRule;
+import com.mapd.calcite.rel.rules.SortProjectCopyRule;
+import com.mapd.calcite.rel.rules.StatisticsGuidedAggregateJoinTransposeRule;
+import com.mapd.calcite.rel.rules.WindowProjectMergeRule;
 
 import org.apache.calcite.config.CalciteConnectionConfig;
 import org.apache.calcite.config.CalciteConnectionConfigImpl;
@@ -30,6 +38,9 @@ import org.apache.calcite.linq4j.function.Functions;
 import org.apache.calcite.plan.Context;
 import org.apache.calcite.plan.RelOptCluster;
 import org.apache.calcite.plan.RelOptCostImpl;
+import org.apache.calcite.plan.RelOptListener;
+import org.apache.calcite.plan.RelOptMaterialization;
+import org.apache.calcite.plan.RelOptMaterializations;
 import org.apache.calcite.plan.RelOptRule;
 import org.apache.calcite.plan.hep.HepPlanner;
 import org.apache.calcite.plan.hep.HepProgram;
@@ -37,11 +48,24 @@ import org.apache.calcite.plan.hep.HepProgramBuilder;
 import org.apache.calcite.plan.volcano.VolcanoPlanner;
 import org.apache.calcite.rel.RelNode;
 import org.apache.calcite.rel.RelRoot;
+import org.apache.calcite.rel.RelVisitor;
+import org.apache.calcite.rel.core.Correlate;
+import org.apache.calcite.rel.core.JoinRelType;
 import org.apache.calcite.rel.core.RelFactories;
+import org.apache.calcite.rel.core.TableModify;
+import org.apache.calcite.rel.core.TableScan;
 import org.apache.calcite.rel.externalize.HeavyDBRelJsonReader;
+import org.apache.calcite.rel.hint.Hintable;
+import org.apache.calcite.rel.hint.RelHint;
+import org.apache.calcite.rel.logical.LogicalJoin;
 import org.apache.calcite.rel.metadata.DefaultRelMetadataProvider;
+import org.apache.calcite.rel.metadata.RelMetadataProvider;
 import org.apache.calcite.rel.rules.*;
 import org.apache.calcite.rex.RexBuilder;
+import org.apache.calcite.rex.RexCall;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.rex.RexShuttle;
+import org.apache.calcite.rex.RexSubQuery;
 import org.apache.calcite.schema.SchemaPlus;
 import org.apache.calcite.sql.SqlKind;
 import org.apache.calcite.sql.SqlNode;
@@ -50,7 +74,11 @@ import org.apache.calcite.sql.parser.SqlParseException;
 import org.apache.calcite.sql.validate.SqlConformanceEnum;
 import org.apache.calcite.sql.validate.SqlMoniker;
 import org.apache.calcite.sql.validate.SqlValidator;
+import org.apache.calcite.sql2rel.RelFieldTrimmer;
 import org.apache.calcite.tools.FrameworkConfig;
+import org.apache.calcite.tools.RelBuilder;
+import org.apache.calcite.util.CancelFlag;
+import org.apache.calcite.util.Pair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -58,8 +86,14 @@ import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Customised version of the PlannerImpl for HEAVY.AI. Used to be a copy of
@@ -71,6 +105,11 @@ public class HeavyDBPlanner extends PlannerImpl {
   private List<HeavyDBParserOptions.FilterPushDownInfo> filterPushDownInfo =
           new ArrayList<>();
   private List<Restriction> restrictions = null;
+  private List<RelOptMaterialization> materializations = new ArrayList<>();
+  private MetadataAggregateRule.TableStatsProvider tableStatsProvider = null;
+  private boolean hasPlanningTimeBudget = false;
+  private long planningDeadlineNanos = 0;
+  private CancelFlag cancelFlag = null;
   final static Logger HEAVYDBLOGGER = LoggerFactory.getLogger(HeavyDBPlanner.class);
 
   public HeavyDBPlanner(FrameworkConfig config) {
@@ -176,6 +215,17 @@ public class HeavyDBPlanner extends PlannerImpl {
     }
   }
 
+  // a HepPlanner which stops before the next rule fires once the planning is cancelled
+  private HepPlanner createHepPlanner(
+          HepProgram hepProgram, boolean doNotEliminateSharedNodesInQueryPlanDag) {
+    HepPlanner planner =
+            getHepPlanner(hepProgram, doNotEliminateSharedNodesInQueryPlanDag);
+    if (cancelFlag != null) {
+      planner.addListener(new CancelListener());
+    }
+    return planner;
+  }
+
   @Override
   public RelRoot rel(SqlNode sql) {
     return super.rel(sql);
@@ -187,12 +237,15 @@ public class HeavyDBPlanner extends PlannerImpl {
 
   public RelNode optimizeRATree(
           RelNode rootNode, boolean viewOptimizationEnabled, boolean foundView) {
+    checkCancel();
+    rootNode = applyMaterializations(applySampling(rootNode));
     HepProgramBuilder firstOptPhaseProgram = HepProgram.builder();
     firstOptPhaseProgram.addRuleInstance(CoreRules.AGGREGATE_MERGE)
             .addRuleInstance(
                     new OuterJoinOptViaNullRejectionRule(RelFactories.LOGICAL_BUILDER))
             .addRuleInstance(CoreRules.AGGREGATE_UNION_TRANSPOSE)
             .addRuleInstance(CoreRules.JOIN_PUSH_EXPRESSIONS);
+    addTransitivePredicateInference(firstOptPhaseProgram);
     if (!viewOptimizationEnabled) {
       firstOptPhaseProgram.addRuleInstance(CoreRules.FILTER_PROJECT_TRANSPOSE)
               .addRuleInstance(
@@ -213,21 +266,31 @@ public class HeavyDBPlanner extends PlannerImpl {
         firstOptPhaseProgram.addRuleInstance(ProjectProjectRemoveRule.INSTANCE);
       }
     }
-    HepProgram firstOptPhase = firstOptPhaseProgram.build();
-    HepPlanner firstPlanner = HeavyDBPlanner.getHepPlanner(firstOptPhase, true);
-    firstPlanner.setRoot(rootNode);
-    final RelNode firstOptimizedPlanRoot = firstPlanner.findBestExp();
+    firstOptPhaseProgram.addRuleInstance(WindowProjectMergeRule.Config.DEFAULT.toRule());
+    RelNode firstOptimizedPlanRoot =
+            applyOptionalOptPhase(firstOptPhaseProgram.build(), rootNode, "first");
+    if (foundView) {
+      firstOptimizedPlanRoot = applyEmptyBranchPruning(firstOptimizedPlanRoot);
+    }
+    firstOptimizedPlanRoot = applyAggregateJoinTranspose(firstOptimizedPlanRoot);
 
     boolean hasRLSFilter = null != restrictions && !restrictions.isEmpty();
     boolean needsSecondOptPhase = hasRLSFilter || !filterPushDownInfo.isEmpty();
     if (needsSecondOptPhase) {
+      // the RLS filter is mandatory for correctness, so it is always injected even if
+      // the planning time budget is exhausted; the filter push-down is best-effort
+      final boolean skipFilterPushDown = isPlanningTimeBudgetExceeded();
+      if (skipFilterPushDown && !filterPushDownInfo.isEmpty()) {
+        HEAVYDBLOGGER.info(
+                "Planning time budget exceeded, skipping the filter push-down phase");
+      }
       HepProgramBuilder secondOptPhaseProgram = HepProgram.builder();
       if (hasRLSFilter) {
         final InjectFilterRule injectFilterRule =
                 InjectFilterRule.Config.DEFAULT.toRule(restrictions);
         secondOptPhaseProgram.addRuleInstance(injectFilterRule);
       }
-      if (!filterPushDownInfo.isEmpty()) {
+      if (!filterPushDownInfo.isEmpty() && !skipFilterPushDown) {
         final DynamicFilterJoinRule dynamicFilterJoinRule =
                 new DynamicFilterJoinRule(true,
                         RelFactories.LOGICAL_BUILDER,
@@ -237,15 +300,452 @@ public class HeavyDBPlanner extends PlannerImpl {
       }
 
       HepProgram secondOptPhase = secondOptPhaseProgram.build();
-      HepPlanner secondPlanner = HeavyDBPlanner.getHepPlanner(secondOptPhase, true);
+      checkCancel();
+      HepPlanner secondPlanner = createHepPlanner(secondOptPhase, true);
       secondPlanner.setRoot(firstOptimizedPlanRoot);
       final RelNode secondOptimizedPlanRoot = secondPlanner.findBestExp();
       if (!filterPushDownInfo.isEmpty()) {
         filterPushDownInfo.clear();
       }
-      return secondOptimizedPlanRoot;
+      return finishOptimization(secondOptimizedPlanRoot);
     } else {
-      return firstOptimizedPlanRoot;
+      return finishOptimization(firstOptimizedPlanRoot);
+    }
+  }
+
+  /**
+   * Removes the inputs of UNION ALL which cannot produce any row, e.g. the branches of a
+   * view partitioning a table by month which a query filters on another month. The
+   * filters of the query are pushed into the branches and merged with their own, and
+   * a conjunction of contradictory ranges on a column is reduced to an empty input,
+   * which is then pruned along with the operators above it. The filters are only kept
+   * in their pushed down form if this removes any table scan.
+   */
+  private RelNode applyEmptyBranchPruning(RelNode root) {
+    HepProgram program =
+            HepProgram.builder()
+                    .addRuleCollection(ImmutableList.<RelOptRule>of(
+                            CoreRules.FILTER_SET_OP_TRANSPOSE,
+                            CoreRules.FILTER_PROJECT_TRANSPOSE,
+                            CoreRules.FILTER_MERGE,
+                            CoreRules.FILTER_REDUCE_EXPRESSIONS,
+                            PruneEmptyRules.UNION_INSTANCE,
+                            PruneEmptyRules.PROJECT_INSTANCE,
+                            PruneEmptyRules.FILTER_INSTANCE,
+                            PruneEmptyRules.SORT_INSTANCE,
+                            PruneEmptyRules.AGGREGATE_INSTANCE,
+                            PruneEmptyRules.JOIN_LEFT_INSTANCE,
+                            PruneEmptyRules.JOIN_RIGHT_INSTANCE))
+                    .build();
+    final RelNode prunedRoot;
+    try {
+      prunedRoot = applyOptionalOptPhase(program, root, "empty branch pruning");
+    } catch (PlanningCancelledException e) {
+      throw e;
+    } catch (RuntimeException e) {
+      // reducing expressions may evaluate functions unknown to Calcite's executor
+      HEAVYDBLOGGER.debug("Could not prune empty branches: " + e.getMessage());
+      return root;
+    }
+    final int scanCount = countTableScans(root);
+    final int prunedScanCount = countTableScans(prunedRoot);
+    if (prunedScanCount == scanCount
+            || !collectAllHints(prunedRoot).equals(collectAllHints(root))) {
+      return root;
+    }
+    HEAVYDBLOGGER.debug("Pruned " + (scanCount - prunedScanCount)
+            + " table scans which cannot produce any row");
+    return prunedRoot;
+  }
+
+  private static int countTableScans(RelNode root) {
+    final int[] count = {0};
+    new RelVisitor() {
+      @Override
+      public void visit(RelNode node, int ordinal, RelNode parent) {
+        if (node instanceof TableScan) {
+          count[0]++;
+        }
+        super.visit(node, ordinal, parent);
+      }
+    }.go(root);
+    return count[0];
+  }
+
+  /**
+   * Pushes aggregates below joins, e.g. to pre-aggregate a fact table on its join key
+   * before joining it to its dimensions, when an aggregate_join_transpose hint asks
+   * for it. The hint may carry the largest ratio of estimated groups to joined rows
+   * at which an aggregate is still pushed down. The estimates start from the row
+   * counts of the tables, and without them no aggregate is pushed down.
+   */
+  private RelNode applyAggregateJoinTranspose(RelNode root) {
+    final List<RelHint> hints = collectHints(root, "aggregate_join_transpose");
+    if (hints.isEmpty()) {
+      return root;
+    }
+    double maxGroupRatio =
+            StatisticsGuidedAggregateJoinTransposeRule.DEFAULT_MAX_GROUP_RATIO;
+    for (RelHint hint : hints) {
+      if (hint.listOptions.size() == 1) {
+        try {
+          maxGroupRatio = Double.parseDouble(hint.listOptions.get(0));
+        } catch (NumberFormatException e) {
+          HEAVYDBLOGGER.warn("Ignoring invalid aggregate_join_transpose hint: " + hint);
+        }
+      }
+    }
+    if (tableStatsProvider == null) {
+      HEAVYDBLOGGER.debug("No table statistics, keeping hinted aggregates above joins");
+      return root;
+    }
+    HepProgram program =
+            HepProgram.builder()
+                    .addRuleInstance(CoreRules.AGGREGATE_PROJECT_MERGE)
+                    .addRuleInstance(
+                            StatisticsGuidedAggregateJoinTransposeRule.Config.DEFAULT
+                                    .toRule(maxGroupRatio))
+                    .build();
+    final RelOptCluster cluster = root.getCluster();
+    final RelMetadataProvider metadataProvider = cluster.getMetadataProvider();
+    final RelNode transposedRoot;
+    cluster.setMetadataProvider(HeavyDBRelMdRowCount.SOURCE);
+    cluster.invalidateMetadataQuery();
+    HeavyDBRelMdRowCount.setStatsProvider(tableStatsProvider);
+    try {
+      transposedRoot = applyOptionalOptPhase(program, root, "aggregate join transpose");
+    } finally {
+      HeavyDBRelMdRowCount.setStatsProvider(null);
+      cluster.setMetadataProvider(metadataProvider);
+      cluster.invalidateMetadataQuery();
+    }
+    if (!collectAllHints(transposedRoot).equals(collectAllHints(root))) {
+      // the rebuilt aggregates do not carry the hints of the original ones
+      HEAVYDBLOGGER.debug("Pushing aggregates below joins dropped query hints, "
+              + "skipping it");
+      return root;
+    }
+    return transposedRoot;
+  }
+
+  /**
+   * Replaces TABLESAMPLE clauses and sample hints by SAMPLE_RATIO filters on the
+   * sampled scans. The sampling is part of the query's meaning, so unlike the
+   * optimization phases it is never skipped for lack of planning time. It runs before
+   * the materialized query rewrite, which can't answer a sampled scan.
+   */
+  private RelNode applySampling(RelNode root) {
+    final HepProgram program =
+            HepProgram.builder()
+                    .addRuleCollection(ImmutableList.<RelOptRule>of(
+                            SampleRatioFilterRule.Config.SAMPLE.toRule(),
+                            SampleRatioFilterRule.Config.HINT.toRule()))
+                    .build();
+    HepPlanner planner = createHepPlanner(program, false);
+    planner.setRoot(root);
+    return planner.findBestExp();
+  }
+
+  /**
+   * Replaces the parts of the plan computed by a materialized query with a scan of the
+   * table storing its result, using the first materialization that matches. Plans
+   * subject to row-level security are left alone, as the filters for the tables read
+   * by the query do not apply to the materialized result.
+   */
+  private RelNode applyMaterializations(RelNode root) {
+    if (materializations.isEmpty() || isPlanningTimeBudgetExceeded()
+            || (restrictions != null && !restrictions.isEmpty())) {
+      return root;
+    }
+    try {
+      for (Pair<RelNode, List<RelOptMaterialization>> rewrite :
+              RelOptMaterializations.useMaterializedViews(root, materializations)) {
+        if (!collectAllHints(rewrite.left).equals(collectAllHints(root))) {
+          continue;
+        }
+        HEAVYDBLOGGER.debug("Using materialized query of "
+                + rewrite.right.get(0).qualifiedTableName);
+        return rewrite.left;
+      }
+    } catch (PlanningCancelledException e) {
+      throw e;
+    } catch (RuntimeException e) {
+      HEAVYDBLOGGER.warn("Ignoring materialized queries after a failed rewrite", e);
+    }
+    return root;
+  }
+
+  private RelNode finishOptimization(RelNode root) {
+    final RelNode reducedRoot = applyLimitPushDown(applyKeyBasedRemoval(root));
+    return eliminateCommonSubtrees(
+            applyShardPruning(applyMetadataAggregates(trimUnusedFields(reducedRoot))));
+  }
+
+  /**
+   * Merges the identical subtrees of the plan, e.g. the expansions of a CTE which is
+   * used several times, into one node shared by all of their users. The JSON writer
+   * emits a shared node once, and the executor computes it once. This runs last, as
+   * the rule-based phases above do not expect a DAG. Subtrees calling a
+   * non-deterministic function are kept apart, as each copy has its own results.
+   */
+  public static RelNode eliminateCommonSubtrees(RelNode root) {
+    return share(root,
+            new IdentityHashMap<RelNode, RelNode>(),
+            new HashMap<Pair<String, List<RelHint>>, RelNode>());
+  }
+
+  private static RelNode share(RelNode rel,
+          Map<RelNode, RelNode> shared,
+          Map<Pair<String, List<RelHint>>, RelNode> canonical) {
+    final RelNode visited = shared.get(rel);
+    if (visited != null) {
+      return visited;
+    }
+    final List<RelNode> inputs = new ArrayList<>();
+    boolean inputsChanged = false;
+    for (RelNode input : rel.getInputs()) {
+      final RelNode sharedInput = share(input, shared, canonical);
+      inputs.add(sharedInput);
+      inputsChanged = inputsChanged || sharedInput != input;
+    }
+    RelNode result = inputsChanged ? rel.copy(rel.getTraitSet(), inputs) : rel;
+    if (isDeterministic(result)) {
+      // the digest refers to the inputs by id, so it is the same for the copies of a
+      // subtree only once their inputs are shared
+      final List<RelHint> hints = result instanceof Hintable
+              ? ((Hintable) result).getHints()
+              : ImmutableList.<RelHint>of();
+      final RelNode first =
+              canonical.putIfAbsent(Pair.of(result.getDigest(), hints), result);
+      if (first != null) {
+        result = first;
+      }
+    }
+    shared.put(rel, result);
+    return result;
+  }
+
+  private static boolean isDeterministic(RelNode rel) {
+    final boolean[] deterministic = {true};
+    rel.accept(new RexShuttle() {
+      @Override
+      public RexNode visitCall(RexCall call) {
+        deterministic[0] = deterministic[0] && call.getOperator().isDeterministic();
+        return super.visitCall(call);
+      }
+    });
+    return deterministic[0];
+  }
+
+  /**
+   * Removes the aggregates whose input is already unique on the grouping columns, e.g.
+   * a DISTINCT over a GROUP BY of the same columns, and the left joins to an input
+   * which is unique on the join columns and of which no column is used, e.g. a join
+   * to a dimension table nothing is selected from. The removal is skipped if it drops
+   * query hints.
+   */
+  private RelNode applyKeyBasedRemoval(RelNode root) {
+    HepProgram program = HepProgram.builder()
+                                 .addRuleCollection(ImmutableList.<RelOptRule>of(
+                                         CoreRules.AGGREGATE_REMOVE,
+                                         CoreRules.AGGREGATE_JOIN_REMOVE,
+                                         CoreRules.PROJECT_JOIN_REMOVE))
+                                 .build();
+    final RelNode reducedRoot = applyOptionalOptPhase(program, root, "key-based removal");
+    if (!collectAllHints(reducedRoot).equals(collectAllHints(root))) {
+      HEAVYDBLOGGER.debug("Removing aggregates and joins dropped query hints, "
+              + "skipping it");
+      return root;
+    }
+    return reducedRoot;
+  }
+
+  /**
+   * Annotates the scans of sharded tables with the shards their filter may match.
+   * This runs once the filters have reached the scans, and the scans are final.
+   */
+  private RelNode applyShardPruning(RelNode root) {
+    HepProgram program =
+            HepProgram.builder()
+                    .addRuleCollection(ImmutableList.<RelOptRule>of(
+                            ShardPruningRule.Config.FILTER_SCAN.toRule(),
+                            ShardPruningRule.Config.FILTER_PROJECT_SCAN.toRule()))
+                    .build();
+    return applyOptionalOptPhase(program, root, "shard pruning");
+  }
+
+  /**
+   * Answers the aggregates without grouping keys of a whole table, like COUNT(*) or
+   * the MIN and MAX of a column, from the table's metadata. This runs last, once no
+   * filter can be pushed below such an aggregate anymore, and not at all for plans
+   * subject to row-level security.
+   */
+  private RelNode applyMetadataAggregates(RelNode root) {
+    if (tableStatsProvider == null
+            || (restrictions != null && !restrictions.isEmpty())) {
+      return root;
+    }
+    HepProgram program =
+            HepProgram.builder()
+                    .addRuleCollection(ImmutableList.<RelOptRule>of(
+                            MetadataAggregateRule.Config.AGGREGATE_SCAN
+                                    .withStatsProvider(tableStatsProvider)
+                                    .toRule(),
+                            MetadataAggregateRule.Config.AGGREGATE_PROJECT_SCAN
+                                    .withStatsProvider(tableStatsProvider)
+                                    .toRule()))
+                    .build();
+    return applyOptionalOptPhase(program, root, "metadata aggregate");
+  }
+
+  /**
+   * Copies sorts with a fetch limit into the inputs of UNION ALL and into the
+   * preserved side of outer joins, looking through projections, so that each input
+   * only produces as many rows as the query can return. This runs after the RLS and
+   * filter push-down phases so that no filter ends up above a copied limit. It is
+   * skipped for plans with a keep_result or keep_table_function_result hint,
+   * whose kept results must not be truncated.
+   */
+  private RelNode applyLimitPushDown(RelNode root) {
+    if (!collectHints(root, "keep_result").isEmpty()
+            || !collectHints(root, "keep_table_function_result").isEmpty()) {
+      return root;
+    }
+    HepProgram limitPushDownProgram =
+            HepProgram.builder()
+                    .addRuleCollection(
+                            ImmutableList.<RelOptRule>of(
+                                    SortProjectCopyRule.Config.DEFAULT.toRule(),
+                                    CoreRules.SORT_UNION_TRANSPOSE,
+                                    CoreRules.SORT_JOIN_TRANSPOSE))
+                    .build();
+    return applyOptionalOptPhase(limitPushDownProgram, root, "limit push-down");
+  }
+
+  /**
+   * Narrows every table scan to the columns which are actually used, by placing a
+   * projection of those columns directly on top of the scan. Plans the trimmer cannot
+   * handle safely are returned unchanged: columns referenced through sub-queries or
+   * correlation variables are invisible to it, table modifications rely on the scan
+   * layout, and a trimmed plan which lost any query hint is discarded.
+   */
+  private RelNode trimUnusedFields(RelNode root) {
+    if (isPlanningTimeBudgetExceeded() || !canTrimFields(root)) {
+      return root;
+    }
+    final RelBuilder relBuilder =
+            RelFactories.LOGICAL_BUILDER.create(root.getCluster(), null);
+    final RelNode trimmedRoot;
+    try {
+      trimmedRoot = new RelFieldTrimmer(null, relBuilder).trim(root);
+    } catch (PlanningCancelledException e) {
+      throw e;
+    } catch (RuntimeException e) {
+      HEAVYDBLOGGER.debug("Could not trim unused fields: " + e.getMessage());
+      return root;
+    }
+    if (!collectAllHints(trimmedRoot).equals(collectAllHints(root))) {
+      HEAVYDBLOGGER.debug("Trimming unused fields dropped query hints, skipping it");
+      return root;
+    }
+    return trimmedRoot;
+  }
+
+  private static boolean canTrimFields(RelNode root) {
+    final boolean[] trimmable = {true};
+    final RexShuttle subQueryFinder = new RexShuttle() {
+      @Override
+      public RexNode visitSubQuery(RexSubQuery subQuery) {
+        trimmable[0] = false;
+        return subQuery;
+      }
+    };
+    new RelVisitor() {
+      @Override
+      public void visit(RelNode node, int ordinal, RelNode parent) {
+        if (node instanceof TableModify || node instanceof Correlate
+                || !node.getVariablesSet().isEmpty()) {
+          trimmable[0] = false;
+        } else {
+          node.accept(subQueryFinder);
+        }
+        if (trimmable[0]) {
+          super.visit(node, ordinal, parent);
+        }
+      }
+    }.go(root);
+    return trimmable[0];
+  }
+
+  // the hints of a tree, ignoring which nodes they are attached to
+  private static Set<String> collectAllHints(RelNode root) {
+    final Set<String> hints = new HashSet<>();
+    new RelVisitor() {
+      @Override
+      public void visit(RelNode node, int ordinal, RelNode parent) {
+        if (node instanceof Hintable) {
+          for (RelHint hint : ((Hintable) node).getHints()) {
+            hints.add(hint.hintName + hint.listOptions + hint.kvOptions);
+          }
+        }
+        super.visit(node, ordinal, parent);
+      }
+    }.go(root);
+    return hints;
+  }
+
+  /**
+   * Infers predicates across equi-joins, e.g. a range filter on a fact table's join
+   * key becomes a filter on the dimension's key too, so that the executor can skip
+   * fragments of both join inputs. The predicates are found on the join inputs, so
+   * the filters above the join and the join conditions on a single input are pushed
+   * into the inputs first. The inferred filters are placed on the join inputs and
+   * pushed further down by the filter rules of the first phase.
+   */
+  private static void addTransitivePredicateInference(HepProgramBuilder program) {
+    final RelOptRule transitivePredicatesRule =
+            JoinPushTransitivePredicatesRule.Config.DEFAULT
+                    .withOperandSupplier(b0
+                            -> b0.operand(LogicalJoin.class)
+                                       .predicate(join
+                                               -> join.getJoinType() == JoinRelType.INNER
+                                                       || join.getJoinType()
+                                                               == JoinRelType.LEFT
+                                                       || join.getJoinType()
+                                                               == JoinRelType.RIGHT)
+                                       .anyInputs())
+                    .as(JoinPushTransitivePredicatesRule.Config.class)
+                    .toRule();
+    program.addRuleInstance(CoreRules.FILTER_INTO_JOIN)
+            .addRuleInstance(CoreRules.JOIN_CONDITION_PUSH)
+            .addRuleInstance(transitivePredicatesRule);
+  }
+
+  /**
+   * Runs an optimization phase which is not required for the correctness of the
+   * plan. The phase is skipped if the planning time budget is already exhausted, and
+   * abandoned (returning its input unchanged) if the budget runs out while its rules
+   * are being fired.
+   */
+  private RelNode applyOptionalOptPhase(
+          HepProgram program, RelNode root, String phaseName) {
+    checkCancel();
+    if (isPlanningTimeBudgetExceeded()) {
+      HEAVYDBLOGGER.info("Planning time budget exceeded, skipping the " + phaseName
+              + " optimization phase");
+      return root;
+    }
+    HepPlanner planner = createHepPlanner(program, true);
+    if (hasPlanningTimeBudget) {
+      planner.addListener(new PlanningTimeBudgetListener());
+    }
+    planner.setRoot(root);
+    try {
+      return planner.findBestExp();
+    } catch (PlanningTimeBudgetExceededException e) {
+      HEAVYDBLOGGER.info("Planning time budget exceeded, abandoning the " + phaseName
+              + " optimization phase");
+      return root;
     }
   }
 
@@ -257,7 +757,7 @@ public class HeavyDBPlanner extends PlannerImpl {
 
     final HepProgram program =
             HepProgram.builder().addRuleInstance(injectFilterRule).build();
-    HepPlanner prePlanner = HeavyDBPlanner.getHepPlanner(program, false);
+    HepPlanner prePlanner = createHepPlanner(program, false);
     prePlanner.setRoot(root.rel);
     final RelNode rootRelNode = prePlanner.findBestExp();
     return root.withRel(rootRelNode);
@@ -273,7 +773,7 @@ public class HeavyDBPlanner extends PlannerImpl {
             filterPushDownInfo);
     final HepProgram program =
             HepProgram.builder().addRuleInstance(dynamicFilterJoinRule).build();
-    HepPlanner prePlanner = HeavyDBPlanner.getHepPlanner(program, false);
+    HepPlanner prePlanner = createHepPlanner(program, false);
     prePlanner.setRoot(root.rel);
     final RelNode rootRelNode = prePlanner.findBestExp();
     filterPushDownInfo.clear();
@@ -281,13 +781,25 @@ public class HeavyDBPlanner extends PlannerImpl {
   }
 
   private RelRoot applyOptimizationsRules(RelRoot root, ImmutableSet<RelOptRule> rules) {
+    if (isPlanningTimeBudgetExceeded()) {
+      HEAVYDBLOGGER.info("Planning time budget exceeded, skipping rules " + rules);
+      return root;
+    }
     HepProgramBuilder programBuilder = new HepProgramBuilder();
     for (RelOptRule rule : rules) {
       programBuilder.addRuleInstance(rule);
     }
-    HepPlanner hepPlanner = HeavyDBPlanner.getHepPlanner(programBuilder.build(), false);
+    HepPlanner hepPlanner = createHepPlanner(programBuilder.build(), false);
+    if (hasPlanningTimeBudget) {
+      hepPlanner.addListener(new PlanningTimeBudgetListener());
+    }
     hepPlanner.setRoot(root.rel);
-    return root.withRel(hepPlanner.findBestExp());
+    try {
+      return root.withRel(hepPlanner.findBestExp());
+    } catch (PlanningTimeBudgetExceededException e) {
+      HEAVYDBLOGGER.info("Planning time budget exceeded, skipping rules " + rules);
+      return root;
+    }
   }
 
   public RelRoot buildRATreeAndPerformQueryOptimization(
@@ -318,9 +830,14 @@ public class HeavyDBPlanner extends PlannerImpl {
     relR = applyOptimizationsRules(relR,
             ImmutableSet.of(
                     CoreRules.FILTER_PROJECT_TRANSPOSE, CoreRules.PROJECT_REMOVE));
+    relR = relR.withRel(applyLimitPushDown(relR.rel));
     return RelRoot.of(relR.project(), relR.kind);
   }
 
+  public void setMaterializations(final List<RelOptMaterialization> materializations) {
+    this.materializations = materializations;
+  }
+
   public void setFilterPushDownInfo(
           final List<HeavyDBParserOptions.FilterPushDownInfo> filterPushDownInfo) {
     this.filterPushDownInfo = filterPushDownInfo;
@@ -329,6 +846,126 @@ public class HeavyDBPlanner extends PlannerImpl {
   public void setRestrictions(List<Restriction> restrictions) {
     this.restrictions = restrictions;
   }
+
+  public void setTableStatsProvider(
+          MetadataAggregateRule.TableStatsProvider tableStatsProvider) {
+    this.tableStatsProvider = tableStatsProvider;
+  }
+
+  /**
+   * Bounds the time spent in the optional optimization phases of this planner.
+   *
+   * @param planningStartNanos value of {@link System#nanoTime()} when the planning of
+   *         the query started
+   * @param budgetMs the planning time budget in milliseconds, zero or less disables
+   *         the budget
+   */
+  public void setPlanningTimeBudget(long planningStartNanos, long budgetMs) {
+    hasPlanningTimeBudget = budgetMs > 0;
+    if (hasPlanningTimeBudget) {
+      planningDeadlineNanos =
+              planningStartNanos + TimeUnit.MILLISECONDS.toNanos(budgetMs);
+    }
+  }
+
+  public boolean isPlanningTimeBudgetExceeded() {
+    return hasPlanningTimeBudget && System.nanoTime() - planningDeadlineNanos > 0;
+  }
+
+  /**
+   * Makes the planning of the query stop at the next phase or rule once the flag is
+   * raised, by throwing a {@link PlanningCancelledException}.
+   */
+  public void setCancelFlag(CancelFlag cancelFlag) {
+    this.cancelFlag = cancelFlag;
+  }
+
+  public void checkCancel() {
+    if (cancelFlag != null && cancelFlag.isCancelRequested()) {
+      throw new PlanningCancelledException();
+    }
+  }
+
+  /**
+   * Returns the hints named {@code hintName} (or its global variant {@code
+   * g_hintName}) attached to any node of the given tree.
+   */
+  public static List<RelHint> collectHints(RelNode root, String hintName) {
+    final String globalHintName = "g_".concat(hintName);
+    final List<RelHint> hints = new ArrayList<>();
+    new RelVisitor() {
+      @Override
+      public void visit(RelNode node, int ordinal, RelNode parent) {
+        if (node instanceof Hintable) {
+          for (RelHint hint : ((Hintable) node).getHints()) {
+            if (hint.hintName.equalsIgnoreCase(hintName)
+                    || hint.hintName.equalsIgnoreCase(globalHintName)) {
+              hints.add(hint);
+            }
+          }
+        }
+        super.visit(node, ordinal, parent);
+      }
+    }.go(root);
+    return hints;
+  }
+
+  private static class PlanningTimeBudgetExceededException extends RuntimeException {
+    PlanningTimeBudgetExceededException() {
+      super("Planning time budget exceeded", null, false, false);
+    }
+  }
+
+  /** Thrown when the planning of a query is cancelled. */
+  public static class PlanningCancelledException extends RuntimeException {
+    public PlanningCancelledException() {
+      super("Query planning was interrupted", null, false, false);
+    }
+  }
+
+  private class CancelListener implements RelOptListener {
+    @Override
+    public void relEquivalenceFound(RelEquivalenceEvent event) {}
+
+    @Override
+    public void ruleAttempted(RuleAttemptedEvent event) {
+      if (event.isBefore()) {
+        checkCancel();
+      }
+    }
+
+    @Override
+    public void ruleProductionSucceeded(RuleProductionEvent event) {}
+
+    @Override
+    public void relDiscarded(RelDiscardedEvent event) {}
+
+    @Override
+    public void relChosen(RelChosenEvent event) {}
+  }
+
+  // aborts the enclosing HepPlanner run before the next rule fires once the budget
+  // is exhausted
+  private class PlanningTimeBudgetListener implements RelOptListener {
+    @Override
+    public void relEquivalenceFound(RelEquivalenceEvent event) {}
+
+    @Override
+    public void ruleAttempted(RuleAttemptedEvent event) {
+      if (event.isBefore() && isPlanningTimeBudgetExceeded()) {
+        throw new PlanningTimeBudgetExceededException();
+      }
+    }
+
+    @Override
+    public void ruleProductionSucceeded(RuleProductionEvent event) {}
+
+    @Override
+    public void relDiscarded(RelDiscardedEvent event) {}
+
+    @Override
+    public void relChosen(RelChosenEvent event) {}
+  }
 }
 
 // End HeavyDBPlanner.java
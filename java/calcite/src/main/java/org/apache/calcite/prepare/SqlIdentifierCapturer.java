@@ -19,13 +19,17 @@ package org.apache.calcite.prepare;
 import com.google.common.collect.ImmutableList;
 
 import org.apache.calcite.sql.SqlBasicCall;
+import org.apache.calcite.sql.SqlCall;
 import org.apache.calcite.sql.SqlDataTypeSpec;
 import org.apache.calcite.sql.SqlDelete;
+import org.apache.calcite.sql.SqlDynamicParam;
 import org.apache.calcite.sql.SqlIdentifier;
 import org.apache.calcite.sql.SqlInsert;
+import org.apache.calcite.sql.SqlIntervalQualifier;
 import org.apache.calcite.sql.SqlJoin;
 import org.apache.calcite.sql.SqlKind;
 import org.apache.calcite.sql.SqlLiteral;
+import org.apache.calcite.sql.SqlMerge;
 import org.apache.calcite.sql.SqlNode;
 import org.apache.calcite.sql.SqlNodeList;
 import org.apache.calcite.sql.SqlOrderBy;
@@ -34,30 +38,28 @@ import org.apache.calcite.sql.SqlUpdate;
 import org.apache.calcite.sql.SqlWith;
 import org.apache.calcite.sql.SqlWithItem;
 import org.apache.calcite.sql.parser.SqlParser;
+import org.apache.calcite.sql.util.SqlVisitor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.lang.reflect.Method;
-import java.lang.reflect.Modifier;
-import java.util.Collection;
 import java.util.HashSet;
 import java.util.IdentityHashMap;
-import java.util.Map;
+import java.util.List;
 import java.util.Set;
 import java.util.Stack;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * scans from a root {@link SqlNode} and retrieves all {@link SqlIdentifier}s
  * used in a query.
+ *
+ * <p>The children of a call are its operands. The source select of an UPDATE, DELETE
+ * or MERGE is not an operand and is scanned explicitly. DDL statements whose
+ * operand list is null have nothing to scan.
  */
 public class SqlIdentifierCapturer {
   final static Logger HEAVYDBLOGGER =
           LoggerFactory.getLogger(SqlIdentifierCapturer.class);
 
-  private static final Map<Class<?>, Set<Method>> GETTERS_CACHE =
-          new ConcurrentHashMap<>();
-
   private IdentityHashMap<SqlNode, SqlNode> visitedNodes = new IdentityHashMap<>();
 
   private Stack<Set<ImmutableList<String>>> currentList = new Stack<>();
@@ -70,6 +72,49 @@ public class SqlIdentifierCapturer {
 
   private final Set<ImmutableList<String>> ignore = new HashSet<>();
 
+  private final SqlVisitor<Void> visitor = new SqlVisitor<Void>() {
+    @Override
+    public Void visit(SqlLiteral literal) {
+      return null;
+    }
+
+    @Override
+    public Void visit(SqlCall call) {
+      scanCall(call);
+      return null;
+    }
+
+    @Override
+    public Void visit(SqlNodeList nodeList) {
+      for (SqlNode node : nodeList) {
+        scan(node);
+      }
+      return null;
+    }
+
+    @Override
+    public Void visit(SqlIdentifier id) {
+      // we need all the hierachy now to deal with multischema
+      currentList.peek().add(id.names.reverse());
+      return null;
+    }
+
+    @Override
+    public Void visit(SqlDataTypeSpec type) {
+      return null;
+    }
+
+    @Override
+    public Void visit(SqlDynamicParam param) {
+      return null;
+    }
+
+    @Override
+    public Void visit(SqlIntervalQualifier intervalQualifier) {
+      return null;
+    }
+  };
+
   { currentList.push(ignore); }
 
   public void scan(SqlNode root) {
@@ -85,20 +130,10 @@ public class SqlIdentifierCapturer {
       return;
     }
 
-    if (root instanceof SqlNodeList) {
-      SqlNodeList snl = (SqlNodeList) root;
-      for (SqlNode node : snl) {
-        scan(node);
-      }
-      return;
-    }
-
-    if (root instanceof SqlIdentifier) {
-      // we need all the hierachy now to deal with multischema
-      currentList.peek().add(((SqlIdentifier) root).names.reverse());
-      return;
-    }
+    root.accept(visitor);
+  }
 
+  private void scanCall(SqlCall root) {
     if (root instanceof SqlBasicCall) {
       SqlBasicCall call = (SqlBasicCall) root;
       if (call.getOperator().getKind() == SqlKind.ARGUMENT_ASSIGNMENT) {
@@ -164,29 +199,24 @@ public class SqlIdentifierCapturer {
       currentList.pop();
     }
 
-    Set<Method> methods = getRelevantGetters(root);
-    for (Method m : methods) {
-      Object value = null;
-      try {
-        value = m.invoke(root);
-      } catch (Exception e) {
-      }
-
-      if (value instanceof SqlNode[]) {
-        SqlNode[] nodes = (SqlNode[]) value;
-        for (SqlNode node : nodes) {
-          scan(node);
-        }
-      } else if (value instanceof SqlNode) {
-        scan((SqlNode) value);
-      } else if (value instanceof Collection) {
-        for (Object vobj : ((Collection<?>) value)) {
-          if (vobj instanceof SqlNode) {
-            scan((SqlNode) vobj);
-          }
-        }
+    List<SqlNode> operands = null;
+    try {
+      operands = root.getOperandList();
+    } catch (UnsupportedOperationException e) {
+      // a statement without operands
+    }
+    if (operands != null) {
+      for (SqlNode operand : operands) {
+        scan(operand);
       }
     }
+    if (root instanceof SqlUpdate) {
+      scan(((SqlUpdate) root).getSourceSelect());
+    } else if (root instanceof SqlDelete) {
+      scan(((SqlDelete) root).getSourceSelect());
+    } else if (root instanceof SqlMerge) {
+      scan(((SqlMerge) root).getSourceSelect());
+    }
 
     if (root instanceof SqlWith) {
       SqlWith with = (SqlWith) root;
@@ -202,41 +232,6 @@ public class SqlIdentifierCapturer {
     }
   }
 
-  Set<Method> getRelevantGetters(Object obj) {
-    Class<?> root = obj.getClass();
-
-    Set<Method> methods = GETTERS_CACHE.get(root);
-    if (null != methods) {
-      return methods;
-    } else {
-      methods = new HashSet<>();
-    }
-
-    while (root != null) {
-      if (root == SqlNode.class) break;
-
-      for (Method m : root.getDeclaredMethods()) {
-        if (m.getParameterTypes().length > 0) continue;
-
-        if (!Modifier.isPublic(m.getModifiers())) continue;
-
-        Class<?> returnType = m.getReturnType();
-        if (!SqlNode.class.isAssignableFrom(returnType) && SqlNode[].class != returnType
-                && !Collection.class.isAssignableFrom(returnType)) {
-          continue;
-        }
-
-        methods.add(m);
-      }
-
-      root = root.getSuperclass();
-    }
-
-    GETTERS_CACHE.put(obj.getClass(), methods);
-
-    return methods;
-  }
-
   public String toString() {
     String out = "";
     out += " Selects: " + selects + "\n";
@@ -41,6 +41,7 @@ import org.apache.calcite.rel.type.RelDataTypeField;
 import org.apache.calcite.rex.RexBuilder;
 import org.apache.calcite.rex.RexCall;
 import org.apache.calcite.rex.RexCorrelVariable;
+import org.apache.calcite.rex.RexDynamicParam;
 import org.apache.calcite.rex.RexFieldAccess;
 import org.apache.calcite.rex.RexFieldCollation;
 import org.apache.calcite.rex.RexInputRef;
@@ -150,16 +151,21 @@ public class HeavyDBRelJson {
    * Inverse of {@link #typeNameToClass}.
    */
   public String classToTypeName(Class<? extends RelNode> class_) {
-    final String canonicalName = class_.getName();
-    for (String package_ : PACKAGES) {
-      if (canonicalName.startsWith(package_)) {
-        String remaining = canonicalName.substring(package_.length());
-        if (remaining.indexOf('.') < 0 && remaining.indexOf('$') < 0) {
-          return remaining;
+    // a HEAVY.AI subclass of a Calcite node, which only adds attributes, is written
+    // as the node it extends
+    for (Class<?> c = class_; c != null && RelNode.class.isAssignableFrom(c);
+            c = c.getSuperclass()) {
+      final String canonicalName = c.getName();
+      for (String package_ : PACKAGES) {
+        if (canonicalName.startsWith(package_)) {
+          String remaining = canonicalName.substring(package_.length());
+          if (remaining.indexOf('.') < 0 && remaining.indexOf('$') < 0) {
+            return remaining;
+          }
         }
       }
     }
-    return canonicalName;
+    return class_.getName();
   }
 
   public Object toJson(RelCollationImpl node) {
@@ -367,7 +373,18 @@ public class HeavyDBRelJson {
         map.put("correl", ((RexCorrelVariable) node).getName());
         map.put("type", toJson(node.getType()));
         return map;
+      case DYNAMIC_PARAM:
+        // a slot of a prepared plan, replaced by a literal when it is bound
+        map = jsonBuilder.map();
+        map.put("dynamic_param", ((RexDynamicParam) node).getIndex());
+        map.put("type", toJson(node.getType()));
+        return map;
       default:
+        if (node instanceof RexCall
+                && ((RexCall) node).getOperator()
+                                instanceof HeavyDBSqlOperatorTable.InValueSet) {
+          return valueSetToJson((RexCall) node);
+        }
         if (node instanceof RexCall) {
           final RexCall call = (RexCall) node;
           map = jsonBuilder.map();
@@ -416,6 +433,82 @@ public class HeavyDBRelJson {
     }
   }
 
+  /**
+   * Serializes an IN value set as its tested operand plus one "value_set" entry,
+   * which carries the literal type description once and the bare values in
+   * order. Exact numeric values are rescaled to a common scale, the set is
+   * serialized as an OR of equalities if one of them then exceeds a long.
+   */
+  private Object valueSetToJson(RexCall call) {
+    final Map<String, Object> map = jsonBuilder.map();
+    map.put("op", toJson(call.getOperator()));
+    final List<Object> list = jsonBuilder.list();
+    list.add(toJson(call.getOperands().get(0)));
+    map.put("operands", list);
+    map.put("type", toJson(call.getType()));
+    final List<RexNode> literals =
+            call.getOperands().subList(1, call.getOperands().size());
+    final RexLiteral first = (RexLiteral) literals.get(0);
+    final boolean isExact = first.getValue() instanceof BigDecimal;
+    int scale = 0;
+    if (isExact) {
+      for (RexNode operand : literals) {
+        scale = Math.max(scale, ((BigDecimal) ((RexLiteral) operand).getValue()).scale());
+      }
+    }
+    int precision = 0;
+    final List<Object> values = jsonBuilder.list();
+    for (RexNode operand : literals) {
+      final RexLiteral literal = (RexLiteral) operand;
+      if (isExact) {
+        final BigDecimal value = ((BigDecimal) literal.getValue()).setScale(scale);
+        precision = Math.max(precision, value.precision());
+        try {
+          values.add(value.unscaledValue().longValueExact());
+        } catch (ArithmeticException e) {
+          return equalitiesToJson(call);
+        }
+      } else {
+        precision = Math.max(precision, literal.getType().getPrecision());
+        values.add(literal.getValue2());
+      }
+    }
+    final Map<String, Object> valueSetMap = jsonBuilder.map();
+    valueSetMap.put("type", first.getTypeName().name());
+    valueSetMap.put("target_type", first.getType().getSqlTypeName().toString());
+    valueSetMap.put("scale", isExact ? scale : first.getType().getScale());
+    valueSetMap.put("precision", precision);
+    valueSetMap.put("type_scale", first.getType().getScale());
+    valueSetMap.put("type_precision", first.getType().getPrecision());
+    valueSetMap.put("values", values);
+    map.put("value_set", valueSetMap);
+    return map;
+  }
+
+  /** Serializes an IN value set as the OR of equalities it stands for. */
+  private Object equalitiesToJson(RexCall call) {
+    final Object type = toJson(call.getType());
+    final List<Object> equalities = jsonBuilder.list();
+    for (RexNode literal : call.getOperands().subList(1, call.getOperands().size())) {
+      final Map<String, Object> equality = jsonBuilder.map();
+      equality.put("op", toJson(SqlStdOperatorTable.EQUALS));
+      final List<Object> operands = jsonBuilder.list();
+      operands.add(toJson(call.getOperands().get(0)));
+      operands.add(toJson(literal));
+      equality.put("operands", operands);
+      equality.put("type", type);
+      equalities.add(equality);
+    }
+    if (equalities.size() == 1) {
+      return equalities.get(0);
+    }
+    final Map<String, Object> map = jsonBuilder.map();
+    map.put("op", toJson(SqlStdOperatorTable.OR));
+    map.put("operands", equalities);
+    map.put("type", type);
+    return map;
+  }
+
   RexNode toRex(RelInput relInput, Object o) {
     final RelOptCluster cluster = relInput.getCluster();
     final RexBuilder rexBuilder = cluster.getRexBuilder();
@@ -424,6 +517,20 @@ public class HeavyDBRelJson {
     } else if (o instanceof Map) {
       Map map = (Map) o;
       final String op = (String) map.get("op");
+      if (op != null && map.containsKey("value_set")) {
+        final Map valueSet = (Map) map.get("value_set");
+        final List<RexNode> rexOperands =
+                toRexList(relInput, (List) map.get("operands"));
+        for (Object value : (List) valueSet.get("values")) {
+          final Map<String, Object> literal = new HashMap<>(valueSet);
+          literal.remove("values");
+          literal.put("literal", value);
+          rexOperands.add(toRex(relInput, literal));
+        }
+        return rexBuilder.makeCall(toType(cluster.getTypeFactory(), map.get("type")),
+                HeavyDBSqlOperatorTable.IN_VALUE_SET,
+                rexOperands);
+      }
       if (op != null) {
         final List operands = (List) map.get("operands");
         final Object jsonType = map.get("type");
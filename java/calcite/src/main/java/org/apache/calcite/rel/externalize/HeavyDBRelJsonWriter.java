@@ -17,6 +17,8 @@
 package org.apache.calcite.rel.externalize;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.hash.Hashing;
+import com.mapd.calcite.parser.HeavyDBSqlOperatorTable;
 
 import org.apache.calcite.rel.RelNode;
 import org.apache.calcite.rel.RelWriter;
@@ -24,10 +26,19 @@ import org.apache.calcite.rel.core.TableScan;
 import org.apache.calcite.rel.hint.RelHint;
 import org.apache.calcite.rel.logical.*;
 import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rex.RexCall;
+import org.apache.calcite.rex.RexDynamicParam;
+import org.apache.calcite.rex.RexLiteral;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.rex.RexShuttle;
+import org.apache.calcite.rex.RexVisitorImpl;
 import org.apache.calcite.sql.SqlExplainLevel;
+import org.apache.calcite.sql.SqlOperator;
 import org.apache.calcite.util.EscapedStringJsonBuilder;
 import org.apache.calcite.util.Pair;
+import org.apache.calcite.util.Util;
 
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -45,6 +56,24 @@ public class HeavyDBRelJsonWriter implements RelWriter {
   private final List<Object> relList;
   private final List<Pair<String, Object>> values = new ArrayList<Pair<String, Object>>();
   private String previousId;
+  private final Map<RelNode, String> relShapes = new IdentityHashMap<RelNode, String>();
+  private final Map<RelNode, NodeDigest> relDigests =
+          new IdentityHashMap<RelNode, NodeDigest>();
+  private final List<NodeDigest> nodeDigests = new ArrayList<NodeDigest>();
+  private String planFingerprint;
+
+  /** Digest of the subtree rooted at a node of the plan. */
+  public static class NodeDigest {
+    // hash of the subtree, including its literals
+    public final String digest;
+    // false if the subtree calls a non-deterministic or time dependent function
+    public final boolean isDeterministic;
+
+    NodeDigest(String digest, boolean isDeterministic) {
+      this.digest = digest;
+      this.isDeterministic = isDeterministic;
+    }
+  }
 
   // ~ Constructors -------------------------------------------------------------
 
@@ -93,6 +122,7 @@ public class HeavyDBRelJsonWriter implements RelWriter {
     final String id = Integer.toString(relIdMap.size());
     relIdMap.put(rel, id);
     map.put("id", id);
+    digest(rel, (String) map.get("relOp"), (String) map.get("hints"), values);
 
     relList.add(map);
     previousId = id;
@@ -115,6 +145,107 @@ public class HeavyDBRelJsonWriter implements RelWriter {
     return list;
   }
 
+  // computes the digest of a node from its attributes and the digests of its inputs,
+  // and its shape, which is the same digest computed without the literals
+  private void digest(RelNode rel,
+          String relOp,
+          String hints,
+          List<Pair<String, Object>> values) {
+    final StringBuilder shape = new StringBuilder(relOp).append('[').append(hints);
+    final StringBuilder digest = new StringBuilder(shape);
+    boolean isDeterministic = true;
+    for (Pair<String, Object> value : values) {
+      if (value.right instanceof RelNode) {
+        continue;
+      }
+      shape.append(',').append(value.left).append('=').append(
+              canonical(value.right, true));
+      digest.append(',').append(value.left).append('=').append(
+              canonical(value.right, false));
+      isDeterministic = isDeterministic && isDeterministic(value.right);
+    }
+    for (RelNode input : rel.getInputs()) {
+      shape.append(',').append(relShapes.get(input));
+      final NodeDigest inputDigest = relDigests.get(input);
+      digest.append(',').append(inputDigest.digest);
+      isDeterministic = isDeterministic && inputDigest.isDeterministic;
+    }
+    final String relShape = hash(shape.append(']').toString());
+    relShapes.put(rel, relShape);
+    // the root is explained last
+    planFingerprint = relShape;
+    final NodeDigest nodeDigest =
+            new NodeDigest(hash(digest.append(']').toString()), isDeterministic);
+    relDigests.put(rel, nodeDigest);
+    nodeDigests.add(nodeDigest);
+  }
+
+  private static String hash(String s) {
+    return Hashing.sha256().hashString(s, StandardCharsets.UTF_8).toString();
+  }
+
+  private static final RexShuttle LITERAL_ERASER = new RexShuttle() {
+    @Override
+    public RexNode visitLiteral(RexLiteral literal) {
+      return new RexDynamicParam(literal.getType(), 0);
+    }
+  };
+
+  private static String canonical(Object value, boolean eraseLiterals) {
+    if (value instanceof RexNode) {
+      return eraseLiterals ? ((RexNode) value).accept(LITERAL_ERASER).toString()
+                           : value.toString();
+    }
+    if (value instanceof List) {
+      final StringBuilder sb = new StringBuilder("[");
+      for (Object element : (List<?>) value) {
+        sb.append(canonical(element, eraseLiterals)).append(',');
+      }
+      return sb.append(']').toString();
+    }
+    return String.valueOf(value);
+  }
+
+  private static boolean isDeterministic(Object value) {
+    if (value instanceof List) {
+      return ((List<?>) value).stream().allMatch(e -> isDeterministic(e));
+    }
+    if (!(value instanceof RexNode)) {
+      return true;
+    }
+    try {
+      ((RexNode) value).accept(new RexVisitorImpl<Void>(true) {
+        @Override
+        public Void visitCall(RexCall call) {
+          if (!isDeterministic(call)) {
+            throw Util.FoundOne.NULL;
+          }
+          return super.visitCall(call);
+        }
+      });
+      return true;
+    } catch (Util.FoundOne e) {
+      return false;
+    }
+  }
+
+  // NOW() and DATETIME('NOW') depend on the time the plan is run, and a runtime
+  // extension function may be replaced by another implementation
+  private static boolean isDeterministic(RexCall call) {
+    final SqlOperator operator = call.getOperator();
+    if (!operator.isDeterministic() || operator.isDynamicFunction()
+            || operator instanceof HeavyDBSqlOperatorTable.Now
+            || HeavyDBSqlOperatorTable.isRuntimeFunction(operator)) {
+      return false;
+    }
+    if (operator instanceof HeavyDBSqlOperatorTable.Datetime) {
+      final RexNode operand = call.getOperands().get(0);
+      return operand instanceof RexLiteral
+              && !"NOW".equalsIgnoreCase(((RexLiteral) operand).getValueAs(String.class));
+    }
+    return true;
+  }
+
   private boolean deliverHints(RelNode rel) {
     if (rel instanceof LogicalTableScan) {
       LogicalTableScan node = (LogicalTableScan) rel;
@@ -231,6 +362,22 @@ public class HeavyDBRelJsonWriter implements RelWriter {
     return jsonBuilder.toJsonString(asJsonMap());
   }
 
+  /**
+   * Returns a hash of the plan which was just explained, ignoring its literals, so
+   * that queries only differing in their constants share the same fingerprint.
+   */
+  public String getPlanFingerprint() {
+    return planFingerprint;
+  }
+
+  /**
+   * Returns the digests of the nodes which were just explained, by node id. Equal
+   * digests denote equal subtrees, the scanned tables being identified by name only.
+   */
+  public List<NodeDigest> getNodeDigests() {
+    return nodeDigests;
+  }
+
   public Map<String, Object> asJsonMap() {
     final Map<String, Object> map = jsonBuilder.map();
     map.put("rels", relList);
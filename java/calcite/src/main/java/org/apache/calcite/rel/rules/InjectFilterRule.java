@@ -16,13 +16,17 @@
 
 package org.apache.calcite.rel.rules;
 
+import com.mapd.calcite.parser.HeavyDBSqlOperatorTable;
+
 import org.apache.calcite.plan.RelOptRuleCall;
 import org.apache.calcite.plan.RelOptTable;
 import org.apache.calcite.plan.RelRule;
 import org.apache.calcite.rel.RelNode;
 import org.apache.calcite.rel.logical.LogicalTableScan;
+import org.apache.calcite.rel.type.RelDataType;
 import org.apache.calcite.rel.type.RelDataTypeField;
 import org.apache.calcite.rex.RexBuilder;
+import org.apache.calcite.rex.RexLiteral;
 import org.apache.calcite.rex.RexNode;
 import org.apache.calcite.sql.fun.SqlStdOperatorTable;
 import org.apache.calcite.sql.type.SqlTypeName;
@@ -31,9 +35,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 
 public class InjectFilterRule extends RelRule<InjectFilterRule.Config> {
   // goal: customer entitlements first swipe
@@ -77,11 +85,11 @@ public class InjectFilterRule extends RelRule<InjectFilterRule.Config> {
               + qname);
     }
 
-    ArrayList<RexNode> orList = new ArrayList<RexNode>();
     RelBuilder builder = call.builder();
-    RexBuilder rBuilder = builder.getRexBuilder();
     builder = builder.push(childScanNode);
-    boolean found = false;
+    // Values of every matching restriction, merged per column so that each
+    // column gets a single set-membership test.
+    Map<String, TreeSet<Comparable>> columnValues = new LinkedHashMap<>();
     for (Restriction restriction : restrictions) {
       // Match the database name.
       String rest_database = restriction.getRestrictionDatabase();
@@ -114,42 +122,64 @@ public class InjectFilterRule extends RelRule<InjectFilterRule.Config> {
         continue;
       }
 
-      // Generate the RLS row-level security filter for one Restriction.
-      found = true;
+      // Collect the RLS row-level security values for one Restriction.
       HEAVYDBLOGGER.debug(
               "Scan is " + childScanNode.toString() + " TABLE is " + table.toString());
       HEAVYDBLOGGER.debug("Column " + restriction.getRestrictionColumn()
-              + " exists in table " + table.getQualifiedName());
-
-      for (String val : restriction.getRestrictionValues()) {
-        HEAVYDBLOGGER.debug("Column is " + restriction.getRestrictionColumn()
-                + " literal is '" + val + "'");
-        RexNode lit;
-        if (SqlTypeName.NUMERIC_TYPES.indexOf(field.getType().getSqlTypeName()) == -1) {
-          if (val.length() < 2 || val.charAt(0) != '\''
-                  || val.charAt(val.length() - 1) != '\'') {
-            throw new RuntimeException(
-                    "Restrictions: Expected a CREATE POLICY VALUES string with single quotes.");
-          }
-          lit = rBuilder.makeLiteral(
-                  val.substring(1, val.length() - 1), field.getType(), false);
-        } else {
-          lit = rBuilder.makeLiteral(Long.parseLong(val), field.getType(), false);
-        }
-        RexNode rn = builder.call(SqlStdOperatorTable.EQUALS,
-                builder.field(restriction.getRestrictionColumn()),
-                lit);
-        orList.add(rn);
-      }
+              + " exists in table " + table.getQualifiedName() + " with "
+              + restriction.getRestrictionValues().size() + " values");
+      boolean numeric =
+              SqlTypeName.NUMERIC_TYPES.indexOf(field.getType().getSqlTypeName()) != -1;
+      columnValues.computeIfAbsent(field.getName(), k -> new TreeSet<>())
+              .addAll(restriction.getSortedRestrictionValues(numeric));
     }
 
-    if (found) {
+    if (!columnValues.isEmpty()) {
+      ArrayList<RexNode> orList = new ArrayList<RexNode>();
+      for (Map.Entry<String, TreeSet<Comparable>> entry : columnValues.entrySet()) {
+        orList.add(makeMembershipFilter(builder, entry.getKey(), entry.getValue()));
+      }
       RexNode relOr = builder.call(SqlStdOperatorTable.OR, orList);
       final RelNode newNode = builder.filter(relOr).build();
       call.transformTo(newNode);
     }
   };
 
+  /**
+   * Builds the filter for one restricted column: a single IN value set when the
+   * values are exact numerics or strings, and as many as a literal IN list planned
+   * as one, otherwise an OR of equalities.
+   */
+  private static RexNode makeMembershipFilter(
+          RelBuilder builder, String column, Collection<Comparable> values) {
+    RexBuilder rBuilder = builder.getRexBuilder();
+    RexNode columnRef = builder.field(column);
+    RelDataType type = columnRef.getType();
+    List<RexNode> literals = new ArrayList<>();
+    boolean compact = true;
+    for (Comparable value : values) {
+      RexLiteral lit = (RexLiteral) rBuilder.makeLiteral(value, type, false);
+      compact &= lit.getTypeName() == SqlTypeName.DECIMAL
+              || lit.getTypeName() == SqlTypeName.CHAR;
+      literals.add(lit);
+    }
+    if (literals.size() >= HeavyDBSqlOperatorTable.InValueSet.MIN_VALUES && compact) {
+      List<RexNode> operands = new ArrayList<>();
+      operands.add(columnRef);
+      operands.addAll(literals);
+      RelDataType boolType = rBuilder.getTypeFactory().createTypeWithNullability(
+              rBuilder.getTypeFactory().createSqlType(SqlTypeName.BOOLEAN),
+              type.isNullable());
+      return rBuilder.makeCall(boolType, HeavyDBSqlOperatorTable.IN_VALUE_SET, operands);
+    }
+    ArrayList<RexNode> orList = new ArrayList<RexNode>();
+    for (RexNode lit : literals) {
+      orList.add(builder.call(SqlStdOperatorTable.EQUALS, columnRef, lit));
+    }
+    return orList.size() == 1 ? orList.get(0)
+                              : builder.call(SqlStdOperatorTable.OR, orList);
+  }
+
   /** Rule configuration. */
   public interface Config extends RelRule.Config {
     Config DEFAULT =
@@ -16,7 +16,10 @@
 
 package org.apache.calcite.rel.rules;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.TreeSet;
 
 public class Restriction {
   public Restriction(
@@ -38,8 +41,42 @@ public class Restriction {
   List<String> getRestrictionValues() {
     return rValues;
   };
+
+  /**
+   * Returns the restriction values parsed for a numeric or a character column,
+   * sorted and without duplicates. The result is computed once per Restriction,
+   * so a restriction set reused across queries is only parsed on first use.
+   */
+  synchronized List<Comparable> getSortedRestrictionValues(boolean numeric) {
+    if (numeric) {
+      if (sortedNumericValues == null) {
+        TreeSet<Long> values = new TreeSet<>();
+        for (String val : rValues) {
+          values.add(Long.parseLong(val));
+        }
+        sortedNumericValues = Collections.unmodifiableList(new ArrayList<>(values));
+      }
+      return sortedNumericValues;
+    }
+    if (sortedStringValues == null) {
+      TreeSet<String> values = new TreeSet<>();
+      for (String val : rValues) {
+        if (val.length() < 2 || val.charAt(0) != '\''
+                || val.charAt(val.length() - 1) != '\'') {
+          throw new RuntimeException(
+                  "Restrictions: Expected a CREATE POLICY VALUES string with single quotes.");
+        }
+        values.add(val.substring(1, val.length() - 1));
+      }
+      sortedStringValues = Collections.unmodifiableList(new ArrayList<>(values));
+    }
+    return sortedStringValues;
+  }
+
   private String rDatabase;
   private String rTable;
   private String rColumn;
   private List<String> rValues;
+  private List<Comparable> sortedNumericValues;
+  private List<Comparable> sortedStringValues;
 }
@@ -37,6 +37,7 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Sets;
+import com.mapd.calcite.parser.HeavyDBSqlOperatorTable;
 import com.mapd.calcite.parser.HeavyDBSqlOperatorTable.ExtTableFunction;
 
 import org.apache.calcite.avatica.util.Spaces;
@@ -214,6 +215,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.function.BiPredicate;
 import java.util.function.Supplier;
@@ -1068,6 +1070,15 @@ public class SqlToRelConverter {
           SqlNodeList valueList = (SqlNodeList) query;
           if (!containsNullLiteral(valueList)
                   && valueList.size() < config.getInSubQueryThreshold()) {
+            if (leftKeys.size() == 1
+                    && valueList.size() >= config.getInValueSetThreshold()) {
+              final RexNode valueSet = convertInToValueSet(bb,
+                      leftKeys.get(0), valueList, (SqlInOperator) call.getOperator());
+              if (valueSet != null) {
+                subQuery.expr = valueSet;
+                return;
+              }
+            }
             // We're under the threshold, so convert to OR.
             subQuery.expr = convertInToOr(
                     bb, leftKeys, valueList, (SqlInOperator) call.getOperator());
@@ -1486,6 +1497,69 @@ public class SqlToRelConverter {
     }
   }
 
+  /**
+   * Converts a large "x IN (1, 2, ...)" to a single
+   * {@link HeavyDBSqlOperatorTable#IN_VALUE_SET} call whose values are sorted and
+   * deduplicated, so neither the plan nor its JSON grows an equality per value.
+   *
+   * @param leftKey    LHS
+   * @param valuesList RHS
+   * @param op         The operator; only IN and NOT IN are handled
+   * @return converted expression, or null if the list does not consist of
+   *     non-null literals of a single exact numeric or character type
+   */
+  private RexNode convertInToValueSet(final Blackboard bb,
+          final RexNode leftKey,
+          SqlNodeList valuesList,
+          SqlInOperator op) {
+    if (op.kind != SqlKind.IN && op.kind != SqlKind.NOT_IN) {
+      return null;
+    }
+    final List<RexLiteral> literals = new ArrayList<>();
+    for (SqlNode rightVal : valuesList) {
+      final RexNode value =
+              ensureSqlType(leftKey.getType(), bb.convertExpression(rightVal));
+      if (!(value instanceof RexLiteral) || ((RexLiteral) value).isNull()) {
+        return null;
+      }
+      final RexLiteral literal = (RexLiteral) value;
+      if (literal.getTypeName() != SqlTypeName.DECIMAL
+              && literal.getTypeName() != SqlTypeName.CHAR) {
+        return null;
+      }
+      // The values share one type description in the serialized plan, so numeric
+      // values must agree on their exact type; strings only on being strings.
+      if (!literals.isEmpty()) {
+        final RexLiteral first = literals.get(0);
+        if (first.getTypeName() != literal.getTypeName()
+                || (literal.getTypeName() == SqlTypeName.CHAR
+                                ? first.getType().getSqlTypeName()
+                                        != literal.getType().getSqlTypeName()
+                                : !first.getType().equals(literal.getType()))) {
+          return null;
+        }
+      }
+      literals.add(literal);
+    }
+    // Sorted, distinct values give equal lists an equal digest regardless of the
+    // order they were written in.
+    final TreeMap<Comparable, RexLiteral> sortedLiterals = new TreeMap<>();
+    for (RexLiteral literal : literals) {
+      sortedLiterals.putIfAbsent(literal.getValue(), literal);
+    }
+    final List<RexNode> operands = new ArrayList<>();
+    operands.add(leftKey);
+    operands.addAll(sortedLiterals.values());
+    final RelDataType type = typeFactory.createTypeWithNullability(
+            typeFactory.createSqlType(SqlTypeName.BOOLEAN),
+            leftKey.getType().isNullable());
+    final RexNode in =
+            rexBuilder.makeCall(type, HeavyDBSqlOperatorTable.IN_VALUE_SET, operands);
+    return op.kind == SqlKind.NOT_IN
+            ? rexBuilder.makeCall(SqlStdOperatorTable.NOT, in)
+            : in;
+  }
+
   /**
    * Ensures that an expression has a given {@link SqlTypeName}, applying a cast
    * if necessary. If the expression already has the right type family, returns
@@ -5609,6 +5683,15 @@ public class SqlToRelConverter {
      */
     int getInSubQueryThreshold();
 
+    /**
+     * Returns the {@code inValueSetThreshold} option, default
+     * {@link Integer#MAX_VALUE}. Single-column literal IN lists of this size or
+     * greater that would otherwise go through {@link #convertInToOr} are kept as
+     * one sorted, deduplicated {@link HeavyDBSqlOperatorTable#IN_VALUE_SET} call
+     * instead of an OR of equalities.
+     */
+    int getInValueSetThreshold();
+
     /**
      * Returns the factory to create {@link RelBuilder}, never null. Default is
      * {@link RelFactories#LOGICAL_BUILDER}.
@@ -5644,6 +5727,7 @@ public class SqlToRelConverter {
     private boolean explain;
     private boolean expand = true;
     private int inSubQueryThreshold = DEFAULT_IN_SUB_QUERY_THRESHOLD;
+    private int inValueSetThreshold = Integer.MAX_VALUE;
     private UnaryOperator<RelBuilder.Config> relBuilderConfigTransform =
             c -> c.withPushJoinCondition(true);
     private RelBuilderFactory relBuilderFactory = RelFactories.LOGICAL_BUILDER;
@@ -5664,6 +5748,7 @@ public class SqlToRelConverter {
       this.explain = config.isExplain();
       this.expand = config.isExpand();
       this.inSubQueryThreshold = config.getInSubQueryThreshold();
+      this.inValueSetThreshold = config.getInValueSetThreshold();
       this.relBuilderConfigTransform = config.getRelBuilderConfigTransform();
       this.relBuilderFactory = config.getRelBuilderFactory();
       this.hintStrategyTable = config.getHintStrategyTable();
@@ -5722,6 +5807,11 @@ public class SqlToRelConverter {
       return this;
     }
 
+    public ConfigBuilder withInValueSetThreshold(int inValueSetThreshold) {
+      this.inValueSetThreshold = inValueSetThreshold;
+      return this;
+    }
+
     public ConfigBuilder withRelBuilderConfigTransform(
             UnaryOperator<RelBuilder.Config> relBuilderConfigTransform) {
       this.relBuilderConfigTransform = relBuilderConfigTransform;
@@ -5747,6 +5837,7 @@ public class SqlToRelConverter {
               expand,
               expandPredicate,
               inSubQueryThreshold,
+              inValueSetThreshold,
               relBuilderConfigTransform,
               relBuilderFactory,
               hintStrategyTable);
@@ -5764,6 +5855,7 @@ public class SqlToRelConverter {
     private final boolean explain;
     private final boolean expand;
     private final int inSubQueryThreshold;
+    private final int inValueSetThreshold;
     private final UnaryOperator<RelBuilder.Config> relBuilderConfigTransform;
     private final RelBuilderFactory relBuilderFactory;
     private final HintStrategyTable hintStrategyTable;
@@ -5789,6 +5881,7 @@ public class SqlToRelConverter {
             BiPredicate<SqlNode, SqlNode> expandPredicate,
             // MAT 08 Jan 2021 HEAVY.AI code ends
             int inSubQueryThreshold,
+            int inValueSetThreshold,
             UnaryOperator<RelBuilder.Config> relBuilderConfigTransform,
             RelBuilderFactory relBuilderFactory,
             HintStrategyTable hintStrategyTable) {
@@ -5800,6 +5893,7 @@ public class SqlToRelConverter {
       this.expand = expand;
       // MAT 08 Jan 2021 HEAVY.AI code ends
       this.inSubQueryThreshold = inSubQueryThreshold;
+      this.inValueSetThreshold = inValueSetThreshold;
       this.relBuilderConfigTransform = relBuilderConfigTransform;
       this.relBuilderFactory = relBuilderFactory;
       this.hintStrategyTable = hintStrategyTable;
@@ -5823,6 +5917,7 @@ public class SqlToRelConverter {
               && explain == ((ConfigImpl) obj).explain
               && expand == ((ConfigImpl) obj).expand
               && inSubQueryThreshold == ((ConfigImpl) obj).inSubQueryThreshold
+              && inValueSetThreshold == ((ConfigImpl) obj).inValueSetThreshold
               && relBuilderFactory == ((ConfigImpl) obj).relBuilderFactory
               && hintStrategyTable == ((ConfigImpl) obj).hintStrategyTable;
     }
@@ -5835,6 +5930,7 @@ public class SqlToRelConverter {
               explain,
               expand,
               inSubQueryThreshold,
+              inValueSetThreshold,
               relBuilderFactory,
               hintStrategyTable);
     }
@@ -5863,6 +5959,10 @@ public class SqlToRelConverter {
       return inSubQueryThreshold;
     }
 
+    public int getInValueSetThreshold() {
+      return inValueSetThreshold;
+    }
+
     public UnaryOperator<RelBuilder.Config> getRelBuilderConfigTransform() {
       return relBuilderConfigTransform;
     }
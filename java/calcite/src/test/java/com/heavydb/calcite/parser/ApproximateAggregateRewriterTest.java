@@ -0,0 +1,143 @@
+/*
+ * Copyright 2022 HEAVY.AI, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mapd.calcite.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.mapd.calcite.planner.test.PlannerTestBase;
+
+import org.apache.calcite.prepare.HeavyDBPlanner;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.sql.SqlCall;
+import org.apache.calcite.sql.SqlNode;
+import org.apache.calcite.sql.util.SqlBasicVisitor;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import ai.heavy.thrift.server.TDatumType;
+
+public class ApproximateAggregateRewriterTest extends PlannerTestBase {
+  @Before
+  public void setUp() {
+    addTable("t",
+            tableDetails(column("x", TDatumType.INT), column("y", TDatumType.DOUBLE)));
+  }
+
+  private SqlNode rewrite(String sql, boolean approximatePercentiles) throws Exception {
+    SqlNode node = getPlanner().parse(sql);
+    node.accept(new ApproximateAggregateRewriter(true, approximatePercentiles));
+    return node;
+  }
+
+  private String plan(String sql, boolean approximateQueryMode) throws Exception {
+    HeavyDBPlanner planner = getPlanner();
+    SqlNode node = planner.parse(sql);
+    ApproximateAggregateRewriter rewriter =
+            new ApproximateAggregateRewriter(approximateQueryMode, true);
+    node.accept(rewriter);
+    SqlNode validated = planner.validate(node);
+    RelNode rel = planner.getRelRoot(validated).project();
+    return explain(planner.optimizeRATree(rel, false, false));
+  }
+
+  private static List<SqlCall> calls(SqlNode node, String name) {
+    final List<SqlCall> calls = new ArrayList<>();
+    node.accept(new SqlBasicVisitor<Void>() {
+      @Override
+      public Void visit(SqlCall call) {
+        if (call.getOperator().getName().equalsIgnoreCase(name)) {
+          calls.add(call);
+        }
+        return super.visit(call);
+      }
+    });
+    return calls;
+  }
+
+  @Test
+  public void countDistinctInApproximateQueryMode() throws Exception {
+    String plan = plan("SELECT y, COUNT(DISTINCT x) FROM t GROUP BY y", true);
+    assertTrue(plan, plan.contains("APPROX_COUNT_DISTINCT($"));
+    assertFalse(plan, plan.contains("COUNT(DISTINCT"));
+  }
+
+  @Test
+  public void countDistinctInHintedQueryBlock() throws Exception {
+    String plan = plan("SELECT /*+ approximate */ y, COUNT(DISTINCT x) FROM t "
+                    + "GROUP BY y",
+            false);
+    assertTrue(plan, plan.contains("APPROX_COUNT_DISTINCT($"));
+  }
+
+  @Test
+  public void countDistinctWithoutHintIsExact() throws Exception {
+    String plan = plan("SELECT y, COUNT(DISTINCT x) FROM t GROUP BY y", false);
+    assertTrue(plan, plan.contains("COUNT(DISTINCT"));
+    assertFalse(plan, plan.contains("APPROX_COUNT_DISTINCT"));
+  }
+
+  @Test
+  public void windowCountDistinctIsExact() throws Exception {
+    SqlNode node = rewrite("SELECT COUNT(DISTINCT x) OVER (PARTITION BY y) FROM t", true);
+    assertEquals(1, calls(node, "COUNT").size());
+    assertEquals(0, calls(node, "APPROX_COUNT_DISTINCT").size());
+  }
+
+  @Test
+  public void percentile() throws Exception {
+    SqlNode node = rewrite("SELECT PERCENTILE_CONT(0.25) WITHIN GROUP (ORDER BY y) "
+                    + "FROM t",
+            true);
+    List<SqlCall> approx = calls(node, "APPROX_PERCENTILE");
+    assertEquals(1, approx.size());
+    assertEquals("y", approx.get(0).operand(0).toString());
+    assertEquals("0.25", approx.get(0).operand(1).toString());
+  }
+
+  @Test
+  public void descendingPercentileTakesComplement() throws Exception {
+    SqlNode node = rewrite("SELECT PERCENTILE_CONT(0.25) WITHIN GROUP "
+                    + "(ORDER BY y DESC) FROM t",
+            true);
+    List<SqlCall> approx = calls(node, "APPROX_PERCENTILE");
+    assertEquals(1, approx.size());
+    assertEquals("0.75", approx.get(0).operand(1).toString());
+  }
+
+  @Test
+  public void median() throws Exception {
+    SqlNode node = rewrite("SELECT MEDIAN(y) FROM t", true);
+    assertEquals(0, calls(node, "MEDIAN").size());
+    assertEquals(1, calls(node, "APPROX_MEDIAN").size());
+  }
+
+  @Test
+  public void percentilesAreExactWhenNotSupported() throws Exception {
+    SqlNode node = rewrite("SELECT MEDIAN(y), PERCENTILE_CONT(0.5) WITHIN GROUP "
+                    + "(ORDER BY y) FROM t",
+            false);
+    assertEquals(1, calls(node, "MEDIAN").size());
+    assertEquals(1, calls(node, "PERCENTILE_CONT").size());
+    assertEquals(0, calls(node, "APPROX_MEDIAN").size());
+    assertEquals(0, calls(node, "APPROX_PERCENTILE").size());
+  }
+}
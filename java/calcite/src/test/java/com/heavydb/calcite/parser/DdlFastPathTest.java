@@ -0,0 +1,84 @@
+/*
+ * Copyright 2022 HEAVY.AI, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mapd.calcite.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import org.apache.calcite.sql.fun.SqlStdOperatorTable;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DdlFastPathTest {
+  private HeavyDBParser parser;
+  private HeavyDBParserOptions options;
+
+  @Before
+  public void setUp() {
+    // a parser without a server, as in the DDL tests
+    parser = new HeavyDBParser("",
+            () -> new HeavyDBSqlOperatorTable(SqlStdOperatorTable.instance()),
+            0,
+            null);
+    parser.setUser(new HeavyDBUser("admin", "", "heavyai", 0, null));
+    options = new HeavyDBParserOptions();
+  }
+
+  // the statement is serialized the same with and without a planner
+  private void assertSameJson(String sql) throws Exception {
+    HeavyDBParser.ProcessResult fast = parser.process(sql, options);
+    assertFalse(sql, fast.is_rel_alg);
+    assertEquals(sql, parser.processSql(sql, options).left, fast.json_str);
+  }
+
+  @Test
+  public void createAndDropTable() throws Exception {
+    assertSameJson("CREATE TABLE test_table (a INTEGER NOT NULL, b TEXT ENCODING "
+            + "DICT(32), SHARD KEY (a)) WITH (shard_count = 2);");
+    assertSameJson("DROP TABLE IF EXISTS test_table;");
+    assertSameJson("ALTER TABLE test_table RENAME TO new_table;");
+  }
+
+  @Test
+  public void showCommands() throws Exception {
+    assertSameJson("SHOW TABLES;");
+    assertSameJson("SHOW DATABASES;");
+    assertSameJson("SHOW TABLE DETAILS test_table_1, test_table_2;");
+    assertSameJson("SHOW CREATE TABLE test_table;");
+  }
+
+  @Test
+  public void privileges() throws Exception {
+    assertSameJson("GRANT SELECT (a), SELECT ON TABLE test_table TO admin;");
+    assertSameJson("REVOKE SELECT (a,b,c) ON TABLE test_table FROM admin;");
+    assertSameJson("CREATE USER test_user (password = 'test');");
+  }
+
+  @Test
+  public void systemCommands() throws Exception {
+    assertSameJson("KILL QUERY '123-a1b2';");
+    assertSameJson("ALTER SYSTEM CLEAR CPU MEMORY;");
+    assertSameJson("ALTER SESSION SET EXECUTOR_DEVICE='CPU';");
+    assertSameJson("COMMENT ON TABLE test_table IS 'test comment';");
+  }
+
+  @Test
+  public void leadingWhitespaceAndLowerCase() throws Exception {
+    assertSameJson("  \n show tables;");
+    assertSameJson("drop table test_table;");
+  }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2022 HEAVY.AI, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mapd.calcite.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import com.mapd.calcite.planner.test.PlannerTestBase;
+
+import org.apache.calcite.prepare.HeavyDBPlanner;
+import org.apache.calcite.prepare.SqlIdentifierCapturer;
+import org.apache.calcite.sql.SqlNode;
+import org.apache.calcite.sql.type.SqlTypeName;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import ai.heavy.thrift.server.TColumnType;
+import ai.heavy.thrift.server.TDatumType;
+
+public class HeavyDBPreparedPlanTest extends PlannerTestBase {
+  private static final String QUERY = "SELECT y FROM t WHERE x = ? AND y > ?";
+
+  @Before
+  public void setUp() {
+    TColumnType x = column("x", TDatumType.INT);
+    x.col_type.nullable = false;
+    addTable("t", tableDetails(x, column("y", TDatumType.DOUBLE)));
+  }
+
+  private HeavyDBPreparedPlan prepare(String sql, int parameterCount) throws Exception {
+    HeavyDBPlanner planner = getPlanner();
+    SqlNode validated = planner.validate(planner.parse(sql));
+    return new HeavyDBPreparedPlan(planner.getRelRoot(validated).project(),
+            parameterCount,
+            new SqlIdentifierCapturer(),
+            Collections.emptySet());
+  }
+
+  private static void assertRejected(HeavyDBPreparedPlan plan, List<String> values) {
+    try {
+      plan.bind(values);
+      fail("the values " + values + " should be rejected");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void parameterTypes() throws Exception {
+    HeavyDBPreparedPlan plan = prepare(QUERY, 2);
+    assertEquals(2, plan.getParameterTypes().size());
+    assertEquals(SqlTypeName.INTEGER, plan.getParameterTypes().get(0).getSqlTypeName());
+    assertFalse(plan.getParameterTypes().get(0).isNullable());
+    assertEquals(SqlTypeName.DOUBLE, plan.getParameterTypes().get(1).getSqlTypeName());
+    String json = plan.toJson();
+    assertEquals(json, 2, count(json, "\"dynamic_param\""));
+  }
+
+  @Test
+  public void bindReplacesParameters() throws Exception {
+    HeavyDBPreparedPlan plan = prepare(QUERY, 2);
+    String json = plan.bind(Arrays.asList("7", "2.5")).asString();
+    assertFalse(json, json.contains("dynamic_param"));
+    assertEquals(json, 2, count(json, "\"literal\""));
+    // the prepared plan is left as it was
+    assertEquals(2, count(plan.toJson(), "\"dynamic_param\""));
+  }
+
+  @Test
+  public void bindNullToNullableParameter() throws Exception {
+    HeavyDBPreparedPlan plan = prepare(QUERY, 2);
+    String json = plan.bind(Arrays.asList("7", null)).asString();
+    assertFalse(json, json.contains("dynamic_param"));
+  }
+
+  @Test
+  public void bindDoesNotPadCharValues() throws Exception {
+    HeavyDBPreparedPlan plan =
+            prepare("SELECT y FROM t WHERE CAST(? AS CHAR(5)) = 'abc'", 1);
+    assertEquals(SqlTypeName.CHAR, plan.getParameterTypes().get(0).getSqlTypeName());
+    String json = plan.bind(Collections.singletonList("ab")).asString();
+    assertEquals(json, 1, count(json, "\"ab\""));
+    assertFalse(json, json.contains("\"ab   \""));
+  }
+
+  @Test
+  public void bindAcceptsJdbcTimestamps() throws Exception {
+    HeavyDBPreparedPlan plan = prepare("SELECT y FROM t "
+                    + "WHERE CAST(? AS TIMESTAMP) < TIMESTAMP '2020-01-02 00:00:00'",
+            1);
+    assertEquals(
+            SqlTypeName.TIMESTAMP, plan.getParameterTypes().get(0).getSqlTypeName());
+    // as Timestamp.toString() formats a time without a fraction of a second
+    String json =
+            plan.bind(Collections.singletonList("2020-01-01 10:30:00.0")).asString();
+    assertFalse(json, json.contains("dynamic_param"));
+  }
+
+  @Test
+  public void bindRejectsInvalidValues() throws Exception {
+    HeavyDBPreparedPlan plan = prepare(QUERY, 2);
+    assertRejected(plan, Collections.singletonList("7"));
+    assertRejected(plan, Arrays.asList("7", "2.5", "1"));
+    assertRejected(plan, Arrays.asList("seven", "2.5"));
+    assertRejected(plan, Arrays.asList(null, "2.5"));
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2022 HEAVY.AI, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mapd.calcite.planner.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.calcite.prepare.HeavyDBPlanner;
+import org.junit.Before;
+import org.junit.Test;
+
+import ai.heavy.thrift.server.TDatumType;
+
+public class EmptyBranchPruningTest extends PlannerTestBase {
+  // a view partitioning the rows by month, as it is expanded into the query
+  private static final String VIEW = "(SELECT x, m FROM jan WHERE m = 1 "
+          + "UNION ALL SELECT x, m FROM feb WHERE m = 2)";
+
+  @Before
+  public void setUp() {
+    addTable("jan",
+            tableDetails(column("x", TDatumType.INT), column("m", TDatumType.INT)));
+    addTable("feb",
+            tableDetails(column("x", TDatumType.INT), column("m", TDatumType.INT)));
+  }
+
+  // the optimized plan of a query reading a view
+  private String planOverView(String sql) throws Exception {
+    HeavyDBPlanner planner = getPlanner();
+    return explain(planner.optimizeRATree(convert(planner, sql), false, true));
+  }
+
+  @Test
+  public void branchContradictingTheQueryIsPruned() throws Exception {
+    String plan = planOverView("SELECT x FROM " + VIEW + " WHERE m = 2");
+    assertEquals(plan, 1, count(plan, "LogicalTableScan"));
+    assertTrue(plan, plan.contains("table=[[heavydb, feb]]"));
+    assertFalse(plan, plan.contains("LogicalUnion"));
+  }
+
+  @Test
+  public void branchesAreKeptWhenNoScanIsPruned() throws Exception {
+    String plan = planOverView("SELECT x FROM " + VIEW + " WHERE m >= 1");
+    assertEquals(plan, 2, count(plan, "LogicalTableScan"));
+    // the filter of the query is left above the union
+    assertEquals(plan, 1, count(plan, ">=("));
+    assertTrue(plan, plan.indexOf(">=(") < plan.indexOf("LogicalUnion"));
+  }
+
+  @Test
+  public void queriesWithoutViewAreNotPruned() throws Exception {
+    String plan = explain(plan("SELECT x FROM " + VIEW + " WHERE m = 2"));
+    assertEquals(plan, 2, count(plan, "LogicalTableScan"));
+  }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2022 HEAVY.AI, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mapd.calcite.planner.test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.mapd.parser.extension.ddl.ExtendedSqlParser;
+
+import org.apache.calcite.prepare.HeavyDBCompletionIndex;
+import org.apache.calcite.prepare.HeavyDBPlanner;
+import org.apache.calcite.sql.fun.SqlStdOperatorTable;
+import org.apache.calcite.sql.parser.SqlParser;
+import org.apache.calcite.sql.validate.SqlMoniker;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class HeavyDBCompletionIndexTest {
+  // completes the statement at the position of the ^
+  private static HeavyDBPlanner.CompletionResult complete(String db, String sql) {
+    return complete(db, Arrays.asList("t", "u"), SqlParser.configBuilder().build(), sql);
+  }
+
+  private static HeavyDBPlanner.CompletionResult complete(
+          String db, List<String> tables, SqlParser.Config parserConfig, String sql) {
+    HeavyDBCompletionIndex index = HeavyDBCompletionIndex.get(db, tables);
+    return index.getCompletionHints(sql.replace("^", ""),
+            sql.indexOf('^'),
+            SqlStdOperatorTable.instance(),
+            parserConfig,
+            table -> Arrays.asList("x", "y"));
+  }
+
+  private static List<String> names(HeavyDBPlanner.CompletionResult result) {
+    List<String> names = new ArrayList<>();
+    for (SqlMoniker hint : result.hints) {
+      names.add(hint.toString());
+    }
+    return names;
+  }
+
+  @Test
+  public void qualifiedColumnOfTable() {
+    HeavyDBPlanner.CompletionResult result = complete("db1", "SELECT a.x^ FROM t a");
+    assertNotNull(result);
+    assertTrue(names(result).toString(), names(result).contains("x"));
+  }
+
+  @Test
+  public void unqualifiedColumnOfTable() {
+    HeavyDBPlanner.CompletionResult result = complete("db2", "SELECT * FROM t WHERE y^");
+    assertNotNull(result);
+    assertTrue(names(result).toString(), names(result).contains("y"));
+  }
+
+  @Test
+  public void columnOfQuotedTable() {
+    List<String> tables = Arrays.asList("My Table");
+    SqlParser.Config config = SqlParser.configBuilder().build();
+    HeavyDBPlanner.CompletionResult result =
+            complete("db5", tables, config, "SELECT \"My Table\".x^ FROM \"My Table\"");
+    assertNotNull(result);
+    assertTrue(names(result).toString(), names(result).contains("x"));
+    result = complete("db5", tables, config, "SELECT a.^ FROM \"My Table\" a");
+    assertNotNull(result);
+    assertTrue(names(result).toString(), names(result).contains("y"));
+    result = complete("db5", tables, config, "SELECT * FROM \"My Table\" WHERE y^");
+    assertNotNull(result);
+    assertTrue(names(result).toString(), names(result).contains("y"));
+  }
+
+  @Test
+  public void cursorInQuotedIdentifierIsLeftToAdvisor() {
+    assertNull(complete("db5", "SELECT \"x^\" FROM t"));
+  }
+
+  @Test
+  public void keywordsOfEachParser() {
+    List<String> tables = Arrays.asList("t");
+    String sql = "SELECT * FROM t WHERE DASHB^";
+    HeavyDBPlanner.CompletionResult result =
+            complete("db6", tables, SqlParser.configBuilder().build(), sql);
+    assertNotNull(result);
+    assertFalse(names(result).toString(), names(result).contains("DASHBOARD"));
+    result = complete("db6",
+            tables,
+            SqlParser.configBuilder().setParserFactory(ExtendedSqlParser.FACTORY).build(),
+            sql);
+    assertNotNull(result);
+    assertTrue(names(result).toString(), names(result).contains("DASHBOARD"));
+  }
+
+  @Test
+  public void subqueryAliasIsLeftToAdvisor() {
+    assertNull(complete("db3", "SELECT s.x^ FROM (SELECT x FROM t) s"));
+    assertNull(complete("db3", "SELECT * FROM (SELECT x FROM t) s WHERE x^"));
+  }
+
+  @Test
+  public void commonTableExpressionIsLeftToAdvisor() {
+    assertNull(complete("db4", "WITH c AS (SELECT x FROM t) SELECT c.x^ FROM c"));
+    assertNull(complete("db4", "WITH c AS (SELECT x FROM t) SELECT * FROM c WHERE x^"));
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2022 HEAVY.AI, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mapd.calcite.planner.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.mapd.calcite.parser.HeavyDBSqlOperatorTable;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import ai.heavy.thrift.server.TDatumType;
+
+public class InValueSetTest extends PlannerTestBase {
+  private static final int COUNT = HeavyDBSqlOperatorTable.InValueSet.MIN_VALUES;
+
+  @Before
+  public void setUp() {
+    addTable("t",
+            tableDetails(column("x", TDatumType.BIGINT), column("s", TDatumType.STR)));
+  }
+
+  /**
+   * @return the literals from first to first + count - 1, in descending order
+   */
+  private static String values(String format, long first, int count) {
+    StringBuilder values = new StringBuilder();
+    for (long i = first + count - 1; i >= first; i--) {
+      values.append(i == first + count - 1 ? "" : ", ").append(String.format(format, i));
+    }
+    return values.toString();
+  }
+
+  private String planJson(String sql) throws Exception {
+    return toJson(plan(sql));
+  }
+
+  @Test
+  public void shortListIsAnOrOfEqualities() throws Exception {
+    String json =
+            planJson("SELECT x FROM t WHERE x IN (" + values("%d", 1, COUNT - 1) + ")");
+    assertEquals(json, 0, count(json, "\"value_set\""));
+  }
+
+  @Test
+  public void longListIsOneSortedValueSet() throws Exception {
+    String json =
+            planJson("SELECT x FROM t WHERE x IN (" + values("%d", 1, COUNT) + ")");
+    assertEquals(json, 1, count(json, "\"value_set\""));
+    assertEquals(json, 0, count(json, "\"=\""));
+    assertTrue(json, json.replaceAll("\\s", "").contains("\"values\":[1,2,3,"));
+  }
+
+  @Test
+  public void longStringListIsOneValueSet() throws Exception {
+    String json =
+            planJson("SELECT x FROM t WHERE s IN (" + values("'v%d'", 1, COUNT) + ")");
+    assertEquals(json, 1, count(json, "\"value_set\""));
+  }
+
+  @Test
+  public void valuesExceedingLongAreAnOrOfEqualities() throws Exception {
+    // values of one exact type, which do not fit a long
+    String json = planJson("SELECT x FROM t WHERE x IN ("
+            + values("99999999999999999%02d", 0, COUNT) + ")");
+    assertEquals(json, 0, count(json, "\"value_set\""));
+    assertEquals(json, COUNT, count(json, "\"=\""));
+  }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2022 HEAVY.AI, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mapd.calcite.planner.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.mapd.calcite.parser.HeavyDBSqlOperatorTable;
+
+import org.apache.calcite.prepare.HeavyDBPlanner;
+import org.apache.calcite.rel.rules.Restriction;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import ai.heavy.thrift.server.TDatumType;
+
+public class InjectFilterRuleTest extends PlannerTestBase {
+  private static final String SQL = "SELECT x, s FROM t";
+
+  @Before
+  public void setUp() {
+    addTable("t", tableDetails(column("x", TDatumType.INT), column("s", TDatumType.STR)));
+  }
+
+  private String planRestricted(Restriction... restrictions) throws Exception {
+    HeavyDBPlanner planner = getPlanner();
+    planner.setRestrictions(Arrays.asList(restrictions));
+    return explain(plan(planner, SQL));
+  }
+
+  private static List<String> numbers(int from, int to) {
+    List<String> values = new ArrayList<>();
+    for (int i = to; i >= from; i--) {
+      values.add(Integer.toString(i));
+    }
+    return values;
+  }
+
+  @Test
+  public void fewValuesAreNoValueSet() throws Exception {
+    String plan = planRestricted(new Restriction("heavydb", "t", "x", numbers(1, 3)));
+    assertTrue(plan, plan.contains("LogicalFilter"));
+    assertEquals(plan, 0, count(plan, "IN("));
+  }
+
+  @Test
+  public void manyValuesAreOneValueSet() throws Exception {
+    String plan = planRestricted(new Restriction("heavydb",
+            "t",
+            "x",
+            numbers(1, HeavyDBSqlOperatorTable.InValueSet.MIN_VALUES)));
+    assertEquals(plan, 1, count(plan, "IN($0, 1, 2, 3,"));
+    assertEquals(plan, 0, count(plan, "=($0, "));
+  }
+
+  @Test
+  public void manyStringValuesAreOneValueSet() throws Exception {
+    List<String> values = new ArrayList<>();
+    for (String number : numbers(1, HeavyDBSqlOperatorTable.InValueSet.MIN_VALUES)) {
+      values.add("'v" + number + "'");
+    }
+    String plan = planRestricted(new Restriction("heavydb", "t", "s", values));
+    assertEquals(plan, 1, count(plan, "IN($1, "));
+    assertEquals(plan, 0, count(plan, "=($1, "));
+  }
+
+  @Test
+  public void valuesOfRestrictionsOnOneColumnAreMerged() throws Exception {
+    // neither restriction has enough values for a value set, but together they do
+    final int half = HeavyDBSqlOperatorTable.InValueSet.MIN_VALUES / 2;
+    String plan = planRestricted(new Restriction("heavydb", "t", "x", numbers(1, half)),
+            new Restriction("heavydb", "t", "x", numbers(half - 1, 2 * half)));
+    assertEquals(plan, 1, count(plan, "IN($0, 1, 2, 3,"));
+  }
+
+  @Test
+  public void restrictionsOnOtherTablesAreIgnored() throws Exception {
+    String plan = planRestricted(new Restriction("heavydb", "u", "x", numbers(1, 3)));
+    assertTrue(plan, !plan.contains("LogicalFilter"));
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2022 HEAVY.AI, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mapd.calcite.planner.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.mapd.calcite.parser.HeavyDBTable;
+
+import org.apache.calcite.util.ImmutableBitSet;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import ai.heavy.thrift.server.TDatumType;
+import ai.heavy.thrift.server.TTableDetails;
+
+public class KeyBasedRemovalTest extends PlannerTestBase {
+  private static final String LEFT_JOIN_TO_ROWID =
+          "SELECT t.x FROM t LEFT JOIN u ON t.k = u.rowid";
+
+  @Before
+  public void setUp() {
+    addTable("t",
+            tableDetails(column("k", TDatumType.BIGINT),
+                    column("x", TDatumType.INT),
+                    column("y", TDatumType.INT)));
+    addTable("u", tableDetails(column("z", TDatumType.INT)));
+    TTableDetails sharded = tableDetails(column("z", TDatumType.INT));
+    sharded.shard_count = 4;
+    sharded.sharded_column_name = "z";
+    addTable("s", sharded);
+  }
+
+  @After
+  public void tearDown() {
+    HeavyDBTable.setDistributedMode(false);
+  }
+
+  @Test
+  public void rowidIsTheKeyOfAnUnshardedTable() {
+    // the columns are z and rowid
+    HeavyDBTable table = new HeavyDBTable(tableDetails(column("z", TDatumType.INT)));
+    assertTrue(table.getStatistic().isKey(ImmutableBitSet.of(1)));
+    assertFalse(table.getStatistic().isKey(ImmutableBitSet.of(0)));
+    HeavyDBTable.setDistributedMode(true);
+    assertFalse(table.getStatistic().isKey(ImmutableBitSet.of(1)));
+  }
+
+  @Test
+  public void distinctOverGroupByIsRemoved() throws Exception {
+    String plan = explain(
+            plan("SELECT DISTINCT x FROM (SELECT x, COUNT(*) AS c FROM t GROUP BY x)"));
+    assertEquals(plan, 1, count(plan, "LogicalAggregate"));
+  }
+
+  @Test
+  public void distinctOverGroupByOfOtherColumnsIsKept() throws Exception {
+    String plan = explain(
+            plan("SELECT DISTINCT y FROM (SELECT x, y FROM t GROUP BY x, y)"));
+    assertEquals(plan, 2, count(plan, "LogicalAggregate"));
+  }
+
+  @Test
+  public void leftJoinToUniqueUnusedInputIsRemoved() throws Exception {
+    String plan = explain(plan(LEFT_JOIN_TO_ROWID));
+    assertEquals(plan, 0, count(plan, "LogicalJoin"));
+    assertEquals(plan, 1, count(plan, "LogicalTableScan"));
+  }
+
+  @Test
+  public void leftJoinToNonUniqueInputIsKept() throws Exception {
+    String plan = explain(plan("SELECT t.x FROM t LEFT JOIN u ON t.x = u.z"));
+    assertEquals(plan, 1, count(plan, "LogicalJoin"));
+  }
+
+  @Test
+  public void leftJoinToShardedTableIsKept() throws Exception {
+    String plan = explain(plan("SELECT t.x FROM t LEFT JOIN s ON t.k = s.rowid"));
+    assertEquals(plan, 1, count(plan, "LogicalJoin"));
+  }
+
+  @Test
+  public void leftJoinIsKeptInDistributedMode() throws Exception {
+    HeavyDBTable.setDistributedMode(true);
+    String plan = explain(plan(LEFT_JOIN_TO_ROWID));
+    assertEquals(plan, 1, count(plan, "LogicalJoin"));
+  }
+
+  @Test
+  public void removalDroppingHintsIsSkipped() throws Exception {
+    // the hint is only on the joined input
+    String plan = explain(plan("SELECT t.x FROM t LEFT JOIN "
+            + "(SELECT /*+ cpu_mode */ rowid AS id FROM u) v ON t.k = v.id"));
+    assertEquals(plan, 1, count(plan, "LogicalJoin"));
+  }
+}
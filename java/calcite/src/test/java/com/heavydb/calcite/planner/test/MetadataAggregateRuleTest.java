@@ -0,0 +1,147 @@
+/*
+ * Copyright 2022 HEAVY.AI, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mapd.calcite.planner.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.calcite.prepare.HeavyDBPlanner;
+import org.apache.calcite.rel.RelNode;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+
+import ai.heavy.thrift.server.TColumnRange;
+import ai.heavy.thrift.server.TColumnType;
+import ai.heavy.thrift.server.TDatumType;
+import ai.heavy.thrift.server.TExpressionRangeType;
+import ai.heavy.thrift.server.TTableStats;
+
+public class MetadataAggregateRuleTest extends PlannerTestBase {
+  private boolean exact = true;
+
+  @Before
+  public void setUp() {
+    TColumnType ts = column("ts", TDatumType.TIMESTAMP);
+    ts.col_type.precision = 3;
+    addTable("t",
+            tableDetails(column("x", TDatumType.INT),
+                    column("y", TDatumType.DOUBLE),
+                    column("s", TDatumType.STR),
+                    column("d", TDatumType.DATE),
+                    ts));
+  }
+
+  private TTableStats getTableStats(Iterable<String> columnNames) {
+    TTableStats stats = new TTableStats();
+    stats.epoch = 7;
+    stats.num_rows = 42;
+    stats.is_exact = exact;
+    stats.column_ranges = new HashMap<>();
+    for (String columnName : columnNames) {
+      TColumnRange range = new TColumnRange();
+      if (columnName.equals("x")) {
+        range.type = TExpressionRangeType.INTEGER;
+        range.int_min = 1;
+        range.int_max = 9;
+      } else if (columnName.equals("d")) {
+        // epoch seconds of 2019-12-31 and 2020-01-01
+        range.type = TExpressionRangeType.INTEGER;
+        range.int_min = 18261L * 24 * 60 * 60;
+        range.int_max = 18262L * 24 * 60 * 60;
+      } else if (columnName.equals("ts")) {
+        // milliseconds of 1969-12-31 23:59:59.999 and 2020-01-01 00:00:00.123
+        range.type = TExpressionRangeType.INTEGER;
+        range.int_min = -1;
+        range.int_max = 18262L * 24 * 60 * 60 * 1000 + 123;
+      } else {
+        range.type = TExpressionRangeType.DOUBLE;
+        range.fp_min = 0.5;
+        range.fp_max = 2.5;
+      }
+      stats.column_ranges.put(columnName, range);
+    }
+    return stats;
+  }
+
+  private RelNode planWithStats(String sql) throws Exception {
+    HeavyDBPlanner planner = getPlanner();
+    planner.setTableStatsProvider(
+            (qualifiedName, columnNames) -> getTableStats(columnNames));
+    return plan(planner, sql);
+  }
+
+  @Test
+  public void countAndRangesFromMetadata() throws Exception {
+    RelNode plan = planWithStats("SELECT COUNT(*), MIN(x), MAX(y) FROM t");
+    String explained = explain(plan);
+    assertEquals(explained, 0, count(explained, "LogicalTableScan"));
+    assertTrue(explained, explained.contains("epochGuard=[[heavydb, t, 7]]"));
+    assertTrue(explained, explained.contains("42"));
+    assertTrue(explained, explained.contains("2.5"));
+    String json = toJson(plan);
+    assertTrue(json, json.contains("LogicalValues"));
+    assertTrue(json, json.contains("\"epochGuard\""));
+  }
+
+  @Test
+  public void dateAndTimestampRangesFromMetadata() throws Exception {
+    String plan =
+            explain(planWithStats("SELECT MIN(d), MAX(d), MIN(ts), MAX(ts) FROM t"));
+    assertEquals(plan, 0, count(plan, "LogicalTableScan"));
+    assertTrue(plan, plan.contains("2019-12-31"));
+    assertTrue(plan, plan.contains("2020-01-01"));
+    assertTrue(plan, plan.contains("1969-12-31 23:59:59.999"));
+    assertTrue(plan, plan.contains("2020-01-01 00:00:00.123"));
+  }
+
+  @Test
+  public void inexactMetadataIsNotUsed() throws Exception {
+    exact = false;
+    String plan = explain(planWithStats("SELECT COUNT(*) FROM t"));
+    assertEquals(plan, 1, count(plan, "LogicalTableScan"));
+    assertFalse(plan, plan.contains("epochGuard"));
+  }
+
+  @Test
+  public void groupedAggregateIsNotAnswered() throws Exception {
+    String plan = explain(planWithStats("SELECT x, COUNT(*) FROM t GROUP BY x"));
+    assertEquals(plan, 1, count(plan, "LogicalTableScan"));
+  }
+
+  @Test
+  public void filteredAggregateIsNotAnswered() throws Exception {
+    String plan = explain(planWithStats("SELECT COUNT(*) FROM t WHERE x > 3"));
+    assertEquals(plan, 1, count(plan, "LogicalTableScan"));
+  }
+
+  @Test
+  public void otherAggregatesAreNotAnswered() throws Exception {
+    String plan = explain(planWithStats("SELECT COUNT(*), SUM(x) FROM t"));
+    assertEquals(plan, 1, count(plan, "LogicalTableScan"));
+    plan = explain(planWithStats("SELECT MIN(s) FROM t"));
+    assertEquals(plan, 1, count(plan, "LogicalTableScan"));
+  }
+
+  @Test
+  public void notAnsweredWithoutStatsProvider() throws Exception {
+    String plan = explain(plan("SELECT COUNT(*) FROM t"));
+    assertEquals(plan, 1, count(plan, "LogicalTableScan"));
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2022 HEAVY.AI, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mapd.calcite.planner.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.calcite.rel.externalize.HeavyDBRelJsonWriter;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import ai.heavy.thrift.server.TDatumType;
+
+public class PlanFingerprintTest extends PlannerTestBase {
+  @Before
+  public void setUp() {
+    addTable("t",
+            tableDetails(column("x", TDatumType.INT),
+                    column("ts", TDatumType.TIMESTAMP)));
+  }
+
+  private HeavyDBRelJsonWriter write(String sql) throws Exception {
+    HeavyDBRelJsonWriter writer = new HeavyDBRelJsonWriter();
+    plan(sql).explain(writer);
+    return writer;
+  }
+
+  // the digest of the root, which is the last node written
+  private static HeavyDBRelJsonWriter.NodeDigest root(HeavyDBRelJsonWriter writer) {
+    List<HeavyDBRelJsonWriter.NodeDigest> digests = writer.getNodeDigests();
+    return digests.get(digests.size() - 1);
+  }
+
+  @Test
+  public void literalsAreNotPartOfTheFingerprint() throws Exception {
+    HeavyDBRelJsonWriter first = write("SELECT x + 1 FROM t WHERE x > 10");
+    HeavyDBRelJsonWriter second = write("SELECT x + 2 FROM t WHERE x > 20");
+    assertEquals(first.getPlanFingerprint(), second.getPlanFingerprint());
+    assertEquals(first.getNodeDigests().size(), second.getNodeDigests().size());
+    assertNotEquals(root(first).digest, root(second).digest);
+    // the scans are the same
+    assertEquals(first.getNodeDigests().get(0).digest,
+            second.getNodeDigests().get(0).digest);
+  }
+
+  @Test
+  public void shapeIsPartOfTheFingerprint() throws Exception {
+    assertNotEquals(write("SELECT x + 1 FROM t WHERE x > 10").getPlanFingerprint(),
+            write("SELECT x + 1 FROM t WHERE x < 10").getPlanFingerprint());
+  }
+
+  @Test
+  public void sameQueryHasTheSameDigests() throws Exception {
+    String sql = "SELECT x + 1 FROM t WHERE x > 10";
+    assertEquals(root(write(sql)).digest, root(write(sql)).digest);
+    assertTrue(root(write(sql)).isDeterministic);
+  }
+
+  @Test
+  public void nowIsNotDeterministic() throws Exception {
+    HeavyDBRelJsonWriter writer = write("SELECT x FROM t WHERE ts < NOW()");
+    assertFalse(root(writer).isDeterministic);
+    // the scan below the filter is
+    assertTrue(writer.getNodeDigests().get(0).isDeterministic);
+  }
+
+  @Test
+  public void datetimeNowIsNotDeterministic() throws Exception {
+    HeavyDBRelJsonWriter writer = write("SELECT x FROM t WHERE ts < DATETIME('NOW')");
+    assertFalse(root(writer).isDeterministic);
+  }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2022 HEAVY.AI, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mapd.calcite.planner.test;
+
+import com.mapd.calcite.parser.HeavyDBSqlOperatorTable;
+import com.mapd.calcite.parser.HeavyDBTable;
+import com.mapd.calcite.parser.HeavyDBTypeSystem;
+import com.mapd.parser.extension.ddl.ExtendedSqlParser;
+import com.mapd.parser.hint.HeavyDBHintStrategyTable;
+
+import org.apache.calcite.avatica.util.Casing;
+import org.apache.calcite.plan.RelOptUtil;
+import org.apache.calcite.prepare.HeavyDBPlanner;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.externalize.HeavyDBRelJsonWriter;
+import org.apache.calcite.schema.SchemaPlus;
+import org.apache.calcite.schema.Table;
+import org.apache.calcite.schema.impl.AbstractSchema;
+import org.apache.calcite.sql.SqlNode;
+import org.apache.calcite.sql.fun.SqlStdOperatorTable;
+import org.apache.calcite.sql.parser.SqlParser;
+import org.apache.calcite.sql.validate.SqlConformanceEnum;
+import org.apache.calcite.sql2rel.SqlToRelConverter;
+import org.apache.calcite.tools.FrameworkConfig;
+import org.apache.calcite.tools.Frameworks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import ai.heavy.thrift.server.TColumnType;
+import ai.heavy.thrift.server.TDatumType;
+import ai.heavy.thrift.server.TEncodingType;
+import ai.heavy.thrift.server.TPartitionDetail;
+import ai.heavy.thrift.server.TTableDetails;
+import ai.heavy.thrift.server.TTypeInfo;
+
+/**
+ * Plans queries over tables described in the test, without a server, the way
+ * HeavyDBParser plans them once the schema is known.
+ */
+public abstract class PlannerTestBase {
+  private final Map<String, Table> tables = new HashMap<>();
+
+  protected static TColumnType column(String name, TDatumType type) {
+    TTypeInfo typeInfo = new TTypeInfo();
+    typeInfo.type = type;
+    typeInfo.encoding = type == TDatumType.STR ? TEncodingType.DICT : TEncodingType.NONE;
+    typeInfo.nullable = true;
+    typeInfo.is_array = false;
+    TColumnType column = new TColumnType();
+    column.col_name = name;
+    column.col_type = typeInfo;
+    column.is_system = false;
+    column.is_physical = true;
+    return column;
+  }
+
+  /**
+   * @return the details of a table with the given columns, followed by its rowid
+   */
+  protected static TTableDetails tableDetails(TColumnType... columns) {
+    List<TColumnType> rowDesc = new ArrayList<>();
+    for (TColumnType column : columns) {
+      rowDesc.add(column);
+    }
+    TColumnType rowid = column("rowid", TDatumType.BIGINT);
+    rowid.is_system = true;
+    rowDesc.add(rowid);
+    TTableDetails details = new TTableDetails();
+    details.row_desc = rowDesc;
+    details.fragment_size = 32000000;
+    details.shard_count = 0;
+    details.partition_detail = TPartitionDetail.DEFAULT;
+    details.view_sql = "";
+    return details;
+  }
+
+  protected void addTable(String name, TTableDetails details) {
+    tables.put(name, new HeavyDBTable(details));
+  }
+
+  protected HeavyDBPlanner getPlanner() {
+    final SchemaPlus rootSchema = Frameworks.createRootSchema(true);
+    final AbstractSchema schema = new AbstractSchema() {
+      @Override
+      protected Map<String, Table> getTableMap() {
+        return tables;
+      }
+    };
+    final FrameworkConfig config =
+            Frameworks.newConfigBuilder()
+                    .defaultSchema(rootSchema.add("heavydb", schema))
+                    .operatorTable(
+                            new HeavyDBSqlOperatorTable(SqlStdOperatorTable.instance()))
+                    .parserConfig(SqlParser.configBuilder()
+                                          .setConformance(SqlConformanceEnum.LENIENT)
+                                          .setUnquotedCasing(Casing.UNCHANGED)
+                                          .setCaseSensitive(false)
+                                          .setParserFactory(ExtendedSqlParser.FACTORY)
+                                          .build())
+                    .sqlToRelConverterConfig(
+                            SqlToRelConverter.configBuilder()
+                                    .withInSubQueryThreshold(Integer.MAX_VALUE)
+                                    .withInValueSetThreshold(
+                                            HeavyDBSqlOperatorTable.InValueSet.MIN_VALUES)
+                                    .withHintStrategyTable(
+                                            HeavyDBHintStrategyTable.HINT_STRATEGY_TABLE)
+                                    .build())
+                    .typeSystem(new HeavyDBTypeSystem())
+                    .build();
+    return new HeavyDBPlanner(config);
+  }
+
+  /**
+   * @return the plan of the query before its optimization
+   */
+  protected static RelNode convert(HeavyDBPlanner planner, String sql) throws Exception {
+    SqlNode parsed = planner.parse(sql);
+    SqlNode validated = planner.validate(parsed);
+    return planner.getRelRoot(validated).project();
+  }
+
+  /**
+   * @return the optimized plan of the query
+   */
+  protected static RelNode plan(HeavyDBPlanner planner, String sql) throws Exception {
+    return planner.optimizeRATree(convert(planner, sql), false, false);
+  }
+
+  protected RelNode plan(String sql) throws Exception {
+    return plan(getPlanner(), sql);
+  }
+
+  protected static String explain(RelNode plan) {
+    return RelOptUtil.toString(plan);
+  }
+
+  protected static String toJson(RelNode plan) {
+    HeavyDBRelJsonWriter writer = new HeavyDBRelJsonWriter();
+    plan.explain(writer);
+    return writer.asString();
+  }
+
+  /**
+   * @return the number of times the text appears in the explained plan
+   */
+  protected static int count(String plan, String text) {
+    int count = 0;
+    for (int i = plan.indexOf(text); i >= 0; i = plan.indexOf(text, i + 1)) {
+      count++;
+    }
+    return count;
+  }
+}
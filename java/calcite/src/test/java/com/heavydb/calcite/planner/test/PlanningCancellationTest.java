@@ -0,0 +1,59 @@
+/*
+ * Copyright 2022 HEAVY.AI, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mapd.calcite.planner.test;
+
+import static org.junit.Assert.assertNotNull;
+
+import org.apache.calcite.prepare.HeavyDBPlanner;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.util.CancelFlag;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import ai.heavy.thrift.server.TDatumType;
+
+public class PlanningCancellationTest extends PlannerTestBase {
+  private static final String SQL =
+          "SELECT t.x, COUNT(*) FROM t JOIN u ON t.x = u.x WHERE t.y > 1 GROUP BY t.x";
+
+  @Before
+  public void setUp() {
+    addTable("t",
+            tableDetails(column("x", TDatumType.INT), column("y", TDatumType.INT)));
+    addTable("u",
+            tableDetails(column("x", TDatumType.INT), column("y", TDatumType.INT)));
+  }
+
+  @Test
+  public void plansWhileNotCancelled() throws Exception {
+    HeavyDBPlanner planner = getPlanner();
+    planner.setCancelFlag(new CancelFlag(new AtomicBoolean()));
+    assertNotNull(plan(planner, SQL));
+  }
+
+  @Test(expected = HeavyDBPlanner.PlanningCancelledException.class)
+  public void stopsOnceCancelled() throws Exception {
+    HeavyDBPlanner planner = getPlanner();
+    CancelFlag cancelFlag = new CancelFlag(new AtomicBoolean());
+    planner.setCancelFlag(cancelFlag);
+    RelNode converted = convert(planner, SQL);
+    cancelFlag.requestCancel();
+    planner.optimizeRATree(converted, false, false);
+  }
+}
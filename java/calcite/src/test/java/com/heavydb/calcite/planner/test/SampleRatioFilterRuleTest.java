@@ -0,0 +1,99 @@
+/*
+ * Copyright 2022 HEAVY.AI, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mapd.calcite.planner.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import ai.heavy.thrift.server.TDatumType;
+
+public class SampleRatioFilterRuleTest extends PlannerTestBase {
+  @Before
+  public void setUp() {
+    addTable("t", tableDetails(column("x", TDatumType.INT), column("y", TDatumType.INT)));
+    addTable("u", tableDetails(column("x", TDatumType.INT), column("z", TDatumType.INT)));
+  }
+
+  /**
+   * @return the line of the plan following the SAMPLE_RATIO filter, which is the scan
+   *         it samples
+   */
+  private static String sampledScan(String plan) {
+    String[] lines = plan.split("\n");
+    for (int i = 0; i + 1 < lines.length; i++) {
+      if (lines[i].contains("SAMPLE_RATIO(")) {
+        return lines[i + 1];
+      }
+    }
+    return null;
+  }
+
+  @Test
+  public void tableSampleIsASampleRatio() throws Exception {
+    String plan = explain(plan("SELECT x FROM t TABLESAMPLE SYSTEM (50)"));
+    assertEquals(plan, 1, count(plan, "SAMPLE_RATIO(0.5"));
+    assertFalse(plan, plan.contains("Sample("));
+    assertTrue(plan, sampledScan(plan).contains("table=[[heavydb, t]]"));
+  }
+
+  @Test
+  public void bernoulliTableSampleIsASampleRatio() throws Exception {
+    String plan = explain(plan("SELECT x FROM t TABLESAMPLE BERNOULLI (50)"));
+    assertEquals(plan, 1, count(plan, "SAMPLE_RATIO(0.5"));
+  }
+
+  @Test
+  public void sampleRatioIsBelowTheJoin() throws Exception {
+    String plan = explain(plan(
+            "SELECT t.y, u.z FROM t TABLESAMPLE SYSTEM (50) JOIN u ON t.x = u.x"));
+    assertEquals(plan, 1, count(plan, "SAMPLE_RATIO("));
+    assertTrue(plan, plan.indexOf("SAMPLE_RATIO(") > plan.indexOf("LogicalJoin"));
+    assertTrue(plan, sampledScan(plan).contains("table=[[heavydb, t]]"));
+  }
+
+  @Test
+  public void tableHintIsASampleRatio() throws Exception {
+    String plan = explain(
+            plan("SELECT t.y, u.z FROM t /*+ sample(0.25) */ JOIN u ON t.x = u.x"));
+    assertEquals(plan, 1, count(plan, "SAMPLE_RATIO(0.25"));
+    assertTrue(plan, sampledScan(plan).contains("table=[[heavydb, t]]"));
+  }
+
+  @Test
+  public void queryHintSamplesEveryTable() throws Exception {
+    String plan = explain(plan(
+            "SELECT /*+ sample(0.25) */ t.y, u.z FROM t JOIN u ON t.x = u.x"));
+    assertEquals(plan, 2, count(plan, "SAMPLE_RATIO(0.25"));
+  }
+
+  @Test
+  public void invalidHintIsIgnored() throws Exception {
+    String plan = explain(plan("SELECT x FROM t /*+ sample(2) */"));
+    assertFalse(plan, plan.contains("SAMPLE_RATIO("));
+    assertEquals(plan, 1, count(plan, "LogicalTableScan"));
+  }
+
+  @Test
+  public void sampleRatioIsSerialized() throws Exception {
+    String json = toJson(plan("SELECT x FROM t TABLESAMPLE SYSTEM (50)"));
+    assertTrue(json, json.contains("SAMPLE_RATIO"));
+  }
+}
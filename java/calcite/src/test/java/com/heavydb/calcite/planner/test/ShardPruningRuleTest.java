@@ -0,0 +1,178 @@
+/*
+ * Copyright 2022 HEAVY.AI, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mapd.calcite.planner.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+import com.mapd.calcite.parser.HeavyDBSqlOperatorTable;
+import com.mapd.calcite.rel.rules.ShardPruningRule;
+
+import org.apache.calcite.plan.RelOptRule;
+import org.apache.calcite.plan.hep.HepPlanner;
+import org.apache.calcite.plan.hep.HepProgram;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.externalize.HeavyDBRelJsonWriter;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import ai.heavy.thrift.server.TDatumType;
+import ai.heavy.thrift.server.TTableDetails;
+
+public class ShardPruningRuleTest extends PlannerTestBase {
+  private static final int SHARD_COUNT = 4;
+  private static final Pattern SHARDS = Pattern.compile("shards=\\[\\[([^\\]]*)\\]\\]");
+
+  @Before
+  public void setUp() {
+    TTableDetails sharded =
+            tableDetails(column("k", TDatumType.BIGINT), column("v", TDatumType.INT));
+    sharded.shard_count = SHARD_COUNT;
+    sharded.sharded_column_name = "k";
+    addTable("t", sharded);
+  }
+
+  // as SHARD_FOR_KEY in Shared/shard_key.h
+  private static long shardForKey(long key) {
+    return (key % SHARD_COUNT + SHARD_COUNT) % SHARD_COUNT;
+  }
+
+  private static String shardsOf(long... keys) {
+    TreeSet<Long> shards = new TreeSet<>();
+    for (long key : keys) {
+      shards.add(shardForKey(key));
+    }
+    List<String> list = new ArrayList<>();
+    for (long shard : shards) {
+      list.add(Long.toString(shard));
+    }
+    return String.join(", ", list);
+  }
+
+  // the converted query with only the shard pruning applied
+  private RelNode prune(String sql) throws Exception {
+    HepProgram program =
+            HepProgram.builder()
+                    .addRuleCollection(ImmutableList.<RelOptRule>of(
+                            ShardPruningRule.Config.FILTER_SCAN.toRule(),
+                            ShardPruningRule.Config.FILTER_PROJECT_SCAN.toRule()))
+                    .build();
+    HepPlanner planner = new HepPlanner(program);
+    planner.setRoot(convert(getPlanner(), sql));
+    return planner.findBestExp();
+  }
+
+  /**
+   * @return the shards the scan is annotated with, null if it is not
+   */
+  private String prunedShards(String sql) throws Exception {
+    String plan = explain(prune(sql));
+    Matcher matcher = SHARDS.matcher(plan);
+    return matcher.find() ? matcher.group(1) : null;
+  }
+
+  @Test
+  public void equality() throws Exception {
+    assertEquals(shardsOf(6), prunedShards("SELECT v FROM t WHERE k = 6"));
+    assertEquals(shardsOf(6), prunedShards("SELECT v FROM t WHERE 6 = k AND v > 1"));
+  }
+
+  @Test
+  public void disjunctionOfEqualities() throws Exception {
+    assertEquals(shardsOf(1, 6, 9),
+            prunedShards("SELECT v FROM t WHERE k = 1 OR k = 6 OR k = 9"));
+  }
+
+  @Test
+  public void inValueSet() throws Exception {
+    // values in a single shard, enough of them for a value set
+    StringBuilder values = new StringBuilder();
+    long[] keys = new long[HeavyDBSqlOperatorTable.InValueSet.MIN_VALUES];
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = 1 + SHARD_COUNT * i;
+      values.append(i == 0 ? "" : ", ").append(keys[i]);
+    }
+    String sql = "SELECT v FROM t WHERE k IN (" + values + ")";
+    assertTrue(explain(convert(getPlanner(), sql)).contains("IN($0, "));
+    assertEquals(shardsOf(keys), prunedShards(sql));
+  }
+
+  @Test
+  public void range() throws Exception {
+    assertEquals(shardsOf(5, 6),
+            prunedShards("SELECT v FROM t WHERE k >= 5 AND k < 7"));
+    assertEquals(shardsOf(5, 6), prunedShards("SELECT v FROM t WHERE k > 4 AND k <= 6"));
+    // equalities restricted by a range
+    assertEquals(shardsOf(6),
+            prunedShards("SELECT v FROM t WHERE (k = 1 OR k = 6) AND k > 2"));
+  }
+
+  @Test
+  public void rangeWiderThanTheShardCountMatchesAllShards() throws Exception {
+    String plan = explain(prune("SELECT v FROM t WHERE k >= 0 AND k < 100"));
+    assertFalse(plan, SHARDS.matcher(plan).find());
+    assertTrue(plan, plan.contains("shardKeyRange=[[0, 99]]"));
+  }
+
+  @Test
+  public void contradictionMatchesNoShard() throws Exception {
+    assertEquals("", prunedShards("SELECT v FROM t WHERE k = 1 AND k = 2"));
+    assertEquals("", prunedShards("SELECT v FROM t WHERE k > 6 AND k < 7"));
+  }
+
+  @Test
+  public void negativeKeys() throws Exception {
+    assertEquals(shardsOf(-3), prunedShards("SELECT v FROM t WHERE k = -3"));
+    assertEquals(shardsOf(-6, -5),
+            prunedShards("SELECT v FROM t WHERE k BETWEEN -6 AND -5"));
+  }
+
+  @Test
+  public void filterOnOtherColumnIsIgnored() throws Exception {
+    String plan = explain(prune("SELECT v FROM t WHERE v = 6"));
+    assertFalse(plan, plan.contains("shardKey"));
+  }
+
+  @Test
+  public void annotationIsSerialized() throws Exception {
+    String json = toJson(prune("SELECT v FROM t WHERE k = 6")).replaceAll("\\s", "");
+    assertTrue(json, json.contains("\"shardKey\":\"k\""));
+    assertTrue(json, json.contains("\"shards\":[" + shardsOf(6) + "]"));
+    assertTrue(json, json.contains("\"shardKeyRange\":[{"));
+  }
+
+  @Test
+  public void shardsArePartOfThePlanShape() throws Exception {
+    HeavyDBRelJsonWriter first = new HeavyDBRelJsonWriter();
+    prune("SELECT v FROM t WHERE k = 6").explain(first);
+    HeavyDBRelJsonWriter sameShard = new HeavyDBRelJsonWriter();
+    prune("SELECT v FROM t WHERE k = 10").explain(sameShard);
+    HeavyDBRelJsonWriter otherShard = new HeavyDBRelJsonWriter();
+    prune("SELECT v FROM t WHERE k = 7").explain(otherShard);
+    assertEquals(first.getPlanFingerprint(), sameShard.getPlanFingerprint());
+    assertNotEquals(first.getPlanFingerprint(), otherShard.getPlanFingerprint());
+  }
+}
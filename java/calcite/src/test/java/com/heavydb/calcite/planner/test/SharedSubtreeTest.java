@@ -0,0 +1,100 @@
+/*
+ * Copyright 2022 HEAVY.AI, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mapd.calcite.planner.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.RelVisitor;
+import org.apache.calcite.rel.core.Union;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import ai.heavy.thrift.server.TDatumType;
+
+/**
+ * The optimized plan shares its identical subtrees, which are then written once in the
+ * RA JSON. The inputs of a join or of a union which end up being the same node get
+ * their own copies when the executor's DAG is built.
+ */
+public class SharedSubtreeTest extends PlannerTestBase {
+  private static final String CTE =
+          "WITH c AS (SELECT x, SUM(y) AS s FROM t GROUP BY x) ";
+
+  @Before
+  public void setUp() {
+    addTable("t",
+            tableDetails(column("x", TDatumType.INT), column("y", TDatumType.INT)));
+  }
+
+  private static <T extends RelNode> List<T> find(RelNode plan, Class<T> clazz) {
+    final List<T> found = new ArrayList<>();
+    new RelVisitor() {
+      @Override
+      public void visit(RelNode node, int ordinal, RelNode parent) {
+        if (clazz.isInstance(node)) {
+          found.add(clazz.cast(node));
+        }
+        super.visit(node, ordinal, parent);
+      }
+    }.go(plan);
+    return found;
+  }
+
+  @Test
+  public void selfJoinSharesTheScan() throws Exception {
+    String json = toJson(plan("SELECT a.x, b.y FROM t a JOIN t b ON a.x = b.y"));
+    assertEquals(json, 1, count(json, "LogicalTableScan"));
+    assertEquals(json, 1, count(json, "LogicalJoin"));
+  }
+
+  @Test
+  public void selfUnionSharesItsInputs() throws Exception {
+    RelNode plan = plan("SELECT x FROM t UNION ALL SELECT x FROM t");
+    List<Union> unions = find(plan, Union.class);
+    assertEquals(1, unions.size());
+    assertSame(unions.get(0).getInput(0), unions.get(0).getInput(1));
+  }
+
+  @Test
+  public void repeatedCteIsWrittenOnce() throws Exception {
+    String json = toJson(plan(CTE + "SELECT x FROM c WHERE s > 1 "
+            + "UNION ALL SELECT x FROM c WHERE s < 0"));
+    assertEquals(json, 1, count(json, "LogicalAggregate"));
+    assertEquals(json, 2, count(json, "LogicalFilter"));
+  }
+
+  @Test
+  public void selfJoinedCteIsWrittenOnce() throws Exception {
+    String json = toJson(
+            plan(CTE + "SELECT c1.x, c2.s FROM c c1 JOIN c c2 ON c1.x = c2.x"));
+    assertEquals(json, 1, count(json, "LogicalAggregate"));
+  }
+
+  @Test
+  public void nonDeterministicSubtreesAreNotShared() throws Exception {
+    String json = toJson(plan("SELECT x FROM t WHERE RAND() < 0.5 "
+            + "UNION ALL SELECT x FROM t WHERE RAND() < 0.5"));
+    assertEquals(json, 2, count(json, "LogicalFilter"));
+    // the scan below the filters is
+    assertEquals(json, 1, count(json, "LogicalTableScan"));
+  }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2022 HEAVY.AI, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mapd.calcite.planner.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import ai.heavy.thrift.server.TDatumType;
+
+public class SortProjectCopyRuleTest extends PlannerTestBase {
+  @Before
+  public void setUp() {
+    addTable("t",
+            tableDetails(column("x", TDatumType.INT), column("y", TDatumType.INT)));
+    addTable("u",
+            tableDetails(column("x", TDatumType.INT), column("y", TDatumType.INT)));
+  }
+
+  @Test
+  public void projectOverScanKeepsOneSort() throws Exception {
+    String plan = explain(plan("SELECT x, y * 2 AS z FROM t ORDER BY x LIMIT 10"));
+    assertEquals(plan, 1, count(plan, "LogicalSort"));
+  }
+
+  @Test
+  public void projectOverInnerJoinKeepsOneSort() throws Exception {
+    String plan = explain(plan("SELECT t.x, u.y * 2 AS z FROM t JOIN u ON t.x = u.x "
+            + "ORDER BY t.x LIMIT 10"));
+    assertEquals(plan, 1, count(plan, "LogicalSort"));
+  }
+
+  @Test
+  public void projectOverUnionCopiesSortIntoInputs() throws Exception {
+    String plan = explain(plan("SELECT x, y * 2 AS z FROM (SELECT x, y FROM t "
+            + "UNION ALL SELECT x, y FROM u) s ORDER BY x LIMIT 10"));
+    // the original sort, its copy below the project and one copy in each input
+    assertTrue(plan, count(plan, "LogicalSort") >= 3);
+  }
+
+  @Test
+  public void projectOverLeftJoinCopiesSortIntoPreservedSide() throws Exception {
+    String plan = explain(plan("SELECT t.x, u.y * 2 AS z FROM t LEFT JOIN u "
+            + "ON t.x = u.x ORDER BY t.x LIMIT 10"));
+    assertTrue(plan, count(plan, "LogicalSort") >= 2);
+  }
+}
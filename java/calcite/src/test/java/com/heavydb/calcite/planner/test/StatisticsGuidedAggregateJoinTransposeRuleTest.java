@@ -0,0 +1,93 @@
+/*
+ * Copyright 2022 HEAVY.AI, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mapd.calcite.planner.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.calcite.prepare.HeavyDBPlanner;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import ai.heavy.thrift.server.TDatumType;
+import ai.heavy.thrift.server.TTableStats;
+
+public class StatisticsGuidedAggregateJoinTransposeRuleTest extends PlannerTestBase {
+  private static final String QUERY =
+          "SELECT /*+ aggregate_join_transpose(0.001) */ d.name, SUM(f.x) "
+          + "FROM fact f JOIN dim d ON f.dim_id = d.id GROUP BY d.name";
+
+  private final Map<String, Long> rowCounts = new HashMap<>();
+
+  @Before
+  public void setUp() {
+    addTable("fact",
+            tableDetails(column("dim_id", TDatumType.INT),
+                    column("x", TDatumType.DOUBLE)));
+    addTable("dim",
+            tableDetails(column("id", TDatumType.INT), column("name", TDatumType.INT)));
+  }
+
+  private String planWithRowCounts(long factRows, long dimRows) throws Exception {
+    rowCounts.put("fact", factRows);
+    rowCounts.put("dim", dimRows);
+    HeavyDBPlanner planner = getPlanner();
+    planner.setTableStatsProvider((qualifiedName, columnNames) -> {
+      TTableStats stats = new TTableStats();
+      stats.num_rows = rowCounts.get(qualifiedName.get(qualifiedName.size() - 1));
+      stats.is_exact = false;
+      return stats;
+    });
+    return explain(plan(planner, QUERY));
+  }
+
+  @Test
+  public void pushesAggregateBelowJoinOfLargeFactTable() throws Exception {
+    String plan = planWithRowCounts(10000000, 100);
+    assertTrue(plan, count(plan, "LogicalAggregate") > 1);
+  }
+
+  @Test
+  public void keepsAggregateAboveJoinOfSmallTables() throws Exception {
+    String plan = planWithRowCounts(10, 100);
+    assertEquals(plan, 1, count(plan, "LogicalAggregate"));
+  }
+
+  @Test
+  public void ignoresQueriesWithoutHint() throws Exception {
+    String plan = explain(plan("SELECT d.name, SUM(f.x) FROM fact f JOIN dim d "
+            + "ON f.dim_id = d.id GROUP BY d.name"));
+    assertEquals(plan, 1, count(plan, "LogicalAggregate"));
+  }
+
+  @Test
+  public void keepsAggregateAboveJoinWithoutStatistics() throws Exception {
+    String plan = explain(plan(QUERY));
+    assertEquals(plan, 1, count(plan, "LogicalAggregate"));
+  }
+
+  @Test
+  public void statisticsOfOneQueryAreNotReusedByTheNext() throws Exception {
+    String plan = planWithRowCounts(10000000, 100);
+    assertTrue(plan, count(plan, "LogicalAggregate") > 1);
+    plan = planWithRowCounts(10, 100);
+    assertEquals(plan, 1, count(plan, "LogicalAggregate"));
+  }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2022 HEAVY.AI, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mapd.calcite.planner.test;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import ai.heavy.thrift.server.TDatumType;
+
+public class TransitivePredicateInferenceTest extends PlannerTestBase {
+  @Before
+  public void setUp() {
+    addTable("a", tableDetails(column("k", TDatumType.INT), column("v", TDatumType.INT)));
+    addTable("b", tableDetails(column("k", TDatumType.INT), column("w", TDatumType.INT)));
+  }
+
+  @Test
+  public void filterOnJoinKeyIsInferredForTheOtherInput() throws Exception {
+    String plan = explain(plan("SELECT a.v, b.w FROM a JOIN b ON a.k = b.k "
+            + "WHERE a.k = 5"));
+    // a.k = 5 on a, and the inferred b.k = 5 on b
+    assertEquals(plan, 2, count(plan, "LogicalFilter(condition=[=($0, 5)])"));
+  }
+
+  @Test
+  public void filterOnJoinKeyOfCommaJoinIsInferred() throws Exception {
+    String plan = explain(plan("SELECT a.v, b.w FROM a, b WHERE a.k = b.k AND b.k = 5"));
+    assertEquals(plan, 2, count(plan, "LogicalFilter(condition=[=($0, 5)])"));
+  }
+
+  @Test
+  public void filterOnOtherColumnIsNotInferred() throws Exception {
+    String plan = explain(plan("SELECT a.v, b.w FROM a JOIN b ON a.k = b.k "
+            + "WHERE a.v = 5"));
+    assertEquals(plan, 1, count(plan, "LogicalFilter"));
+  }
+
+  @Test
+  public void filterIsNotInferredForThePreservedSideOfOuterJoin() throws Exception {
+    String plan = explain(plan("SELECT a.v, b.w FROM a LEFT JOIN b ON a.k = b.k "
+            + "AND b.k = 5"));
+    // the condition on b only filters b, the rows of a are all kept
+    assertEquals(plan, 1, count(plan, "LogicalFilter(condition=[=($0, 5)])"));
+  }
+}
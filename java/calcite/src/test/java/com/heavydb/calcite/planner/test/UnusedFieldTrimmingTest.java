@@ -0,0 +1,100 @@
+/*
+ * Copyright 2022 HEAVY.AI, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mapd.calcite.planner.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.RelVisitor;
+import org.apache.calcite.rel.core.Join;
+import org.apache.calcite.rel.hint.Hintable;
+import org.apache.calcite.rel.hint.RelHint;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import ai.heavy.thrift.server.TDatumType;
+
+public class UnusedFieldTrimmingTest extends PlannerTestBase {
+  private static final String JOIN = "SELECT a.v FROM a JOIN b ON a.k = b.k";
+
+  @Before
+  public void setUp() {
+    addTable("a",
+            tableDetails(column("k", TDatumType.INT),
+                    column("v", TDatumType.INT),
+                    column("w1", TDatumType.INT),
+                    column("w2", TDatumType.INT)));
+    addTable("b", tableDetails(column("k", TDatumType.INT), column("w", TDatumType.INT)));
+  }
+
+  private static Join findJoin(RelNode root) {
+    final Join[] join = {null};
+    new RelVisitor() {
+      @Override
+      public void visit(RelNode node, int ordinal, RelNode parent) {
+        if (node instanceof Join) {
+          join[0] = (Join) node;
+        }
+        super.visit(node, ordinal, parent);
+      }
+    }.go(root);
+    return join[0];
+  }
+
+  private static List<String> findHints(RelNode root) {
+    final List<String> hints = new ArrayList<>();
+    new RelVisitor() {
+      @Override
+      public void visit(RelNode node, int ordinal, RelNode parent) {
+        if (node instanceof Hintable) {
+          for (RelHint hint : ((Hintable) node).getHints()) {
+            hints.add(hint.hintName);
+          }
+        }
+        super.visit(node, ordinal, parent);
+      }
+    }.go(root);
+    return hints;
+  }
+
+  @Test
+  public void joinInputsAreNarrowedToTheUsedColumns() throws Exception {
+    Join join = findJoin(plan(JOIN));
+    assertNotNull(join);
+    // a.k and a.v from a, b.k from b
+    assertEquals(join.getRowType().toString(), 3, join.getRowType().getFieldCount());
+  }
+
+  @Test
+  public void scansKeepAllTheirColumns() throws Exception {
+    String json = toJson(plan(JOIN)).replaceAll("\\s", "");
+    assertTrue(json,
+            json.contains("\"fieldNames\":[\"k\",\"v\",\"w1\",\"w2\",\"rowid\"]"));
+    assertTrue(json, json.contains("\"fieldNames\":[\"k\",\"w\",\"rowid\"]"));
+  }
+
+  @Test
+  public void hintsAreKept() throws Exception {
+    RelNode plan = plan("SELECT /*+ cpu_mode */ a.v FROM a JOIN b ON a.k = b.k");
+    assertTrue(explain(plan), findHints(plan).contains("cpu_mode"));
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2022 HEAVY.AI, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mapd.calcite.planner.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.mapd.calcite.rel.rules.WindowProjectMergeRule;
+
+import org.apache.calcite.plan.hep.HepPlanner;
+import org.apache.calcite.plan.hep.HepProgram;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.core.Project;
+import org.apache.calcite.rel.hint.RelHint;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import ai.heavy.thrift.server.TDatumType;
+
+public class WindowProjectMergeRuleTest extends PlannerTestBase {
+  @Before
+  public void setUp() {
+    addTable("t",
+            tableDetails(column("x", TDatumType.INT),
+                    column("y", TDatumType.INT),
+                    column("z", TDatumType.INT)));
+  }
+
+  // the converted query with only the window project merge applied
+  private RelNode merge(String sql) throws Exception {
+    HepProgram program = HepProgram.builder()
+                                 .addRuleInstance(
+                                         WindowProjectMergeRule.Config.DEFAULT.toRule())
+                                 .build();
+    HepPlanner planner = new HepPlanner(program);
+    planner.setRoot(convert(getPlanner(), sql));
+    return planner.findBestExp();
+  }
+
+  @Test
+  public void projectsWithTheSameSpecAreMerged() throws Exception {
+    RelNode plan = merge("SELECT x, s, MAX(z) OVER (PARTITION BY x ORDER BY y) AS m "
+            + "FROM (SELECT x, y, z, MIN(z) OVER (PARTITION BY x ORDER BY y) AS s "
+            + "FROM t)");
+    assertEquals(explain(plan), 1, count(explain(plan), "LogicalProject"));
+    Map<String, List<Integer>> groups =
+            WindowProjectMergeRule.groupWindows((Project) plan);
+    assertEquals(groups.toString(), 1, groups.size());
+    assertEquals(groups.toString(), 2, groups.values().iterator().next().size());
+  }
+
+  @Test
+  public void projectsWithDifferentSpecsAreKept() throws Exception {
+    String plan = explain(merge("SELECT x, s, "
+            + "MAX(z) OVER (PARTITION BY y ORDER BY x) AS m "
+            + "FROM (SELECT x, y, z, MIN(z) OVER (PARTITION BY x ORDER BY y) AS s "
+            + "FROM t)"));
+    assertEquals(plan, 2, count(plan, "LogicalProject"));
+  }
+
+  @Test
+  public void nestedWindowFunctionsAreKept() throws Exception {
+    String plan = explain(merge("SELECT x, MAX(s) OVER (PARTITION BY x ORDER BY y) AS m "
+            + "FROM (SELECT x, y, MIN(z) OVER (PARTITION BY x ORDER BY y) AS s "
+            + "FROM t)"));
+    assertEquals(plan, 2, count(plan, "LogicalProject"));
+  }
+
+  @Test
+  public void frameIsNotPartOfTheSpec() throws Exception {
+    String plan = explain(merge("SELECT x, s, MAX(z) OVER (PARTITION BY x ORDER BY y "
+            + "ROWS BETWEEN 1 PRECEDING AND CURRENT ROW) AS m "
+            + "FROM (SELECT x, y, z, MIN(z) OVER (PARTITION BY x ORDER BY y) AS s "
+            + "FROM t)"));
+    assertEquals(plan, 1, count(plan, "LogicalProject"));
+  }
+
+  @Test
+  public void mergedProjectKeepsTheHintsOfBoth() throws Exception {
+    RelNode plan = merge(
+            "SELECT /*+ cpu_mode */ x, s, MAX(z) OVER (PARTITION BY x ORDER BY y) AS m "
+            + "FROM (SELECT /*+ columnar_output */ x, y, z, "
+            + "MIN(z) OVER (PARTITION BY x ORDER BY y) AS s FROM t)");
+    assertEquals(explain(plan), 1, count(explain(plan), "LogicalProject"));
+    List<String> hints = new ArrayList<>();
+    for (RelHint hint : ((Project) plan).getHints()) {
+      hints.add(hint.hintName);
+    }
+    assertTrue(hints.toString(), hints.contains("cpu_mode"));
+    assertTrue(hints.toString(), hints.contains("columnar_output"));
+  }
+}
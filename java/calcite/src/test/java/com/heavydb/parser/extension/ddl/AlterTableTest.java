@@ -3,6 +3,7 @@ package com.mapd.parser.extension.ddl;
 import static org.junit.Assert.assertEquals;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import com.mapd.common.SockTransportProperties;
 
@@ -27,4 +28,31 @@ public class AlterTableTest extends DDLTest {
 
     assertEquals(expectedJsonObject, actualJsonObject);
   }
+
+  @Test
+  public void AlterTableAddMaterializedQuery() throws Exception {
+    final TPlanResult result = processDdlCommand(
+            "ALTER TABLE test_rollup ADD MATERIALIZED QUERY (SELECT a, COUNT(*) AS n FROM test GROUP BY a);");
+    final JsonObject payload = gson.fromJson(result.plan_result, JsonObject.class)
+                                       .getAsJsonObject("payload");
+
+    assertEquals("ALTER_TABLE", payload.get("command").getAsString());
+    assertEquals("test_rollup", payload.get("tableName").getAsString());
+    assertEquals("ADD_MATERIALIZED_QUERY", payload.get("alterType").getAsString());
+    final JsonArray sourceTables = payload.getAsJsonArray("sourceTables");
+    assertEquals(1, sourceTables.size());
+    assertEquals("test", sourceTables.get(0).getAsString());
+  }
+
+  @Test
+  public void AlterTableDropMaterializedQuery() throws Exception {
+    final JsonObject expectedJsonObject =
+            getJsonFromFile("alter_table_drop_materialized_query.json");
+    final TPlanResult result =
+            processDdlCommand("ALTER TABLE test_rollup DROP MATERIALIZED QUERY;");
+    final JsonObject actualJsonObject =
+            gson.fromJson(result.plan_result, JsonObject.class);
+
+    assertEquals(expectedJsonObject, actualJsonObject);
+  }
 }
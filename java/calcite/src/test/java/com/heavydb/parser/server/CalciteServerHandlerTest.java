@@ -0,0 +1,276 @@
+/*
+ * Copyright 2022 HEAVY.AI, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mapd.parser.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.mapd.common.SockTransportProperties;
+
+import org.apache.calcite.prepare.HeavyDBPlanner;
+import org.apache.calcite.rel.rules.Restriction;
+import org.apache.calcite.util.CancelFlag;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ai.heavy.thrift.calciteserver.InvalidParseRequest;
+import ai.heavy.thrift.calciteserver.TOptimizationOption;
+import ai.heavy.thrift.calciteserver.TPlanResult;
+import ai.heavy.thrift.calciteserver.TQueryParsingOption;
+import ai.heavy.thrift.calciteserver.TRestriction;
+
+public class CalciteServerHandlerTest {
+  private static final String SQL = "SELECT 1";
+
+  // plans every query into its text, or fails with the given failure, once released.
+  // Fails like the planner does when it finds its cancel flag raised.
+  private static class StubPlanningHandler extends CalciteServerHandler {
+    final AtomicInteger plans = new AtomicInteger();
+    final CountDownLatch planning = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    volatile InvalidParseRequest failure;
+
+    StubPlanningHandler(String resourceDirPath) {
+      super(0,
+              "",
+              resourceDirPath + "ast/test_extension_functions.ast",
+              SockTransportProperties.getUnencryptedClient(),
+              "");
+    }
+
+    @Override
+    TPlanResult plan(String user,
+            String session,
+            String catalog,
+            String queryText,
+            TQueryParsingOption queryParsingOption,
+            TOptimizationOption optimizationOption,
+            List<TRestriction> trestrictions,
+            CancelFlag cancelFlag) throws InvalidParseRequest {
+      plans.incrementAndGet();
+      planning.countDown();
+      try {
+        while (!release.await(10, TimeUnit.MILLISECONDS)) {
+          if (cancelFlag.isCancelRequested()) {
+            throw toInvalidParseRequest(
+                    new HeavyDBPlanner.PlanningCancelledException(), queryText);
+          }
+        }
+      } catch (InterruptedException e) {
+        throw new InvalidParseRequest(-1, e.getMessage());
+      }
+      if (failure != null) {
+        throw failure;
+      }
+      TPlanResult result = new TPlanResult();
+      result.plan_result = queryText;
+      return result;
+    }
+  }
+
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+  private StubPlanningHandler handler;
+
+  @Before
+  public void setUp() {
+    handler = new StubPlanningHandler(
+            CalciteServerHandlerTest.class.getClassLoader().getResource("").getPath());
+  }
+
+  @After
+  public void tearDown() {
+    handler.release.countDown();
+    executor.shutdownNow();
+  }
+
+  private Future<TPlanResult> processAsync(String session, String nonce) {
+    TQueryParsingOption queryParsingOption = new TQueryParsingOption();
+    queryParsingOption.public_session_id = session;
+    queryParsingOption.nonce = nonce;
+    TOptimizationOption optimizationOption = new TOptimizationOption();
+    optimizationOption.filter_push_down_info = new ArrayList<>();
+    return executor.submit(() -> {
+      return handler.process("admin",
+              "in-memory-" + nonce,
+              "heavyai",
+              SQL,
+              queryParsingOption,
+              optimizationOption,
+              null);
+    });
+  }
+
+  private static void assertPlanning(Future<TPlanResult> future) throws Exception {
+    try {
+      future.get(200, TimeUnit.MILLISECONDS);
+      fail("the query should still be planned");
+    } catch (TimeoutException e) {
+      // still planning
+    }
+  }
+
+  private static InvalidParseRequest getFailure(Future<TPlanResult> future)
+          throws Exception {
+    try {
+      future.get(10, TimeUnit.SECONDS);
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof InvalidParseRequest);
+      return (InvalidParseRequest) e.getCause();
+    }
+    fail("the planning should fail");
+    return null;
+  }
+
+  @Test
+  public void cancelledPlanningIsReportedAsCancelled() {
+    InvalidParseRequest error = CalciteServerHandler.toInvalidParseRequest(
+            new HeavyDBPlanner.PlanningCancelledException(), SQL);
+    assertEquals(CalciteServerHandler.PLANNING_CANCELLED, error.code);
+  }
+
+  @Test
+  public void cancelStopsThePlanningOfTheQuery() throws Exception {
+    Future<TPlanResult> future = processAsync("s1", "1");
+    assertTrue(handler.planning.await(10, TimeUnit.SECONDS));
+    handler.cancel("s1", "1");
+    assertEquals(CalciteServerHandler.PLANNING_CANCELLED, getFailure(future).code);
+  }
+
+  @Test
+  public void cancelWithoutNonceStopsThePlanningOfTheSession() throws Exception {
+    Future<TPlanResult> future = processAsync("s1", "1");
+    assertTrue(handler.planning.await(10, TimeUnit.SECONDS));
+    handler.cancel("s1", "");
+    assertEquals(CalciteServerHandler.PLANNING_CANCELLED, getFailure(future).code);
+  }
+
+  @Test
+  public void cancelLeavesOtherQueriesAlone() throws Exception {
+    Future<TPlanResult> future = processAsync("s1", "1");
+    assertTrue(handler.planning.await(10, TimeUnit.SECONDS));
+    // another query of the session, and the same request id in another session
+    handler.cancel("s1", "2");
+    handler.cancel("s2", "1");
+    // nor does the in-memory session of the request name it
+    handler.cancel("in-memory-1", "");
+    assertPlanning(future);
+    handler.release.countDown();
+    assertEquals(SQL, future.get(10, TimeUnit.SECONDS).plan_result);
+  }
+
+  @Test
+  public void cancelWithoutSessionNorNonceIsIgnored() throws Exception {
+    Future<TPlanResult> future = processAsync("s1", "1");
+    assertTrue(handler.planning.await(10, TimeUnit.SECONDS));
+    handler.cancel("", "");
+    assertPlanning(future);
+    handler.release.countDown();
+    assertEquals(SQL, future.get(10, TimeUnit.SECONDS).plan_result);
+  }
+
+  @Test
+  public void identicalRequestsArePlannedOnce() throws Exception {
+    Future<TPlanResult> first = processAsync("s1", "1");
+    assertTrue(handler.planning.await(10, TimeUnit.SECONDS));
+    Future<TPlanResult> second = processAsync("s2", "2");
+    Future<TPlanResult> third = processAsync("s3", "3");
+    assertPlanning(second);
+    assertPlanning(third);
+    handler.release.countDown();
+    assertEquals(SQL, first.get(10, TimeUnit.SECONDS).plan_result);
+    assertEquals(SQL, second.get(10, TimeUnit.SECONDS).plan_result);
+    assertEquals(SQL, third.get(10, TimeUnit.SECONDS).plan_result);
+    assertEquals(1, handler.plans.get());
+  }
+
+  @Test
+  public void failureIsReportedToEveryWaiter() throws Exception {
+    handler.failure = new InvalidParseRequest(-2, "SQL Error");
+    Future<TPlanResult> first = processAsync("s1", "1");
+    assertTrue(handler.planning.await(10, TimeUnit.SECONDS));
+    Future<TPlanResult> second = processAsync("s2", "2");
+    assertPlanning(second);
+    handler.release.countDown();
+    assertEquals(-2, getFailure(first).code);
+    assertEquals(-2, getFailure(second).code);
+    assertEquals(1, handler.plans.get());
+
+    // the failure is not kept for the requests coming after it
+    handler.failure = null;
+    assertEquals(SQL, processAsync("s3", "3").get(10, TimeUnit.SECONDS).plan_result);
+    assertEquals(2, handler.plans.get());
+  }
+
+  @Test
+  public void waiterPlansItselfOnceTheRequestInFlightIsCancelled() throws Exception {
+    Future<TPlanResult> first = processAsync("s1", "1");
+    assertTrue(handler.planning.await(10, TimeUnit.SECONDS));
+    Future<TPlanResult> second = processAsync("s2", "2");
+    assertPlanning(second);
+    handler.cancel("s1", "1");
+    assertEquals(CalciteServerHandler.PLANNING_CANCELLED, getFailure(first).code);
+    assertPlanning(second);
+    handler.release.countDown();
+    assertEquals(SQL, second.get(10, TimeUnit.SECONDS).plan_result);
+    assertEquals(2, handler.plans.get());
+  }
+
+  @Test
+  public void cancelledWaiterLeavesTheRequestInFlightAlone() throws Exception {
+    Future<TPlanResult> first = processAsync("s1", "1");
+    assertTrue(handler.planning.await(10, TimeUnit.SECONDS));
+    Future<TPlanResult> second = processAsync("s2", "2");
+    assertPlanning(second);
+    handler.cancel("s2", "2");
+    assertEquals(CalciteServerHandler.PLANNING_CANCELLED, getFailure(second).code);
+    assertPlanning(first);
+    handler.release.countDown();
+    assertEquals(SQL, first.get(10, TimeUnit.SECONDS).plan_result);
+    assertEquals(1, handler.plans.get());
+  }
+
+  private static List<TRestriction> restrictions(String... values) {
+    List<TRestriction> restrictions = new ArrayList<>();
+    restrictions.add(new TRestriction("heavyai", "t", "x", Arrays.asList(values)));
+    return restrictions;
+  }
+
+  @Test
+  public void restrictionsAreReusedForAnIdenticalSet() {
+    List<Restriction> first = handler.getRestrictions(restrictions("1", "2"));
+    assertSame(first, handler.getRestrictions(restrictions("1", "2")));
+    assertNotSame(first, handler.getRestrictions(restrictions("1", "3")));
+    assertNull(handler.getRestrictions(new ArrayList<>()));
+  }
+}
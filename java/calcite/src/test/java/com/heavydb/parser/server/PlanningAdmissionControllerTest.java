@@ -0,0 +1,122 @@
+/*
+ * Copyright 2022 HEAVY.AI, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mapd.parser.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.apache.calcite.util.CancelFlag;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import ai.heavy.thrift.calciteserver.InvalidParseRequest;
+
+public class PlanningAdmissionControllerTest {
+  private static final String SQL = "SELECT 1";
+
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  private static CancelFlag newCancelFlag() {
+    return new CancelFlag(new AtomicBoolean());
+  }
+
+  private Future<?> acquireAsync(
+          PlanningAdmissionController controller, String session, CancelFlag flag) {
+    return executor.submit(() -> {
+      controller.acquire(session, SQL, flag);
+      return null;
+    });
+  }
+
+  private static void assertWaiting(Future<?> future) throws Exception {
+    try {
+      future.get(200, TimeUnit.MILLISECONDS);
+      fail("the statement should wait for a slot");
+    } catch (TimeoutException e) {
+      // still waiting
+    }
+  }
+
+  private static InvalidParseRequest getFailure(Future<?> future) throws Exception {
+    try {
+      future.get(10, TimeUnit.SECONDS);
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof InvalidParseRequest);
+      return (InvalidParseRequest) e.getCause();
+    }
+    fail("the statement should not be admitted");
+    return null;
+  }
+
+  @Test
+  public void globalLimit() throws Exception {
+    PlanningAdmissionController controller = new PlanningAdmissionController(2, 0, 0);
+    controller.acquire("a", SQL, newCancelFlag());
+    controller.acquire("b", SQL, newCancelFlag());
+    Future<?> third = acquireAsync(controller, "c", newCancelFlag());
+    assertWaiting(third);
+    controller.release("a");
+    third.get(10, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void sessionLimit() throws Exception {
+    PlanningAdmissionController controller = new PlanningAdmissionController(0, 1, 0);
+    controller.acquire("a", SQL, newCancelFlag());
+    Future<?> sameSession = acquireAsync(controller, "a", newCancelFlag());
+    assertWaiting(sameSession);
+    // other sessions are not held back by the statements of session a
+    acquireAsync(controller, "b", newCancelFlag()).get(10, TimeUnit.SECONDS);
+    assertFalse(sameSession.isDone());
+    controller.release("a");
+    sameSession.get(10, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void queueingLimit() throws Exception {
+    PlanningAdmissionController controller = new PlanningAdmissionController(1, 0, 50);
+    controller.acquire("a", SQL, newCancelFlag());
+    assertEquals(-8, getFailure(acquireAsync(controller, "b", newCancelFlag())).code);
+  }
+
+  @Test
+  public void cancelledWhileWaiting() throws Exception {
+    PlanningAdmissionController controller = new PlanningAdmissionController(1, 0, 0);
+    controller.acquire("a", SQL, newCancelFlag());
+    CancelFlag cancelFlag = newCancelFlag();
+    Future<?> waiting = acquireAsync(controller, "b", cancelFlag);
+    assertWaiting(waiting);
+    cancelFlag.requestCancel();
+    controller.wakeWaiters();
+    assertEquals(CalciteServerHandler.PLANNING_CANCELLED, getFailure(waiting).code);
+  }
+}
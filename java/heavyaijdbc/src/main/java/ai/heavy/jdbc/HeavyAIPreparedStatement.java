@@ -51,6 +51,7 @@ import java.util.regex.Pattern;
 import ai.heavy.thrift.server.Heavy;
 import ai.heavy.thrift.server.TColumnType;
 import ai.heavy.thrift.server.TDBException;
+import ai.heavy.thrift.server.TQueryParameterValue;
 import ai.heavy.thrift.server.TStringRow;
 import ai.heavy.thrift.server.TStringValue;
 import ai.heavy.thrift.server.TTableDetails;
@@ -75,6 +76,10 @@ class HeavyAIPreparedStatement implements PreparedStatement {
   private boolean isNewBatch = true;
   private boolean[] parmIsString = null;
   private List<TStringRow> rows = null;
+  // the handle of the plan of a select on the server, null until it is executed, or
+  // if the server could not prepare it
+  private String preparedHandle = null;
+  private boolean isPrepared = false;
   private static final Pattern REGEX_PATTERN = Pattern.compile("(?i)\\s+INTO\\s+(\\w+)");
   private static final Pattern REGEX_LOF_PATTERN = Pattern.compile(
           "(?i)\\s*insert\\s+into\\s+[\\w:\\.]+\\s*\\(([\\w:\\s:\\,:\\']+)\\)[\\w:\\s]+\\(");
@@ -132,7 +137,8 @@ class HeavyAIPreparedStatement implements PreparedStatement {
           modQuery.append("NULL");
         } else {
           if (parmIsString[i]) {
-            modQuery.append("'").append(parmRep[i]).append("'");
+            // add extra ' if there are any in string
+            modQuery.append("'").append(parmRep[i].replaceAll("'", "''")).append("'");
           } else {
             modQuery.append(parmRep[i]);
           }
@@ -155,9 +161,51 @@ class HeavyAIPreparedStatement implements PreparedStatement {
     return matcher.matches();
   }
 
+  // the values of the parameters, bound by the server to the plan of the query
+  private List<TQueryParameterValue> getParameterValues() {
+    if (repCount != parmCount) {
+      throw new UnsupportedOperationException(
+              "Incorrect number of replace parameters for prepared statement "
+              + currentSQL + " has only " + repCount + " parameters");
+    }
+    List<TQueryParameterValue> values = new ArrayList<TQueryParameterValue>(parmCount);
+    for (int i = 0; i < parmCount; i++) {
+      TQueryParameterValue value = new TQueryParameterValue();
+      value.is_null = parmIsNull[i];
+      if (!parmIsNull[i]) {
+        value.value = parmRep[i];
+      }
+      values.add(value);
+    }
+    repCount = 0; // reset the parameters
+    return values;
+  }
+
+  // prepares the query on the server the first time it is executed, so it is planned
+  // once rather than for each set of parameters
+  private String getPreparedHandle() throws SQLException {
+    if (!isPrepared) {
+      isPrepared = true;
+      try {
+        preparedHandle = stmt.prepareQuery(currentSQL);
+      } catch (TException ex) {
+        // older servers, and queries the server can not plan with parameters, are
+        // executed with the parameters replaced in the text of the query
+        HEAVYDBLOGGER.debug("Query could not be prepared, "
+                + HeavyAIExceptionText.getExceptionDetail(ex));
+      }
+    }
+    return preparedHandle;
+  }
+
   @Override
   public ResultSet executeQuery() throws SQLException {
     if (isNewBatch) {
+      if (parmCount > 0 && isSelect() && getPreparedHandle() != null) {
+        HEAVYDBLOGGER.debug("executeQuery, prepared sql=" + currentSQL);
+        return stmt.executePreparedQuery(
+                preparedHandle, getParameterValues(), currentSQL);
+      }
       String qsql = getQuery();
       HEAVYDBLOGGER.debug("executeQuery, sql=" + qsql);
       return stmt.executeQuery(qsql);
@@ -253,8 +301,6 @@ class HeavyAIPreparedStatement implements PreparedStatement {
   @Override
   public void setString(int parameterIndex, String x) throws SQLException {
     HEAVYDBLOGGER.debug("Entered");
-    // add extra ' if there are any in string
-    x = x.replaceAll("'", "''");
     parmRep[parameterIndex - 1] = x;
     parmIsString[parameterIndex - 1] = true;
     parmIsNull[parameterIndex - 1] = false;
@@ -752,6 +798,16 @@ class HeavyAIPreparedStatement implements PreparedStatement {
   @Override
   public void close() throws SQLException {
     HEAVYDBLOGGER.debug("close");
+    if (preparedHandle != null) {
+      try {
+        client.sql_unprepare(session, preparedHandle);
+      } catch (TException ex) {
+        // the server drops the plan when the session ends anyway
+        HEAVYDBLOGGER.debug("Query could not be unprepared, "
+                + HeavyAIExceptionText.getExceptionDetail(ex));
+      }
+      preparedHandle = null;
+    }
     if (stmt != null) {
       // TODO MAT probably more needed here
       stmt.close();
@@ -22,11 +22,13 @@ import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.SQLWarning;
+import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import ai.heavy.thrift.server.Heavy;
 import ai.heavy.thrift.server.TDBException;
+import ai.heavy.thrift.server.TQueryParameterValue;
 import ai.heavy.thrift.server.TQueryResult;
 
 public class HeavyAIStatement implements java.sql.Statement {
@@ -103,6 +105,34 @@ public class HeavyAIStatement implements java.sql.Statement {
     return currentRS;
   }
 
+  // plans sql, with its ? parameters, on the server and returns the handle of the plan
+  String prepareQuery(String sql) throws SQLException, TException {
+    checkClosed();
+    String afterSimpleParse = simplisticDateTransform(HeavyAIEscapeParser.parse(sql));
+    logger.debug("Preparing [" + afterSimpleParse + "]");
+    return client.sql_prepare(session, afterSimpleParse).handle;
+  }
+
+  ResultSet executePreparedQuery(String handle, List<TQueryParameterValue> values,
+          String sql) throws SQLException {
+    checkClosed();
+    // the limit the text of the query would be given, applied to the result instead
+    int firstN = maxRows >= 0 && !sql.toLowerCase().contains("limit") ? maxRows : -1;
+    try {
+      sqlResult = client.sql_execute_prepared(
+              session, handle, values, true, "", firstN, -1);
+    } catch (TDBException ex) {
+      throw new SQLException(
+              "Query failed : " + HeavyAIExceptionText.getExceptionDetail(ex));
+    } catch (TException ex) {
+      throw new SQLException(
+              "Query failed : " + HeavyAIExceptionText.getExceptionDetail(ex));
+    }
+
+    currentRS = new HeavyAIResultSet(sqlResult, sql);
+    return currentRS;
+  }
+
   @Override
   public void cancel() throws SQLException { // logger.debug("Entered");
     checkClosed();
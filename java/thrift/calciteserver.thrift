@@ -15,15 +15,54 @@ struct TAccessedQueryObjects {
   4: list<list<string>> tables_deleted_from;
 }
 
+struct TPlanNodeDigest {
+     // hash of the subtree rooted at the node including its literals, tables being
+     // identified by name only
+  1: string digest;
+     // false if the subtree calls a non-deterministic or time dependent function, such
+     // as RAND, NOW or a runtime UDF, so that its result must not be reused
+  2: bool is_deterministic;
+}
+
 struct TPlanResult {
   1: string plan_result;
   2: i64 execution_time_ms;
-     // these are the primary objects accessed in this query without resolving views
+  // these are the primary objects accessed in this query without resolving views
   3: TAccessedQueryObjects primary_accessed_objects;
-     // these are the accessed objects during this query after resolving all views
+  // these are the accessed objects during this query after resolving all views
   4: TAccessedQueryObjects resolved_accessed_objects;
-     // flag indicating if `plan_result` can be parsed into relational algebra
+  // flag indicating if `plan_result` can be parsed into relational algebra
   5: bool is_rel_alg;
+     // hash of the plan ignoring its literals, shared by queries only differing in
+     // their constants
+  6: string plan_fingerprint;
+     // the digest of each node of the relational algebra in `plan_result`, by node id
+  7: list<TPlanNodeDigest> node_digests;
+}
+
+struct TParameterType {
+     // name of the SQL type of the parameter, such as INTEGER or VARCHAR, ANY if the
+     // plan does not use the parameter
+  1: string type;
+  2: i32 precision;
+  3: i32 scale;
+  4: bool nullable;
+}
+
+struct TPreparedPlan {
+     // names the plan in bind()
+  1: string handle;
+     // the relational algebra of the plan, in which each parameter is a slot
+     // {"dynamic_param": <index>, "type": <type>}
+  2: string plan_result;
+     // the type of each parameter, in order of appearance in the query
+  3: list<TParameterType> parameter_types;
+}
+
+struct TParameterValue {
+  1: bool is_null = false;
+     // the value as written in a SQL literal, without quotes
+  2: string value;
 }
 
 struct TFilterPushDownInfo {
@@ -43,6 +82,13 @@ struct TQueryParsingOption {
  1: bool legacy_syntax;
  2: bool is_explain;
  4: bool is_explain_detail;
+    // rewrite exact aggregates into their approximate counterparts
+ 5: bool approximate_query_mode = false;
+    // identifies the query for cancel, the request id of the query by default
+ 6: string nonce = "";
+    // public id of the client session issuing the query, which the per-session
+    // planning limits apply to
+ 7: string public_session_id = "";
 }
 
 struct TOptimizationOption {
@@ -50,6 +96,10 @@ struct TOptimizationOption {
   2: bool enable_watchdog;
   3: list<TFilterPushDownInfo> filter_push_down_info;
   4: bool distributed_mode;
+     // time budget for the optional optimization phases of the planner, 0 = unbounded
+  5: i64 planning_time_budget_ms = 0;
+  // answer queries from tables registered as materialized queries
+  6: bool enable_materialized_query_rewrite = false;
 }
 
 service CalciteServer {
@@ -60,11 +110,28 @@ service CalciteServer {
                        5:TQueryParsingOption query_parsing_option, 6:TOptimizationOption optimization_option,
                        7:list<TRestriction> restrictions)
                       throws (1:InvalidParseRequest parseErr)
+   // plans a query containing ? parameters once, for bind() to give their values
+   TPreparedPlan prepare(1:string user, 2:string passwd, 3:string catalog, 4:string sql_text
+                         5:TQueryParsingOption query_parsing_option, 6:TOptimizationOption optimization_option,
+                         7:list<TRestriction> restrictions)
+                        throws (1:InvalidParseRequest parseErr)
+   // the plan of a prepared query, its parameters being replaced by the given values.
+   // The restrictions must be those the query was prepared with, or it must be
+   // prepared again.
+   TPlanResult bind(1:string user, 2:string catalog, 3:string handle, 4:list<TParameterValue> values,
+                    5:list<TRestriction> restrictions)
+                        throws (1:InvalidParseRequest parseErr)
+   void unprepare(1:string user, 2:string catalog, 3:string handle)
    string getExtensionFunctionWhitelist()
    string getUserDefinedFunctionWhitelist()
    string getRuntimeExtensionFunctionWhitelist()
    void setRuntimeExtensionFunctions(1: list<extension_functions.TUserDefinedFunction> udfs, 2: list<extension_functions.TUserDefinedTableFunction> udtfs, 3:bool isruntime)
    void updateMetadata(1: string catalog, 2:string table)
+   // forgets which tables each user can access, after privileges were granted or revoked
+   void updatePrivileges()
+   // stops planning the queries of the session, named by its public id, with the given
+   // nonce, an empty session or nonce matches any, but not both
+   void cancel(1: string session, 2: string nonce)
    list<completion_hints.TCompletionHint> getCompletionHints(1:string user, 2:string passwd, 3:string catalog,
     4:list<string> visible_tables, 5:string sql, 6:i32 cursor)
 